@@ -0,0 +1,32 @@
+package lk.npsp.benchmark;
+
+import lk.npsp.service.DateTimeCombiner;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Combination of a departure day with a template's time of day, done once per instantiated departure.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateTimeCombinerBenchmark {
+
+    private final DateTimeCombiner dateTimeCombiner = new DateTimeCombiner();
+
+    private final LocalDate date = LocalDate.of(2019, 3, 15);
+
+    private final Instant time = Instant.parse("2019-01-01T02:45:00Z");
+
+    @Benchmark
+    public Instant combineDateAndTime() {
+        return dateTimeCombiner.combineDateAndTime(date, time);
+    }
+}
@@ -0,0 +1,91 @@
+package lk.npsp.benchmark;
+
+import lk.npsp.security.AuthoritiesConstants;
+import lk.npsp.security.jwt.JWTFilter;
+import lk.npsp.security.jwt.TokenAuthenticationCache;
+import lk.npsp.security.jwt.TokenProvider;
+
+import io.github.jhipster.config.JHipsterProperties;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of the JWT filter per request: a full signature verification, a hit in the verified token cache, and a
+ * request without a token, which is what the public screen endpoints see.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthenticationBenchmark {
+
+    private final FilterChain filterChain = (request, response) -> { };
+
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    private JWTFilter uncachedFilter;
+
+    private JWTFilter cachedFilter;
+
+    private MockHttpServletRequest authenticatedRequest;
+
+    private MockHttpServletRequest anonymousRequest;
+
+    @Setup
+    public void setUp() throws IOException, ServletException {
+        TokenProvider tokenProvider = new TokenProvider(new JHipsterProperties());
+        ReflectionTestUtils.setField(tokenProvider, "key",
+            Keys.hmacShaKeyFor(Decoders.BASE64
+                .decode("fd54a45s65fds737b9aafcb3412e07ed99b267f33413274720ddbb7f6c5e64e9f14075f2d7ed041592f0b7657baf8")));
+        ReflectionTestUtils.setField(tokenProvider, "tokenValidityInMilliseconds", 3600000);
+        Authentication authentication = new UsernamePasswordAuthenticationToken("operator", "operator",
+            Collections.singletonList(new SimpleGrantedAuthority(AuthoritiesConstants.USER)));
+        String jwt = tokenProvider.createToken(authentication, false);
+
+        uncachedFilter = new JWTFilter(tokenProvider);
+        cachedFilter = new JWTFilter(tokenProvider, new TokenAuthenticationCache(1000, new SimpleMeterRegistry()));
+
+        authenticatedRequest = new MockHttpServletRequest("GET", "/api/schedule-instances");
+        authenticatedRequest.addHeader(JWTFilter.AUTHORIZATION_HEADER, "Bearer " + jwt);
+        anonymousRequest = new MockHttpServletRequest("GET", "/api/screen/bay/1");
+
+        // fill the cache
+        cachedFilter.doFilter(authenticatedRequest, response, filterChain);
+        SecurityContextHolder.clearContext();
+    }
+
+    @Benchmark
+    public void verifyToken() throws IOException, ServletException {
+        uncachedFilter.doFilter(authenticatedRequest, response, filterChain);
+        SecurityContextHolder.clearContext();
+    }
+
+    @Benchmark
+    public void cachedToken() throws IOException, ServletException {
+        cachedFilter.doFilter(authenticatedRequest, response, filterChain);
+        SecurityContextHolder.clearContext();
+    }
+
+    @Benchmark
+    public void noToken() throws IOException, ServletException {
+        cachedFilter.doFilter(anonymousRequest, response, filterChain);
+        SecurityContextHolder.clearContext();
+    }
+}
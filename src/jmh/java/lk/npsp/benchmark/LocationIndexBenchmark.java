@@ -0,0 +1,96 @@
+package lk.npsp.benchmark;
+
+import lk.npsp.domain.Location;
+import lk.npsp.repository.LocationRepository;
+import lk.npsp.service.LocationIndex;
+import lk.npsp.service.dto.NearbyLocationDTO;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * Nearby stop queries through the {@link LocationIndex} grid, against the full scan they replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocationIndexBenchmark {
+
+    private static final int QUERIES = 1024;
+
+    private List<Location> locations;
+
+    private LocationIndex locationIndex;
+
+    private final double[] latitudes = new double[QUERIES];
+
+    private final double[] longitudes = new double[QUERIES];
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        TimetableFixtures fixtures = new TimetableFixtures(0);
+        locations = fixtures.getLocations();
+        for (int i = 0; i < QUERIES; i++) {
+            latitudes[i] = fixtures.randomLatitude();
+            longitudes[i] = fixtures.randomLongitude();
+        }
+        LocationRepository locationRepository = mock(LocationRepository.class, withSettings().stubOnly());
+        when(locationRepository.findAll()).thenReturn(locations);
+        locationIndex = new LocationIndex(locationRepository);
+        locationIndex.reload();
+    }
+
+    @Benchmark
+    public List<NearbyLocationDTO> nearestIndexed() {
+        int i = next();
+        return locationIndex.findNearest(latitudes[i], longitudes[i], 10);
+    }
+
+    @Benchmark
+    public List<NearbyLocationDTO> nearestScan() {
+        int i = next();
+        List<NearbyLocationDTO> result = scan(latitudes[i], longitudes[i], Double.MAX_VALUE);
+        return result.subList(0, Math.min(10, result.size()));
+    }
+
+    @Benchmark
+    public List<NearbyLocationDTO> withinIndexed() {
+        int i = next();
+        return locationIndex.findWithin(latitudes[i], longitudes[i], 2);
+    }
+
+    @Benchmark
+    public List<NearbyLocationDTO> withinScan() {
+        int i = next();
+        return scan(latitudes[i], longitudes[i], 2);
+    }
+
+    private List<NearbyLocationDTO> scan(double latitude, double longitude, double radius) {
+        List<NearbyLocationDTO> result = new ArrayList<>();
+        for (Location location : locations) {
+            double distance = LocationIndex.distance(latitude, longitude,
+                location.getLatitude(), location.getLongitude());
+            if (distance <= radius) {
+                result.add(new NearbyLocationDTO(location, distance));
+            }
+        }
+        result.sort(Comparator.comparingDouble(NearbyLocationDTO::getDistance));
+        return result;
+    }
+
+    private int next() {
+        next = (next + 1) & (QUERIES - 1);
+        return next;
+    }
+}
@@ -0,0 +1,78 @@
+package lk.npsp.benchmark;
+
+import lk.npsp.aop.logging.LoggingInterceptor;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of the dev profile logging proxy on a trivial service method, with the interceptor's logger at INFO (the fast
+ * path) and at DEBUG, against a direct call.
+ * <p>
+ * At DEBUG the logger is detached from its appenders, so the events are built but not written: this measures the
+ * advice, not the console.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoggingInterceptorBenchmark {
+
+    @Param({"INFO", "DEBUG"})
+    private String level;
+
+    private final Greeter direct = new SimpleGreeter();
+
+    private Greeter proxied;
+
+    private LoggingInterceptor loggingInterceptor;
+
+    @Setup
+    public void setUp() {
+        Logger logger = (Logger) LoggerFactory.getLogger(LoggingInterceptor.class);
+        logger.setAdditive(false);
+        logger.detachAndStopAllAppenders();
+        logger.setLevel(Level.toLevel(level));
+
+        loggingInterceptor = new LoggingInterceptor(new MockEnvironment());
+        ProxyFactory proxyFactory = new ProxyFactory(direct);
+        proxyFactory.addAdvice(loggingInterceptor);
+        proxied = (Greeter) proxyFactory.getProxy();
+    }
+
+    @TearDown
+    public void tearDown() {
+        loggingInterceptor.close();
+    }
+
+    @Benchmark
+    public String directCall() {
+        return direct.greet("operator");
+    }
+
+    @Benchmark
+    public String proxiedCall() {
+        return proxied.greet("operator");
+    }
+
+    public interface Greeter {
+
+        String greet(String name);
+    }
+
+    static class SimpleGreeter implements Greeter {
+
+        @Override
+        public String greet(String name) {
+            return "Hello " + name;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package lk.npsp.benchmark;
+
+import lk.npsp.service.ResourceLocator;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the screen CSV resources from the classpath, which the screen response does on every build.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResourceLocatorBenchmark {
+
+    private final ResourceLocator resourceLocator = new ResourceLocator();
+
+    @Benchmark
+    public List<List<String>> locateTableHeaders() throws IOException {
+        return resourceLocator.locateResource("schedule-screen/table-headers.csv", ",");
+    }
+
+    @Benchmark
+    public List<List<String>> locateDictionary() throws IOException {
+        return resourceLocator.locateResource("schedule-screen/dictionary.csv", ",");
+    }
+}
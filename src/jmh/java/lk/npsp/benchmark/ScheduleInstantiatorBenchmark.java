@@ -0,0 +1,60 @@
+package lk.npsp.benchmark;
+
+import lk.npsp.domain.ScheduleInstance;
+import lk.npsp.repository.ScheduleInstanceRepository;
+import lk.npsp.repository.ScheduleTemplateRepository;
+import lk.npsp.service.DomainMetrics;
+import lk.npsp.service.ScheduleInstanceManager;
+import lk.npsp.task.ScheduleInstantiator;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * A run of the schedule instantiator over a day that is already fully instantiated, which is the hourly case: every
+ * active template is matched against the instances of today and tomorrow and nothing is created. The repositories
+ * are stubs, so only the matching is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ScheduleInstantiatorBenchmark {
+
+    @Param({"2000", "20000"})
+    private int templates;
+
+    private ScheduleInstantiator scheduleInstantiator;
+
+    @Setup
+    public void setUp() {
+        TimetableFixtures fixtures = new TimetableFixtures(templates);
+        List<ScheduleInstance> instances = fixtures.instancesOf(LocalDate.now());
+
+        ScheduleTemplateRepository scheduleTemplateRepository =
+            mock(ScheduleTemplateRepository.class, withSettings().stubOnly());
+        when(scheduleTemplateRepository.findAllActiveTemplates()).thenReturn(fixtures.getTemplates());
+        ScheduleInstanceRepository scheduleInstanceRepository =
+            mock(ScheduleInstanceRepository.class, withSettings().stubOnly());
+        when(scheduleInstanceRepository.findScheduleInstancesListByDate(any())).thenReturn(instances);
+
+        scheduleInstantiator = new ScheduleInstantiator(scheduleInstanceRepository, scheduleTemplateRepository,
+            new ScheduleInstanceManager(), mock(ApplicationEventPublisher.class, withSettings().stubOnly()),
+            new DomainMetrics(new SimpleMeterRegistry()), Runnable::run);
+    }
+
+    @Benchmark
+    public void instantiateSchedules() {
+        scheduleInstantiator.instantiateSchedules();
+    }
+}
@@ -0,0 +1,96 @@
+package lk.npsp.benchmark;
+
+import lk.npsp.domain.ScheduleInstance;
+import lk.npsp.domain.ScreenResponse;
+import lk.npsp.domain.ScreenRow;
+import lk.npsp.service.ResourceLocator;
+import lk.npsp.service.SimpleTranslator;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.hibernate5.Hibernate5Module;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Building and serializing the responses of the bay and summary screens, from departures of the synthetic timetable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScreenBenchmark {
+
+    private ResourceLocator resourceLocator;
+
+    private SimpleTranslator simpleTranslator;
+
+    private ObjectMapper objectMapper;
+
+    private ScheduleInstance departure;
+
+    private List<ScheduleInstance> bayDepartures;
+
+    private List<ScheduleInstance> summaryDepartures;
+
+    private ScreenResponse bayResponse;
+
+    private ScreenResponse summaryResponse;
+
+    @Setup
+    public void setUp() throws IOException {
+        resourceLocator = new ResourceLocator();
+        simpleTranslator = new SimpleTranslator(resourceLocator);
+        // the modules registered by JacksonConfiguration that apply to these classes
+        objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .registerModule(new Jdk8Module())
+            .registerModule(new Hibernate5Module())
+            .registerModule(new AfterburnerModule());
+
+        List<ScheduleInstance> day = new TimetableFixtures().instancesOf(LocalDate.of(2019, 3, 15));
+        departure = day.get(0);
+        bayDepartures = day.stream()
+            .filter(instance -> instance.getBay().getId().equals(1L))
+            .limit(ScreenResponse.MAX_ROW_LIMIT_FOR_BAY)
+            .collect(Collectors.toList());
+        summaryDepartures = day.subList(0, ScreenResponse.MAX_ROW_LIMIT_FOR_SUMMARY);
+        bayResponse = bayResponse();
+        summaryResponse = summaryResponse();
+    }
+
+    @Benchmark
+    public ScreenRow screenRow() {
+        return new ScreenRow(departure, simpleTranslator);
+    }
+
+    @Benchmark
+    public ScreenResponse bayResponse() throws IOException {
+        return new ScreenResponse(bayDepartures, "Bay 1", simpleTranslator, resourceLocator);
+    }
+
+    @Benchmark
+    public ScreenResponse summaryResponse() throws IOException {
+        return new ScreenResponse(summaryDepartures, "", simpleTranslator, resourceLocator);
+    }
+
+    @Benchmark
+    public byte[] serializeBayResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(bayResponse);
+    }
+
+    @Benchmark
+    public byte[] serializeSummaryResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(summaryResponse);
+    }
+}
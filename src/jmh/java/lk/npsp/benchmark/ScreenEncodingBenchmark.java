@@ -0,0 +1,87 @@
+package lk.npsp.benchmark;
+
+import lk.npsp.domain.ScheduleInstance;
+import lk.npsp.domain.ScreenResponse;
+import lk.npsp.service.ResourceLocator;
+import lk.npsp.service.SimpleTranslator;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.hibernate5.Hibernate5Module;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serializing the summary screen response as JSON, Smile and CBOR, plain and gzipped as the server compresses them.
+ * The payload sizes of each encoding are printed at setup, as JMH only reports times.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScreenEncodingBenchmark {
+
+    @Param({"json", "smile", "cbor"})
+    private String encoding;
+
+    private ObjectMapper objectMapper;
+
+    private ScreenResponse summaryResponse;
+
+    @Setup
+    public void setUp() throws IOException {
+        ResourceLocator resourceLocator = new ResourceLocator();
+        SimpleTranslator simpleTranslator = new SimpleTranslator(resourceLocator);
+        objectMapper = new ObjectMapper(factory(encoding))
+            .registerModule(new JavaTimeModule())
+            .registerModule(new Jdk8Module())
+            .registerModule(new Hibernate5Module())
+            .registerModule(new AfterburnerModule());
+
+        List<ScheduleInstance> day = new TimetableFixtures().instancesOf(LocalDate.of(2019, 3, 15));
+        summaryResponse = new ScreenResponse(day.stream().limit(ScreenResponse.MAX_ROW_LIMIT_FOR_SUMMARY)
+            .collect(Collectors.toList()), "", simpleTranslator, resourceLocator);
+
+        System.out.printf("%n%s summary response: %d bytes, %d bytes gzipped%n", encoding, serialize().length,
+            serializeGzipped().length);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return objectMapper.writeValueAsBytes(summaryResponse);
+    }
+
+    @Benchmark
+    public byte[] serializeGzipped() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            objectMapper.writeValue(gzip, summaryResponse);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static JsonFactory factory(String encoding) {
+        switch (encoding) {
+            case "smile":
+                return new SmileFactory();
+            case "cbor":
+                return new CBORFactory();
+            default:
+                return new JsonFactory();
+        }
+    }
+}
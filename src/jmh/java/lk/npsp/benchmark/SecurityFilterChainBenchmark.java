@@ -0,0 +1,104 @@
+package lk.npsp.benchmark;
+
+import lk.npsp.NpspApp;
+import lk.npsp.security.AuthoritiesConstants;
+import lk.npsp.security.jwt.JWTFilter;
+import lk.npsp.security.jwt.TokenProvider;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.FilterChainProxy;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of Spring Security per request, through the application's own FilterChainProxy: a screen GET, which
+ * web.ignoring() lets through without filters, a POST to the same URL, which goes through the whole chain as an
+ * anonymous request, and an authenticated GET with a JWT, cached after the first request.
+ * <p>
+ * Each request and response is new, as filters keep state on them; the application starts once per fork.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SecurityFilterChainBenchmark {
+
+    private static final String SCREEN_URL = "/api/screen/schedule";
+
+    private final FilterChain filterChain = (request, response) -> { };
+
+    private ConfigurableApplicationContext context;
+
+    private FilterChainProxy springSecurityFilterChain;
+
+    private String jwt;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(NpspApp.class)
+            .properties(
+                "server.port=0",
+                "jhipster.logging.logstash.enabled=false",
+                "jhipster.metrics.logs.enabled=false",
+                "logging.level.lk.npsp=WARN")
+            .run();
+        springSecurityFilterChain = context.getBean("springSecurityFilterChain", FilterChainProxy.class);
+        Authentication authentication = new UsernamePasswordAuthenticationToken("operator", "operator",
+            Collections.singletonList(new SimpleGrantedAuthority(AuthoritiesConstants.USER)));
+        jwt = context.getBean(TokenProvider.class).createToken(authentication, false);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public MockHttpServletResponse ignoredScreenGet() throws IOException, ServletException {
+        return filter(request("GET", SCREEN_URL));
+    }
+
+    @Benchmark
+    public MockHttpServletResponse fullChainScreenPost() throws IOException, ServletException {
+        return filter(request("POST", SCREEN_URL));
+    }
+
+    @Benchmark
+    public MockHttpServletResponse fullChainAuthenticatedGet() throws IOException, ServletException {
+        MockHttpServletRequest request = request("GET", "/api/bays");
+        request.addHeader(JWTFilter.AUTHORIZATION_HEADER, "Bearer " + jwt);
+        return filter(request);
+    }
+
+    private static MockHttpServletRequest request(String method, String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        request.setServletPath(path);
+        request.setQueryString("bay=1");
+        request.setParameter("bay", "1");
+        return request;
+    }
+
+    private MockHttpServletResponse filter(MockHttpServletRequest request) throws IOException, ServletException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        try {
+            springSecurityFilterChain.doFilter(request, response, filterChain);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+        return response;
+    }
+}
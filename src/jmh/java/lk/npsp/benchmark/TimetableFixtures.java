@@ -0,0 +1,170 @@
+package lk.npsp.benchmark;
+
+import lk.npsp.domain.*;
+import lk.npsp.domain.enumeration.ScheduleState;
+import lk.npsp.domain.enumeration.Weekdays;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic timetable sized like the national one: the stops of the whole island, a few thousand routes and tens of
+ * thousands of weekly departures. Built from a fixed seed, so every run of every release sees the same data.
+ */
+public final class TimetableFixtures {
+
+    public static final int LOCATIONS = 15000;
+
+    public static final int ROUTES = 2000;
+
+    public static final int BAYS = 60;
+
+    public static final int TEMPLATES = 20000;
+
+    // roughly the extent of Sri Lanka
+    public static final double MIN_LATITUDE = 5.9;
+    public static final double MAX_LATITUDE = 9.9;
+    public static final double MIN_LONGITUDE = 79.6;
+    public static final double MAX_LONGITUDE = 81.9;
+
+    private static final String[] TRANSPORT_TYPES = {"NTC", "SLTB", "RAIL"};
+
+    private final Random random = new Random(20190101L);
+
+    private final List<Location> locations = new ArrayList<>(LOCATIONS);
+
+    private final List<Route> routes = new ArrayList<>(ROUTES);
+
+    private final List<Bay> bays = new ArrayList<>(BAYS);
+
+    private final List<Vehicle> vehicles = new ArrayList<>();
+
+    private final List<Weekday> weekdays = new ArrayList<>();
+
+    private final List<ScheduleTemplate> templates;
+
+    public TimetableFixtures() {
+        this(TEMPLATES);
+    }
+
+    public TimetableFixtures(int templateCount) {
+        for (long id = 1; id <= LOCATIONS; id++) {
+            Location location = new Location()
+                .locationName("Stop " + id)
+                .locationNameSinhala("නැවතුම " + id)
+                .locationNameTamil("நிறுத்தம் " + id)
+                .latitude(randomLatitude())
+                .longitude(randomLongitude());
+            location.setId(id);
+            locations.add(location);
+        }
+        long routeLocationId = 1;
+        for (long id = 1; id <= ROUTES; id++) {
+            Route route = new Route().routeName("Route " + id).routeNumber(String.valueOf(id));
+            route.setId(id);
+            int stops = 5 + random.nextInt(36);
+            for (long sequence = 1; sequence <= stops; sequence++) {
+                RouteLocation routeLocation = new RouteLocation()
+                    .sequenceNumber(sequence)
+                    .location(locations.get(random.nextInt(LOCATIONS)))
+                    .route(route);
+                routeLocation.setId(routeLocationId++);
+                route.addRouteLocation(routeLocation);
+            }
+            routes.add(route);
+        }
+        for (long id = 1; id <= BAYS; id++) {
+            Bay bay = new Bay().bayName("Bay " + id);
+            bay.setId(id);
+            bays.add(bay);
+        }
+        for (int i = 0; i < TRANSPORT_TYPES.length; i++) {
+            TransportType transportType = new TransportType().typeName(TRANSPORT_TYPES[i]).metaCode(TRANSPORT_TYPES[i]);
+            transportType.setId((long) i + 1);
+            for (int v = 0; v < 500; v++) {
+                Vehicle vehicle = new Vehicle().registrationNumber(TRANSPORT_TYPES[i] + "-" + v).transportType(transportType);
+                vehicle.setId((long) vehicles.size() + 1);
+                vehicles.add(vehicle);
+            }
+        }
+        for (Weekdays day : Weekdays.values()) {
+            Weekday weekday = new Weekday().weekday(day);
+            weekday.setId((long) day.ordinal() + 1);
+            weekdays.add(weekday);
+        }
+        templates = new ArrayList<>(templateCount);
+        for (long id = 1; id <= templateCount; id++) {
+            Instant start = LocalDate.of(2019, 1, 1).atStartOfDay(ZoneId.systemDefault()).toInstant()
+                .plusSeconds(random.nextInt(24 * 60) * 60L);
+            ScheduleTemplate template = new ScheduleTemplate()
+                .startTime(start)
+                .endTime(start.plusSeconds(3600))
+                .isActive(true)
+                .route(routes.get(random.nextInt(ROUTES)))
+                .bay(bays.get(random.nextInt(BAYS)))
+                .vehicle(vehicles.get(random.nextInt(vehicles.size())));
+            template.setId(id);
+            // most departures run every day, the others on a random set of days
+            for (Weekday weekday : weekdays) {
+                if (id % 4 != 0 || random.nextBoolean()) {
+                    template.addWeekday(weekday);
+                }
+            }
+            templates.add(template);
+        }
+    }
+
+    /**
+     * @return the instances of every template on a day, in template order
+     */
+    public List<ScheduleInstance> instancesOf(LocalDate date) {
+        List<ScheduleInstance> instances = new ArrayList<>(templates.size());
+        ScheduleState[] states = ScheduleState.values();
+        long id = 1;
+        for (ScheduleTemplate template : templates) {
+            Instant time = date.atStartOfDay(ZoneId.systemDefault()).toInstant()
+                .plusSeconds(template.getStartTime().atZone(ZoneId.systemDefault()).toLocalTime().toSecondOfDay());
+            ScheduleInstance instance = new ScheduleInstance()
+                .date(date)
+                .scheduledTime(time)
+                .actualScheduledTime(time)
+                .actualDepartureTime(time)
+                .scheduleState(states[random.nextInt(states.length)])
+                .scheduleTemplate(template)
+                .route(template.getRoute())
+                .bay(template.getBay())
+                .vehicle(template.getVehicle());
+            instance.setId(id++);
+            instances.add(instance);
+        }
+        return instances;
+    }
+
+    public List<Location> getLocations() {
+        return locations;
+    }
+
+    public List<Route> getRoutes() {
+        return routes;
+    }
+
+    public List<Bay> getBays() {
+        return bays;
+    }
+
+    public List<ScheduleTemplate> getTemplates() {
+        return templates;
+    }
+
+    public double randomLatitude() {
+        return MIN_LATITUDE + random.nextDouble() * (MAX_LATITUDE - MIN_LATITUDE);
+    }
+
+    public double randomLongitude() {
+        return MIN_LONGITUDE + random.nextDouble() * (MAX_LONGITUDE - MIN_LONGITUDE);
+    }
+}
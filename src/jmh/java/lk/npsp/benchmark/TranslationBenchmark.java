@@ -0,0 +1,60 @@
+package lk.npsp.benchmark;
+
+import lk.npsp.domain.enumeration.ScreenLanguage;
+import lk.npsp.service.ResourceLocator;
+import lk.npsp.service.SimpleTranslator;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Translation of the words shown on the screens: single words, the screen title and the table headers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TranslationBenchmark {
+
+    private SimpleTranslator simpleTranslator;
+
+    private List<String> tableHeaders;
+
+    @Setup
+    public void setUp() throws IOException {
+        ResourceLocator resourceLocator = new ResourceLocator();
+        simpleTranslator = new SimpleTranslator(resourceLocator);
+        tableHeaders = resourceLocator.locateResource("schedule-screen/table-headers.csv", ",").get(0);
+    }
+
+    @Benchmark
+    public String translateStatus() {
+        return simpleTranslator.translate("BOARDING", ScreenLanguage.SINHALA);
+    }
+
+    @Benchmark
+    public String translateBayTitle() {
+        return simpleTranslator.translate("Bay 12 - Departures", ScreenLanguage.TAMIL);
+    }
+
+    @Benchmark
+    public String translateUnknownWord() {
+        return simpleTranslator.translate("42", ScreenLanguage.SINHALA);
+    }
+
+    @Benchmark
+    public List<String> translateTableHeaders() {
+        return simpleTranslator.translate(tableHeaders, ScreenLanguage.TAMIL);
+    }
+
+    @Benchmark
+    public List<String> translateWordList() {
+        return simpleTranslator.translate(Arrays.asList("DEPARTED", "BOARDING", "PENDING"), ScreenLanguage.SINHALA);
+    }
+}
@@ -0,0 +1,66 @@
+package lk.npsp.benchmark;
+
+import lk.npsp.domain.Authority;
+import lk.npsp.domain.User;
+import lk.npsp.repository.UserRepository;
+import lk.npsp.security.AuthoritiesConstants;
+import lk.npsp.security.DomainUserDetailsService;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * The principal resolution of a login, by login and by email, with the principal cache and without it. The user
+ * repository is a stub returning the user at once, as its own cache would, so only the work of the service is
+ * measured; the password check comes on top, see the hashing settings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserDetailsBenchmark {
+
+    @Param({"true", "false"})
+    private boolean cached;
+
+    private DomainUserDetailsService userDetailsService;
+
+    @Setup
+    public void setUp() {
+        User user = new User();
+        user.setLogin("operator");
+        user.setEmail("operator@npsp.lk");
+        user.setActivated(true);
+        user.setPassword("$2a$10$gSAhZrxMllrbgj/kkK9UceBPpChGWJA7SYIb1Mqo.n5aNLq1/oRrC");
+        for (String name : new String[]{AuthoritiesConstants.USER, AuthoritiesConstants.ADMIN}) {
+            Authority authority = new Authority();
+            authority.setName(name);
+            user.getAuthorities().add(authority);
+        }
+        UserRepository userRepository = mock(UserRepository.class, withSettings().stubOnly());
+        when(userRepository.findOneWithAuthoritiesByLogin("operator")).thenReturn(Optional.of(user));
+        when(userRepository.findOneWithAuthoritiesByEmail("operator@npsp.lk")).thenReturn(Optional.of(user));
+        CacheManager cacheManager = cached ? new ConcurrentMapCacheManager() : new NoOpCacheManager();
+        userDetailsService = new DomainUserDetailsService(userRepository, cacheManager);
+    }
+
+    @Benchmark
+    public UserDetails byLogin() {
+        return userDetailsService.loadUserByUsername("Operator");
+    }
+
+    @Benchmark
+    public UserDetails byEmail() {
+        return userDetailsService.loadUserByUsername("operator@npsp.lk");
+    }
+}
@@ -0,0 +1,143 @@
+package lk.npsp.benchmark.load;
+
+import java.util.*;
+
+/**
+ * Settings of a load test run, read from {@code key=value} program arguments.
+ * <p>
+ * {@code screens} takes a comma separated list: each value is one step of the run, so a single run can sweep the
+ * number of bay screens and find where the latency target is lost.
+ */
+public class LoadSettings {
+
+    private int bays = 18;
+
+    private int templates = 2000;
+
+    private List<Integer> screens = Arrays.asList(50, 100, 200, 400, 800);
+
+    private int summaryScreens = 10;
+
+    private long pollIntervalMs = 1000;
+
+    private int operators = 5;
+
+    private long updateIntervalMs = 2000;
+
+    private int warmupSeconds = 10;
+
+    private int durationSeconds = 30;
+
+    private int threads = 64;
+
+    private long p99TargetMs = 200;
+
+    private String output = "target/load-result.json";
+
+    public static LoadSettings parse(String[] args) {
+        LoadSettings settings = new LoadSettings();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            }
+            settings.set(arg.substring(0, separator).trim(), arg.substring(separator + 1).trim());
+        }
+        return settings;
+    }
+
+    private void set(String key, String value) {
+        switch (key) {
+            case "bays":
+                bays = Integer.parseInt(value);
+                break;
+            case "templates":
+                templates = Integer.parseInt(value);
+                break;
+            case "screens":
+                List<Integer> steps = new ArrayList<>();
+                for (String step : value.split(",")) {
+                    steps.add(Integer.parseInt(step.trim()));
+                }
+                screens = steps;
+                break;
+            case "summary-screens":
+                summaryScreens = Integer.parseInt(value);
+                break;
+            case "poll-interval-ms":
+                pollIntervalMs = Long.parseLong(value);
+                break;
+            case "operators":
+                operators = Integer.parseInt(value);
+                break;
+            case "update-interval-ms":
+                updateIntervalMs = Long.parseLong(value);
+                break;
+            case "warmup-seconds":
+                warmupSeconds = Integer.parseInt(value);
+                break;
+            case "duration-seconds":
+                durationSeconds = Integer.parseInt(value);
+                break;
+            case "threads":
+                threads = Integer.parseInt(value);
+                break;
+            case "p99-target-ms":
+                p99TargetMs = Long.parseLong(value);
+                break;
+            case "output":
+                output = value;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown setting " + key);
+        }
+    }
+
+    public int getBays() {
+        return bays;
+    }
+
+    public int getTemplates() {
+        return templates;
+    }
+
+    public List<Integer> getScreens() {
+        return screens;
+    }
+
+    public int getSummaryScreens() {
+        return summaryScreens;
+    }
+
+    public long getPollIntervalMs() {
+        return pollIntervalMs;
+    }
+
+    public int getOperators() {
+        return operators;
+    }
+
+    public long getUpdateIntervalMs() {
+        return updateIntervalMs;
+    }
+
+    public int getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public long getP99TargetMs() {
+        return p99TargetMs;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+}
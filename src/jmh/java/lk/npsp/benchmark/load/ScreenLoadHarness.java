@@ -0,0 +1,483 @@
+package lk.npsp.benchmark.load;
+
+import lk.npsp.NpspApp;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Capacity test of the screen endpoints: starts the application in-process on H2, seeds a timetable, then simulates a
+ * fleet of bay and summary screens polling {@code /api/screen/schedule} and {@code /api/screen/schedule-summary} over
+ * HTTP while operators change instance states through {@code PUT /api/schedule-instances}.
+ * <p>
+ * Each step of the run polls with a given number of bay screens: after a warmup, throughput, latency percentiles and
+ * the SQL statements run are measured for a fixed duration. The capacity is the largest number of bay screens whose
+ * step had no errors, no late polls beyond 1% and a p99 screen latency under the target; it is the number to compare
+ * between releases, on the same machine and settings. Results are printed and written as JSON.
+ * <p>
+ * Run it with {@code ./mvnw -Pbenchmark test-compile exec:exec@load-test}, settings go in
+ * {@code -Dload.args="screens=100,200 templates=5000"}, see {@link LoadSettings}. Results go to
+ * {@code target/load-result.json} unless an {@code output} setting is given.
+ */
+public class ScreenLoadHarness {
+
+    private static final Logger log = LoggerFactory.getLogger(ScreenLoadHarness.class);
+
+    private static final String[] OPERATOR_STATES = {"BOARDING", "DELAYED", "DEPARTED", "PENDING"};
+
+    private final LoadSettings settings;
+
+    private final ConfigurableApplicationContext context;
+
+    private final ObjectMapper objectMapper;
+
+    private final String baseUrl;
+
+    private final Random random = new Random(20190101L);
+
+    private TimetableSeeder seeder;
+
+    private String token;
+
+    private ScreenLoadHarness(LoadSettings settings, ConfigurableApplicationContext context) {
+        this.settings = settings;
+        this.context = context;
+        this.objectMapper = context.getBean(ObjectMapper.class);
+        this.baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadSettings settings = LoadSettings.parse(args);
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(NpspApp.class)
+            .properties(
+                "server.port=0",
+                "spring.jpa.properties.hibernate.generate_statistics=true",
+                // count statements without failing requests, unlike the tests
+                "application.statements.mode=LOG",
+                "application.statements.slow-threshold-ms=500",
+                "jhipster.logging.logstash.enabled=false",
+                "jhipster.metrics.logs.enabled=false",
+                "logging.level.lk.npsp=WARN",
+                "logging.level.lk.npsp.benchmark=INFO")
+            .run();
+        int exitCode = 0;
+        try {
+            new ScreenLoadHarness(settings, context).run();
+        } catch (Exception e) {
+            log.error("Load test failed", e);
+            exitCode = 1;
+        } finally {
+            context.close();
+        }
+        System.exit(exitCode);
+    }
+
+    private void run() throws Exception {
+        seeder = new TimetableSeeder(context);
+        seeder.seed(settings);
+        token = authenticate();
+
+        List<StepResult> steps = new ArrayList<>();
+        int capacity = 0;
+        for (int screens : settings.getScreens()) {
+            StepResult step = runStep(screens);
+            steps.add(step);
+            log.info("{}", step);
+            if (step.isPassed()) {
+                capacity = Math.max(capacity, screens);
+            }
+        }
+
+        ObjectNode report = objectMapper.createObjectNode();
+        report.put("date", Instant.now().toString());
+        report.put("javaVersion", System.getProperty("java.version"));
+        report.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+        report.set("settings", objectMapper.valueToTree(settings));
+        report.set("steps", objectMapper.valueToTree(steps));
+        report.put("capacity", capacity);
+        Path output = Paths.get(settings.getOutput());
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(output.toFile(), report);
+        log.info("Capacity: {} bay screens polling every {} ms with p99 under {} ms, results in {}", capacity,
+            settings.getPollIntervalMs(), settings.getP99TargetMs(), output.toAbsolutePath());
+    }
+
+    private StepResult runStep(int screens) throws InterruptedException {
+        Endpoint bay = new Endpoint();
+        Endpoint summary = new Endpoint();
+        Endpoint update = new Endpoint();
+        AtomicBoolean measuring = new AtomicBoolean();
+        AtomicLong latePolls = new AtomicLong();
+        ScheduledExecutorService executor = Executors.newScheduledThreadPool(settings.getThreads());
+
+        long interval = settings.getPollIntervalMs();
+        List<Long> bayIds = seeder.getBayIds();
+        for (int i = 0; i < screens; i++) {
+            String path = "/api/screen/schedule?bay=" + bayIds.get(i % bayIds.size());
+            schedulePoll(executor, interval, measuring, latePolls, () -> get(path, bay, measuring));
+        }
+        List<String> types = new ArrayList<>(seeder.getTransportTypes());
+        types.add("");
+        for (int i = 0; i < settings.getSummaryScreens(); i++) {
+            String path = "/api/screen/schedule-summary?type=" + encode(types.get(i % types.size()));
+            schedulePoll(executor, interval, measuring, latePolls, () -> get(path, summary, measuring));
+        }
+        for (int i = 0; i < settings.getOperators(); i++) {
+            executor.scheduleAtFixedRate(() -> updateInstance(update, measuring),
+                nextDelay(settings.getUpdateIntervalMs()), settings.getUpdateIntervalMs(), TimeUnit.MILLISECONDS);
+        }
+
+        TimeUnit.SECONDS.sleep(settings.getWarmupSeconds());
+        StatementCounts before = statementCounts();
+        measuring.set(true);
+        long start = System.nanoTime();
+        TimeUnit.SECONDS.sleep(settings.getDurationSeconds());
+        measuring.set(false);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        StatementCounts after = statementCounts();
+
+        executor.shutdownNow();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+
+        StepResult result = new StepResult();
+        result.screens = screens;
+        result.seconds = seconds;
+        result.bay = bay.stats(seconds);
+        result.summary = summary.stats(seconds);
+        result.update = update.stats(seconds);
+        result.latePolls = latePolls.get();
+        result.statementsPerSecond = (after.total - before.total) / seconds;
+        result.statementsPerBayRequest = after.perRequest(before, "/api/screen/schedule");
+        result.statementsPerSummaryRequest = after.perRequest(before, "/api/screen/schedule-summary");
+        long polls = result.bay.requests + result.summary.requests;
+        result.passed = result.bay.errors + result.summary.errors + result.update.errors == 0
+            && result.latePolls <= polls / 100
+            && result.bay.p99Ms <= settings.getP99TargetMs()
+            && result.summary.p99Ms <= settings.getP99TargetMs();
+        return result;
+    }
+
+    /**
+     * Poll at a fixed rate from a random offset, as screens started at different times would. A poll starting more
+     * than an interval after it was due means the client pool could not keep up: the step is then measuring the
+     * harness, so it is counted and fails the step.
+     */
+    private void schedulePoll(ScheduledExecutorService executor, long interval, AtomicBoolean measuring,
+                              AtomicLong latePolls, Runnable poll) {
+        long delay = nextDelay(interval);
+        long firstDue = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+        AtomicLong count = new AtomicLong();
+        executor.scheduleAtFixedRate(() -> {
+            long due = firstDue + TimeUnit.MILLISECONDS.toNanos(interval) * count.getAndIncrement();
+            if (measuring.get() && System.nanoTime() - due > TimeUnit.MILLISECONDS.toNanos(interval)) {
+                latePolls.incrementAndGet();
+            }
+            poll.run();
+        }, delay, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void updateInstance(Endpoint update, AtomicBoolean measuring) {
+        List<Long> ids = seeder.getInstanceIds();
+        if (ids.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            Long id = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+            ObjectNode instance = (ObjectNode) objectMapper.readTree(
+                request("GET", "/api/schedule-instances/" + id, null));
+            instance.put("scheduleState", OPERATOR_STATES[ThreadLocalRandom.current().nextInt(OPERATOR_STATES.length)]);
+            request("PUT", "/api/schedule-instances", objectMapper.writeValueAsBytes(instance));
+            update.record(System.nanoTime() - start, measuring);
+        } catch (IOException | RuntimeException e) {
+            update.fail(measuring, e);
+        }
+    }
+
+    private void get(String path, Endpoint endpoint, AtomicBoolean measuring) {
+        long start = System.nanoTime();
+        try {
+            request("GET", path, null);
+            endpoint.record(System.nanoTime() - start, measuring);
+        } catch (IOException | RuntimeException e) {
+            endpoint.fail(measuring, e);
+        }
+    }
+
+    private String authenticate() throws IOException {
+        ObjectNode credentials = objectMapper.createObjectNode()
+            .put("username", "admin")
+            .put("password", "admin")
+            .put("rememberMe", false);
+        return objectMapper.readTree(request("POST", "/api/authenticate",
+            objectMapper.writeValueAsBytes(credentials))).path("id_token").asText();
+    }
+
+    private byte[] request(String method, String path, byte[] body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(5000);
+        connection.setReadTimeout(30000);
+        connection.setRequestProperty("Accept", "application/json");
+        if (token != null && !path.startsWith("/api/screen/")) {
+            connection.setRequestProperty("Authorization", "Bearer " + token);
+        }
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+        }
+        int status = connection.getResponseCode();
+        InputStream stream = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        // read the whole response, so the connection goes back to the keep-alive pool
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        if (stream != null) {
+            try (InputStream in = stream) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    response.write(buffer, 0, read);
+                }
+            }
+        }
+        if (status >= 400) {
+            throw new IOException(method + " " + path + " returned " + status);
+        }
+        return response.toByteArray();
+    }
+
+    private StatementCounts statementCounts() {
+        StatementCounts counts = new StatementCounts();
+        counts.total = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class)
+            .getStatistics().getPrepareStatementCount();
+        MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+        for (String uri : Arrays.asList("/api/screen/schedule", "/api/screen/schedule-summary")) {
+            DistributionSummary summary = meterRegistry.find("npsp.http.statements")
+                .tag("method", "GET").tag("uri", uri).summary();
+            if (summary != null) {
+                counts.requests.put(uri, summary.count());
+                counts.statements.put(uri, summary.totalAmount());
+            }
+        }
+        return counts;
+    }
+
+    private synchronized long nextDelay(long interval) {
+        return interval <= 0 ? 0 : (long) (random.nextDouble() * interval);
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Latencies and errors of one kind of request during the measured part of a step.
+     */
+    private static final class Endpoint {
+
+        private final Histogram latencies = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(1), 3);
+
+        private final AtomicLong errors = new AtomicLong();
+
+        private final AtomicLong loggedErrors = new AtomicLong();
+
+        void record(long nanos, AtomicBoolean measuring) {
+            if (measuring.get()) {
+                latencies.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), latencies.getHighestTrackableValue()));
+            }
+        }
+
+        void fail(AtomicBoolean measuring, Exception e) {
+            if (measuring.get()) {
+                errors.incrementAndGet();
+            }
+            if (loggedErrors.getAndIncrement() < 5) {
+                log.warn("Request failed: {}", e.toString());
+            }
+        }
+
+        EndpointStats stats(double seconds) {
+            EndpointStats stats = new EndpointStats();
+            stats.requests = latencies.getTotalCount();
+            stats.errors = errors.get();
+            stats.throughput = stats.requests / seconds;
+            stats.p50Ms = latencies.getValueAtPercentile(50) / 1000.0;
+            stats.p99Ms = latencies.getValueAtPercentile(99) / 1000.0;
+            stats.maxMs = latencies.getMaxValue() / 1000.0;
+            return stats;
+        }
+    }
+
+    private static final class StatementCounts {
+
+        private long total;
+
+        private final Map<String, Long> requests = new HashMap<>();
+
+        private final Map<String, Double> statements = new HashMap<>();
+
+        double perRequest(StatementCounts before, String uri) {
+            long count = requests.getOrDefault(uri, 0L) - before.requests.getOrDefault(uri, 0L);
+            double sum = statements.getOrDefault(uri, 0.0) - before.statements.getOrDefault(uri, 0.0);
+            return count == 0 ? 0 : sum / count;
+        }
+    }
+
+    /**
+     * Measured numbers of one kind of request.
+     */
+    public static final class EndpointStats {
+
+        private long requests;
+
+        private long errors;
+
+        private double throughput;
+
+        private double p50Ms;
+
+        private double p99Ms;
+
+        private double maxMs;
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public double getThroughput() {
+            return throughput;
+        }
+
+        public double getP50Ms() {
+            return p50Ms;
+        }
+
+        public double getP99Ms() {
+            return p99Ms;
+        }
+
+        public double getMaxMs() {
+            return maxMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d requests, %.1f/s, %d errors, p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+                requests, throughput, errors, p50Ms, p99Ms, maxMs);
+        }
+    }
+
+    /**
+     * Measured numbers of one step.
+     */
+    public static final class StepResult {
+
+        private int screens;
+
+        private double seconds;
+
+        private EndpointStats bay;
+
+        private EndpointStats summary;
+
+        private EndpointStats update;
+
+        private long latePolls;
+
+        private double statementsPerSecond;
+
+        private double statementsPerBayRequest;
+
+        private double statementsPerSummaryRequest;
+
+        private boolean passed;
+
+        public int getScreens() {
+            return screens;
+        }
+
+        public double getSeconds() {
+            return seconds;
+        }
+
+        public EndpointStats getBay() {
+            return bay;
+        }
+
+        public EndpointStats getSummary() {
+            return summary;
+        }
+
+        public EndpointStats getUpdate() {
+            return update;
+        }
+
+        public long getLatePolls() {
+            return latePolls;
+        }
+
+        public double getStatementsPerSecond() {
+            return statementsPerSecond;
+        }
+
+        public double getStatementsPerBayRequest() {
+            return statementsPerBayRequest;
+        }
+
+        public double getStatementsPerSummaryRequest() {
+            return statementsPerSummaryRequest;
+        }
+
+        public boolean isPassed() {
+            return passed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d bay screens: %s%n  bay: %s%n  summary: %s%n  update: %s%n" +
+                    "  %d late polls, %.1f statements/s, %.2f per bay request, %.2f per summary request",
+                screens, passed ? "PASSED" : "FAILED", bay, summary, update, latePolls,
+                statementsPerSecond, statementsPerBayRequest, statementsPerSummaryRequest);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package lk.npsp.benchmark.load;
+
+import lk.npsp.domain.*;
+import lk.npsp.repository.*;
+import lk.npsp.task.ScheduleInstantiator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Fills the in-memory database of the load test: bays, routes over random stops, vehicles and active templates
+ * running every day, then today's and tomorrow's instances through the {@link ScheduleInstantiator}. The data comes
+ * from a fixed seed, so every release is measured against the same timetable.
+ */
+public class TimetableSeeder {
+
+    private static final int STOPS_PER_ROUTE = 12;
+
+    private static final int TEMPLATES_PER_ROUTE = 10;
+
+    private static final int TEMPLATES_PER_VEHICLE = 4;
+
+    private final Logger log = LoggerFactory.getLogger(TimetableSeeder.class);
+
+    private final Random random = new Random(20190101L);
+
+    private final ApplicationContext context;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private List<Long> bayIds;
+
+    private List<String> transportTypes;
+
+    private List<Long> instanceIds;
+
+    public TimetableSeeder(ApplicationContext context) {
+        this.context = context;
+        this.transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    }
+
+    /**
+     * Seed the timetable.
+     *
+     * @param settings the number of bays and templates
+     */
+    public void seed(LoadSettings settings) {
+        List<Bay> bays = transactionTemplate.execute(status -> seedBays(settings.getBays()));
+        transactionTemplate.execute(status -> seedTemplates(settings.getTemplates(), bays));
+        context.getBean(ScheduleInstantiator.class).instantiateSchedules();
+
+        bayIds = bays.stream().map(Bay::getId).collect(Collectors.toList());
+        transportTypes = context.getBean(TransportTypeRepository.class).findAll().stream()
+            .map(TransportType::getMetaCode).collect(Collectors.toList());
+        instanceIds = transactionTemplate.execute(status ->
+            context.getBean(ScheduleInstanceRepository.class).findScheduleInstancesListByDate(LocalDate.now())
+                .stream().map(ScheduleInstance::getId).collect(Collectors.toList()));
+        log.info("Seeded {} bays, {} templates and {} instances for today", bayIds.size(), settings.getTemplates(),
+            instanceIds.size());
+    }
+
+    /**
+     * @return the ids of the bays the screens show
+     */
+    public List<Long> getBayIds() {
+        return bayIds;
+    }
+
+    /**
+     * @return the transport type codes the summary screens filter on
+     */
+    public List<String> getTransportTypes() {
+        return transportTypes;
+    }
+
+    /**
+     * @return the ids of today's instances, for the operators to update
+     */
+    public List<Long> getInstanceIds() {
+        return instanceIds;
+    }
+
+    private List<Bay> seedBays(int count) {
+        BayRepository bayRepository = context.getBean(BayRepository.class);
+        List<Bay> bays = new ArrayList<>(bayRepository.findAll());
+        for (int i = bays.size() + 1; i <= count; i++) {
+            bays.add(bayRepository.save(new Bay().bayName(String.format("Bay %02d", i))));
+        }
+        return bays.subList(0, Math.min(count, bays.size()));
+    }
+
+    private Void seedTemplates(int count, List<Bay> bays) {
+        LocationRepository locationRepository = context.getBean(LocationRepository.class);
+        RouteRepository routeRepository = context.getBean(RouteRepository.class);
+        RouteLocationRepository routeLocationRepository = context.getBean(RouteLocationRepository.class);
+        VehicleRepository vehicleRepository = context.getBean(VehicleRepository.class);
+        ScheduleTemplateRepository scheduleTemplateRepository = context.getBean(ScheduleTemplateRepository.class);
+        List<TransportType> transportTypes = context.getBean(TransportTypeRepository.class).findAll();
+        List<Weekday> weekdays = context.getBean(WeekdayRepository.class).findAll();
+
+        int routeCount = Math.max(1, count / TEMPLATES_PER_ROUTE);
+        List<Location> stops = new ArrayList<>();
+        for (int i = 1; i <= routeCount * STOPS_PER_ROUTE / 2; i++) {
+            stops.add(locationRepository.save(new Location()
+                .locationName("Stop " + i)
+                .locationNameSinhala("නැවතුම " + i)
+                .locationNameTamil("நிறுத்தம் " + i)
+                .latitude(5.9 + random.nextDouble() * 4)
+                .longitude(79.6 + random.nextDouble() * 2.3)));
+        }
+        List<Route> routes = new ArrayList<>(routeCount);
+        for (int i = 1; i <= routeCount; i++) {
+            Route route = routeRepository.save(new Route().routeName("Route " + i).routeNumber(String.valueOf(i)));
+            for (long sequence = 1; sequence <= STOPS_PER_ROUTE; sequence++) {
+                RouteLocation routeLocation = routeLocationRepository.save(new RouteLocation()
+                    .sequenceNumber(sequence)
+                    .location(stops.get(random.nextInt(stops.size())))
+                    .route(route));
+                route.addRouteLocation(routeLocation);
+            }
+            routes.add(route);
+        }
+        List<Vehicle> vehicles = new ArrayList<>();
+        for (int i = 1; i <= Math.max(1, count / TEMPLATES_PER_VEHICLE); i++) {
+            vehicles.add(vehicleRepository.save(new Vehicle()
+                .registrationNumber("NP-" + i)
+                .numberOfSeats(50)
+                .transportType(transportTypes.get(random.nextInt(transportTypes.size())))));
+        }
+        for (int i = 0; i < count; i++) {
+            ScheduleTemplate template = new ScheduleTemplate()
+                .startTime(LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant()
+                    .plusSeconds(random.nextInt(24 * 60) * 60L))
+                .isActive(true)
+                .route(routes.get(random.nextInt(routes.size())))
+                .bay(bays.get(random.nextInt(bays.size())))
+                .vehicle(vehicles.get(random.nextInt(vehicles.size())));
+            template.endTime(template.getStartTime().plusSeconds(3600));
+            weekdays.forEach(template::addWeekday);
+            scheduleTemplateRepository.save(template);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,13 @@
+package lk.npsp.aop.logging;
+
+import java.lang.annotation.*;
+
+/**
+ * Keeps a class out of the {@link LoggingInterceptor}, for beans on hot paths where the logging proxy costs more than
+ * the work it wraps.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ExcludeFromLogging {
+}
@@ -0,0 +1,154 @@
+package lk.npsp.aop.logging;
+
+import io.github.jhipster.config.JHipsterConstants;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggerContextListener;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * Logging of the execution of service and repository Spring components, applied to the beans matched by
+ * {@link #POINTCUT}.
+ * <p>
+ * This is a plain method interceptor rather than an AspectJ around-advice, so no join point is created per call.
+ * While this class' logger is above DEBUG each call only checks a volatile flag and proceeds. The flag is refreshed
+ * when {@code PUT /management/logs} changes a level, and follows the logback level through a
+ * {@link LoggerContextListener} for any other change, such as a configuration reload; so entry and exit logging is
+ * switched on and off without a restart. Exceptions are logged whatever the level.
+ * <p>
+ * By default, it only runs with the "dev" profile.
+ */
+public class LoggingInterceptor implements MethodInterceptor, AutoCloseable {
+
+    /**
+     * Matches all repositories, services and Web REST endpoints in the application's main packages, except those
+     * marked {@link ExcludeFromLogging}.
+     */
+    public static final String POINTCUT = "(within(@org.springframework.stereotype.Repository *)" +
+        " || within(@org.springframework.stereotype.Service *)" +
+        " || within(@org.springframework.web.bind.annotation.RestController *))" +
+        " && (within(lk.npsp.repository..*)" +
+        " || within(lk.npsp.service..*)" +
+        " || within(lk.npsp.web.rest..*))" +
+        " && !within(@lk.npsp.aop.logging.ExcludeFromLogging *)";
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final Environment env;
+
+    private final LevelListener levelListener = new LevelListener();
+
+    private volatile boolean debugEnabled;
+
+    public LoggingInterceptor(Environment env) {
+        this.env = env;
+        refresh();
+        if (LoggerFactory.getILoggerFactory() instanceof LoggerContext) {
+            ((LoggerContext) LoggerFactory.getILoggerFactory()).addListener(levelListener);
+        }
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        if (!debugEnabled) {
+            try {
+                return invocation.proceed();
+            } catch (Throwable e) {
+                logAfterThrowing(invocation.getMethod(), invocation.getArguments(), e);
+                throw e;
+            }
+        }
+        return logAround(invocation);
+    }
+
+    /**
+     * Reads the level of this class' logger again, after it or one of its ancestors changed.
+     */
+    public void refresh() {
+        debugEnabled = log.isDebugEnabled();
+    }
+
+    /**
+     * @return true when entry and exit of methods are logged
+     */
+    public boolean isDebugEnabled() {
+        return debugEnabled;
+    }
+
+    @Override
+    public void close() {
+        if (LoggerFactory.getILoggerFactory() instanceof LoggerContext) {
+            ((LoggerContext) LoggerFactory.getILoggerFactory()).removeListener(levelListener);
+        }
+    }
+
+    private Object logAround(MethodInvocation invocation) throws Throwable {
+        Method method = invocation.getMethod();
+        log.debug("Enter: {}.{}() with argument[s] = {}", method.getDeclaringClass().getName(),
+            method.getName(), Arrays.toString(invocation.getArguments()));
+        try {
+            Object result = invocation.proceed();
+            log.debug("Exit: {}.{}() with result = {}", method.getDeclaringClass().getName(),
+                method.getName(), result);
+            return result;
+        } catch (IllegalArgumentException e) {
+            log.error("Illegal argument: {} in {}.{}()", Arrays.toString(invocation.getArguments()),
+                method.getDeclaringClass().getName(), method.getName());
+            logAfterThrowing(method, invocation.getArguments(), e);
+            throw e;
+        } catch (Throwable e) {
+            logAfterThrowing(method, invocation.getArguments(), e);
+            throw e;
+        }
+    }
+
+    private void logAfterThrowing(Method method, Object[] arguments, Throwable e) {
+        if (env.acceptsProfiles(JHipsterConstants.SPRING_PROFILE_DEVELOPMENT)) {
+            log.error("Exception in {}.{}() with cause = \'{}\' and exception = \'{}\'", method.getDeclaringClass().getName(),
+                method.getName(), e.getCause() != null? e.getCause() : "NULL", e.getMessage(), e);
+
+        } else {
+            log.error("Exception in {}.{}() with cause = {}", method.getDeclaringClass().getName(),
+                method.getName(), e.getCause() != null? e.getCause() : "NULL");
+        }
+    }
+
+    /**
+     * Refreshes the flag whenever a level changes; the changed logger may be an ancestor of ours.
+     */
+    private class LevelListener implements LoggerContextListener {
+
+        @Override
+        public boolean isResetResistant() {
+            return true;
+        }
+
+        @Override
+        public void onStart(LoggerContext context) {
+            refresh();
+        }
+
+        @Override
+        public void onReset(LoggerContext context) {
+            refresh();
+        }
+
+        @Override
+        public void onStop(LoggerContext context) {
+            // nothing to do
+        }
+
+        @Override
+        public void onLevelChange(ch.qos.logback.classic.Logger logger, Level level) {
+            refresh();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package lk.npsp.aop.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.support.StaticMethodMatcherPointcutAdvisor;
+import org.springframework.data.repository.Repository;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Times every call to a Spring Data repository in {@code spring.data.repository.invocations}, tagged with the
+ * application's repository interface, the method and whether it threw.
+ * <p>
+ * Timers are looked up once per repository method and outcome; the tags only come from code, so their number is
+ * bounded by the repository methods declared.
+ * <p>
+ * The registry is looked up on the first call: advisors are created while the bean post-processors are still being
+ * registered, and creating the registry that early would skip its own configuration.
+ */
+public class RepositoryMetricsInterceptor implements MethodInterceptor {
+
+    private static final String METRIC_NAME = "spring.data.repository.invocations";
+
+    private static final String REPOSITORY_PACKAGE = "lk.npsp.repository";
+
+    private final Supplier<MeterRegistry> meterRegistrySupplier;
+
+    private volatile MeterRegistry meterRegistry;
+
+    private final Map<Class<?>, String> repositoryNames = new ConcurrentHashMap<>();
+
+    private final Map<TimerKey, Timer> timers = new ConcurrentHashMap<>();
+
+    public RepositoryMetricsInterceptor(Supplier<MeterRegistry> meterRegistrySupplier) {
+        this.meterRegistrySupplier = meterRegistrySupplier;
+    }
+
+    /**
+     * @return an advisor applying this interceptor to all Spring Data repositories
+     */
+    public StaticMethodMatcherPointcutAdvisor advisor() {
+        return new StaticMethodMatcherPointcutAdvisor(this) {
+            @Override
+            public boolean matches(Method method, Class<?> targetClass) {
+                return targetClass != null && Repository.class.isAssignableFrom(targetClass);
+            }
+        };
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        MeterRegistry registry = meterRegistry();
+        long start = registry.config().clock().monotonicTime();
+        String exception = "None";
+        try {
+            return invocation.proceed();
+        } catch (Throwable e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            // the Spring Data proxy itself, not the generic implementation behind it
+            Class<?> targetClass = invocation.getThis() == null ?
+                invocation.getMethod().getDeclaringClass() : invocation.getThis().getClass();
+            timer(registry, targetClass, invocation.getMethod(), exception)
+                .record(registry.config().clock().monotonicTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private MeterRegistry meterRegistry() {
+        MeterRegistry registry = meterRegistry;
+        if (registry == null) {
+            registry = meterRegistrySupplier.get();
+            meterRegistry = registry;
+        }
+        return registry;
+    }
+
+    private Timer timer(MeterRegistry registry, Class<?> targetClass, Method method, String exception) {
+        TimerKey key = new TimerKey(targetClass, method, exception);
+        Timer timer = timers.get(key);
+        if (timer == null) {
+            timer = timers.computeIfAbsent(key, k -> Timer.builder(METRIC_NAME)
+                .tags(Tags.of("repository", repositoryName(targetClass), "method", method.getName(),
+                    "state", "None".equals(exception) ? "SUCCESS" : "ERROR", "exception", exception))
+                .description("Duration of repository invocations")
+                .register(registry));
+        }
+        return timer;
+    }
+
+    private String repositoryName(Class<?> targetClass) {
+        return repositoryNames.computeIfAbsent(targetClass, type -> {
+            for (Class<?> candidate : type.getInterfaces()) {
+                if (candidate.getName().startsWith(REPOSITORY_PACKAGE)) {
+                    return candidate.getSimpleName();
+                }
+            }
+            return type.getSimpleName();
+        });
+    }
+
+    private static final class TimerKey {
+
+        private final Class<?> targetClass;
+
+        private final Method method;
+
+        private final String exception;
+
+        TimerKey(Class<?> targetClass, Method method, String exception) {
+            this.targetClass = targetClass;
+            this.method = method;
+            this.exception = exception;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof TimerKey)) {
+                return false;
+            }
+            TimerKey other = (TimerKey) o;
+            return targetClass == other.targetClass && method.equals(other.method) && exception.equals(other.exception);
+        }
+
+        @Override
+        public int hashCode() {
+            return (31 * targetClass.hashCode() + method.hashCode()) * 31 + exception.hashCode();
+        }
+    }
+}
@@ -11,4 +11,863 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
 public class ApplicationProperties {
 
+    private final Security security = new Security();
+
+    private final Audit audit = new Audit();
+
+    private final Statements statements = new Statements();
+
+    private final Executors executors = new Executors();
+
+    private final Mail mail = new Mail();
+
+    private final Users users = new Users();
+
+    private final StaticAssets staticAssets = new StaticAssets();
+
+    private final Delays delays = new Delays();
+
+    private final Transitions transitions = new Transitions();
+
+    /**
+     * Time zone of the station: its days start at midnight in this zone, whatever the zone of the JVM.
+     */
+    private String timeZone = "Asia/Colombo";
+
+    public Security getSecurity() {
+        return security;
+    }
+
+    public Audit getAudit() {
+        return audit;
+    }
+
+    public Statements getStatements() {
+        return statements;
+    }
+
+    public Executors getExecutors() {
+        return executors;
+    }
+
+    public Mail getMail() {
+        return mail;
+    }
+
+    public Users getUsers() {
+        return users;
+    }
+
+    public StaticAssets getStaticAssets() {
+        return staticAssets;
+    }
+
+    public Delays getDelays() {
+        return delays;
+    }
+
+    public Transitions getTransitions() {
+        return transitions;
+    }
+
+    public String getTimeZone() {
+        return timeZone;
+    }
+
+    public void setTimeZone(String timeZone) {
+        this.timeZone = timeZone;
+    }
+
+    public static class Security {
+
+        private final TokenCache tokenCache = new TokenCache();
+
+        private final Password password = new Password();
+
+        public TokenCache getTokenCache() {
+            return tokenCache;
+        }
+
+        public Password getPassword() {
+            return password;
+        }
+
+        public static class Password {
+
+            public enum Algorithm {
+                BCRYPT, PBKDF2, ARGON2
+            }
+
+            /**
+             * Algorithm of new hashes; hashes made with another algorithm or other parameters keep working.
+             */
+            private Algorithm algorithm = Algorithm.BCRYPT;
+
+            /**
+             * BCrypt cost, the log2 of the number of rounds.
+             */
+            private int bcryptStrength = 10;
+
+            /**
+             * PBKDF2-HMAC-SHA256 iterations.
+             */
+            private int pbkdf2Iterations = 310000;
+
+            private int argon2MemoryKb = 19456;
+
+            private int argon2Iterations = 2;
+
+            private int argon2Parallelism = 1;
+
+            /**
+             * When true, a successful login replaces a hash made with another algorithm or other parameters.
+             */
+            private boolean rehashOnLogin = true;
+
+            public Algorithm getAlgorithm() {
+                return algorithm;
+            }
+
+            public void setAlgorithm(Algorithm algorithm) {
+                this.algorithm = algorithm;
+            }
+
+            public int getBcryptStrength() {
+                return bcryptStrength;
+            }
+
+            public void setBcryptStrength(int bcryptStrength) {
+                this.bcryptStrength = bcryptStrength;
+            }
+
+            public int getPbkdf2Iterations() {
+                return pbkdf2Iterations;
+            }
+
+            public void setPbkdf2Iterations(int pbkdf2Iterations) {
+                this.pbkdf2Iterations = pbkdf2Iterations;
+            }
+
+            public int getArgon2MemoryKb() {
+                return argon2MemoryKb;
+            }
+
+            public void setArgon2MemoryKb(int argon2MemoryKb) {
+                this.argon2MemoryKb = argon2MemoryKb;
+            }
+
+            public int getArgon2Iterations() {
+                return argon2Iterations;
+            }
+
+            public void setArgon2Iterations(int argon2Iterations) {
+                this.argon2Iterations = argon2Iterations;
+            }
+
+            public int getArgon2Parallelism() {
+                return argon2Parallelism;
+            }
+
+            public void setArgon2Parallelism(int argon2Parallelism) {
+                this.argon2Parallelism = argon2Parallelism;
+            }
+
+            public boolean isRehashOnLogin() {
+                return rehashOnLogin;
+            }
+
+            public void setRehashOnLogin(boolean rehashOnLogin) {
+                this.rehashOnLogin = rehashOnLogin;
+            }
+        }
+
+        public static class TokenCache {
+
+            /**
+             * Maximum number of verified JWTs kept; 0 disables the cache.
+             */
+            private int maxEntries = 10000;
+
+            public int getMaxEntries() {
+                return maxEntries;
+            }
+
+            public void setMaxEntries(int maxEntries) {
+                this.maxEntries = maxEntries;
+            }
+        }
+    }
+
+    public static class Audit {
+
+        private final WriteBehind writeBehind = new WriteBehind();
+
+        private final Retention retention = new Retention();
+
+        public WriteBehind getWriteBehind() {
+            return writeBehind;
+        }
+
+        public Retention getRetention() {
+            return retention;
+        }
+
+        public static class Retention {
+
+            /**
+             * When false, audit events are never moved out of the database.
+             */
+            private boolean enabled = true;
+
+            /**
+             * Number of days, counting back from today (UTC), kept in the database.
+             */
+            private int liveDays = 90;
+
+            /**
+             * Directory holding one gzipped NDJSON file per archived day.
+             */
+            private String directory = "audit-archive";
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getLiveDays() {
+                return liveDays;
+            }
+
+            public void setLiveDays(int liveDays) {
+                this.liveDays = liveDays;
+            }
+
+            public String getDirectory() {
+                return directory;
+            }
+
+            public void setDirectory(String directory) {
+                this.directory = directory;
+            }
+        }
+
+        public static class WriteBehind {
+
+            /**
+             * What to do with an audit event when the buffer is full.
+             */
+            public enum OverflowPolicy {
+                /** Write the event on the calling thread, as if write-behind were disabled. */
+                CALLER_RUNS,
+                /** Wait up to offer-timeout-ms for room in the buffer, then write on the calling thread. */
+                BLOCK,
+                /** Discard the event and count it. */
+                DROP
+            }
+
+            /**
+             * When false, audit events are written on the calling thread.
+             */
+            private boolean enabled = true;
+
+            private int queueCapacity = 10000;
+
+            private int batchSize = 100;
+
+            private long flushIntervalMs = 1000;
+
+            private OverflowPolicy overflowPolicy = OverflowPolicy.CALLER_RUNS;
+
+            private long offerTimeoutMs = 100;
+
+            private long shutdownTimeoutMs = 10000;
+
+            /**
+             * Times a batch is tried before its events are given up, waiting retry-backoff-ms longer each time.
+             */
+            private int maxAttempts = 3;
+
+            private long retryBackoffMs = 1000;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getQueueCapacity() {
+                return queueCapacity;
+            }
+
+            public void setQueueCapacity(int queueCapacity) {
+                this.queueCapacity = queueCapacity;
+            }
+
+            public int getBatchSize() {
+                return batchSize;
+            }
+
+            public void setBatchSize(int batchSize) {
+                this.batchSize = batchSize;
+            }
+
+            public long getFlushIntervalMs() {
+                return flushIntervalMs;
+            }
+
+            public void setFlushIntervalMs(long flushIntervalMs) {
+                this.flushIntervalMs = flushIntervalMs;
+            }
+
+            public OverflowPolicy getOverflowPolicy() {
+                return overflowPolicy;
+            }
+
+            public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+                this.overflowPolicy = overflowPolicy;
+            }
+
+            public long getOfferTimeoutMs() {
+                return offerTimeoutMs;
+            }
+
+            public void setOfferTimeoutMs(long offerTimeoutMs) {
+                this.offerTimeoutMs = offerTimeoutMs;
+            }
+
+            public long getShutdownTimeoutMs() {
+                return shutdownTimeoutMs;
+            }
+
+            public void setShutdownTimeoutMs(long shutdownTimeoutMs) {
+                this.shutdownTimeoutMs = shutdownTimeoutMs;
+            }
+
+            public int getMaxAttempts() {
+                return maxAttempts;
+            }
+
+            public void setMaxAttempts(int maxAttempts) {
+                this.maxAttempts = maxAttempts;
+            }
+
+            public long getRetryBackoffMs() {
+                return retryBackoffMs;
+            }
+
+            public void setRetryBackoffMs(long retryBackoffMs) {
+                this.retryBackoffMs = retryBackoffMs;
+            }
+        }
+    }
+
+    public static class Users {
+
+        /**
+         * Days after which a user that did not activate the account is deleted.
+         */
+        private int notActivatedDays = 3;
+
+        /**
+         * Users deleted per statement, and per transaction when the cleanup runs on its own.
+         */
+        private int purgeChunkSize = 500;
+
+        public int getNotActivatedDays() {
+            return notActivatedDays;
+        }
+
+        public void setNotActivatedDays(int notActivatedDays) {
+            this.notActivatedDays = notActivatedDays;
+        }
+
+        public int getPurgeChunkSize() {
+            return purgeChunkSize;
+        }
+
+        public void setPurgeChunkSize(int purgeChunkSize) {
+            this.purgeChunkSize = purgeChunkSize;
+        }
+    }
+
+    public static class Delays {
+
+        /**
+         * When true, delaying a departure moves the later departures of the same vehicle and bay that day.
+         */
+        private boolean propagationEnabled = true;
+
+        /**
+         * Delay a vehicle makes up between two departures, taken from the planned gap between them.
+         */
+        private int vehicleRecoveryMinutes = 15;
+
+        /**
+         * Minimum time between two departures from the same bay, or their planned gap if shorter.
+         */
+        private int bayHeadwayMinutes = 2;
+
+        /**
+         * When true, a changed departure that leaves two departures in one bay at once moves one of them to a free bay.
+         */
+        private boolean reallocateBays = false;
+
+        public boolean isPropagationEnabled() {
+            return propagationEnabled;
+        }
+
+        public void setPropagationEnabled(boolean propagationEnabled) {
+            this.propagationEnabled = propagationEnabled;
+        }
+
+        public int getVehicleRecoveryMinutes() {
+            return vehicleRecoveryMinutes;
+        }
+
+        public void setVehicleRecoveryMinutes(int vehicleRecoveryMinutes) {
+            this.vehicleRecoveryMinutes = vehicleRecoveryMinutes;
+        }
+
+        public int getBayHeadwayMinutes() {
+            return bayHeadwayMinutes;
+        }
+
+        public void setBayHeadwayMinutes(int bayHeadwayMinutes) {
+            this.bayHeadwayMinutes = bayHeadwayMinutes;
+        }
+
+        public boolean isReallocateBays() {
+            return reallocateBays;
+        }
+
+        public void setReallocateBays(boolean reallocateBays) {
+            this.reallocateBays = reallocateBays;
+        }
+    }
+
+    public static class Transitions {
+
+        /**
+         * When false, states change only through the API; only one instance should change them automatically.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Minutes before the actual scheduled time a pending or delayed departure starts boarding.
+         */
+        private int boardingMinutesBefore = 15;
+
+        /**
+         * Minutes after the actual scheduled time a boarding departure is marked departed.
+         */
+        private int departedMinutesAfter = 2;
+
+        /**
+         * Resolution of the timing wheel: how late a transition may happen.
+         */
+        private long tickMs = 1000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getBoardingMinutesBefore() {
+            return boardingMinutesBefore;
+        }
+
+        public void setBoardingMinutesBefore(int boardingMinutesBefore) {
+            this.boardingMinutesBefore = boardingMinutesBefore;
+        }
+
+        public int getDepartedMinutesAfter() {
+            return departedMinutesAfter;
+        }
+
+        public void setDepartedMinutesAfter(int departedMinutesAfter) {
+            this.departedMinutesAfter = departedMinutesAfter;
+        }
+
+        public long getTickMs() {
+            return tickMs;
+        }
+
+        public void setTickMs(long tickMs) {
+            this.tickMs = tickMs;
+        }
+    }
+
+    public static class StaticAssets {
+
+        /**
+         * Regular expression found in the path of an asset whose name carries a content hash, such as
+         * app/main.3f2a9c0d1e7b4a5c6d8e.bundle.js; those are cached for good, see jhipster.http.cache.
+         */
+        private String fingerprintPattern = "[/.][0-9a-f]{20,}\\.";
+
+        public String getFingerprintPattern() {
+            return fingerprintPattern;
+        }
+
+        public void setFingerprintPattern(String fingerprintPattern) {
+            this.fingerprintPattern = fingerprintPattern;
+        }
+    }
+
+    public static class Mail {
+
+        /**
+         * When false, messages are queued but not sent by this instance; only one instance should dispatch.
+         */
+        private boolean dispatcherEnabled = true;
+
+        /**
+         * Most messages sent over one SMTP connection.
+         */
+        private int batchSize = 50;
+
+        /**
+         * How often the queue is checked for retries when no new message wakes the dispatcher.
+         */
+        private long pollIntervalMs = 5000;
+
+        /**
+         * Most messages sent per second; 0 means no limit.
+         */
+        private double maxPerSecond = 10;
+
+        /**
+         * Attempts before a message is marked failed.
+         */
+        private int maxAttempts = 5;
+
+        /**
+         * Wait before the first retry, doubled on every further attempt up to max-backoff-ms.
+         */
+        private long initialBackoffMs = 30000;
+
+        private long maxBackoffMs = 3600000;
+
+        /**
+         * Days sent and failed messages are kept in the queue table.
+         */
+        private int retentionDays = 7;
+
+        /**
+         * When true, each mail template is rendered once per locale and the user's fields are filled in for every
+         * message. Turn it off for templates that branch on user fields, and while editing templates.
+         */
+        private boolean templateCache = true;
+
+        public boolean isDispatcherEnabled() {
+            return dispatcherEnabled;
+        }
+
+        public void setDispatcherEnabled(boolean dispatcherEnabled) {
+            this.dispatcherEnabled = dispatcherEnabled;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public long getPollIntervalMs() {
+            return pollIntervalMs;
+        }
+
+        public void setPollIntervalMs(long pollIntervalMs) {
+            this.pollIntervalMs = pollIntervalMs;
+        }
+
+        public double getMaxPerSecond() {
+            return maxPerSecond;
+        }
+
+        public void setMaxPerSecond(double maxPerSecond) {
+            this.maxPerSecond = maxPerSecond;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public long getInitialBackoffMs() {
+            return initialBackoffMs;
+        }
+
+        public void setInitialBackoffMs(long initialBackoffMs) {
+            this.initialBackoffMs = initialBackoffMs;
+        }
+
+        public long getMaxBackoffMs() {
+            return maxBackoffMs;
+        }
+
+        public void setMaxBackoffMs(long maxBackoffMs) {
+            this.maxBackoffMs = maxBackoffMs;
+        }
+
+        public int getRetentionDays() {
+            return retentionDays;
+        }
+
+        public void setRetentionDays(int retentionDays) {
+            this.retentionDays = retentionDays;
+        }
+
+        public boolean isTemplateCache() {
+            return templateCache;
+        }
+
+        public void setTemplateCache(boolean templateCache) {
+            this.templateCache = templateCache;
+        }
+    }
+
+    public static class Statements {
+
+        /**
+         * What to do when a request or transaction goes over a threshold.
+         */
+        public enum Mode {
+            /** Log a warning, once per request or transaction. */
+            LOG,
+            /** Throw from the statement that crossed the threshold. */
+            FAIL
+        }
+
+        /**
+         * When false, statements are neither counted nor timed.
+         */
+        private boolean enabled = false;
+
+        private Mode mode = Mode.LOG;
+
+        /**
+         * Most statements one request or transaction may run; 0 means no limit.
+         */
+        private int maxPerScope = 100;
+
+        /**
+         * Most times one request or transaction may run the same select, the N+1 signature; 0 means no limit.
+         */
+        private int maxRepeated = 10;
+
+        /**
+         * Statements running longer than this are logged; 0 disables the check.
+         */
+        private long slowThresholdMs = 500;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Mode getMode() {
+            return mode;
+        }
+
+        public void setMode(Mode mode) {
+            this.mode = mode;
+        }
+
+        public int getMaxPerScope() {
+            return maxPerScope;
+        }
+
+        public void setMaxPerScope(int maxPerScope) {
+            this.maxPerScope = maxPerScope;
+        }
+
+        public int getMaxRepeated() {
+            return maxRepeated;
+        }
+
+        public void setMaxRepeated(int maxRepeated) {
+            this.maxRepeated = maxRepeated;
+        }
+
+        public long getSlowThresholdMs() {
+            return slowThresholdMs;
+        }
+
+        public void setSlowThresholdMs(long slowThresholdMs) {
+            this.slowThresholdMs = slowThresholdMs;
+        }
+    }
+
+    public static class Executors {
+
+        /**
+         * Threads running the @Scheduled jobs; the jobs hand long work over to the pools below.
+         */
+        private int schedulerPoolSize = 4;
+
+        private final Pool mail = new Pool(2, 2, 500, Pool.RejectionPolicy.CALLER_RUNS);
+
+        /**
+         * Imports; with no queue, an import asked for while another runs answers 503 rather than waiting behind it.
+         */
+        private final Pool dataImport = new Pool(1, 1, 0, Pool.RejectionPolicy.ABORT);
+
+        private final Pool instantiation = new Pool(1, 1, 1, Pool.RejectionPolicy.ABORT);
+
+        private final Pool cacheRefresh = new Pool(1, 1, 16, Pool.RejectionPolicy.CALLER_RUNS);
+
+        /**
+         * Password hashing for logins and password changes; a full queue answers 503 rather than queueing logins.
+         */
+        private final Pool hashing = new Pool(2, 2, 100, Pool.RejectionPolicy.ABORT);
+
+        public int getSchedulerPoolSize() {
+            return schedulerPoolSize;
+        }
+
+        public void setSchedulerPoolSize(int schedulerPoolSize) {
+            this.schedulerPoolSize = schedulerPoolSize;
+        }
+
+        public Pool getMail() {
+            return mail;
+        }
+
+        public Pool getDataImport() {
+            return dataImport;
+        }
+
+        public Pool getInstantiation() {
+            return instantiation;
+        }
+
+        public Pool getCacheRefresh() {
+            return cacheRefresh;
+        }
+
+        public Pool getHashing() {
+            return hashing;
+        }
+
+        public static class Pool {
+
+            /**
+             * What to do with a task when the pool and its queue are full.
+             */
+            public enum RejectionPolicy {
+                /** Throw a TaskRejectedException to the submitter. */
+                ABORT,
+                /** Run the task on the submitting thread. */
+                CALLER_RUNS,
+                /** Drop the task. */
+                DISCARD,
+                /** Drop the oldest queued task and queue this one. */
+                DISCARD_OLDEST
+            }
+
+            private int corePoolSize;
+
+            private int maxPoolSize;
+
+            private int queueCapacity;
+
+            private int keepAliveSeconds = 60;
+
+            private RejectionPolicy rejectionPolicy;
+
+            /**
+             * Run each task on a new virtual thread instead of a pool, on JDKs that have them; max-pool-size then bounds
+             * the tasks running at once and queue-capacity is unused. Ignored, with a warning, on older JDKs.
+             */
+            private boolean virtualThreads = false;
+
+            /**
+             * How long shutdown waits for running and queued tasks.
+             */
+            private int awaitTerminationSeconds = 30;
+
+            public Pool() {
+            }
+
+            Pool(int corePoolSize, int maxPoolSize, int queueCapacity, RejectionPolicy rejectionPolicy) {
+                this.corePoolSize = corePoolSize;
+                this.maxPoolSize = maxPoolSize;
+                this.queueCapacity = queueCapacity;
+                this.rejectionPolicy = rejectionPolicy;
+            }
+
+            public int getCorePoolSize() {
+                return corePoolSize;
+            }
+
+            public void setCorePoolSize(int corePoolSize) {
+                this.corePoolSize = corePoolSize;
+            }
+
+            public int getMaxPoolSize() {
+                return maxPoolSize;
+            }
+
+            public void setMaxPoolSize(int maxPoolSize) {
+                this.maxPoolSize = maxPoolSize;
+            }
+
+            public int getQueueCapacity() {
+                return queueCapacity;
+            }
+
+            public void setQueueCapacity(int queueCapacity) {
+                this.queueCapacity = queueCapacity;
+            }
+
+            public int getKeepAliveSeconds() {
+                return keepAliveSeconds;
+            }
+
+            public void setKeepAliveSeconds(int keepAliveSeconds) {
+                this.keepAliveSeconds = keepAliveSeconds;
+            }
+
+            public RejectionPolicy getRejectionPolicy() {
+                return rejectionPolicy;
+            }
+
+            public void setRejectionPolicy(RejectionPolicy rejectionPolicy) {
+                this.rejectionPolicy = rejectionPolicy;
+            }
+
+            public boolean isVirtualThreads() {
+                return virtualThreads;
+            }
+
+            public void setVirtualThreads(boolean virtualThreads) {
+                this.virtualThreads = virtualThreads;
+            }
+
+            public int getAwaitTerminationSeconds() {
+                return awaitTerminationSeconds;
+            }
+
+            public void setAwaitTerminationSeconds(int awaitTerminationSeconds) {
+                this.awaitTerminationSeconds = awaitTerminationSeconds;
+            }
+        }
+    }
 }
@@ -1,22 +1,38 @@
 package lk.npsp.config;
 
+import lk.npsp.config.executor.WorkloadExecutors;
+
 import io.github.jhipster.async.ExceptionHandlingAsyncTaskExecutor;
 import io.github.jhipster.config.JHipsterProperties;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
 import org.springframework.aop.interceptor.SimpleAsyncUncaughtExceptionHandler;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.scheduling.annotation.*;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.scheduling.annotation.SchedulingConfigurer;
 import org.springframework.scheduling.config.ScheduledTaskRegistrar;
 
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
+/**
+ * Executors of the application.
+ * <p>
+ * Besides the default async executor, each background workload gets its own executor, sized in
+ * {@code application.executors}: {@code mailExecutor}, {@code importExecutor}, {@code instantiationExecutor},
+ * {@code cacheRefreshExecutor} and {@code hashingExecutor}, see {@link WorkloadExecutors}. The scheduler only triggers the @Scheduled jobs; the
+ * long ones hand their work to one of these executors.
+ * <p>
+ * This class is an {@link AsyncConfigurer}, created before the meter registry is configured, so the registry is only
+ * looked up when a workload executor is built.
+ */
 @Configuration
 @EnableAsync
 @EnableScheduling
@@ -26,8 +42,15 @@ public class AsyncConfiguration implements AsyncConfigurer, SchedulingConfigurer
 
     private final JHipsterProperties jHipsterProperties;
 
-    public AsyncConfiguration(JHipsterProperties jHipsterProperties) {
+    private final ApplicationProperties applicationProperties;
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public AsyncConfiguration(JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties,
+                              ObjectProvider<MeterRegistry> meterRegistry) {
         this.jHipsterProperties = jHipsterProperties;
+        this.applicationProperties = applicationProperties;
+        this.meterRegistry = meterRegistry;
     }
 
     @Override
@@ -42,18 +65,49 @@ public class AsyncConfiguration implements AsyncConfigurer, SchedulingConfigurer
         return new ExceptionHandlingAsyncTaskExecutor(executor);
     }
 
+    @Bean
+    public AsyncTaskExecutor mailExecutor() {
+        return WorkloadExecutors.create("mail", applicationProperties.getExecutors().getMail(),
+            meterRegistry.getObject());
+    }
+
+    @Bean
+    public AsyncTaskExecutor importExecutor() {
+        return WorkloadExecutors.create("import", applicationProperties.getExecutors().getDataImport(),
+            meterRegistry.getObject());
+    }
+
+    @Bean
+    public AsyncTaskExecutor instantiationExecutor() {
+        return WorkloadExecutors.create("instantiation", applicationProperties.getExecutors().getInstantiation(),
+            meterRegistry.getObject());
+    }
+
+    @Bean
+    public AsyncTaskExecutor cacheRefreshExecutor() {
+        return WorkloadExecutors.create("cache-refresh", applicationProperties.getExecutors().getCacheRefresh(),
+            meterRegistry.getObject());
+    }
+
+    @Bean
+    public AsyncTaskExecutor hashingExecutor() {
+        return WorkloadExecutors.create("hashing", applicationProperties.getExecutors().getHashing(),
+            meterRegistry.getObject());
+    }
+
     @Override
     public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
         return new SimpleAsyncUncaughtExceptionHandler();
     }
-    
+
     @Override
     public void configureTasks(ScheduledTaskRegistrar taskRegistrar) {
-        taskRegistrar.setScheduler(scheduledTaskExecutor());
+        taskRegistrar.setScheduler(taskScheduler());
     }
 
     @Bean
-    public Executor scheduledTaskExecutor() {
-        return Executors.newScheduledThreadPool(jHipsterProperties.getAsync().getCorePoolSize());
+    public ThreadPoolTaskScheduler taskScheduler() {
+        return WorkloadExecutors.scheduler(applicationProperties.getExecutors().getSchedulerPoolSize(),
+            meterRegistry.getObject());
     }
 }
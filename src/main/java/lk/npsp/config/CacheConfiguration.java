@@ -33,6 +33,7 @@ public class CacheConfiguration {
         return cm -> {
             cm.createCache(lk.npsp.repository.UserRepository.USERS_BY_LOGIN_CACHE, jcacheConfiguration);
             cm.createCache(lk.npsp.repository.UserRepository.USERS_BY_EMAIL_CACHE, jcacheConfiguration);
+            cm.createCache(lk.npsp.security.DomainUserDetailsService.USER_DETAILS_CACHE, jcacheConfiguration);
             // jhipster-needle-ehcache-add-entry
         };
     }
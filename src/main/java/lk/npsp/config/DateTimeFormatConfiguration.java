@@ -1,12 +1,16 @@
 package lk.npsp.config;
 
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.format.FormatterRegistry;
 import org.springframework.format.datetime.standard.DateTimeFormatterRegistrar;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.time.ZoneId;
+
 /**
- * Configure the converters to use the ISO format for dates by default.
+ * Configure the converters to use the ISO format for dates by default, and the time zone the station's days are
+ * counted in.
  */
 @Configuration
 public class DateTimeFormatConfiguration implements WebMvcConfigurer {
@@ -17,4 +21,9 @@ public class DateTimeFormatConfiguration implements WebMvcConfigurer {
         registrar.setUseIsoFormat(true);
         registrar.registerFormatters(registry);
     }
+
+    @Bean
+    public ZoneId stationZone(ApplicationProperties applicationProperties) {
+        return ZoneId.of(applicationProperties.getTimeZone());
+    }
 }
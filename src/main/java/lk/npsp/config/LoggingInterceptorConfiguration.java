@@ -0,0 +1,30 @@
+package lk.npsp.config;
+
+import lk.npsp.aop.logging.LoggingInterceptor;
+
+import io.github.jhipster.config.JHipsterConstants;
+
+import org.springframework.aop.Advisor;
+import org.springframework.aop.aspectj.AspectJExpressionPointcutAdvisor;
+import org.springframework.context.annotation.*;
+import org.springframework.core.env.Environment;
+
+@Configuration
+@EnableAspectJAutoProxy
+public class LoggingInterceptorConfiguration {
+
+    @Bean
+    @Profile(JHipsterConstants.SPRING_PROFILE_DEVELOPMENT)
+    public LoggingInterceptor loggingInterceptor(Environment env) {
+        return new LoggingInterceptor(env);
+    }
+
+    @Bean
+    @Profile(JHipsterConstants.SPRING_PROFILE_DEVELOPMENT)
+    public Advisor loggingAdvisor(LoggingInterceptor loggingInterceptor) {
+        AspectJExpressionPointcutAdvisor advisor = new AspectJExpressionPointcutAdvisor();
+        advisor.setExpression(LoggingInterceptor.POINTCUT);
+        advisor.setAdvice(loggingInterceptor);
+        return advisor;
+    }
+}
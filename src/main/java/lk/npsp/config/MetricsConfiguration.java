@@ -0,0 +1,20 @@
+package lk.npsp.config;
+
+import lk.npsp.aop.metrics.RepositoryMetricsInterceptor;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.aop.Advisor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+
+@Configuration
+@EnableAspectJAutoProxy
+public class MetricsConfiguration {
+
+    @Bean
+    public Advisor repositoryMetricsAdvisor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new RepositoryMetricsInterceptor(meterRegistry::getObject).advisor();
+    }
+}
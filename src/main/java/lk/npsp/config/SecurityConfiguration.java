@@ -2,11 +2,16 @@ package lk.npsp.config;
 
 import lk.npsp.security.*;
 import lk.npsp.security.jwt.*;
+import lk.npsp.security.password.HashingPasswordEncoder;
+import lk.npsp.security.password.RehashingAuthenticationProvider;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.BeanInitializationException;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
@@ -16,9 +21,6 @@ import org.springframework.security.config.annotation.web.builders.WebSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.filter.CorsFilter;
 import org.zalando.problem.spring.web.advice.security.SecurityProblemSupport;
@@ -33,7 +35,7 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
 
     private final AuthenticationManagerBuilder authenticationManagerBuilder;
 
-    private final UserDetailsService userDetailsService;
+    private final DomainUserDetailsService userDetailsService;
 
     private final TokenProvider tokenProvider;
 
@@ -41,20 +43,30 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
 
     private final SecurityProblemSupport problemSupport;
 
-    public SecurityConfiguration(AuthenticationManagerBuilder authenticationManagerBuilder, UserDetailsService userDetailsService, TokenProvider tokenProvider, CorsFilter corsFilter, SecurityProblemSupport problemSupport) {
+    private final ApplicationProperties applicationProperties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final AsyncTaskExecutor hashingExecutor;
+
+    public SecurityConfiguration(AuthenticationManagerBuilder authenticationManagerBuilder, DomainUserDetailsService userDetailsService, TokenProvider tokenProvider, CorsFilter corsFilter, SecurityProblemSupport problemSupport,
+                                 ApplicationProperties applicationProperties, MeterRegistry meterRegistry,
+                                 @Qualifier("hashingExecutor") AsyncTaskExecutor hashingExecutor) {
         this.authenticationManagerBuilder = authenticationManagerBuilder;
         this.userDetailsService = userDetailsService;
         this.tokenProvider = tokenProvider;
         this.corsFilter = corsFilter;
         this.problemSupport = problemSupport;
+        this.applicationProperties = applicationProperties;
+        this.meterRegistry = meterRegistry;
+        this.hashingExecutor = hashingExecutor;
     }
 
     @PostConstruct
     public void init() {
         try {
             authenticationManagerBuilder
-                .userDetailsService(userDetailsService)
-                .passwordEncoder(passwordEncoder());
+                .authenticationProvider(new RehashingAuthenticationProvider(userDetailsService, passwordEncoder()));
         } catch (Exception e) {
             throw new BeanInitializationException("Security configuration failed", e);
         }
@@ -67,14 +79,17 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
     }
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public HashingPasswordEncoder passwordEncoder() {
+        return new HashingPasswordEncoder(applicationProperties.getSecurity().getPassword(), hashingExecutor,
+            meterRegistry);
     }
 
     @Override
     public void configure(WebSecurity web) throws Exception {
         web.ignoring()
             .antMatchers(HttpMethod.OPTIONS, "/**")
+            // public, read-only and polled continuously by the screens: no filter chain, no security context
+            .antMatchers(HttpMethod.GET, "/api/screen/**")
             .antMatchers("/swagger-ui/index.html")
             .antMatchers("/test/**");
     }
@@ -114,6 +129,7 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
     }
 
     private JWTConfigurer securityConfigurerAdapter() {
-        return new JWTConfigurer(tokenProvider);
+        return new JWTConfigurer(tokenProvider, new TokenAuthenticationCache(
+            applicationProperties.getSecurity().getTokenCache().getMaxEntries(), meterRegistry));
     }
 }
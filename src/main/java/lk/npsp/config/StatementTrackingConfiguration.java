@@ -0,0 +1,58 @@
+package lk.npsp.config;
+
+import lk.npsp.config.statement.StatementCountFilter;
+import lk.npsp.config.statement.StatementTracker;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Statement counting and N+1 detection, see {@link StatementTracker}.
+ * <p>
+ * Hibernate picks the inspector and the slow statement listener up from the {@code spring.jpa.properties} in
+ * application.yml; they do nothing until {@code application.statements.enabled} is set, as it is for tests and should
+ * be for staging.
+ */
+@Configuration
+public class StatementTrackingConfiguration {
+
+    private final Logger log = LoggerFactory.getLogger(StatementTrackingConfiguration.class);
+
+    private final ApplicationProperties applicationProperties;
+
+    private final MeterRegistry meterRegistry;
+
+    public StatementTrackingConfiguration(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        this.applicationProperties = applicationProperties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        ApplicationProperties.Statements statements = applicationProperties.getStatements();
+        StatementTracker.configure(statements, meterRegistry);
+        if (statements.isEnabled()) {
+            log.info("Tracking SQL statements: {} when a scope runs more than {} statements or repeats a select {} times",
+                statements.getMode(), statements.getMaxPerScope(), statements.getMaxRepeated());
+        }
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "application.statements", name = "enabled", havingValue = "true")
+    public FilterRegistrationBean<StatementCountFilter> statementCountFilter() {
+        FilterRegistrationBean<StatementCountFilter> registration =
+            new FilterRegistrationBean<>(new StatementCountFilter(meterRegistry));
+        registration.addUrlPatterns("/api/*", "/management/*");
+        // outermost, so statements run by the security filters are counted too
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
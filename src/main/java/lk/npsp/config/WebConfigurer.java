@@ -1,7 +1,9 @@
 package lk.npsp.config;
 
+import io.github.jhipster.config.JHipsterConstants;
 import io.github.jhipster.config.JHipsterProperties;
 import io.undertow.UndertowOptions;
+import lk.npsp.web.filter.StaticAssetCacheFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -24,6 +26,10 @@ import java.util.*;
 
 /**
  * Configuration of web application with Servlet 3.0 APIs.
+ * <p>
+ * Response compression is Undertow's, set with {@code server.compression}. In production, fingerprinted assets are
+ * sent with long-lived immutable cache headers, and their precompressed {@code .gz} variants are served when the
+ * client accepts gzip, see {@code spring.resources.chain.gzipped}.
  */
 @Configuration
 public class WebConfigurer implements ServletContextInitializer, WebServerFactoryCustomizer<WebServerFactory> {
@@ -34,10 +40,14 @@ public class WebConfigurer implements ServletContextInitializer, WebServerFactor
 
     private final JHipsterProperties jHipsterProperties;
 
-    public WebConfigurer(Environment env, JHipsterProperties jHipsterProperties) {
+    private final ApplicationProperties applicationProperties;
+
+    public WebConfigurer(Environment env, JHipsterProperties jHipsterProperties,
+                         ApplicationProperties applicationProperties) {
 
         this.env = env;
         this.jHipsterProperties = jHipsterProperties;
+        this.applicationProperties = applicationProperties;
     }
 
     @Override
@@ -46,9 +56,26 @@ public class WebConfigurer implements ServletContextInitializer, WebServerFactor
             log.info("Web application configuration, using profiles: {}", (Object[]) env.getActiveProfiles());
         }
         EnumSet<DispatcherType> disps = EnumSet.of(DispatcherType.REQUEST, DispatcherType.FORWARD, DispatcherType.ASYNC);
+        if (env.acceptsProfiles(JHipsterConstants.SPRING_PROFILE_PRODUCTION)) {
+            initStaticAssetCacheFilter(servletContext, disps);
+        }
         log.info("Web application fully configured");
     }
 
+    /**
+     * Initializes the immutable cache headers of the fingerprinted static assets.
+     */
+    private void initStaticAssetCacheFilter(ServletContext servletContext, EnumSet<DispatcherType> disps) {
+        log.debug("Registering Static Asset Cache Filter");
+        FilterRegistration.Dynamic staticAssetCacheFilter = servletContext.addFilter("staticAssetCacheFilter",
+            new StaticAssetCacheFilter(applicationProperties.getStaticAssets().getFingerprintPattern(),
+                jHipsterProperties.getHttp().getCache().getTimeToLiveInDays()));
+        staticAssetCacheFilter.addMappingForUrlPatterns(disps, true, "/app/*");
+        staticAssetCacheFilter.addMappingForUrlPatterns(disps, true, "/content/*");
+        staticAssetCacheFilter.addMappingForUrlPatterns(disps, true, "/i18n/*");
+        staticAssetCacheFilter.setAsyncSupported(true);
+    }
+
     /**
      * Customize the Servlet engine: Mime types, the document root, the cache.
      */
@@ -0,0 +1,202 @@
+package lk.npsp.config.audit;
+
+import lk.npsp.config.ApplicationProperties;
+import lk.npsp.domain.PersistentAuditEvent;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * File store for audit events moved out of the database.
+ * <p>
+ * Each UTC day is one gzipped NDJSON file, {@code audit-yyyy-MM-dd.ndjson.gz}, holding one event per line. Files are
+ * written to a temporary file and moved into place, so readers never see a partial day. Writing a day that is already
+ * archived merges the events by id, which makes archiving the same day twice harmless.
+ */
+@Component
+public class AuditEventArchive {
+
+    private static final String FILE_PREFIX = "audit-";
+
+    private static final String FILE_SUFFIX = ".ndjson.gz";
+
+    private final Logger log = LoggerFactory.getLogger(AuditEventArchive.class);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Path directory;
+
+    @Autowired
+    public AuditEventArchive(ApplicationProperties applicationProperties) {
+        this(Paths.get(applicationProperties.getAudit().getRetention().getDirectory()));
+    }
+
+    public AuditEventArchive(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Store the events of one day, merging them with those already archived for that day.
+     *
+     * @param day the UTC day the events belong to
+     * @param events the events to archive
+     * @throws UncheckedIOException if the day could not be written
+     */
+    public synchronized void write(LocalDate day, Collection<PersistentAuditEvent> events) {
+        Map<Long, PersistentAuditEvent> byId = new LinkedHashMap<>();
+        Path file = file(day);
+        try {
+            if (Files.exists(file)) {
+                for (PersistentAuditEvent archived : readFile(file)) {
+                    byId.put(archived.getId(), archived);
+                }
+            }
+            for (PersistentAuditEvent event : events) {
+                byId.put(event.getId(), event);
+            }
+            List<PersistentAuditEvent> sorted = new ArrayList<>(byId.values());
+            sorted.sort(Comparator.comparing(PersistentAuditEvent::getAuditEventDate,
+                Comparator.nullsFirst(Comparator.naturalOrder())));
+
+            Files.createDirectories(directory);
+            Path temporary = directory.resolve(file.getFileName() + ".tmp");
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(temporary)), StandardCharsets.UTF_8))) {
+                for (PersistentAuditEvent event : sorted) {
+                    writer.write(objectMapper.writeValueAsString(toJson(event)));
+                    writer.write('\n');
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Archived {} audit events for {}", sorted.size(), day);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not archive audit events for " + day, e);
+        }
+    }
+
+    /**
+     * Read the archived events whose date is between two instants, both inclusive.
+     *
+     * @param fromDate the start of the range
+     * @param toDate the end of the range
+     * @return the archived events in the range, oldest first
+     * @throws UncheckedIOException if an archive file could not be read
+     */
+    public List<PersistentAuditEvent> findAllByAuditEventDateBetween(Instant fromDate, Instant toDate) {
+        List<PersistentAuditEvent> result = new ArrayList<>();
+        for (LocalDate day : findDaysBetween(fromDate, toDate)) {
+            try {
+                for (PersistentAuditEvent event : readFile(file(day))) {
+                    Instant date = event.getAuditEventDate();
+                    if (date != null && !date.isBefore(fromDate) && !date.isAfter(toDate)) {
+                        result.add(event);
+                    }
+                }
+            } catch (NoSuchFileException e) {
+                // day was listed but is being rewritten, the move brings it back
+                log.debug("Archive file for {} disappeared while reading", day);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read archived audit events for " + day, e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Find the archived days overlapping a range.
+     *
+     * @param fromDate the start of the range
+     * @param toDate the end of the range
+     * @return the archived days between the UTC days of both instants, in order
+     */
+    public SortedSet<LocalDate> findDaysBetween(Instant fromDate, Instant toDate) {
+        SortedSet<LocalDate> days = new TreeSet<>();
+        if (fromDate.isAfter(toDate) || !Files.isDirectory(directory)) {
+            return days;
+        }
+        LocalDate fromDay = fromDate.atOffset(ZoneOffset.UTC).toLocalDate();
+        LocalDate toDay = toDate.atOffset(ZoneOffset.UTC).toLocalDate();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(this::day)
+                .filter(Objects::nonNull)
+                .filter(day -> !day.isBefore(fromDay) && !day.isAfter(toDay))
+                .forEach(days::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not list audit archive " + directory, e);
+        }
+        return days;
+    }
+
+    private List<PersistentAuditEvent> readFile(Path file) throws IOException {
+        List<PersistentAuditEvent> events = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+            new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    events.add(fromJson(objectMapper.readTree(line)));
+                }
+            }
+        }
+        return events;
+    }
+
+    private Path file(LocalDate day) {
+        return directory.resolve(FILE_PREFIX + day + FILE_SUFFIX);
+    }
+
+    private LocalDate day(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(FILE_PREFIX) || !name.endsWith(FILE_SUFFIX)) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private ObjectNode toJson(PersistentAuditEvent event) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("id", event.getId());
+        node.put("principal", event.getPrincipal());
+        node.put("date", event.getAuditEventDate() == null ? null : event.getAuditEventDate().toString());
+        node.put("type", event.getAuditEventType());
+        ObjectNode data = node.putObject("data");
+        if (event.getData() != null) {
+            event.getData().forEach(data::put);
+        }
+        return node;
+    }
+
+    private PersistentAuditEvent fromJson(JsonNode node) {
+        PersistentAuditEvent event = new PersistentAuditEvent();
+        event.setId(node.path("id").isNull() ? null : node.path("id").asLong());
+        event.setPrincipal(node.path("principal").asText(null));
+        String date = node.path("date").asText(null);
+        event.setAuditEventDate(date == null ? null : Instant.parse(date));
+        event.setAuditEventType(node.path("type").asText(null));
+        Map<String, String> data = new HashMap<>();
+        node.path("data").fields().forEachRemaining(entry -> data.put(entry.getKey(), entry.getValue().asText(null)));
+        event.setData(data);
+        return event;
+    }
+}
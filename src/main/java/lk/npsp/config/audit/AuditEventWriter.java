@@ -0,0 +1,230 @@
+package lk.npsp.config.audit;
+
+import lk.npsp.config.ApplicationProperties;
+import lk.npsp.domain.PersistentAuditEvent;
+import lk.npsp.repository.PersistenceAuditEventRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind buffer for audit events, so that saving them does not hold a second database connection on the
+ * request thread.
+ * <p>
+ * Events go into a bounded queue drained by a single background thread, which saves them in batches of up to
+ * batch-size, at least every flush-interval-ms. The thread starts once the application is ready; events written before
+ * then wait in the queue. When the queue is full the configured
+ * {@link ApplicationProperties.Audit.WriteBehind.OverflowPolicy} applies. On shutdown the queue is drained before the
+ * repository goes away. When write-behind is disabled every event is saved on the calling thread.
+ * <p>
+ * Every save runs in a transaction of its own, so an event saved on the calling thread is kept even if the caller's
+ * transaction rolls back. A batch that fails is tried again up to max-attempts times before its events are given up
+ * and counted as failed.
+ */
+@Component
+public class AuditEventWriter {
+
+    private final Logger log = LoggerFactory.getLogger(AuditEventWriter.class);
+
+    private final PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties.Audit.WriteBehind properties;
+
+    private final BlockingQueue<PersistentAuditEvent> queue;
+
+    private Thread writerThread;
+
+    private final Counter written;
+
+    private final Counter dropped;
+
+    private final Counter failed;
+
+    private final Counter callerRuns;
+
+    private final Counter retried;
+
+    private volatile boolean running = true;
+
+    public AuditEventWriter(PersistenceAuditEventRepository persistenceAuditEventRepository,
+                            PlatformTransactionManager transactionManager,
+                            ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        this.persistenceAuditEventRepository = persistenceAuditEventRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.properties = applicationProperties.getAudit().getWriteBehind();
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity()));
+        this.written = counter(meterRegistry, "written");
+        this.dropped = counter(meterRegistry, "dropped");
+        this.failed = counter(meterRegistry, "failed");
+        this.callerRuns = counter(meterRegistry, "caller_runs");
+        this.retried = counter(meterRegistry, "retried");
+        Gauge.builder("audit.write_behind.queue.size", queue, BlockingQueue::size)
+            .description("Audit events waiting to be saved").register(meterRegistry);
+    }
+
+    /**
+     * Start the writer thread, if write-behind is enabled, once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (!properties.isEnabled() || writerThread != null || !running) {
+            return;
+        }
+        writerThread = new Thread(this::run, "npsp-audit-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Queue an audit event for saving.
+     *
+     * @param event the event to save
+     */
+    public void write(PersistentAuditEvent event) {
+        if (!properties.isEnabled() || !running) {
+            saveOrGiveUp(Collections.singletonList(event));
+            return;
+        }
+        if (queue.offer(event)) {
+            return;
+        }
+        switch (properties.getOverflowPolicy()) {
+            case DROP:
+                dropped.increment();
+                log.warn("Audit buffer full, dropped {} event for {}", event.getAuditEventType(), event.getPrincipal());
+                return;
+            case BLOCK:
+                try {
+                    if (queue.offer(event, properties.getOfferTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                break;
+            default:
+                break;
+        }
+        callerRuns.increment();
+        saveOrGiveUp(Collections.singletonList(event));
+    }
+
+    /**
+     * Stop the background writer and save everything still queued.
+     */
+    @PreDestroy
+    public void shutdown() {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            thread = writerThread;
+        }
+        if (thread != null) {
+            try {
+                thread.join(properties.getShutdownTimeoutMs());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (thread.isAlive()) {
+                log.warn("Audit writer did not finish within {} ms, {} events not saved",
+                    properties.getShutdownTimeoutMs(), queue.size());
+                return;
+            }
+        }
+        // events queued while the writer was finishing, or before it started
+        List<PersistentAuditEvent> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            saveOrGiveUp(remaining);
+        }
+    }
+
+    private void run() {
+        int batchSize = Math.max(1, properties.getBatchSize());
+        int maxAttempts = Math.max(1, properties.getMaxAttempts());
+        List<PersistentAuditEvent> batch = new ArrayList<>(batchSize);
+        int attempts = 0;
+        while (running || !queue.isEmpty() || !batch.isEmpty()) {
+            try {
+                if (batch.isEmpty()) {
+                    PersistentAuditEvent first = queue.poll(properties.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    attempts = 0;
+                } else {
+                    TimeUnit.MILLISECONDS.sleep(properties.getRetryBackoffMs() * attempts);
+                }
+                attempts++;
+                if (save(batch)) {
+                    batch.clear();
+                } else if (attempts >= maxAttempts) {
+                    giveUp(batch, attempts);
+                    batch.clear();
+                } else {
+                    retried.increment(batch.size());
+                }
+            } catch (InterruptedException e) {
+                // only shutdown() stops the writer, keep draining
+                log.debug("Audit writer interrupted");
+            }
+        }
+        log.debug("Audit writer stopped");
+    }
+
+    private void saveOrGiveUp(List<PersistentAuditEvent> events) {
+        if (!save(events)) {
+            giveUp(events, 1);
+        }
+    }
+
+    /**
+     * Save events in a new transaction.
+     *
+     * @return false if they could not be saved
+     */
+    private boolean save(List<PersistentAuditEvent> events) {
+        try {
+            transactionTemplate.execute(status -> persistenceAuditEventRepository.saveAll(events));
+            written.increment(events.size());
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Could not save {} audit events: {}", events.size(), e.getMessage());
+            // ids given by inserts that were rolled back
+            events.forEach(event -> event.setId(null));
+            return false;
+        }
+    }
+
+    private void giveUp(List<PersistentAuditEvent> events, int attempts) {
+        failed.increment(events.size());
+        log.error("Gave up saving {} audit events after {} attempts", events.size(), attempts);
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("audit.write_behind.events").tag("outcome", outcome)
+            .description("Audit events by how they were handled").register(meterRegistry);
+    }
+}
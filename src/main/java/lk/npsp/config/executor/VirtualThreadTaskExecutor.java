@@ -0,0 +1,136 @@
+package lk.npsp.config.executor;
+
+import lk.npsp.config.ApplicationProperties.Executors.Pool.RejectionPolicy;
+
+import io.micrometer.core.instrument.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs each task on a new thread from a thread factory, meant for the virtual thread factory of JDK 21 and later.
+ * <p>
+ * Nothing is queued: at most max-concurrency tasks run at once, and a task submitted beyond that is handled by the
+ * {@link RejectionPolicy}, DISCARD_OLDEST acting as DISCARD. On shutdown the executor stops accepting tasks and waits
+ * for the running ones.
+ */
+public class VirtualThreadTaskExecutor implements AsyncTaskExecutor, DisposableBean {
+
+    private final Logger log = LoggerFactory.getLogger(VirtualThreadTaskExecutor.class);
+
+    private final String name;
+
+    private final ThreadFactory threadFactory;
+
+    private final int maxConcurrency;
+
+    private final Semaphore permits;
+
+    private final RejectionPolicy rejectionPolicy;
+
+    private final int awaitTerminationSeconds;
+
+    private final Counter rejected;
+
+    private final AtomicLong completed = new AtomicLong();
+
+    private volatile boolean shutdown;
+
+    public VirtualThreadTaskExecutor(String name, ThreadFactory threadFactory, int maxConcurrency,
+                                     RejectionPolicy rejectionPolicy, int awaitTerminationSeconds, Counter rejected) {
+        this.name = name;
+        this.threadFactory = threadFactory;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.permits = new Semaphore(this.maxConcurrency);
+        this.rejectionPolicy = rejectionPolicy;
+        this.awaitTerminationSeconds = awaitTerminationSeconds;
+        this.rejected = rejected;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (shutdown || !permits.tryAcquire()) {
+            reject(task);
+            return;
+        }
+        try {
+            threadFactory.newThread(() -> {
+                try {
+                    task.run();
+                } finally {
+                    completed.incrementAndGet();
+                    permits.release();
+                }
+            }).start();
+        } catch (RuntimeException | Error e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void execute(Runnable task, long startTimeout) {
+        execute(task);
+    }
+
+    @Override
+    public Future<?> submit(Runnable task) {
+        FutureTask<Object> future = new FutureTask<>(task, null);
+        execute(future);
+        return future;
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task) {
+        FutureTask<T> future = new FutureTask<>(task);
+        execute(future);
+        return future;
+    }
+
+    /**
+     * @return the number of tasks running
+     */
+    public int getActiveCount() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    /**
+     * @return the number of tasks that have finished
+     */
+    public long getCompletedTaskCount() {
+        return completed.get();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        shutdown = true;
+        if (permits.tryAcquire(maxConcurrency, awaitTerminationSeconds, TimeUnit.SECONDS)) {
+            permits.release(maxConcurrency);
+        } else {
+            log.warn("Executor {} did not finish its {} tasks within {} s", name, getActiveCount(),
+                awaitTerminationSeconds);
+        }
+    }
+
+    private void reject(Runnable task) {
+        rejected.increment();
+        switch (rejectionPolicy) {
+            case CALLER_RUNS:
+                // dropped once shut down, as ThreadPoolExecutor.CallerRunsPolicy does
+                if (!shutdown) {
+                    task.run();
+                }
+                return;
+            case ABORT:
+                throw new TaskRejectedException("Executor " + name + " did not accept a task, " +
+                    (shutdown ? "it is shut down" : getActiveCount() + " tasks are running"));
+            default:
+                log.debug("Executor {} discarded a task", name);
+        }
+    }
+}
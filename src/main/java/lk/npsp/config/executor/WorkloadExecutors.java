@@ -0,0 +1,173 @@
+package lk.npsp.config.executor;
+
+import lk.npsp.config.ApplicationProperties.Executors.Pool;
+
+import io.github.jhipster.async.ExceptionHandlingAsyncTaskExecutor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.util.concurrent.*;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Builds the executors of the background workloads, each with its own threads, bounds and rejection policy, so a
+ * slow mail server cannot hold up schedule instantiation.
+ * <p>
+ * Every executor reports the meters Micrometer uses for executor services, tagged with its name: executor.active,
+ * executor.queued, executor.pool.size and executor.completed, plus executor.rejected for the tasks that met the
+ * rejection policy.
+ * <p>
+ * Virtual threads are looked up by reflection, as the application is compiled for Java 8.
+ */
+public final class WorkloadExecutors {
+
+    private static final Logger log = LoggerFactory.getLogger(WorkloadExecutors.class);
+
+    private WorkloadExecutors() {
+    }
+
+    /**
+     * Build the executor of a workload.
+     *
+     * @param name the workload name, used in thread names and meter tags
+     * @param pool the executor settings
+     * @param meterRegistry the registry of the executor meters
+     * @return the executor, initialized when the returned bean is
+     */
+    public static AsyncTaskExecutor create(String name, Pool pool, MeterRegistry meterRegistry) {
+        Counter rejected = Counter.builder("executor.rejected").tag("name", name)
+            .description("Tasks rejected by the executor's rejection policy").register(meterRegistry);
+        if (pool.isVirtualThreads()) {
+            ThreadFactory threadFactory = virtualThreadFactory("npsp-" + name + "-");
+            if (threadFactory != null) {
+                VirtualThreadTaskExecutor executor = new VirtualThreadTaskExecutor(name, threadFactory,
+                    pool.getMaxPoolSize(), pool.getRejectionPolicy(), pool.getAwaitTerminationSeconds(), rejected);
+                bind(meterRegistry, name, executor, VirtualThreadTaskExecutor::getActiveCount, e -> 0,
+                    VirtualThreadTaskExecutor::getActiveCount, VirtualThreadTaskExecutor::getCompletedTaskCount);
+                log.debug("Executor {} runs each task on a virtual thread, at most {} at once", name,
+                    pool.getMaxPoolSize());
+                return executor;
+            }
+            log.warn("Virtual threads are not available on Java {}, executor {} uses a thread pool",
+                System.getProperty("java.version"), name);
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(pool.getCorePoolSize());
+        executor.setMaxPoolSize(Math.max(pool.getCorePoolSize(), pool.getMaxPoolSize()));
+        executor.setQueueCapacity(pool.getQueueCapacity());
+        executor.setKeepAliveSeconds(pool.getKeepAliveSeconds());
+        executor.setThreadNamePrefix("npsp-" + name + "-");
+        executor.setRejectedExecutionHandler(new CountingRejectedExecutionHandler(handler(pool.getRejectionPolicy()),
+            rejected));
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(pool.getAwaitTerminationSeconds());
+        bind(meterRegistry, name, executor, ThreadPoolTaskExecutor::getActiveCount,
+            e -> orZero(e::getThreadPoolExecutor, tpe -> tpe.getQueue().size()),
+            ThreadPoolTaskExecutor::getPoolSize,
+            e -> orZero(e::getThreadPoolExecutor, ThreadPoolExecutor::getCompletedTaskCount));
+        return new ExceptionHandlingAsyncTaskExecutor(executor);
+    }
+
+    /**
+     * Build the scheduler running the @Scheduled jobs.
+     *
+     * @param poolSize the number of scheduler threads
+     * @param meterRegistry the registry of the executor meters
+     * @return the scheduler, initialized when the returned bean is
+     */
+    public static ThreadPoolTaskScheduler scheduler(int poolSize, MeterRegistry meterRegistry) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(Math.max(1, poolSize));
+        scheduler.setThreadNamePrefix("npsp-scheduler-");
+        bind(meterRegistry, "scheduler", scheduler, ThreadPoolTaskScheduler::getActiveCount,
+            s -> orZero(s::getScheduledThreadPoolExecutor, stpe -> stpe.getQueue().size()),
+            ThreadPoolTaskScheduler::getPoolSize,
+            s -> orZero(s::getScheduledThreadPoolExecutor, ScheduledThreadPoolExecutor::getCompletedTaskCount));
+        return scheduler;
+    }
+
+    /**
+     * @return a factory of named virtual threads, or null when the JDK has none
+     */
+    static ThreadFactory virtualThreadFactory(String prefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            // through the public interface, the builder's own class is not accessible
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static RejectedExecutionHandler handler(Pool.RejectionPolicy rejectionPolicy) {
+        switch (rejectionPolicy) {
+            case CALLER_RUNS:
+                return new ThreadPoolExecutor.CallerRunsPolicy();
+            case DISCARD:
+                return new ThreadPoolExecutor.DiscardPolicy();
+            case DISCARD_OLDEST:
+                return new ThreadPoolExecutor.DiscardOldestPolicy();
+            default:
+                return new ThreadPoolExecutor.AbortPolicy();
+        }
+    }
+
+    private static <T> void bind(MeterRegistry meterRegistry, String name, T executor,
+                                 ToDoubleFunction<T> active, ToDoubleFunction<T> queued,
+                                 ToDoubleFunction<T> poolSize, ToDoubleFunction<T> completed) {
+        Gauge.builder("executor.active", executor, active).tag("name", name)
+            .description("The approximate number of threads that are actively executing tasks")
+            .register(meterRegistry);
+        Gauge.builder("executor.queued", executor, queued).tag("name", name)
+            .description("The approximate number of tasks that are queued for execution")
+            .register(meterRegistry);
+        Gauge.builder("executor.pool.size", executor, poolSize).tag("name", name)
+            .description("The current number of threads in the pool")
+            .register(meterRegistry);
+        FunctionCounter.builder("executor.completed", executor, completed).tag("name", name)
+            .description("The approximate total number of tasks that have completed execution")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Read from the underlying executor, which does not exist before initialization.
+     */
+    private static <E> double orZero(Callable<E> executor, ToDoubleFunction<E> value) {
+        try {
+            return value.applyAsDouble(executor.call());
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Counts rejected tasks before applying the configured policy.
+     */
+    private static final class CountingRejectedExecutionHandler implements RejectedExecutionHandler {
+
+        private final RejectedExecutionHandler delegate;
+
+        private final Counter rejected;
+
+        CountingRejectedExecutionHandler(RejectedExecutionHandler delegate, Counter rejected) {
+            this.delegate = delegate;
+            this.rejected = rejected;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            rejected.increment();
+            delegate.rejectedExecution(task, executor);
+        }
+    }
+}
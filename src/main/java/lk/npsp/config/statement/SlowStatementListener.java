@@ -0,0 +1,43 @@
+package lk.npsp.config.statement;
+
+import lk.npsp.config.ApplicationProperties;
+
+import org.hibernate.engine.spi.BaseSessionEventListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs statements whose execution takes longer than the configured threshold.
+ * <p>
+ * Registered with {@code hibernate.session.events.auto}; Hibernate creates one per session.
+ */
+public class SlowStatementListener extends BaseSessionEventListener {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Logger log = LoggerFactory.getLogger(SlowStatementListener.class);
+
+    private long executeStart = -1;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        executeStart = StatementTracker.isEnabled() ? System.nanoTime() : -1;
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        ApplicationProperties.Statements settings = StatementTracker.getSettings();
+        if (executeStart < 0 || settings == null) {
+            return;
+        }
+        long elapsed = System.nanoTime() - executeStart;
+        executeStart = -1;
+        long threshold = settings.getSlowThresholdMs();
+        if (threshold > 0 && elapsed > TimeUnit.MILLISECONDS.toNanos(threshold)) {
+            StatementTracker.getMeterRegistry().counter("npsp.statements.slow").increment();
+            log.warn("Statement took {} ms: {}", TimeUnit.NANOSECONDS.toMillis(elapsed), StatementTracker.lastStatement());
+        }
+    }
+}
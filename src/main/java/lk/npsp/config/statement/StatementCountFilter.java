@@ -0,0 +1,45 @@
+package lk.npsp.config.statement;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Opens a {@link StatementTracker} scope around each request and records its statement count in
+ * {@code npsp.http.statements}, tagged like {@code http.server.requests} with the method and the URI pattern.
+ */
+public class StatementCountFilter extends OncePerRequestFilter {
+
+    private final MeterRegistry meterRegistry;
+
+    public StatementCountFilter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        Object pattern = null;
+        StatementTracker.Scope scope = StatementTracker.open(request.getMethod() + " " + request.getRequestURI());
+        try {
+            filterChain.doFilter(request, response);
+            pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        } finally {
+            StatementTracker.close(scope);
+            DistributionSummary.builder("npsp.http.statements")
+                .tag("method", request.getMethod())
+                // never the raw URI, which would add one series per id
+                .tag("uri", pattern == null ? "UNKNOWN" : pattern.toString())
+                .description("SQL statements run per request")
+                .register(meterRegistry)
+                .record(scope.getCount());
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package lk.npsp.config.statement;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Hibernate hook reporting every prepared statement to the {@link StatementTracker}.
+ * <p>
+ * Registered with {@code hibernate.session_factory.statement_inspector}; Hibernate creates the instance.
+ */
+public class StatementCountingInspector implements StatementInspector {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public String inspect(String sql) {
+        StatementTracker.record(sql);
+        return sql;
+    }
+}
@@ -0,0 +1,13 @@
+package lk.npsp.config.statement;
+
+/**
+ * Thrown, when statement tracking runs in FAIL mode, by the statement that crosses a threshold.
+ */
+public class StatementThresholdExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public StatementThresholdExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,206 @@
+package lk.npsp.config.statement;
+
+import lk.npsp.config.ApplicationProperties;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts the SQL statements run on the current thread, per HTTP request and per transaction, and reports scopes that
+ * run too many statements or the same select too many times (the N+1 signature).
+ * <p>
+ * Hibernate reports each statement through {@link StatementCountingInspector}, which it creates itself, so the
+ * settings live in static state set once by {@code StatementTrackingConfiguration}. While tracking is disabled
+ * {@link #record(String)} only reads a volatile field. A transaction scope is opened on the first statement of each
+ * Spring-managed transaction and closed when it completes; request scopes are opened by {@link StatementCountFilter}.
+ * Statements run outside any scope, like those at startup, are not counted.
+ */
+public final class StatementTracker {
+
+    private static final Logger log = LoggerFactory.getLogger(StatementTracker.class);
+
+    private static final Object TRANSACTION_SCOPE_KEY = new Object();
+
+    private static final ThreadLocal<Deque<Scope>> scopes = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private static final ThreadLocal<String> lastStatement = new ThreadLocal<>();
+
+    private static volatile ApplicationProperties.Statements settings;
+
+    private static volatile MeterRegistry meterRegistry = Metrics.globalRegistry;
+
+    private StatementTracker() {
+    }
+
+    /**
+     * Apply the settings; tracking stays off until this is called with enabled settings.
+     *
+     * @param statements the thresholds and mode
+     * @param registry the registry counting threshold violations and slow statements
+     */
+    public static void configure(ApplicationProperties.Statements statements, MeterRegistry registry) {
+        meterRegistry = registry;
+        settings = statements.isEnabled() ? statements : null;
+    }
+
+    public static boolean isEnabled() {
+        return settings != null;
+    }
+
+    static ApplicationProperties.Statements getSettings() {
+        return settings;
+    }
+
+    static MeterRegistry getMeterRegistry() {
+        return meterRegistry;
+    }
+
+    /**
+     * Start counting the statements of a request.
+     *
+     * @param name the name reported when a threshold is exceeded
+     * @return the scope, to be passed to {@link #close(Scope)}
+     */
+    public static Scope open(String name) {
+        Scope scope = new Scope(name);
+        scopes.get().push(scope);
+        return scope;
+    }
+
+    /**
+     * Stop counting for a scope and every scope opened after it.
+     *
+     * @param scope the scope returned by {@link #open(String)}
+     */
+    public static void close(Scope scope) {
+        Deque<Scope> open = scopes.get();
+        if (open.contains(scope)) {
+            while (open.pop() != scope) {
+                // scopes left open below the closed one, e.g. by a transaction that never completed
+            }
+        }
+        if (open.isEmpty()) {
+            scopes.remove();
+            lastStatement.remove();
+        }
+    }
+
+    /**
+     * Count a statement in every open scope of the current thread.
+     *
+     * @param sql the statement about to be prepared
+     * @throws StatementThresholdExceededException in FAIL mode, when the statement crosses a threshold
+     */
+    public static void record(String sql) {
+        ApplicationProperties.Statements current = settings;
+        if (current == null) {
+            return;
+        }
+        lastStatement.set(sql);
+        if (TransactionSynchronizationManager.isSynchronizationActive()
+            && !TransactionSynchronizationManager.hasResource(TRANSACTION_SCOPE_KEY)) {
+            openTransactionScope();
+        }
+        Deque<Scope> open = scopes.get();
+        if (open.isEmpty()) {
+            scopes.remove();
+            return;
+        }
+        boolean select = isSelect(sql);
+        for (Scope scope : open) {
+            scope.record(sql, select, current);
+        }
+    }
+
+    /**
+     * @return the last statement recorded on the current thread, or null
+     */
+    static String lastStatement() {
+        return lastStatement.get();
+    }
+
+    private static void openTransactionScope() {
+        String name = TransactionSynchronizationManager.getCurrentTransactionName();
+        Scope scope = open("transaction " + (name == null ? "(unnamed)" : name));
+        TransactionSynchronizationManager.bindResource(TRANSACTION_SCOPE_KEY, scope);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(TRANSACTION_SCOPE_KEY);
+                close(scope);
+            }
+        });
+    }
+
+    private static boolean isSelect(String sql) {
+        int i = 0;
+        while (i < sql.length() && Character.isWhitespace(sql.charAt(i))) {
+            i++;
+        }
+        return sql.regionMatches(true, i, "select", 0, 6);
+    }
+
+    /**
+     * Statement counts of one request or transaction.
+     */
+    public static final class Scope {
+
+        private final String name;
+
+        private final Map<String, Integer> selects = new HashMap<>();
+
+        private int count;
+
+        private boolean reported;
+
+        Scope(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the number of statements counted so far
+         */
+        public int getCount() {
+            return count;
+        }
+
+        void record(String sql, boolean select, ApplicationProperties.Statements settings) {
+            count++;
+            if (settings.getMaxPerScope() > 0 && count == settings.getMaxPerScope() + 1) {
+                violation("max_statements", String.format("%s ran more than %d statements, the last one: %s",
+                    name, settings.getMaxPerScope(), sql), settings);
+            }
+            if (select) {
+                int repeated = selects.merge(sql, 1, Integer::sum);
+                if (settings.getMaxRepeated() > 0 && repeated == settings.getMaxRepeated() + 1) {
+                    violation("repeated_statement", String.format("%s ran the same select more than %d times, " +
+                        "probably an N+1 fetch: %s", name, settings.getMaxRepeated(), sql), settings);
+                }
+            }
+        }
+
+        private void violation(String kind, String message, ApplicationProperties.Statements settings) {
+            meterRegistry.counter("npsp.statements.violations", "kind", kind).increment();
+            if (settings.getMode() == ApplicationProperties.Statements.Mode.FAIL) {
+                throw new StatementThresholdExceededException(message);
+            }
+            if (!reported) {
+                reported = true;
+                log.warn(message);
+            }
+        }
+    }
+}
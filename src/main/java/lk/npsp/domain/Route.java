@@ -27,7 +27,7 @@ public class Route implements Serializable {
     @Column(name = "route_number")
     private String routeNumber;
 
-    @OneToMany(mappedBy = "route", fetch = FetchType.EAGER, cascade = CascadeType.REMOVE)
+    @OneToMany(mappedBy = "route", cascade = CascadeType.REMOVE)
     private Set<RouteLocation> routeLocations = new HashSet<>();
     // jhipster-needle-entity-add-field - JHipster will add fields here, do not remove
     public Long getId() {
@@ -64,6 +64,12 @@ public class Route implements Serializable {
         this.routeNumber = routeNumber;
     }
 
+    /**
+     * Route locations ordered by sequence number.
+     * <p>
+     * The collection is lazy: outside a transaction, read the route with its route locations first (see
+     * {@link lk.npsp.repository.RouteRepository#SELECT_WITH_ROUTE_LOCATIONS}).
+     */
     public SortedSet<RouteLocation> getRouteLocations() {
         SortedSet<RouteLocation> sortedRouteLocations= new TreeSet<>(
             Comparator.comparing(RouteLocation::getSequenceNumber));
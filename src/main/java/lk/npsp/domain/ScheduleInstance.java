@@ -17,9 +17,25 @@ import lk.npsp.domain.enumeration.ScheduleState;
  */
 @Entity
 @Table(name = "schedule_instance")
+@NamedEntityGraph(name = ScheduleInstance.SCREEN_ROW_GRAPH,
+    attributeNodes = {
+        @NamedAttributeNode("bay"),
+        @NamedAttributeNode(value = "vehicle", subgraph = "vehicle"),
+        @NamedAttributeNode(value = "scheduleTemplate", subgraph = "scheduleTemplate")
+    },
+    subgraphs = {
+        @NamedSubgraph(name = "vehicle", attributeNodes = @NamedAttributeNode("transportType")),
+        @NamedSubgraph(name = "scheduleTemplate", attributeNodes = @NamedAttributeNode("route"))
+    })
 public class ScheduleInstance implements Serializable {
 
     private static final long serialVersionUID = 1L;
+
+    /**
+     * Fetch profile for screens: everything a {@link ScreenRow} reads but the route's stops, which
+     * {@link lk.npsp.repository.ScreenScheduleRepository} loads per route so rows are not repeated per stop.
+     */
+    public static final String SCREEN_ROW_GRAPH = "ScheduleInstance.screenRow";
     
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -10,8 +10,8 @@ import java.time.LocalDateTime;
 import java.util.*;
 
 public class ScreenResponse {
-    private static final int MAX_ROW_LIMIT_FOR_BAY = 5;
-    private static final int MAX_ROW_LIMIT_FOR_SUMMARY = 10;
+    public static final int MAX_ROW_LIMIT_FOR_BAY = 5;
+    public static final int MAX_ROW_LIMIT_FOR_SUMMARY = 10;
 
     private String currentDate;
     private List<String> screenTitle;
@@ -21,19 +21,21 @@ public class ScreenRow {
         dateFormat.setTimeZone(TimeZone.getTimeZone("Asia/Colombo"));
         this.time = dateFormat.format(Date.from(scheduleInstance.getActualScheduledTime()));
 
-        Location destination = scheduleInstance.getScheduleTemplate().getRoute()
-            .getRouteLocations().last().getLocation();
+        // a route without stops shows no destination
+        SortedSet<RouteLocation> routeLocations = scheduleInstance.getScheduleTemplate().getRoute().getRouteLocations();
+        Location destination = routeLocations.isEmpty() ? null : routeLocations.last().getLocation();
         String bayName = scheduleInstance.getBay().getBayName().replace("Bay ", "");
         this.bay = new ArrayList<>(Arrays.asList(
             bayName,
             simpleTranslator.translate(bayName, ScreenLanguage.SINHALA),
             simpleTranslator.translate(bayName, ScreenLanguage.TAMIL)
         ));
-        this.destination = new ArrayList<>(Arrays.asList(
-            destination.getLocationName(),
-            destination.getLocationNameSinhala(),
-            destination.getLocationNameTamil()
-        ));
+        this.destination = destination == null ? new ArrayList<>(Arrays.asList("", "", "")) :
+            new ArrayList<>(Arrays.asList(
+                destination.getLocationName(),
+                destination.getLocationNameSinhala(),
+                destination.getLocationNameTamil()
+            ));
         this.route = scheduleInstance.getScheduleTemplate().getRoute().getRouteNumber();
 
         String scheduleStatus = scheduleInstance.getScheduleState().toString();
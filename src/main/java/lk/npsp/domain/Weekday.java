@@ -31,7 +31,7 @@ public class Weekday implements Serializable {
     @Column(name = "weekday", nullable = false)
     private Weekdays weekday;
 
-    @ManyToMany(fetch = FetchType.EAGER, mappedBy = "weekdays")
+    @ManyToMany(mappedBy = "weekdays")
     @JsonIgnore
     private Set<ScheduleTemplate> scheduleTemplates = new HashSet<>();
 
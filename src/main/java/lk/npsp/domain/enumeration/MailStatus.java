@@ -0,0 +1,8 @@
+package lk.npsp.domain.enumeration;
+
+/**
+ * The MailStatus enumeration.
+ */
+public enum MailStatus {
+    PENDING, SENT, FAILED
+}
@@ -16,4 +16,7 @@ import java.util.Optional;
 @SuppressWarnings("unused")
 @Repository
 public interface BayRepository extends JpaRepository<Bay, Long> {
+
+    @Query("select b.id from Bay b order by b.id")
+    List<Long> findAllIds();
 }
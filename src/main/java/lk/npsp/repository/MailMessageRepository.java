@@ -0,0 +1,35 @@
+package lk.npsp.repository;
+
+import lk.npsp.domain.MailMessage;
+import lk.npsp.domain.enumeration.MailStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Spring Data JPA repository for the MailMessage entity, the outbound mail queue.
+ */
+@Repository
+public interface MailMessageRepository extends JpaRepository<MailMessage, Long> {
+
+    List<MailMessage> findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAt(MailStatus status, Instant now,
+                                                                                    Pageable pageable);
+
+    long countByStatus(MailStatus status);
+
+    /**
+     * Delete the sent and failed messages created before the given date.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "delete from MailMessage message " +
+        "where message.status <> lk.npsp.domain.enumeration.MailStatus.PENDING and message.createdDate < :before")
+    int deleteFinishedBefore(@Param("before") Instant before);
+}
@@ -4,6 +4,9 @@ import lk.npsp.domain.PersistentAuditEvent;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.time.Instant;
 import java.util.List;
@@ -22,4 +25,31 @@ public interface PersistenceAuditEventRepository extends JpaRepository<Persisten
     List<PersistentAuditEvent> findByPrincipalAndAuditEventDateAfterAndAuditEventType(String principal, Instant after, String type);
 
     Page<PersistentAuditEvent> findAllByAuditEventDateBetween(Instant fromDate, Instant toDate, Pageable pageable);
+
+    @Query(value = "select distinct event from PersistentAuditEvent event left join fetch event.data " +
+        "where event.auditEventDate between :fromDate and :toDate")
+    List<PersistentAuditEvent> findAllWithDataByAuditEventDateBetween(@Param("fromDate") Instant fromDate,
+                                                                      @Param("toDate") Instant toDate);
+
+    @Query(value = "select event.id from PersistentAuditEvent event " +
+        "where event.auditEventDate >= :fromDate and event.auditEventDate < :toDate")
+    List<Long> findIdsByAuditEventDateRange(@Param("fromDate") Instant fromDate, @Param("toDate") Instant toDate);
+
+    @Query(value = "select min(event.auditEventDate) from PersistentAuditEvent event")
+    Instant findOldestAuditEventDate();
+
+    /**
+     * Delete the data of the events dated in [fromDate, toDate). Bulk deletes of the events themselves leave their
+     * element collection behind, so this has to run first.
+     */
+    @Modifying
+    @Query(value = "delete from jhi_persistent_audit_evt_data where event_id in " +
+        "(select event_id from jhi_persistent_audit_event where event_date >= :fromDate and event_date < :toDate)",
+        nativeQuery = true)
+    int deleteDataByAuditEventDateRange(@Param("fromDate") Instant fromDate, @Param("toDate") Instant toDate);
+
+    @Modifying
+    @Query(value = "delete from PersistentAuditEvent event " +
+        "where event.auditEventDate >= :fromDate and event.auditEventDate < :toDate")
+    int deleteByAuditEventDateRange(@Param("fromDate") Instant fromDate, @Param("toDate") Instant toDate);
 }
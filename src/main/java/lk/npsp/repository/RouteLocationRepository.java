@@ -5,6 +5,7 @@ import org.springframework.data.jpa.repository.*;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 
@@ -18,5 +19,25 @@ public interface RouteLocationRepository extends JpaRepository<RouteLocation, Lo
         "where route_location.route.id=:routeId order by route_location.sequenceNumber ASC")
     List<RouteLocation> findRouteLocationsByRoute(@Param("routeId") Long routeId);
 
+    /**
+     * Route id and location id of every stop, in route order; the whole route network in one narrow query.
+     */
+    @Query(value = "select route_location.route.id, route_location.location.id from RouteLocation route_location " +
+        "where route_location.route is not null and route_location.location is not null " +
+        "order by route_location.route.id ASC, route_location.sequenceNumber ASC")
+    List<Object[]> findAllStopLocationIds();
+
+    @Query(value = "select route_location.location.id from RouteLocation route_location " +
+        "where route_location.route.id=:routeId and route_location.location is not null " +
+        "order by route_location.sequenceNumber ASC")
+    List<Long> findStopLocationIdsByRoute(@Param("routeId") Long routeId);
+
+    @Modifying
+    @Query(value = "delete from RouteLocation route_location where route_location.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "delete from RouteLocation route_location where route_location.route.id=:routeId")
+    int deleteAllByRouteId(@Param("routeId") Long routeId);
 
 }
@@ -1,8 +1,18 @@
 package lk.npsp.repository;
 
 import lk.npsp.domain.Route;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 
 /**
@@ -12,4 +22,39 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface RouteRepository extends JpaRepository<Route, Long> {
 
+    /**
+     * Routes with their route locations and locations; other repositories fetch the routes of their entities with it.
+     */
+    String SELECT_WITH_ROUTE_LOCATIONS = "select distinct route from Route route " +
+        "left join fetch route.routeLocations route_location left join fetch route_location.location ";
+
+    @EntityGraph(attributePaths = {"routeLocations", "routeLocations.location"})
+    Optional<Route> findOneWithRouteLocationsById(Long id);
+
+    /**
+     * A page of routes with their route locations. The page is cut on ids in the database, then its routes are
+     * read with their route locations, rather than cutting the joined rows in memory.
+     *
+     * @param pageable the pagination information
+     * @return the page of routes
+     */
+    @Transactional(readOnly = true)
+    default Page<Route> findAllWithRouteLocations(Pageable pageable) {
+        Page<Long> ids = findAllIds(pageable);
+        Map<Long, Route> byId = new HashMap<>();
+        if (ids.hasContent()) {
+            findAllWithRouteLocationsByIdIn(ids.getContent()).forEach(route -> byId.put(route.getId(), route));
+        }
+        return ids.map(byId::get);
+    }
+
+    @Query(value = "select route.id from Route route", countQuery = "select count(route) from Route route")
+    Page<Long> findAllIds(Pageable pageable);
+
+    @Query(SELECT_WITH_ROUTE_LOCATIONS)
+    List<Route> findAllWithRouteLocations();
+
+    @Query(SELECT_WITH_ROUTE_LOCATIONS + "where route.id in :ids")
+    List<Route> findAllWithRouteLocationsByIdIn(@Param("ids") Collection<Long> ids);
+
 }
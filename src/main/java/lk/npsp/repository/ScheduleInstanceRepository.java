@@ -1,22 +1,130 @@
 package lk.npsp.repository;
 
+import lk.npsp.domain.Route;
 import lk.npsp.domain.ScheduleInstance;
+import lk.npsp.domain.ScheduleTemplate;
+import lk.npsp.domain.enumeration.ScheduleState;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.time.LocalDate;
-import java.util.List;
+import java.util.*;
 
 
 /**
  * Spring Data  repository for the ScheduleInstance entity.
+ * <p>
+ * The instances served by the REST API are read with their to-one associations, then the weekdays of their
+ * templates and the route locations of their routes with one query each, in the same transaction.
  */
 @SuppressWarnings("unused")
 @Repository
 public interface ScheduleInstanceRepository extends JpaRepository<ScheduleInstance, Long> {
+
+    /**
+     * The times, state, vehicle and bay of an instance, read without loading the entity and its associations.
+     */
+    interface Timing {
+
+        Long getId();
+
+        Long getVehicleId();
+
+        Long getBayId();
+
+        LocalDate getScheduleDate();
+
+        Instant getScheduledTime();
+
+        Instant getActualScheduledTime();
+
+        ScheduleState getScheduleState();
+    }
+
+    String SELECT_TIMING = "select i.id as id, v.id as vehicleId, b.id as bayId, i.date as scheduleDate, " +
+        "i.scheduledTime as scheduledTime, i.actualScheduledTime as actualScheduledTime, " +
+        "i.scheduleState as scheduleState " +
+        "from ScheduleInstance i left join i.vehicle v left join i.bay b ";
+
+    @Query(SELECT_TIMING + "where i.date = :date")
+    List<Timing> findTimingsByDate(@Param("date") LocalDate date);
+
+    @Query(SELECT_TIMING + "where i.date between :from and :to")
+    List<Timing> findTimingsByDateBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Query(SELECT_TIMING + "where i.id in :ids")
+    List<Timing> findTimingsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Transactional(readOnly = true)
+    default Page<ScheduleInstance> findAllWithRouteLocations(Pageable pageable) {
+        Page<ScheduleInstance> page = findAll(pageable);
+        withRouteLocations(page.getContent());
+        return page;
+    }
+
+    @Transactional(readOnly = true)
+    default List<ScheduleInstance> findAllWithRouteLocations() {
+        return withRouteLocations(findAll());
+    }
+
+    @Transactional(readOnly = true)
+    default Page<ScheduleInstance> findScheduleInstancesWithRouteLocationsByDate(Pageable pageable, LocalDate date,
+                                                                                 String search) {
+        Page<ScheduleInstance> page = findScheduleInstancesByDate(pageable, date, search);
+        withRouteLocations(page.getContent());
+        return page;
+    }
+
+    @Transactional(readOnly = true)
+    default Optional<ScheduleInstance> findOneWithRouteLocationsById(Long id) {
+        Optional<ScheduleInstance> scheduleInstance = findById(id);
+        scheduleInstance.ifPresent(found -> withRouteLocations(Collections.singletonList(found)));
+        return scheduleInstance;
+    }
+
+    /**
+     * Load the weekdays of the instances' templates and the route locations of the instances' and templates' routes
+     * into the current persistence context, which must be the one the instances were read in.
+     *
+     * @param scheduleInstances the instances
+     * @return the instances
+     */
+    default List<ScheduleInstance> withRouteLocations(List<ScheduleInstance> scheduleInstances) {
+        Set<Long> templateIds = new HashSet<>();
+        Set<Long> routeIds = new HashSet<>();
+        for (ScheduleInstance scheduleInstance : scheduleInstances) {
+            if (scheduleInstance.getRoute() != null) {
+                routeIds.add(scheduleInstance.getRoute().getId());
+            }
+            ScheduleTemplate scheduleTemplate = scheduleInstance.getScheduleTemplate();
+            if (scheduleTemplate != null) {
+                templateIds.add(scheduleTemplate.getId());
+                if (scheduleTemplate.getRoute() != null) {
+                    routeIds.add(scheduleTemplate.getRoute().getId());
+                }
+            }
+        }
+        if (!templateIds.isEmpty()) {
+            findTemplatesWithWeekdaysByIdIn(templateIds);
+        }
+        if (!routeIds.isEmpty()) {
+            findRoutesWithRouteLocationsByIdIn(routeIds);
+        }
+        return scheduleInstances;
+    }
+
+    @Query("select distinct schedule_template from ScheduleTemplate schedule_template " +
+        "left join fetch schedule_template.weekdays where schedule_template.id in :ids")
+    List<ScheduleTemplate> findTemplatesWithWeekdaysByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(RouteRepository.SELECT_WITH_ROUTE_LOCATIONS + "where route.id in :ids")
+    List<Route> findRoutesWithRouteLocationsByIdIn(@Param("ids") Collection<Long> ids);
+
     @Query(value = "select distinct schedule_instance from ScheduleInstance schedule_instance " +
         "where schedule_instance.date= :date and schedule_instance.vehicle.registrationNumber like %:search%",
         countQuery = "select count(distinct schedule_instance) from ScheduleInstance schedule_instance " +
@@ -1,33 +1,137 @@
 package lk.npsp.repository;
 
+import lk.npsp.domain.Route;
 import lk.npsp.domain.ScheduleTemplate;
+import lk.npsp.domain.enumeration.Weekdays;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
-import java.util.Optional;
+import java.time.Instant;
+import java.util.*;
 
 /**
  * Spring Data  repository for the ScheduleTemplate entity.
+ * <p>
+ * The templates served by the REST API are read with their weekdays, then the route locations of their distinct
+ * routes with a second query in the same transaction, rather than repeating every template once per stop.
  */
 @SuppressWarnings("unused")
 @Repository
 public interface ScheduleTemplateRepository extends JpaRepository<ScheduleTemplate, Long> {
 
+    /**
+     * The vehicle and driver an active template books on one of its weekdays.
+     */
+    interface Slot {
+
+        Long getId();
+
+        Long getVehicleId();
+
+        Long getDriverId();
+
+        Instant getStartTime();
+
+        Instant getEndTime();
+
+        Weekdays getWeekday();
+    }
+
+    String SELECT_SLOT = "select t.id as id, v.id as vehicleId, d.id as driverId, t.startTime as startTime, " +
+        "t.endTime as endTime, w.weekday as weekday from ScheduleTemplate t join t.weekdays w " +
+        "left join t.vehicle v left join t.driver d where t.isActive = true ";
+
+    @Transactional(readOnly = true)
+    default Page<ScheduleTemplate> findAllWithEagerRelationships(Pageable pageable) {
+        Page<ScheduleTemplate> page = findAllWithWeekdaysAndVehicleFacilities(pageable);
+        withRouteLocations(page.getContent());
+        return page;
+    }
+
+    @Transactional(readOnly = true)
+    default List<ScheduleTemplate> findAllWithEagerRelationships() {
+        return withRouteLocations(findAllWithWeekdaysAndVehicleFacilities());
+    }
+
+    /**
+     * A page of templates with their weekdays and routes. The page is cut on ids in the database, then its templates
+     * are read with their weekdays.
+     *
+     * @param pageable the pagination information
+     * @return the page of templates
+     */
+    @Transactional(readOnly = true)
+    default Page<ScheduleTemplate> findAllWithWeekdays(Pageable pageable) {
+        Page<Long> ids = findAllIds(pageable);
+        Map<Long, ScheduleTemplate> byId = new HashMap<>();
+        if (ids.hasContent()) {
+            withRouteLocations(findAllWithWeekdaysByIdIn(ids.getContent()))
+                .forEach(scheduleTemplate -> byId.put(scheduleTemplate.getId(), scheduleTemplate));
+        }
+        return ids.map(byId::get);
+    }
+
+    @Transactional(readOnly = true)
+    default Optional<ScheduleTemplate> findOneWithEagerRelationships(Long id) {
+        Optional<ScheduleTemplate> scheduleTemplate = findOneWithWeekdaysAndVehicleFacilitiesById(id);
+        scheduleTemplate.ifPresent(found -> withRouteLocations(Collections.singletonList(found)));
+        return scheduleTemplate;
+    }
+
+    /**
+     * Load the route locations of the templates' routes into the current persistence context, which must be the one
+     * the templates were read in.
+     *
+     * @param scheduleTemplates the templates
+     * @return the templates
+     */
+    default List<ScheduleTemplate> withRouteLocations(List<ScheduleTemplate> scheduleTemplates) {
+        Set<Long> routeIds = new HashSet<>();
+        for (ScheduleTemplate scheduleTemplate : scheduleTemplates) {
+            if (scheduleTemplate.getRoute() != null) {
+                routeIds.add(scheduleTemplate.getRoute().getId());
+            }
+        }
+        if (!routeIds.isEmpty()) {
+            findRoutesWithRouteLocationsByIdIn(routeIds);
+        }
+        return scheduleTemplates;
+    }
+
     @Query(value = "select distinct schedule_template from ScheduleTemplate schedule_template left join fetch schedule_template.weekdays left join fetch schedule_template.vehicleFacilities",
         countQuery = "select count(distinct schedule_template) from ScheduleTemplate schedule_template")
-    Page<ScheduleTemplate> findAllWithEagerRelationships(Pageable pageable);
+    Page<ScheduleTemplate> findAllWithWeekdaysAndVehicleFacilities(Pageable pageable);
 
     @Query(value = "select distinct schedule_template from ScheduleTemplate schedule_template left join fetch schedule_template.weekdays left join fetch schedule_template.vehicleFacilities")
-    List<ScheduleTemplate> findAllWithEagerRelationships();
+    List<ScheduleTemplate> findAllWithWeekdaysAndVehicleFacilities();
+
+    @Query(value = "select schedule_template.id from ScheduleTemplate schedule_template",
+        countQuery = "select count(schedule_template) from ScheduleTemplate schedule_template")
+    Page<Long> findAllIds(Pageable pageable);
+
+    @Query("select distinct schedule_template from ScheduleTemplate schedule_template left join fetch schedule_template.weekdays where schedule_template.id in :ids")
+    List<ScheduleTemplate> findAllWithWeekdaysByIdIn(@Param("ids") Collection<Long> ids);
 
     @Query("select schedule_template from ScheduleTemplate schedule_template left join fetch schedule_template.weekdays left join fetch schedule_template.vehicleFacilities where schedule_template.id =:id")
-    Optional<ScheduleTemplate> findOneWithEagerRelationships(@Param("id") Long id);
+    Optional<ScheduleTemplate> findOneWithWeekdaysAndVehicleFacilitiesById(@Param("id") Long id);
+
+    @Query(RouteRepository.SELECT_WITH_ROUTE_LOCATIONS + "where route.id in :ids")
+    List<Route> findRoutesWithRouteLocationsByIdIn(@Param("ids") Collection<Long> ids);
 
+    /**
+     * Active templates with their weekdays, as needed by the schedule instantiator.
+     */
     @Query(value = "select distinct schedule_template from ScheduleTemplate schedule_template left join fetch schedule_template.weekdays where schedule_template.isActive=1")
     List<ScheduleTemplate> findAllActiveTemplates();
 
+    @Query(SELECT_SLOT + "and (v.id is not null or d.id is not null)")
+    List<Slot> findActiveSlots();
+
+    @Query(SELECT_SLOT + "and (v.id = :vehicleId or d.id = :driverId)")
+    List<Slot> findActiveSlotsByVehicleOrDriver(@Param("vehicleId") Long vehicleId, @Param("driverId") Long driverId);
+
 }
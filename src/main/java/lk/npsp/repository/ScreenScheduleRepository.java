@@ -1,37 +1,123 @@
 package lk.npsp.repository;
 
-import lk.npsp.domain.Bay;
+import lk.npsp.domain.Route;
 import lk.npsp.domain.ScheduleInstance;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 
 /**
  * Spring Data  repository for the ScheduleInstance entity.
+ * <p>
+ * The screen queries read the instances with their bay, vehicle and route in one row each, then the stops of the
+ * distinct routes with a second query in the same transaction, rather than repeating every instance once per stop.
  */
 @SuppressWarnings("unused")
 @Repository
 public interface ScreenScheduleRepository extends JpaRepository<ScheduleInstance, Long> {
 
+    @Transactional(readOnly = true)
+    default List<ScheduleInstance> findScheduleInstancesByScreen(Long bayId, Instant now) {
+        return withRouteLocations(findScreenRowsByScreen(bayId, now));
+    }
+
+    @Transactional(readOnly = true)
+    default List<ScheduleInstance> findScheduleInstancesByDay(Instant now) {
+        return withRouteLocations(findScreenRowsByDay(now));
+    }
+
+    @Transactional(readOnly = true)
+    default List<ScheduleInstance> findScheduleInstancesBetween(Instant from, Instant to) {
+        return withRouteLocations(findScreenRowsBetween(from, to));
+    }
+
+    @Transactional(readOnly = true)
+    default List<ScheduleInstance> findScheduleInstancesByTypeByDay(Instant now, String type) {
+        return withRouteLocations(findScreenRowsByTypeByDay(now, type));
+    }
+
+    @Transactional(readOnly = true)
+    default List<ScheduleInstance> findScheduleInstancesByRoutes(LocalDate date, Collection<Long> routeIds,
+                                                                 Instant from, Instant to) {
+        return withRouteLocations(findScreenRowsByRoutes(date, routeIds, from, to));
+    }
+
+    @Transactional(readOnly = true)
+    default List<ScheduleInstance> findScheduleInstancesByIdIn(Collection<Long> ids) {
+        return withRouteLocations(findScreenRowsByIdIn(ids));
+    }
+
+    /**
+     * Load the stops of the instances' routes into the current persistence context, which must be the one the
+     * instances were read in.
+     *
+     * @param instances the instances
+     * @return the instances
+     */
+    default List<ScheduleInstance> withRouteLocations(List<ScheduleInstance> instances) {
+        Set<Long> routeIds = new HashSet<>();
+        for (ScheduleInstance instance : instances) {
+            if (instance.getScheduleTemplate() != null && instance.getScheduleTemplate().getRoute() != null) {
+                routeIds.add(instance.getScheduleTemplate().getRoute().getId());
+            }
+        }
+        if (!routeIds.isEmpty()) {
+            findRoutesWithRouteLocationsByIdIn(routeIds);
+        }
+        return instances;
+    }
+
+    @EntityGraph(ScheduleInstance.SCREEN_ROW_GRAPH)
     @Query(value = "select schedule_instance from ScheduleInstance schedule_instance " +
         "where schedule_instance.bay.id=:bayId and schedule_instance.actualScheduledTime >:now " +
         "order by schedule_instance.actualScheduledTime ASC")
-    List<ScheduleInstance> findScheduleInstancesByScreen(@Param("bayId") Long bayId, @Param("now") Instant now);
+    List<ScheduleInstance> findScreenRowsByScreen(@Param("bayId") Long bayId, @Param("now") Instant now);
 
+    @EntityGraph(ScheduleInstance.SCREEN_ROW_GRAPH)
     @Query(value = "select schedule_instance from ScheduleInstance schedule_instance " +
         "where schedule_instance.actualScheduledTime >:now " +
         "order by schedule_instance.actualScheduledTime ASC")
-    List<ScheduleInstance> findScheduleInstancesByDay(@Param("now") Instant now);
+    List<ScheduleInstance> findScreenRowsByDay(@Param("now") Instant now);
+
+    @EntityGraph(ScheduleInstance.SCREEN_ROW_GRAPH)
+    @Query(value = "select schedule_instance from ScheduleInstance schedule_instance " +
+        "where schedule_instance.actualScheduledTime >=:from and schedule_instance.actualScheduledTime <:to " +
+        "order by schedule_instance.actualScheduledTime ASC")
+    List<ScheduleInstance> findScreenRowsBetween(@Param("from") Instant from, @Param("to") Instant to);
 
+    @EntityGraph(ScheduleInstance.SCREEN_ROW_GRAPH)
     @Query(value = "select schedule_instance from ScheduleInstance schedule_instance " +
         "where schedule_instance.actualScheduledTime >:now " +
         "and schedule_instance.vehicle.transportType.metaCode=:type " +
         "order by schedule_instance.actualScheduledTime ASC")
-    List<ScheduleInstance> findScheduleInstancesByTypeByDay(@Param("now") Instant now, @Param("type") String type);
+    List<ScheduleInstance> findScreenRowsByTypeByDay(@Param("now") Instant now, @Param("type") String type);
+
+    @EntityGraph(ScheduleInstance.SCREEN_ROW_GRAPH)
+    @Query(value = "select schedule_instance from ScheduleInstance schedule_instance " +
+        "where schedule_instance.date=:date and schedule_instance.route.id in :routeIds " +
+        "and schedule_instance.actualScheduledTime >:from and schedule_instance.actualScheduledTime <=:to " +
+        "order by schedule_instance.actualScheduledTime ASC")
+    List<ScheduleInstance> findScreenRowsByRoutes(@Param("date") LocalDate date,
+                                                  @Param("routeIds") Collection<Long> routeIds,
+                                                  @Param("from") Instant from, @Param("to") Instant to);
+
+    @EntityGraph(ScheduleInstance.SCREEN_ROW_GRAPH)
+    @Query(value = "select schedule_instance from ScheduleInstance schedule_instance " +
+        "where schedule_instance.id in :ids")
+    List<ScheduleInstance> findScreenRowsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(RouteRepository.SELECT_WITH_ROUTE_LOCATIONS + "where route.id in :ids")
+    List<Route> findRoutesWithRouteLocationsByIdIn(@Param("ids") Collection<Long> ids);
 
 }
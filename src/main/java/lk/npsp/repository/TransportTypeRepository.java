@@ -4,6 +4,8 @@ import lk.npsp.domain.TransportType;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 
 /**
  * Spring Data  repository for the TransportType entity.
@@ -12,4 +14,7 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface TransportTypeRepository extends JpaRepository<TransportType, Long> {
 
+    @Query("select transport_type.metaCode from TransportType transport_type")
+    List<String> findAllMetaCodes();
+
 }
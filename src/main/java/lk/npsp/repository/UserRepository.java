@@ -7,7 +7,11 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.time.Instant;
@@ -26,6 +30,29 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     List<User> findAllByActivatedIsFalseAndCreatedDateBefore(Instant dateTime);
 
+    /**
+     * The keys of the users not activated and created before the given date, in id order after afterId.
+     */
+    @Query("select user.id as id, user.login as login, user.email as email from User user " +
+        "where user.activated = false and user.createdDate < :before and user.id > :afterId order by user.id")
+    List<UserKeys> findNotActivatedKeys(@Param("before") Instant before, @Param("afterId") Long afterId,
+                                        Pageable pageable);
+
+    /**
+     * Delete the authorities of the given users that are still not activated.
+     */
+    @Modifying
+    @Query(value = "delete from jhi_user_authority where user_id in " +
+        "(select id from jhi_user where id in (:ids) and activated = false)", nativeQuery = true)
+    int deleteNotActivatedAuthorities(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Delete the given users that are still not activated; their authorities must be deleted first.
+     */
+    @Modifying
+    @Query("delete from User user where user.id in :ids and user.activated = false")
+    int deleteNotActivated(@Param("ids") Collection<Long> ids);
+
     Optional<User> findOneByResetKey(String resetKey);
 
     Optional<User> findOneByEmailIgnoreCase(String email);
@@ -44,4 +71,16 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findOneWithAuthoritiesByEmail(String email);
 
     Page<User> findAllByLoginNot(Pageable pageable, String login);
+
+    /**
+     * The id of a user and the keys of its cache entries.
+     */
+    interface UserKeys {
+
+        Long getId();
+
+        String getLogin();
+
+        String getEmail();
+    }
 }
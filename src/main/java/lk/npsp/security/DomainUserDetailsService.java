@@ -5,6 +5,8 @@ import lk.npsp.repository.UserRepository;
 import org.hibernate.validator.internal.constraintvalidators.hv.EmailValidator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -14,38 +16,102 @@ import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
 
 /**
  * Authenticate a user from the database.
+ * <p>
+ * The principals built for a login or an email are kept in the {@link #USER_DETAILS_CACHE} cache, which
+ * {@code UserService} clears whenever it changes a user, so a repeated login only checks the password. Each call
+ * gets its own copy of the cached principal, as the authentication manager erases the password of the principal it
+ * returns.
  */
 @Component("userDetailsService")
 public class DomainUserDetailsService implements UserDetailsService {
 
+    public static final String USER_DETAILS_CACHE = "userDetails";
+
+    /**
+     * Stateless once built; its patterns are compiled when the class loads.
+     */
+    private static final EmailValidator EMAIL_VALIDATOR = new EmailValidator();
+
+    /**
+     * One instance per authority name, shared by every principal.
+     */
+    private static final ConcurrentMap<String, GrantedAuthority> AUTHORITIES = new ConcurrentHashMap<>();
+
     private final Logger log = LoggerFactory.getLogger(DomainUserDetailsService.class);
 
     private final UserRepository userRepository;
 
-    public DomainUserDetailsService(UserRepository userRepository) {
+    private final CacheManager cacheManager;
+
+    public DomainUserDetailsService(UserRepository userRepository, CacheManager cacheManager) {
         this.userRepository = userRepository;
+        this.cacheManager = cacheManager;
     }
 
     @Override
-    @Transactional
     public UserDetails loadUserByUsername(final String login) {
         log.debug("Authenticating {}", login);
 
-        if (new EmailValidator().isValid(login, null)) {
-            return userRepository.findOneWithAuthoritiesByEmail(login)
-                .map(user -> createSpringSecurityUser(login, user))
-                .orElseThrow(() -> new UsernameNotFoundException("User with email " + login + " was not found in the database"));
+        boolean email = EMAIL_VALIDATOR.isValid(login, null);
+        String key = cacheKey(login);
+        Cache cache = Objects.requireNonNull(cacheManager.getCache(USER_DETAILS_CACHE));
+        UserDetails cached = cache.get(key, UserDetails.class);
+        if (cached == null) {
+            cached = email ? loadByEmail(key) : loadByLogin(key);
+            cache.put(key, cached);
         }
+        return new org.springframework.security.core.userdetails.User(cached.getUsername(), cached.getPassword(),
+            cached.getAuthorities());
+    }
 
-        String lowercaseLogin = login.toLowerCase(Locale.ENGLISH);
+    /**
+     * The key the principal of a login or an email is cached under. Logins and emails are stored in lower case, so
+     * every spelling of one shares the entry evicted when the user changes.
+     *
+     * @param login the login or email, in any case
+     * @return the key
+     */
+    public static String cacheKey(String login) {
+        return login.toLowerCase(Locale.ENGLISH);
+    }
+
+    private UserDetails loadByEmail(String email) {
+        return userRepository.findOneWithAuthoritiesByEmail(email)
+            .map(user -> createSpringSecurityUser(email, user))
+            .orElseThrow(() -> new UsernameNotFoundException("User with email " + email + " was not found in the database"));
+    }
+
+    private UserDetails loadByLogin(String lowercaseLogin) {
         return userRepository.findOneWithAuthoritiesByLogin(lowercaseLogin)
             .map(user -> createSpringSecurityUser(lowercaseLogin, user))
             .orElseThrow(() -> new UsernameNotFoundException("User " + lowercaseLogin + " was not found in the database"));
+    }
 
+    /**
+     * Replace the password hash of a user who just logged in, with one made under the current hashing settings.
+     *
+     * @param login the login of the user
+     * @param encodedPassword the new hash
+     */
+    @Transactional
+    public void updatePassword(String login, String encodedPassword) {
+        userRepository.findOneByLogin(login).ifPresent(user -> {
+            user.setPassword(encodedPassword);
+            Objects.requireNonNull(cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE)).evict(user.getLogin());
+            Objects.requireNonNull(cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE)).evict(user.getEmail());
+            Cache userDetails = Objects.requireNonNull(cacheManager.getCache(USER_DETAILS_CACHE));
+            userDetails.evict(cacheKey(user.getLogin()));
+            if (user.getEmail() != null) {
+                userDetails.evict(cacheKey(user.getEmail()));
+            }
+            log.debug("Rehashed the password of {}", login);
+        });
     }
 
     private org.springframework.security.core.userdetails.User createSpringSecurityUser(String lowercaseLogin, User user) {
@@ -53,7 +119,7 @@ public class DomainUserDetailsService implements UserDetailsService {
             throw new UserNotActivatedException("User " + lowercaseLogin + " was not activated");
         }
         List<GrantedAuthority> grantedAuthorities = user.getAuthorities().stream()
-            .map(authority -> new SimpleGrantedAuthority(authority.getName()))
+            .map(authority -> AUTHORITIES.computeIfAbsent(authority.getName(), SimpleGrantedAuthority::new))
             .collect(Collectors.toList());
         return new org.springframework.security.core.userdetails.User(user.getLogin(),
             user.getPassword(),
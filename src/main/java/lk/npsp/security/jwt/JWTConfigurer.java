@@ -9,13 +9,16 @@ public class JWTConfigurer extends SecurityConfigurerAdapter<DefaultSecurityFilt
 
     private TokenProvider tokenProvider;
 
-    public JWTConfigurer(TokenProvider tokenProvider) {
+    private TokenAuthenticationCache tokenAuthenticationCache;
+
+    public JWTConfigurer(TokenProvider tokenProvider, TokenAuthenticationCache tokenAuthenticationCache) {
         this.tokenProvider = tokenProvider;
+        this.tokenAuthenticationCache = tokenAuthenticationCache;
     }
 
     @Override
     public void configure(HttpSecurity http) throws Exception {
-        JWTFilter customFilter = new JWTFilter(tokenProvider);
+        JWTFilter customFilter = new JWTFilter(tokenProvider, tokenAuthenticationCache);
         http.addFilterBefore(customFilter, UsernamePasswordAuthenticationFilter.class);
     }
 }
@@ -1,5 +1,6 @@
 package lk.npsp.security.jwt;
 
+import io.jsonwebtoken.Claims;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.util.StringUtils;
@@ -15,6 +16,9 @@ import java.io.IOException;
 /**
  * Filters incoming requests and installs a Spring Security principal if a header corresponding to a valid user is
  * found.
+ * <p>
+ * Each token is verified and parsed once; when a {@link TokenAuthenticationCache} is given, later requests with the
+ * same token reuse the authentication built the first time, until the token expires.
  */
 public class JWTFilter extends GenericFilterBean {
 
@@ -22,8 +26,15 @@ public class JWTFilter extends GenericFilterBean {
 
     private TokenProvider tokenProvider;
 
+    private TokenAuthenticationCache tokenAuthenticationCache;
+
     public JWTFilter(TokenProvider tokenProvider) {
+        this(tokenProvider, null);
+    }
+
+    public JWTFilter(TokenProvider tokenProvider, TokenAuthenticationCache tokenAuthenticationCache) {
         this.tokenProvider = tokenProvider;
+        this.tokenAuthenticationCache = tokenAuthenticationCache;
     }
 
     @Override
@@ -31,13 +42,33 @@ public class JWTFilter extends GenericFilterBean {
         throws IOException, ServletException {
         HttpServletRequest httpServletRequest = (HttpServletRequest) servletRequest;
         String jwt = resolveToken(httpServletRequest);
-        if (StringUtils.hasText(jwt) && this.tokenProvider.validateToken(jwt)) {
-            Authentication authentication = this.tokenProvider.getAuthentication(jwt);
-            SecurityContextHolder.getContext().setAuthentication(authentication);
+        if (StringUtils.hasText(jwt)) {
+            Authentication authentication = resolveAuthentication(jwt);
+            if (authentication != null) {
+                SecurityContextHolder.getContext().setAuthentication(authentication);
+            }
         }
         filterChain.doFilter(servletRequest, servletResponse);
     }
 
+    private Authentication resolveAuthentication(String jwt) {
+        if (tokenAuthenticationCache != null) {
+            Authentication cached = tokenAuthenticationCache.get(jwt);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Claims claims = this.tokenProvider.parseToken(jwt);
+        if (claims == null) {
+            return null;
+        }
+        Authentication authentication = this.tokenProvider.getAuthentication(claims, jwt);
+        if (tokenAuthenticationCache != null && claims.getExpiration() != null) {
+            tokenAuthenticationCache.put(jwt, authentication, claims.getExpiration().getTime());
+        }
+        return authentication;
+    }
+
     private String resolveToken(HttpServletRequest request){
         String bearerToken = request.getHeader(AUTHORIZATION_HEADER);
         if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
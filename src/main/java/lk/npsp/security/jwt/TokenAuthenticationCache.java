@@ -0,0 +1,98 @@
+package lk.npsp.security.jwt;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.security.core.Authentication;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded cache of JWTs whose signature has already been verified, mapped to the {@link Authentication} built from
+ * their claims.
+ * <p>
+ * An entry is never returned after the token's expiration time. When the cache is full, expired entries are dropped
+ * first; if that is not enough, an arbitrary quarter of the entries is dropped, which only costs those tokens one
+ * more verification.
+ */
+public class TokenAuthenticationCache {
+
+    private final int maxEntries;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    public TokenAuthenticationCache(int maxEntries, MeterRegistry meterRegistry) {
+        this.maxEntries = maxEntries;
+        this.hits = Counter.builder("security.jwt.cache.requests").tag("result", "hit")
+            .description("JWT lookups answered from the verified token cache").register(meterRegistry);
+        this.misses = Counter.builder("security.jwt.cache.requests").tag("result", "miss")
+            .description("JWT lookups that needed a signature verification").register(meterRegistry);
+        Gauge.builder("security.jwt.cache.size", entries, Map::size)
+            .description("Verified JWTs currently cached").register(meterRegistry);
+    }
+
+    /**
+     * Get the authentication of a verified, unexpired token.
+     *
+     * @param token the compact JWT
+     * @return the authentication, or null if the token is not cached or has expired
+     */
+    public Authentication get(String token) {
+        Entry entry = entries.get(token);
+        if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+            hits.increment();
+            return entry.authentication;
+        }
+        if (entry != null) {
+            entries.remove(token, entry);
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Cache the authentication of a token that has just been verified.
+     *
+     * @param token the compact JWT
+     * @param authentication the authentication built from its claims
+     * @param expiresAt the token's expiration time, in epoch milliseconds
+     */
+    public void put(String token, Authentication authentication, long expiresAt) {
+        if (maxEntries <= 0) {
+            return;
+        }
+        if (entries.size() >= maxEntries) {
+            evict();
+        }
+        entries.put(token, new Entry(authentication, expiresAt));
+    }
+
+    private void evict() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.expiresAt <= now);
+        int excess = entries.size() - maxEntries * 3 / 4;
+        Iterator<String> tokens = entries.keySet().iterator();
+        while (excess-- > 0 && tokens.hasNext()) {
+            tokens.next();
+            tokens.remove();
+        }
+    }
+
+    private static final class Entry {
+
+        private final Authentication authentication;
+
+        private final long expiresAt;
+
+        Entry(Authentication authentication, long expiresAt) {
+            this.authentication = authentication;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -87,6 +87,17 @@ public class TokenProvider {
             .parseClaimsJws(token)
             .getBody();
 
+        return getAuthentication(claims, token);
+    }
+
+    /**
+     * Build the authentication of a token from its already verified claims.
+     *
+     * @param claims the claims of the token
+     * @param token the compact JWT, kept as the credentials
+     * @return the authentication
+     */
+    public Authentication getAuthentication(Claims claims, String token) {
         Collection<? extends GrantedAuthority> authorities =
             Arrays.stream(claims.get(AUTHORITIES_KEY).toString().split(","))
                 .map(SimpleGrantedAuthority::new)
@@ -98,9 +109,18 @@ public class TokenProvider {
     }
 
     public boolean validateToken(String authToken) {
+        return parseToken(authToken) != null;
+    }
+
+    /**
+     * Verify a token's signature and expiration and read its claims, in a single parse.
+     *
+     * @param authToken the compact JWT
+     * @return the claims, or null if the token is not valid
+     */
+    public Claims parseToken(String authToken) {
         try {
-            Jwts.parser().setSigningKey(key).parseClaimsJws(authToken);
-            return true;
+            return Jwts.parser().setSigningKey(key).parseClaimsJws(authToken).getBody();
         } catch (io.jsonwebtoken.security.SecurityException | MalformedJwtException e) {
             log.info("Invalid JWT signature.");
             log.trace("Invalid JWT signature trace: {}", e);
@@ -114,6 +134,6 @@ public class TokenProvider {
             log.info("JWT token compact of handler are invalid.");
             log.trace("JWT token compact of handler are invalid trace: {}", e);
         }
-        return false;
+        return null;
     }
 }
@@ -0,0 +1,104 @@
+package lk.npsp.security.password;
+
+import org.bouncycastle.crypto.generators.Argon2BytesGenerator;
+import org.bouncycastle.crypto.params.Argon2Parameters;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Argon2id from Bouncy Castle, in the reference encoding {@code $argon2id$v=19$m=19456,t=2,p=1$<salt>$<hash>}, salt
+ * and hash in unpadded Base64.
+ */
+public class Argon2PasswordHasher implements PasswordHasher {
+
+    private static final String PREFIX = "$argon2id$";
+
+    private static final int SALT_BYTES = 16;
+
+    private static final int HASH_BYTES = 32;
+
+    private final int memoryKb;
+
+    private final int iterations;
+
+    private final int parallelism;
+
+    private final SecureRandom random = new SecureRandom();
+
+    public Argon2PasswordHasher(int memoryKb, int iterations, int parallelism) {
+        this.memoryKb = memoryKb;
+        this.iterations = iterations;
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    public String hash(CharSequence rawPassword) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        byte[] hash = derive(rawPassword, salt, memoryKb, iterations, parallelism, HASH_BYTES);
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + "v=19$" + parameters() + '$' + base64.encodeToString(salt) + '$' +
+            base64.encodeToString(hash);
+    }
+
+    @Override
+    public boolean verify(CharSequence rawPassword, String hash) {
+        String[] parts = hash.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 4 || !"v=19".equals(parts[0])) {
+            return false;
+        }
+        try {
+            int m = 0;
+            int t = 0;
+            int p = 0;
+            for (String parameter : parts[1].split(",")) {
+                int value = Integer.parseInt(parameter.substring(2));
+                if (parameter.startsWith("m=")) {
+                    m = value;
+                } else if (parameter.startsWith("t=")) {
+                    t = value;
+                } else if (parameter.startsWith("p=")) {
+                    p = value;
+                }
+            }
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] expected = Base64.getDecoder().decode(parts[3]);
+            return MessageDigest.isEqual(expected, derive(rawPassword, salt, m, t, p, expected.length));
+        } catch (IllegalArgumentException | StringIndexOutOfBoundsException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean handles(String hash) {
+        return hash.startsWith(PREFIX);
+    }
+
+    @Override
+    public boolean isCurrent(String hash) {
+        return hash.startsWith(PREFIX + "v=19$" + parameters() + '$');
+    }
+
+    private String parameters() {
+        return "m=" + memoryKb + ",t=" + iterations + ",p=" + parallelism;
+    }
+
+    private static byte[] derive(CharSequence rawPassword, byte[] salt, int memoryKb, int iterations,
+                                 int parallelism, int length) {
+        Argon2Parameters parameters = new Argon2Parameters.Builder(Argon2Parameters.ARGON2_id)
+            .withVersion(Argon2Parameters.ARGON2_VERSION_13)
+            .withSalt(salt)
+            .withMemoryAsKB(memoryKb)
+            .withIterations(iterations)
+            .withParallelism(parallelism)
+            .build();
+        Argon2BytesGenerator generator = new Argon2BytesGenerator();
+        generator.init(parameters);
+        byte[] hash = new byte[length];
+        generator.generateBytes(rawPassword.toString().getBytes(StandardCharsets.UTF_8), hash);
+        return hash;
+    }
+}
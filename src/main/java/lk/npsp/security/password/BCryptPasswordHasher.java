@@ -0,0 +1,44 @@
+package lk.npsp.security.password;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * BCrypt, as in {@code $2a$10$<salt and hash>}; the hashes stored before the hashing became configurable.
+ */
+public class BCryptPasswordHasher implements PasswordHasher {
+
+    private static final Pattern BCRYPT = Pattern.compile("^\\$2[abxy]?\\$(\\d\\d)\\$");
+
+    private final int strength;
+
+    private final BCryptPasswordEncoder encoder;
+
+    public BCryptPasswordHasher(int strength) {
+        this.strength = strength;
+        this.encoder = new BCryptPasswordEncoder(strength);
+    }
+
+    @Override
+    public String hash(CharSequence rawPassword) {
+        return encoder.encode(rawPassword);
+    }
+
+    @Override
+    public boolean verify(CharSequence rawPassword, String hash) {
+        return encoder.matches(rawPassword, hash);
+    }
+
+    @Override
+    public boolean handles(String hash) {
+        return BCRYPT.matcher(hash).find();
+    }
+
+    @Override
+    public boolean isCurrent(String hash) {
+        Matcher matcher = BCRYPT.matcher(hash);
+        return matcher.find() && Integer.parseInt(matcher.group(1)) == strength;
+    }
+}
@@ -0,0 +1,117 @@
+package lk.npsp.security.password;
+
+import lk.npsp.config.ApplicationProperties;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Password encoder delegating to the {@link PasswordHasher} of the configured algorithm for new hashes, and to the
+ * hasher that made a stored hash for checks, so hashes made under earlier settings keep working.
+ * <p>
+ * Hashing runs on the hashing executor, which bounds how many hashes are computed at once; the calling thread waits
+ * for the result. When the executor is full, the call fails with a
+ * {@link org.springframework.core.task.TaskRejectedException} and the request gets 503 Service Unavailable, rather
+ * than a login burst taking every request thread and core.
+ */
+public class HashingPasswordEncoder implements PasswordEncoder {
+
+    private final boolean rehashOnLogin;
+
+    private final PasswordHasher current;
+
+    private final List<PasswordHasher> hashers;
+
+    private final AsyncTaskExecutor hashingExecutor;
+
+    private final Timer encodeTimer;
+
+    private final Timer matchTimer;
+
+    public HashingPasswordEncoder(ApplicationProperties.Security.Password properties, AsyncTaskExecutor hashingExecutor,
+                                  MeterRegistry meterRegistry) {
+        this.rehashOnLogin = properties.isRehashOnLogin();
+        PasswordHasher bcrypt = new BCryptPasswordHasher(properties.getBcryptStrength());
+        PasswordHasher pbkdf2 = new Pbkdf2PasswordHasher(properties.getPbkdf2Iterations());
+        PasswordHasher argon2 = new Argon2PasswordHasher(properties.getArgon2MemoryKb(),
+            properties.getArgon2Iterations(), properties.getArgon2Parallelism());
+        this.hashers = Arrays.asList(bcrypt, pbkdf2, argon2);
+        switch (properties.getAlgorithm()) {
+            case PBKDF2:
+                this.current = pbkdf2;
+                break;
+            case ARGON2:
+                this.current = argon2;
+                break;
+            default:
+                this.current = bcrypt;
+        }
+        this.hashingExecutor = hashingExecutor;
+        String algorithm = properties.getAlgorithm().name().toLowerCase(Locale.ENGLISH);
+        this.encodeTimer = Timer.builder("npsp.password.hash").tag("operation", "encode").tag("algorithm", algorithm)
+            .description("Time to hash a password, waiting for the hashing executor included").register(meterRegistry);
+        this.matchTimer = Timer.builder("npsp.password.hash").tag("operation", "match").tag("algorithm", algorithm)
+            .description("Time to hash a password, waiting for the hashing executor included").register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return encodeTimer.record(() -> onHashingExecutor(() -> current.hash(rawPassword)));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        if (rawPassword == null || encodedPassword == null || encodedPassword.isEmpty()) {
+            return false;
+        }
+        PasswordHasher hasher = hasherOf(encodedPassword);
+        if (hasher == null) {
+            return false;
+        }
+        return matchTimer.record(() -> onHashingExecutor(() -> hasher.verify(rawPassword, encodedPassword)));
+    }
+
+    /**
+     * @param encodedPassword a stored hash, just matched
+     * @return true when the hash should be replaced by one made with the current algorithm and parameters
+     */
+    public boolean upgradeEncoding(String encodedPassword) {
+        return rehashOnLogin && encodedPassword != null
+            && !(current.handles(encodedPassword) && current.isCurrent(encodedPassword));
+    }
+
+    private PasswordHasher hasherOf(String encodedPassword) {
+        for (PasswordHasher hasher : hashers) {
+            if (hasher.handles(encodedPassword)) {
+                return hasher;
+            }
+        }
+        return null;
+    }
+
+    private <T> T onHashingExecutor(Callable<T> hashing) {
+        try {
+            return hashingExecutor.submit(hashing).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a password hash", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package lk.npsp.security.password;
+
+/**
+ * One password hashing algorithm, producing hashes that name the algorithm and record its parameters.
+ */
+public interface PasswordHasher {
+
+    /**
+     * @param rawPassword the password
+     * @return the hash of the password with a new salt and the current parameters
+     */
+    String hash(CharSequence rawPassword);
+
+    /**
+     * @param rawPassword the password
+     * @param hash a hash this hasher {@link #handles(String) handles}
+     * @return true when the password matches the hash, whatever parameters the hash was made with
+     */
+    boolean verify(CharSequence rawPassword, String hash);
+
+    /**
+     * @param hash a stored hash
+     * @return true when the hash was made by this algorithm
+     */
+    boolean handles(String hash);
+
+    /**
+     * @param hash a hash this hasher {@link #handles(String) handles}
+     * @return true when the hash was made with the current parameters
+     */
+    boolean isCurrent(String hash);
+}
@@ -0,0 +1,75 @@
+package lk.npsp.security.password;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * PBKDF2 with HMAC-SHA256 from the JDK, as in {@code $pbkdf2-sha256$i=310000$<salt>$<hash>}, salt and hash in
+ * unpadded Base64.
+ */
+public class Pbkdf2PasswordHasher implements PasswordHasher {
+
+    private static final String PREFIX = "$pbkdf2-sha256$";
+
+    private static final int SALT_BYTES = 16;
+
+    private static final int HASH_BITS = 256;
+
+    private final int iterations;
+
+    private final SecureRandom random = new SecureRandom();
+
+    public Pbkdf2PasswordHasher(int iterations) {
+        this.iterations = iterations;
+    }
+
+    @Override
+    public String hash(CharSequence rawPassword) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + "i=" + iterations + '$' + base64.encodeToString(salt) + '$' +
+            base64.encodeToString(derive(rawPassword, salt, iterations, HASH_BITS));
+    }
+
+    @Override
+    public boolean verify(CharSequence rawPassword, String hash) {
+        String[] parts = hash.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 3 || !parts[0].startsWith("i=")) {
+            return false;
+        }
+        try {
+            int hashIterations = Integer.parseInt(parts[0].substring(2));
+            byte[] salt = Base64.getDecoder().decode(parts[1]);
+            byte[] expected = Base64.getDecoder().decode(parts[2]);
+            return MessageDigest.isEqual(expected, derive(rawPassword, salt, hashIterations, expected.length * 8));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean handles(String hash) {
+        return hash.startsWith(PREFIX);
+    }
+
+    @Override
+    public boolean isCurrent(String hash) {
+        return hash.startsWith(PREFIX + "i=" + iterations + '$');
+    }
+
+    private static byte[] derive(CharSequence rawPassword, byte[] salt, int iterations, int bits) {
+        PBEKeySpec spec = new PBEKeySpec(rawPassword.toString().toCharArray(), salt, iterations, bits);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2WithHmacSHA256 is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
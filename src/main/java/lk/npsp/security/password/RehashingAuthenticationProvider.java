@@ -0,0 +1,46 @@
+package lk.npsp.security.password;
+
+import lk.npsp.security.DomainUserDetailsService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+
+/**
+ * Authenticates against the users in the database, and on a successful login replaces a password hash made with
+ * another algorithm or weaker parameters than the current ones, while the raw password is at hand.
+ * <p>
+ * A failed rehash is logged and the login goes on; the user keeps the old hash until the next login.
+ */
+public class RehashingAuthenticationProvider extends DaoAuthenticationProvider {
+
+    private final Logger log = LoggerFactory.getLogger(RehashingAuthenticationProvider.class);
+
+    private final DomainUserDetailsService userDetailsService;
+
+    private final HashingPasswordEncoder passwordEncoder;
+
+    public RehashingAuthenticationProvider(DomainUserDetailsService userDetailsService,
+                                           HashingPasswordEncoder passwordEncoder) {
+        this.userDetailsService = userDetailsService;
+        this.passwordEncoder = passwordEncoder;
+        setUserDetailsService(userDetailsService);
+        setPasswordEncoder(passwordEncoder);
+    }
+
+    @Override
+    protected Authentication createSuccessAuthentication(Object principal, Authentication authentication,
+                                                         UserDetails user) {
+        if (authentication.getCredentials() != null && passwordEncoder.upgradeEncoding(user.getPassword())) {
+            try {
+                String encodedPassword = passwordEncoder.encode(authentication.getCredentials().toString());
+                userDetailsService.updatePassword(user.getUsername(), encodedPassword);
+            } catch (RuntimeException e) {
+                log.warn("Could not rehash the password of {}: {}", user.getUsername(), e.getMessage());
+            }
+        }
+        return super.createSuccessAuthentication(principal, authentication, user);
+    }
+}
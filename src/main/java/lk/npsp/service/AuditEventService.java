@@ -1,35 +1,55 @@
 package lk.npsp.service;
 
+import lk.npsp.config.audit.AuditEventArchive;
 import lk.npsp.config.audit.AuditEventConverter;
+import lk.npsp.domain.PersistentAuditEvent;
 import lk.npsp.repository.PersistenceAuditEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.boot.actuate.audit.AuditEvent;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
-import java.util.Optional;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Service for managing audit events.
  * <p>
  * This is the default implementation to support SpringBoot Actuator AuditEventRepository
+ * <p>
+ * Events older than the retention window are moved to the {@link AuditEventArchive} one day at a time.
+ * {@link #findByDates(Instant, Instant, Pageable)} reads the archive as well when the range covers archived days.
  */
 @Service
 @Transactional
 public class AuditEventService {
 
+    private final Logger log = LoggerFactory.getLogger(AuditEventService.class);
+
     private final PersistenceAuditEventRepository persistenceAuditEventRepository;
 
     private final AuditEventConverter auditEventConverter;
 
+    private final AuditEventArchive auditEventArchive;
+
     public AuditEventService(
         PersistenceAuditEventRepository persistenceAuditEventRepository,
-        AuditEventConverter auditEventConverter) {
+        AuditEventConverter auditEventConverter,
+        AuditEventArchive auditEventArchive) {
 
         this.persistenceAuditEventRepository = persistenceAuditEventRepository;
         this.auditEventConverter = auditEventConverter;
+        this.auditEventArchive = auditEventArchive;
     }
 
     public Page<AuditEvent> findAll(Pageable pageable) {
@@ -37,9 +57,60 @@ public class AuditEventService {
             .map(auditEventConverter::convertToAuditEvent);
     }
 
+    /**
+     * Find the events of a date range, in the database and the archive.
+     * <p>
+     * When the range covers archived days, a page at offset o of size n is among the first o + n events of either
+     * side, so only that many are read from the database, in the page's order, and merged with the archived ones.
+     *
+     * @param fromDate the start of the range
+     * @param toDate the end of the range
+     * @param pageable the page to return
+     * @return the page
+     */
     public Page<AuditEvent> findByDates(Instant fromDate, Instant toDate, Pageable pageable) {
-        return persistenceAuditEventRepository.findAllByAuditEventDateBetween(fromDate, toDate, pageable)
-            .map(auditEventConverter::convertToAuditEvent);
+        SortedSet<LocalDate> archivedDays = auditEventArchive.findDaysBetween(fromDate, toDate);
+        if (archivedDays.isEmpty()) {
+            return persistenceAuditEventRepository.findAllByAuditEventDateBetween(fromDate, toDate, pageable)
+                .map(auditEventConverter::convertToAuditEvent);
+        }
+        Sort sort = pageable.getSort().isSorted() ? pageable.getSort() : Sort.by("auditEventDate");
+        Comparator<PersistentAuditEvent> comparator = comparator(sort);
+
+        List<PersistentAuditEvent> live;
+        long liveTotal;
+        int window;
+        if (pageable.isPaged()) {
+            window = (int) Math.min(Integer.MAX_VALUE, pageable.getOffset() + pageable.getPageSize());
+            Page<PersistentAuditEvent> livePage = persistenceAuditEventRepository
+                .findAllByAuditEventDateBetween(fromDate, toDate, PageRequest.of(0, window, sort));
+            live = livePage.getContent();
+            liveTotal = livePage.getTotalElements();
+        } else {
+            live = persistenceAuditEventRepository.findAllWithDataByAuditEventDateBetween(fromDate, toDate);
+            liveTotal = live.size();
+            window = Integer.MAX_VALUE;
+        }
+
+        // a day archived but not yet deleted when the job failed is in both places
+        Set<Long> liveArchivedIds = new HashSet<>(persistenceAuditEventRepository.findIdsByAuditEventDateRange(
+            archivedDays.first().atStartOfDay(ZoneOffset.UTC).toInstant(),
+            archivedDays.last().plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant()));
+        List<PersistentAuditEvent> archived = auditEventArchive.findAllByAuditEventDateBetween(fromDate, toDate).stream()
+            .filter(event -> !liveArchivedIds.contains(event.getId()))
+            .sorted(comparator)
+            .collect(Collectors.toList());
+
+        List<PersistentAuditEvent> events = new ArrayList<>(live);
+        events.addAll(archived.subList(0, Math.min(window, archived.size())));
+        events.sort(comparator);
+
+        List<PersistentAuditEvent> content = events;
+        if (pageable.isPaged()) {
+            int from = (int) Math.min(pageable.getOffset(), events.size());
+            content = events.subList(from, Math.min(from + pageable.getPageSize(), events.size()));
+        }
+        return new PageImpl<>(auditEventConverter.convertToAuditEvent(content), pageable, liveTotal + archived.size());
     }
 
     public Optional<AuditEvent> find(Long id) {
@@ -48,4 +119,73 @@ public class AuditEventService {
             .map(Optional::get)
             .map(auditEventConverter::convertToAuditEvent);
     }
+
+    /**
+     * @return the UTC day of the oldest event in the database, or empty if there are none
+     */
+    @Transactional(readOnly = true)
+    public Optional<LocalDate> findOldestLiveDay() {
+        return Optional.ofNullable(persistenceAuditEventRepository.findOldestAuditEventDate())
+            .map(date -> date.atOffset(ZoneOffset.UTC).toLocalDate());
+    }
+
+    /**
+     * Move the events of one UTC day from the database to the archive.
+     * <p>
+     * The archive file is written before anything is deleted; if the delete fails the day is archived again on the
+     * next run, and the archive merges it by id.
+     *
+     * @param day the day to archive
+     * @return the number of events archived
+     */
+    public int archiveDay(LocalDate day) {
+        Instant fromDate = day.atStartOfDay(ZoneOffset.UTC).toInstant();
+        Instant toDate = day.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        List<PersistentAuditEvent> events = persistenceAuditEventRepository
+            .findAllWithDataByAuditEventDateBetween(fromDate, toDate).stream()
+            .filter(event -> event.getAuditEventDate().isBefore(toDate))
+            .collect(Collectors.toList());
+        if (!events.isEmpty()) {
+            auditEventArchive.write(day, events);
+        }
+        persistenceAuditEventRepository.deleteDataByAuditEventDateRange(fromDate, toDate);
+        int deleted = persistenceAuditEventRepository.deleteByAuditEventDateRange(fromDate, toDate);
+        log.debug("Archived {} audit events of {}, deleted {}", events.size(), day, deleted);
+        return events.size();
+    }
+
+    private static Comparator<PersistentAuditEvent> comparator(Sort sort) {
+        Comparator<PersistentAuditEvent> comparator = null;
+        for (Sort.Order order : sort) {
+            Comparator<PersistentAuditEvent> next = comparator(order.getProperty());
+            if (next == null) {
+                continue;
+            }
+            if (order.isDescending()) {
+                next = next.reversed();
+            }
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        return comparator == null ? comparator("auditEventDate") : comparator;
+    }
+
+    private static Comparator<PersistentAuditEvent> comparator(String property) {
+        switch (property) {
+            case "id":
+                return nullsFirst(PersistentAuditEvent::getId);
+            case "principal":
+                return nullsFirst(PersistentAuditEvent::getPrincipal);
+            case "auditEventDate":
+                return nullsFirst(PersistentAuditEvent::getAuditEventDate);
+            case "auditEventType":
+                return nullsFirst(PersistentAuditEvent::getAuditEventType);
+            default:
+                return null;
+        }
+    }
+
+    private static <T extends Comparable<? super T>> Comparator<PersistentAuditEvent> nullsFirst(
+        Function<PersistentAuditEvent, T> key) {
+        return Comparator.comparing(key, Comparator.nullsFirst(Comparator.naturalOrder()));
+    }
 }
@@ -0,0 +1,266 @@
+package lk.npsp.service;
+
+import lk.npsp.config.ApplicationProperties;
+import lk.npsp.domain.ScheduleInstance;
+import lk.npsp.domain.enumeration.ScheduleState;
+import lk.npsp.repository.BayRepository;
+import lk.npsp.repository.ScheduleInstanceRepository;
+import lk.npsp.service.dto.BayConflictDTO;
+import lk.npsp.service.dto.BayPlanDTO;
+import lk.npsp.service.dto.BayReassignmentDTO;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks that no two departures of a day occupy the same bay at once, and moves departures to free bays when they do.
+ * <p>
+ * A departure occupies its bay from boarding-minutes-before its actual scheduled time to departed-minutes-after it,
+ * the window in which {@link ScheduleStateWheel} shows it boarding; cancelled departures occupy nothing. The day is
+ * read through one projection query and sorted by start of occupancy, so conflicts are found in O(n log n): each
+ * departure is checked against the one reaching furthest in its bay so far.
+ * <p>
+ * Reassignments are planned greedily in the same order, with the occupancy of each bay kept as a set of disjoint
+ * intervals. Boarding and departed departures keep their bay; any other departure keeps its bay if free, and otherwise
+ * goes to the free bay whose previous departure ends last, which leaves the longer gaps to later departures. A
+ * departure for which no bay is free keeps its own and is reported unresolved.
+ */
+@Service
+public class BayAllocator {
+
+    private static final Comparator<Occupancy> ORDER = Comparator.comparingLong((Occupancy occupancy) -> occupancy.start)
+        .thenComparingLong(occupancy -> occupancy.id);
+
+    private final Logger log = LoggerFactory.getLogger(BayAllocator.class);
+
+    private final ScheduleInstanceRepository scheduleInstanceRepository;
+
+    private final BayRepository bayRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final ApplicationProperties applicationProperties;
+
+    private final DomainMetrics domainMetrics;
+
+    public BayAllocator(ScheduleInstanceRepository scheduleInstanceRepository, BayRepository bayRepository,
+                        PlatformTransactionManager transactionManager, ApplicationEventPublisher eventPublisher,
+                        ApplicationProperties applicationProperties, DomainMetrics domainMetrics) {
+        this.scheduleInstanceRepository = scheduleInstanceRepository;
+        this.bayRepository = bayRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.applicationProperties = applicationProperties;
+        this.domainMetrics = domainMetrics;
+    }
+
+    /**
+     * Check the bay assignments of a day, without changing them.
+     *
+     * @param date the day
+     * @return the conflicts, and the reassignments that would resolve them
+     */
+    public BayPlanDTO plan(LocalDate date) {
+        long start = domainMetrics.monotonicTime();
+        List<Occupancy> occupancies = readOccupancies(date);
+        BayPlanDTO plan = new BayPlanDTO(date, occupancies.size());
+        findConflicts(occupancies, plan.getConflicts());
+        if (!plan.getConflicts().isEmpty()) {
+            planReassignments(occupancies, bayRepository.findAllIds(), plan);
+        }
+        domainMetrics.recordBayPlan(start, plan.getConflicts().size());
+        return plan;
+    }
+
+    /**
+     * Check the bay assignments of a day and move the departures in conflict to free bays.
+     *
+     * @param date the day
+     * @return the conflicts found, and the reassignments made
+     */
+    public BayPlanDTO reassign(LocalDate date) {
+        BayPlanDTO plan = plan(date);
+        List<Long> moved = save(plan.getReassignments());
+        if (!moved.isEmpty()) {
+            eventPublisher.publishEvent(new ScheduleInstancesChangedEvent(moved, false));
+        }
+        return plan;
+    }
+
+    /**
+     * Move the departures left in conflict by a change to free bays, when reallocate-bays is on. The moves are written
+     * in the caller's transaction when there is one.
+     *
+     * @param date the day of the change
+     * @return the ids of the departures moved, for the caller to publish with its change
+     */
+    public List<Long> reassignAfterChange(LocalDate date) {
+        if (date == null || !applicationProperties.getDelays().isReallocateBays()) {
+            return Collections.emptyList();
+        }
+        return save(plan(date).getReassignments());
+    }
+
+    private List<Occupancy> readOccupancies(LocalDate date) {
+        long before = TimeUnit.MINUTES.toSeconds(applicationProperties.getTransitions().getBoardingMinutesBefore());
+        long after = TimeUnit.MINUTES.toSeconds(applicationProperties.getTransitions().getDepartedMinutesAfter());
+        List<Occupancy> occupancies = new ArrayList<>();
+        for (ScheduleInstanceRepository.Timing timing : scheduleInstanceRepository.findTimingsByDate(date)) {
+            if (timing.getBayId() == null || timing.getActualScheduledTime() == null ||
+                timing.getScheduleState() == ScheduleState.CANCELLED) {
+                continue;
+            }
+            long actual = timing.getActualScheduledTime().getEpochSecond();
+            boolean fixed = timing.getScheduleState() == ScheduleState.BOARDING ||
+                timing.getScheduleState() == ScheduleState.DEPARTED;
+            // an empty window still holds the bay for a moment
+            occupancies.add(new Occupancy(timing.getId(), timing.getBayId(), actual - before,
+                Math.max(actual + after, actual - before + 1), fixed));
+        }
+        occupancies.sort(ORDER);
+        return occupancies;
+    }
+
+    /**
+     * Report each departure that starts before the departure reaching furthest in its bay has left.
+     */
+    private static void findConflicts(List<Occupancy> sorted, List<BayConflictDTO> conflicts) {
+        Map<Long, Occupancy> furthest = new HashMap<>();
+        for (Occupancy occupancy : sorted) {
+            Occupancy previous = furthest.get(occupancy.bayId);
+            if (previous != null && occupancy.start < previous.end) {
+                conflicts.add(new BayConflictDTO(occupancy.bayId, previous.id, occupancy.id,
+                    Instant.ofEpochSecond(occupancy.start), Instant.ofEpochSecond(Math.min(previous.end, occupancy.end))));
+            }
+            if (previous == null || occupancy.end > previous.end) {
+                furthest.put(occupancy.bayId, occupancy);
+            }
+        }
+    }
+
+    private static void planReassignments(List<Occupancy> sorted, List<Long> bayIds, BayPlanDTO plan) {
+        Map<Long, TreeMap<Long, Long>> occupied = new HashMap<>();
+        for (Occupancy occupancy : sorted) {
+            if (occupancy.fixed) {
+                occupy(occupied, occupancy.bayId, occupancy.start, occupancy.end);
+            }
+        }
+        for (Occupancy occupancy : sorted) {
+            if (occupancy.fixed) {
+                continue;
+            }
+            if (isFree(occupied, occupancy.bayId, occupancy.start, occupancy.end)) {
+                occupy(occupied, occupancy.bayId, occupancy.start, occupancy.end);
+                continue;
+            }
+            Long bestBayId = null;
+            long bestFit = Long.MIN_VALUE;
+            for (Long bayId : bayIds) {
+                if (bayId.equals(occupancy.bayId) || !isFree(occupied, bayId, occupancy.start, occupancy.end)) {
+                    continue;
+                }
+                long fit = previousEnd(occupied, bayId, occupancy.start);
+                if (bestBayId == null || fit > bestFit) {
+                    bestBayId = bayId;
+                    bestFit = fit;
+                }
+            }
+            if (bestBayId == null) {
+                plan.getUnresolved().add(occupancy.id);
+                occupy(occupied, occupancy.bayId, occupancy.start, occupancy.end);
+            } else {
+                plan.getReassignments().add(new BayReassignmentDTO(occupancy.id, occupancy.bayId, bestBayId));
+                occupy(occupied, bestBayId, occupancy.start, occupancy.end);
+            }
+        }
+    }
+
+    private static boolean isFree(Map<Long, TreeMap<Long, Long>> occupied, Long bayId, long start, long end) {
+        TreeMap<Long, Long> intervals = occupied.get(bayId);
+        Map.Entry<Long, Long> before = intervals == null ? null : intervals.lowerEntry(end);
+        return before == null || before.getValue() <= start;
+    }
+
+    /**
+     * @return the end of the last occupancy of a bay finished by an instant, or the smallest long if there is none
+     */
+    private static long previousEnd(Map<Long, TreeMap<Long, Long>> occupied, Long bayId, long start) {
+        TreeMap<Long, Long> intervals = occupied.get(bayId);
+        Map.Entry<Long, Long> before = intervals == null ? null : intervals.floorEntry(start);
+        return before == null ? Long.MIN_VALUE : before.getValue();
+    }
+
+    /**
+     * Add an interval to the occupancy of a bay, merging it with those it overlaps so the intervals stay disjoint.
+     */
+    private static void occupy(Map<Long, TreeMap<Long, Long>> occupied, Long bayId, long start, long end) {
+        TreeMap<Long, Long> intervals = occupied.computeIfAbsent(bayId, id -> new TreeMap<>());
+        Map.Entry<Long, Long> overlapping = intervals.lowerEntry(end);
+        while (overlapping != null && overlapping.getValue() > start) {
+            start = Math.min(start, overlapping.getKey());
+            end = Math.max(end, overlapping.getValue());
+            intervals.remove(overlapping.getKey());
+            overlapping = intervals.lowerEntry(end);
+        }
+        intervals.put(start, end);
+    }
+
+    /**
+     * Move the departures, reading them again in one transaction so they are updated in JDBC batches.
+     *
+     * @return the ids of the departures moved
+     */
+    private List<Long> save(List<BayReassignmentDTO> reassignments) {
+        if (reassignments.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, Long> bayIdById = new HashMap<>();
+        reassignments.forEach(reassignment ->
+            bayIdById.put(reassignment.getScheduleInstanceId(), reassignment.getToBayId()));
+        List<Long> moved = new ArrayList<>(reassignments.size());
+        transactionTemplate.execute(status -> {
+            for (ScheduleInstance instance : scheduleInstanceRepository.findAllById(bayIdById.keySet())) {
+                instance.setBay(bayRepository.getOne(bayIdById.get(instance.getId())));
+                moved.add(instance.getId());
+            }
+            return null;
+        });
+        log.debug("Moved {} departures to free bays", moved.size());
+        return moved;
+    }
+
+    /**
+     * The time a departure holds its bay, in epoch seconds, end excluded.
+     */
+    private static final class Occupancy {
+
+        private final long id;
+
+        private final Long bayId;
+
+        private final long start;
+
+        private final long end;
+
+        private final boolean fixed;
+
+        Occupancy(long id, Long bayId, long start, long end, boolean fixed) {
+            this.id = id;
+            this.bayId = bayId;
+            this.start = start;
+            this.end = end;
+            this.fixed = fixed;
+        }
+    }
+}
@@ -0,0 +1,530 @@
+package lk.npsp.service;
+
+import lk.npsp.aop.logging.ExcludeFromLogging;
+import lk.npsp.domain.ScheduleInstance;
+import lk.npsp.repository.ScreenScheduleRepository;
+import lk.npsp.repository.TransportTypeRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * In-memory timetable of the day's departures, answering "what leaves next" for a bay, a transport type, a route or
+ * the whole station without going to the database.
+ * <p>
+ * Every instance departing from the start of the day to the end of the next one, in the station's time zone (see
+ * {@link lk.npsp.config.ApplicationProperties#getTimeZone()}), is held with everything a screen row needs. For each
+ * bay, transport type and route the departures are kept as parallel arrays of epoch seconds and instance ids, sorted
+ * by actual scheduled time, so a next-N lookup is one binary search followed by an array copy. Bay and route ids are
+ * resolved by binary search over sorted id arrays, so lookups do no boxing.
+ * <p>
+ * The timetable is an immutable snapshot, replaced on every change, so reads never lock. It is loaded on first use,
+ * rebuilt at midnight and whenever a route changes, and patched in place for each
+ * {@link ScheduleInstancesChangedEvent}. Rebuilds caused by changes run on the cache refresh executor, so the request
+ * that made the change does not wait for them; the previous snapshot answers until then. Renamed bays, locations and
+ * transport types show after the next rebuild, as do new transport types.
+ * Queries for departures outside the loaded days are not covered; see {@link #covers(Instant)}.
+ */
+@Service
+@ExcludeFromLogging
+public class DayTimetable {
+
+    /**
+     * Days held from the start of the current one, so late in the evening the screens still find the next morning's
+     * departures.
+     */
+    private static final int WINDOW_DAYS = 2;
+
+    /**
+     * Above this many changed instances a full rebuild is cheaper than patching the arrays one instance at a time.
+     */
+    private static final int MAX_PATCH_SIZE = 64;
+
+    private final Logger log = LoggerFactory.getLogger(DayTimetable.class);
+
+    private final ScreenScheduleRepository screenScheduleRepository;
+
+    private final TransportTypeRepository transportTypeRepository;
+
+    private final Executor cacheRefreshExecutor;
+
+    private final ZoneId zone;
+
+    private final AtomicBoolean reloadPending = new AtomicBoolean();
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * The meta codes of every transport type, read with each rebuild.
+     */
+    private volatile Set<String> transportTypes = Collections.emptySet();
+
+    public DayTimetable(ScreenScheduleRepository screenScheduleRepository,
+                        TransportTypeRepository transportTypeRepository,
+                        @Qualifier("cacheRefreshExecutor") Executor cacheRefreshExecutor, ZoneId zone) {
+        this.screenScheduleRepository = screenScheduleRepository;
+        this.transportTypeRepository = transportTypeRepository;
+        this.cacheRefreshExecutor = cacheRefreshExecutor;
+        this.zone = zone;
+    }
+
+    /**
+     * Check whether an instant falls in the days the timetable holds.
+     *
+     * @param after the instant
+     * @return true if lookups from that instant can be answered from memory
+     */
+    public boolean covers(Instant after) {
+        Snapshot current = getSnapshot();
+        return after.getEpochSecond() >= current.windowStart && after.getEpochSecond() < current.windowEnd;
+    }
+
+    /**
+     * Find the next departures from a bay.
+     *
+     * @param bayId the bay
+     * @param after only departures scheduled strictly after this instant are returned
+     * @param count the maximum number of departures to return
+     * @return the departures, soonest first
+     */
+    public List<ScheduleInstance> findNextByBay(long bayId, Instant after, int count) {
+        return getSnapshot().byBay.get(bayId).next(after.getEpochSecond(), count);
+    }
+
+    /**
+     * Check whether a transport type exists, as of the last rebuild.
+     *
+     * @param metaCode the transport type's meta code
+     * @return true if a transport type has this meta code
+     */
+    public boolean isTransportType(String metaCode) {
+        getSnapshot();
+        return transportTypes.contains(metaCode);
+    }
+
+    /**
+     * Find the next departures of a transport type.
+     *
+     * @param metaCode the transport type's meta code
+     * @param after only departures scheduled strictly after this instant are returned
+     * @param count the maximum number of departures to return
+     * @return the departures, soonest first
+     */
+    public List<ScheduleInstance> findNextByTransportType(String metaCode, Instant after, int count) {
+        return getSnapshot().byTransportType.getOrDefault(metaCode, Departures.EMPTY).next(after.getEpochSecond(), count);
+    }
+
+    /**
+     * Find the next departures on a route.
+     *
+     * @param routeId the route
+     * @param after only departures scheduled strictly after this instant are returned
+     * @param count the maximum number of departures to return
+     * @return the departures, soonest first
+     */
+    public List<ScheduleInstance> findNextByRoute(long routeId, Instant after, int count) {
+        return getSnapshot().byRoute.get(routeId).next(after.getEpochSecond(), count);
+    }
+
+    /**
+     * Find the next departures from any bay.
+     *
+     * @param after only departures scheduled strictly after this instant are returned
+     * @param count the maximum number of departures to return
+     * @return the departures, soonest first
+     */
+    public List<ScheduleInstance> findNext(Instant after, int count) {
+        return getSnapshot().all.next(after.getEpochSecond(), count);
+    }
+
+    /**
+     * Rebuild the timetable from the database, starting at the beginning of the current day.
+     */
+    @Scheduled(cron = "0 0 0 * * ?", zone = "${application.time-zone}")
+    public synchronized void reload() {
+        LocalDate today = LocalDate.now(zone);
+        long windowStart = today.atStartOfDay(zone).toEpochSecond();
+        long windowEnd = today.plusDays(WINDOW_DAYS).atStartOfDay(zone).toEpochSecond();
+        List<ScheduleInstance> instances = screenScheduleRepository.findScheduleInstancesBetween(
+            Instant.ofEpochSecond(windowStart), Instant.ofEpochSecond(windowEnd));
+        transportTypes = new HashSet<>(transportTypeRepository.findAllMetaCodes());
+        snapshot = new Snapshot(windowStart, windowEnd, instances);
+        log.debug("Loaded day timetable with {} departures", snapshot.byId.size());
+    }
+
+    /**
+     * Patch the timetable with instances written since it was loaded.
+     *
+     * @param event the change
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onScheduleInstancesChanged(ScheduleInstancesChangedEvent event) {
+        if (snapshot == null || event.getScheduleInstanceIds().isEmpty()) {
+            // not loaded yet, the first query reads the change from the database
+            return;
+        }
+        if (event.getScheduleInstanceIds().size() > MAX_PATCH_SIZE) {
+            reloadInBackground();
+            return;
+        }
+        List<ScheduleInstance> changed = event.isDeleted() ? Collections.emptyList() :
+            screenScheduleRepository.findScheduleInstancesByIdIn(event.getScheduleInstanceIds());
+        synchronized (this) {
+            Snapshot current = snapshot;
+            for (Long id : event.getScheduleInstanceIds()) {
+                current = current.without(id);
+            }
+            for (ScheduleInstance instance : changed) {
+                current = current.with(instance);
+            }
+            snapshot = current;
+        }
+        log.debug("Patched day timetable with {}", event);
+    }
+
+    /**
+     * Rebuild the timetable when a route changes, as every departure on it shows the route's destination.
+     *
+     * @param event the change
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRouteChanged(RouteChangedEvent event) {
+        if (snapshot != null) {
+            reloadInBackground();
+        }
+    }
+
+    /**
+     * Queue a rebuild, unless one is already queued: it reads the database after the changes that asked for it.
+     */
+    private void reloadInBackground() {
+        if (!reloadPending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            cacheRefreshExecutor.execute(() -> {
+                reloadPending.set(false);
+                reload();
+            });
+        } catch (RuntimeException e) {
+            reloadPending.set(false);
+            log.warn("Could not queue a day timetable rebuild, rebuilding now: {}", e.getMessage());
+            reload();
+        }
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    reload();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    private static Long bayId(ScheduleInstance instance) {
+        return instance.getBay() == null ? null : instance.getBay().getId();
+    }
+
+    private static Long routeId(ScheduleInstance instance) {
+        return instance.getRoute() == null ? null : instance.getRoute().getId();
+    }
+
+    private static String transportType(ScheduleInstance instance) {
+        return instance.getVehicle() == null || instance.getVehicle().getTransportType() == null ? null :
+            instance.getVehicle().getTransportType().getMetaCode();
+    }
+
+    /**
+     * Immutable timetable. Patching returns a new snapshot sharing every departure list it did not touch.
+     */
+    private static final class Snapshot {
+
+        private final long windowStart;
+
+        private final long windowEnd;
+
+        private final Map<Long, ScheduleInstance> byId;
+
+        private final Departures all;
+
+        private final LongKeyed byBay;
+
+        private final LongKeyed byRoute;
+
+        private final Map<String, Departures> byTransportType;
+
+        Snapshot(long windowStart, long windowEnd, List<ScheduleInstance> instances) {
+            this.windowStart = windowStart;
+            this.windowEnd = windowEnd;
+            List<ScheduleInstance> sorted = new ArrayList<>(instances.size());
+            for (ScheduleInstance instance : instances) {
+                if (isInWindow(instance)) {
+                    sorted.add(instance);
+                }
+            }
+            sorted.sort(Departures.ORDER);
+            byId = new HashMap<>();
+            for (ScheduleInstance instance : sorted) {
+                byId.put(instance.getId(), instance);
+            }
+            all = Departures.of(sorted);
+            byBay = LongKeyed.of(group(sorted, DayTimetable::bayId));
+            byRoute = LongKeyed.of(group(sorted, DayTimetable::routeId));
+            byTransportType = new HashMap<>();
+            group(sorted, DayTimetable::transportType).forEach((type, departures) ->
+                byTransportType.put(type, Departures.of(departures)));
+        }
+
+        private Snapshot(long windowStart, long windowEnd, Map<Long, ScheduleInstance> byId, Departures all,
+                         LongKeyed byBay, LongKeyed byRoute, Map<String, Departures> byTransportType) {
+            this.windowStart = windowStart;
+            this.windowEnd = windowEnd;
+            this.byId = byId;
+            this.all = all;
+            this.byBay = byBay;
+            this.byRoute = byRoute;
+            this.byTransportType = byTransportType;
+        }
+
+        Snapshot without(Long id) {
+            ScheduleInstance previous = byId.get(id);
+            if (previous == null) {
+                return this;
+            }
+            Map<Long, ScheduleInstance> newById = new HashMap<>(byId);
+            newById.remove(id);
+            LongKeyed newByBay = byBay;
+            LongKeyed newByRoute = byRoute;
+            Map<String, Departures> newByTransportType = byTransportType;
+            if (bayId(previous) != null) {
+                newByBay = byBay.with(bayId(previous), byBay.get(bayId(previous)).without(id));
+            }
+            if (routeId(previous) != null) {
+                newByRoute = byRoute.with(routeId(previous), byRoute.get(routeId(previous)).without(id));
+            }
+            String type = transportType(previous);
+            if (type != null) {
+                newByTransportType = new HashMap<>(byTransportType);
+                newByTransportType.put(type, byTransportType.get(type).without(id));
+            }
+            return new Snapshot(windowStart, windowEnd, newById, all.without(id), newByBay, newByRoute,
+                newByTransportType);
+        }
+
+        Snapshot with(ScheduleInstance instance) {
+            if (!isInWindow(instance)) {
+                return this;
+            }
+            Map<Long, ScheduleInstance> newById = new HashMap<>(byId);
+            newById.put(instance.getId(), instance);
+            LongKeyed newByBay = byBay;
+            LongKeyed newByRoute = byRoute;
+            Map<String, Departures> newByTransportType = byTransportType;
+            if (bayId(instance) != null) {
+                newByBay = byBay.with(bayId(instance), byBay.get(bayId(instance)).with(instance));
+            }
+            if (routeId(instance) != null) {
+                newByRoute = byRoute.with(routeId(instance), byRoute.get(routeId(instance)).with(instance));
+            }
+            String type = transportType(instance);
+            if (type != null) {
+                newByTransportType = new HashMap<>(byTransportType);
+                newByTransportType.put(type, byTransportType.getOrDefault(type, Departures.EMPTY).with(instance));
+            }
+            return new Snapshot(windowStart, windowEnd, newById, all.with(instance), newByBay, newByRoute,
+                newByTransportType);
+        }
+
+        private boolean isInWindow(ScheduleInstance instance) {
+            return instance.getActualScheduledTime() != null &&
+                instance.getActualScheduledTime().getEpochSecond() >= windowStart &&
+                instance.getActualScheduledTime().getEpochSecond() < windowEnd;
+        }
+
+        private static <K> Map<K, List<ScheduleInstance>> group(List<ScheduleInstance> sorted,
+                                                                Function<ScheduleInstance, K> key) {
+            Map<K, List<ScheduleInstance>> groups = new HashMap<>();
+            for (ScheduleInstance instance : sorted) {
+                K value = key.apply(instance);
+                if (value != null) {
+                    groups.computeIfAbsent(value, k -> new ArrayList<>()).add(instance);
+                }
+            }
+            return groups;
+        }
+    }
+
+    /**
+     * Departures sorted by actual scheduled time, then id, as parallel arrays.
+     */
+    private static final class Departures {
+
+        static final Departures EMPTY = new Departures(new long[0], new long[0], new ScheduleInstance[0]);
+
+        static final Comparator<ScheduleInstance> ORDER = Comparator
+            .comparing((ScheduleInstance instance) -> instance.getActualScheduledTime().getEpochSecond())
+            .thenComparing(ScheduleInstance::getId);
+
+        private final long[] seconds;
+
+        private final long[] instanceIds;
+
+        private final ScheduleInstance[] instances;
+
+        private Departures(long[] seconds, long[] instanceIds, ScheduleInstance[] instances) {
+            this.seconds = seconds;
+            this.instanceIds = instanceIds;
+            this.instances = instances;
+        }
+
+        static Departures of(List<ScheduleInstance> sorted) {
+            int size = sorted.size();
+            long[] seconds = new long[size];
+            long[] instanceIds = new long[size];
+            ScheduleInstance[] instances = sorted.toArray(new ScheduleInstance[size]);
+            for (int i = 0; i < size; i++) {
+                seconds[i] = instances[i].getActualScheduledTime().getEpochSecond();
+                instanceIds[i] = instances[i].getId();
+            }
+            return new Departures(seconds, instanceIds, instances);
+        }
+
+        List<ScheduleInstance> next(long after, int count) {
+            int from = firstAfter(after);
+            int to = (int) Math.min((long) from + count, seconds.length);
+            return from >= to ? new ArrayList<>() : new ArrayList<>(Arrays.asList(instances).subList(from, to));
+        }
+
+        /**
+         * Index of the first departure strictly after a second, or the length if there is none.
+         */
+        int firstAfter(long after) {
+            int low = 0;
+            int high = seconds.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (seconds[middle] <= after) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        Departures without(long id) {
+            for (int i = 0; i < instanceIds.length; i++) {
+                if (instanceIds[i] == id) {
+                    return new Departures(remove(seconds, i), remove(instanceIds, i), remove(instances, i));
+                }
+            }
+            return this;
+        }
+
+        Departures with(ScheduleInstance instance) {
+            long second = instance.getActualScheduledTime().getEpochSecond();
+            long id = instance.getId();
+            int position = firstAfter(second - 1);
+            while (position < seconds.length && seconds[position] == second && instanceIds[position] < id) {
+                position++;
+            }
+            return new Departures(insert(seconds, position, second), insert(instanceIds, position, id),
+                insert(instances, position, instance));
+        }
+
+        private static long[] remove(long[] values, int index) {
+            long[] result = new long[values.length - 1];
+            System.arraycopy(values, 0, result, 0, index);
+            System.arraycopy(values, index + 1, result, index, result.length - index);
+            return result;
+        }
+
+        private static ScheduleInstance[] remove(ScheduleInstance[] values, int index) {
+            ScheduleInstance[] result = new ScheduleInstance[values.length - 1];
+            System.arraycopy(values, 0, result, 0, index);
+            System.arraycopy(values, index + 1, result, index, result.length - index);
+            return result;
+        }
+
+        private static long[] insert(long[] values, int index, long value) {
+            long[] result = new long[values.length + 1];
+            System.arraycopy(values, 0, result, 0, index);
+            result[index] = value;
+            System.arraycopy(values, index, result, index + 1, values.length - index);
+            return result;
+        }
+
+        private static ScheduleInstance[] insert(ScheduleInstance[] values, int index, ScheduleInstance value) {
+            ScheduleInstance[] result = new ScheduleInstance[values.length + 1];
+            System.arraycopy(values, 0, result, 0, index);
+            result[index] = value;
+            System.arraycopy(values, index, result, index + 1, values.length - index);
+            return result;
+        }
+    }
+
+    /**
+     * Departure lists keyed by a primitive id, held as a sorted id array and a parallel array of lists.
+     */
+    private static final class LongKeyed {
+
+        private final long[] keys;
+
+        private final Departures[] values;
+
+        private LongKeyed(long[] keys, Departures[] values) {
+            this.keys = keys;
+            this.values = values;
+        }
+
+        static LongKeyed of(Map<Long, List<ScheduleInstance>> groups) {
+            long[] keys = groups.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+            Departures[] values = new Departures[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                values[i] = Departures.of(groups.get(keys[i]));
+            }
+            return new LongKeyed(keys, values);
+        }
+
+        Departures get(long key) {
+            int index = Arrays.binarySearch(keys, key);
+            return index < 0 ? Departures.EMPTY : values[index];
+        }
+
+        LongKeyed with(long key, Departures value) {
+            int index = Arrays.binarySearch(keys, key);
+            if (index >= 0) {
+                Departures[] newValues = values.clone();
+                newValues[index] = value;
+                return new LongKeyed(keys, newValues);
+            }
+            int position = -index - 1;
+            long[] newKeys = new long[keys.length + 1];
+            Departures[] newValues = new Departures[values.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, position);
+            System.arraycopy(values, 0, newValues, 0, position);
+            newKeys[position] = key;
+            newValues[position] = value;
+            System.arraycopy(keys, position, newKeys, position + 1, keys.length - position);
+            System.arraycopy(values, position, newValues, position + 1, values.length - position);
+            return new LongKeyed(newKeys, newValues);
+        }
+    }
+}
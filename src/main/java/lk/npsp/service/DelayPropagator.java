@@ -0,0 +1,359 @@
+package lk.npsp.service;
+
+import lk.npsp.config.ApplicationProperties;
+import lk.npsp.domain.ScheduleInstance;
+import lk.npsp.domain.enumeration.ScheduleState;
+import lk.npsp.repository.ScheduleInstanceRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * Moves the later departures of a vehicle and of a bay when one of their departures is delayed.
+ * <p>
+ * The day's instances are held in memory as chains, one per vehicle and one per bay, ordered by planned time. When an
+ * instance's actual scheduled time changes, its successors are recomputed in one pass in planned order, so each is
+ * visited once and only after all its predecessors; the pass stops along a chain as soon as an instance does not move.
+ * An instance departs no earlier than:
+ * <ul>
+ * <li>its own time, the actual scheduled time last set by an operator, or its planned time;</li>
+ * <li>the previous departure of its vehicle plus the planned gap between them, less vehicle-recovery-minutes, which
+ * the vehicle makes up by turning around faster;</li>
+ * <li>the previous departure from its bay plus bay-headway-minutes, or the planned gap between them if shorter.</li>
+ * </ul>
+ * Instances moved later than planned become DELAYED, and DELAYED instances moved back to their planned time become
+ * PENDING again. Boarding and departed instances do not move but still hold back the ones after them; cancelled ones
+ * are left out of the chains. The moved instances are written in one transaction, the caller's when there is one, so
+ * they are updated in JDBC batches and reach the screens as one change; if that transaction does not commit, the
+ * chains are read again.
+ * <p>
+ * The chains are loaded on first use and again when the day changes or a change could not be applied, and kept up to
+ * date from {@link ScheduleInstancesChangedEvent}s. Only one instance of the application should change schedules
+ * while propagation is enabled, as the chains of the others would not see the moves.
+ */
+@Service
+public class DelayPropagator {
+
+    /**
+     * Above this many changed instances reloading the chains is cheaper than applying the change one instance at a time.
+     */
+    private static final int MAX_PATCH_SIZE = 64;
+
+    private static final Comparator<Node> ORDER = Comparator.comparingLong((Node node) -> node.planned)
+        .thenComparingLong(node -> node.id);
+
+    private final Logger log = LoggerFactory.getLogger(DelayPropagator.class);
+
+    private final ScheduleInstanceRepository scheduleInstanceRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties.Delays properties;
+
+    private final DomainMetrics domainMetrics;
+
+    private final ZoneId zone;
+
+    private final Map<Long, Node> nodes = new HashMap<>();
+
+    private final Map<Long, TreeSet<Node>> byVehicle = new HashMap<>();
+
+    private final Map<Long, TreeSet<Node>> byBay = new HashMap<>();
+
+    private LocalDate loadedDay;
+
+    public DelayPropagator(ScheduleInstanceRepository scheduleInstanceRepository,
+                           PlatformTransactionManager transactionManager, ApplicationProperties applicationProperties,
+                           DomainMetrics domainMetrics, ZoneId zone) {
+        this.scheduleInstanceRepository = scheduleInstanceRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = applicationProperties.getDelays();
+        this.domainMetrics = domainMetrics;
+        this.zone = zone;
+    }
+
+    /**
+     * Take a new actual scheduled time of an instance as set by an operator, and move the later departures of its
+     * vehicle and bay accordingly.
+     *
+     * @param scheduleInstance the instance, already saved, or flushed in the current transaction
+     * @return the ids of the other instances moved, or an empty list if none moved
+     */
+    public synchronized List<Long> propagate(ScheduleInstance scheduleInstance) {
+        if (!properties.isPropagationEnabled() || scheduleInstance.getId() == null) {
+            return Collections.emptyList();
+        }
+        long start = domainMetrics.monotonicTime();
+        ensureLoaded();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // the chains take the change now, so drop them if it does not commit
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        invalidate();
+                    }
+                }
+            });
+        }
+        Node previous = nodes.get(scheduleInstance.getId());
+        PriorityQueue<Node> pending = new PriorityQueue<>(ORDER);
+        if (previous != null) {
+            // leaving its chains may let the instances after it move back
+            addSuccessors(previous, pending);
+            unlink(previous);
+        }
+        Node updated = null;
+        for (ScheduleInstanceRepository.Timing timing : scheduleInstanceRepository.findTimingsByIdIn(
+            Collections.singletonList(scheduleInstance.getId()))) {
+            if (loadedDay.equals(timing.getScheduleDate())) {
+                updated = toNode(timing);
+            }
+        }
+        if (updated != null) {
+            link(updated);
+            addSuccessors(updated, pending);
+        }
+        List<Node> moved = settle(pending);
+        if (moved.isEmpty()) {
+            return Collections.emptyList();
+        }
+        try {
+            save(moved);
+        } catch (RuntimeException e) {
+            // the chains no longer match the database
+            invalidate();
+            throw e;
+        }
+        domainMetrics.recordDelayPropagation(start, moved.size());
+        log.debug("Delay of schedule instance {} moved {} later departures", scheduleInstance.getId(), moved.size());
+        List<Long> ids = new ArrayList<>(moved.size());
+        moved.forEach(node -> ids.add(node.id));
+        return ids;
+    }
+
+    /**
+     * Apply instances written elsewhere to the chains, without moving anything.
+     *
+     * @param event the change
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onScheduleInstancesChanged(ScheduleInstancesChangedEvent event) {
+        if (loadedDay == null || event.getScheduleInstanceIds().isEmpty()) {
+            // not loaded yet, the first propagation reads the change from the database
+            return;
+        }
+        if (event.getScheduleInstanceIds().size() > MAX_PATCH_SIZE) {
+            loadedDay = null;
+            return;
+        }
+        List<ScheduleInstanceRepository.Timing> changed = event.isDeleted() ? Collections.emptyList() :
+            scheduleInstanceRepository.findTimingsByIdIn(event.getScheduleInstanceIds());
+        Map<Long, Node> previous = new HashMap<>();
+        for (Long id : event.getScheduleInstanceIds()) {
+            Node node = nodes.get(id);
+            if (node != null) {
+                previous.put(id, node);
+                unlink(node);
+            }
+        }
+        for (ScheduleInstanceRepository.Timing timing : changed) {
+            Node node = toNode(timing);
+            Node before = previous.get(timing.getId());
+            if (node == null || !loadedDay.equals(timing.getScheduleDate())) {
+                continue;
+            }
+            if (before != null && before.actual == node.actual) {
+                // written by a propagation, or not moved at all: keep the time the operator set
+                node.own = before.own;
+            }
+            link(node);
+        }
+    }
+
+    /**
+     * Recompute the queued instances and, for each that moved, the instances after it, in planned order.
+     *
+     * @return the instances that moved
+     */
+    private List<Node> settle(PriorityQueue<Node> pending) {
+        List<Node> moved = new ArrayList<>();
+        Set<Long> visited = new HashSet<>();
+        long recovery = properties.getVehicleRecoveryMinutes() * 60L;
+        long headway = properties.getBayHeadwayMinutes() * 60L;
+        while (!pending.isEmpty()) {
+            Node node = pending.poll();
+            if (!visited.add(node.id) || node.isFixed()) {
+                continue;
+            }
+            long target = node.own;
+            Node vehiclePredecessor = predecessor(byVehicle, node.vehicleId, node);
+            if (vehiclePredecessor != null) {
+                long gap = node.planned - vehiclePredecessor.planned;
+                target = Math.max(target, vehiclePredecessor.actual + Math.max(0, gap - recovery));
+            }
+            Node bayPredecessor = predecessor(byBay, node.bayId, node);
+            if (bayPredecessor != null) {
+                long gap = node.planned - bayPredecessor.planned;
+                target = Math.max(target, bayPredecessor.actual + Math.min(headway, gap));
+            }
+            if (target == node.actual) {
+                continue;
+            }
+            node.actual = target;
+            if (target > node.planned) {
+                node.state = ScheduleState.DELAYED;
+            } else if (node.state == ScheduleState.DELAYED) {
+                node.state = ScheduleState.PENDING;
+            }
+            moved.add(node);
+            addSuccessors(node, pending);
+        }
+        return moved;
+    }
+
+    private synchronized void invalidate() {
+        loadedDay = null;
+    }
+
+    /**
+     * Write the new times and states, reading the instances again in one transaction so they are updated in JDBC
+     * batches.
+     */
+    private void save(List<Node> moved) {
+        Map<Long, Node> byId = new HashMap<>();
+        moved.forEach(node -> byId.put(node.id, node));
+        transactionTemplate.execute(status -> {
+            for (ScheduleInstance instance : scheduleInstanceRepository.findAllById(byId.keySet())) {
+                Node node = byId.get(instance.getId());
+                instance.setActualScheduledTime(Instant.ofEpochSecond(node.actual));
+                instance.setScheduleState(node.state);
+            }
+            return null;
+        });
+    }
+
+    private void ensureLoaded() {
+        LocalDate today = LocalDate.now(zone);
+        if (today.equals(loadedDay)) {
+            return;
+        }
+        nodes.clear();
+        byVehicle.clear();
+        byBay.clear();
+        for (ScheduleInstanceRepository.Timing timing : scheduleInstanceRepository.findTimingsByDate(today)) {
+            Node node = toNode(timing);
+            if (node != null) {
+                link(node);
+            }
+        }
+        loadedDay = today;
+        log.debug("Loaded delay chains with {} departures", nodes.size());
+    }
+
+    private void link(Node node) {
+        nodes.put(node.id, node);
+        if (node.vehicleId != null) {
+            byVehicle.computeIfAbsent(node.vehicleId, id -> new TreeSet<>(ORDER)).add(node);
+        }
+        if (node.bayId != null) {
+            byBay.computeIfAbsent(node.bayId, id -> new TreeSet<>(ORDER)).add(node);
+        }
+    }
+
+    private void unlink(Node node) {
+        nodes.remove(node.id);
+        remove(byVehicle, node.vehicleId, node);
+        remove(byBay, node.bayId, node);
+    }
+
+    private void addSuccessors(Node node, PriorityQueue<Node> pending) {
+        Node vehicleSuccessor = successor(byVehicle, node.vehicleId, node);
+        if (vehicleSuccessor != null) {
+            pending.add(vehicleSuccessor);
+        }
+        Node baySuccessor = successor(byBay, node.bayId, node);
+        if (baySuccessor != null) {
+            pending.add(baySuccessor);
+        }
+    }
+
+    private static Node predecessor(Map<Long, TreeSet<Node>> chains, Long key, Node node) {
+        TreeSet<Node> chain = key == null ? null : chains.get(key);
+        return chain == null ? null : chain.lower(node);
+    }
+
+    private static Node successor(Map<Long, TreeSet<Node>> chains, Long key, Node node) {
+        TreeSet<Node> chain = key == null ? null : chains.get(key);
+        return chain == null ? null : chain.higher(node);
+    }
+
+    private static void remove(Map<Long, TreeSet<Node>> chains, Long key, Node node) {
+        TreeSet<Node> chain = key == null ? null : chains.get(key);
+        if (chain != null) {
+            chain.remove(node);
+            if (chain.isEmpty()) {
+                chains.remove(key);
+            }
+        }
+    }
+
+    /**
+     * @return the node, or null if the instance takes no part in propagation
+     */
+    private static Node toNode(ScheduleInstanceRepository.Timing timing) {
+        if (timing.getActualScheduledTime() == null || timing.getScheduleState() == ScheduleState.CANCELLED) {
+            return null;
+        }
+        long actual = timing.getActualScheduledTime().getEpochSecond();
+        long planned = timing.getScheduledTime() == null ? actual : timing.getScheduledTime().getEpochSecond();
+        return new Node(timing.getId(), timing.getVehicleId(), timing.getBayId(), planned, actual,
+            timing.getScheduleState());
+    }
+
+    /**
+     * An instance in its chains. Its planned time and id, which order the chains, never change while it is linked.
+     */
+    private static final class Node {
+
+        private final long id;
+
+        private final Long vehicleId;
+
+        private final Long bayId;
+
+        private final long planned;
+
+        private long own;
+
+        private long actual;
+
+        private ScheduleState state;
+
+        Node(long id, Long vehicleId, Long bayId, long planned, long actual, ScheduleState state) {
+            this.id = id;
+            this.vehicleId = vehicleId;
+            this.bayId = bayId;
+            this.planned = planned;
+            this.own = actual;
+            this.actual = actual;
+            this.state = state;
+        }
+
+        boolean isFixed() {
+            return state == ScheduleState.BOARDING || state == ScheduleState.DEPARTED;
+        }
+    }
+}
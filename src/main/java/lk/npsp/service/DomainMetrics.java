@@ -0,0 +1,271 @@
+package lk.npsp.service;
+
+import lk.npsp.aop.logging.ExcludeFromLogging;
+
+import io.micrometer.core.instrument.*;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters for the work done inside requests and jobs: screen builds, schedule instantiation, imports, delay
+ * propagation, automatic state transitions, bay plan checks and the purge of not activated users.
+ * <p>
+ * Screen timers are split in the lookup of the departures ({@code npsp.screen.query}), the construction of the
+ * response including translation ({@code npsp.screen.response}) and the total ({@code npsp.screen.build}). Tags are
+ * kept to bounded sets: the screen kind, the bay id, the transport type code and where the departures came from.
+ * Every meter of a name carries the same tag keys, as Prometheus requires; "none" fills the keys that do not apply.
+ * <p>
+ * Meters are registered once per tag combination and reused, so recording on the screen path does not allocate.
+ */
+@Service
+@ExcludeFromLogging
+public class DomainMetrics {
+
+    public static final String SOURCE_TIMETABLE = "timetable";
+
+    public static final String SOURCE_DATABASE = "database";
+
+    /**
+     * The transport type tag of summary screens asked for a type that does not exist, so callers of the open screen
+     * endpoints cannot create meters at will.
+     */
+    public static final String OTHER_TRANSPORT_TYPE = "other";
+
+    private static final String NONE = "none";
+
+    private static final String ALL = "all";
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, ScreenMeters> screenMeters = new ConcurrentHashMap<>();
+
+    private final Timer instantiatorRun;
+
+    private final Counter templatesScanned;
+
+    private final Counter instancesCreated;
+
+    private final Timer userPurgeChunk;
+
+    private final Counter usersPurged;
+
+    private final Timer delayPropagation;
+
+    private final Counter departuresMoved;
+
+    private final Timer transitionBatch;
+
+    private final Counter boardingTransitions;
+
+    private final Counter departedTransitions;
+
+    private final Timer bayPlan;
+
+    private final Counter bayConflicts;
+
+    private final Timer templateAudit;
+
+    private final Counter templateConflicts;
+
+    public DomainMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.instantiatorRun = Timer.builder("npsp.instantiator.run")
+            .description("Duration of a schedule instantiation run for one day").register(meterRegistry);
+        this.templatesScanned = Counter.builder("npsp.instantiator.templates.scanned")
+            .description("Active schedule templates checked by the instantiator").register(meterRegistry);
+        this.instancesCreated = Counter.builder("npsp.instantiator.instances.created")
+            .description("Schedule instances created by the instantiator").register(meterRegistry);
+        this.userPurgeChunk = Timer.builder("npsp.users.purge.chunk")
+            .description("Duration of the deletion of one chunk of not activated users").register(meterRegistry);
+        this.usersPurged = Counter.builder("npsp.users.purged")
+            .description("Not activated users deleted").register(meterRegistry);
+        this.delayPropagation = Timer.builder("npsp.delays.propagation")
+            .description("Duration of the propagation of one delay, writes included").register(meterRegistry);
+        this.departuresMoved = Counter.builder("npsp.delays.departures.moved")
+            .description("Departures moved by delay propagation").register(meterRegistry);
+        this.transitionBatch = Timer.builder("npsp.transitions.batch")
+            .description("Duration of the write of the state transitions due in one tick").register(meterRegistry);
+        this.boardingTransitions = Counter.builder("npsp.transitions").tag("state", "boarding")
+            .description("Departures moved to a state by the timing wheel").register(meterRegistry);
+        this.departedTransitions = Counter.builder("npsp.transitions").tag("state", "departed")
+            .description("Departures moved to a state by the timing wheel").register(meterRegistry);
+        this.bayPlan = Timer.builder("npsp.bays.plan")
+            .description("Duration of the check of a day's bay assignments").register(meterRegistry);
+        this.bayConflicts = Counter.builder("npsp.bays.conflicts")
+            .description("Departures found in a bay still occupied by another").register(meterRegistry);
+        this.templateAudit = Timer.builder("npsp.templates.audit")
+            .description("Duration of the double-booking audit of all active schedule templates").register(meterRegistry);
+        this.templateConflicts = Counter.builder("npsp.templates.conflicts")
+            .description("Vehicles or drivers found booked by two active schedule templates at once").register(meterRegistry);
+    }
+
+    /**
+     * @return the registry clock's monotonic time, in nanoseconds, to pass back to the record methods
+     */
+    public long monotonicTime() {
+        return meterRegistry.config().clock().monotonicTime();
+    }
+
+    /**
+     * Record a bay screen build.
+     *
+     * @param bayId the bay shown
+     * @param source {@link #SOURCE_TIMETABLE} or {@link #SOURCE_DATABASE}
+     * @param start the {@link #monotonicTime()} when the build started
+     * @param queried the {@link #monotonicTime()} when the departures were found
+     * @param rows the number of departures found
+     */
+    public void recordBayScreen(Long bayId, String source, long start, long queried, int rows) {
+        String bay = bayId == null ? NONE : bayId.toString();
+        screenMeters("bay", bay, NONE, source).record(start, queried, monotonicTime(), rows);
+    }
+
+    /**
+     * Record a summary screen build.
+     *
+     * @param transportType the transport type code, an empty string for all types, or {@link #OTHER_TRANSPORT_TYPE}
+     * @param source {@link #SOURCE_TIMETABLE} or {@link #SOURCE_DATABASE}
+     * @param start the {@link #monotonicTime()} when the build started
+     * @param queried the {@link #monotonicTime()} when the departures were found
+     * @param rows the number of departures found
+     */
+    public void recordSummaryScreen(String transportType, String source, long start, long queried, int rows) {
+        String type = transportType == null || transportType.isEmpty() ? ALL : transportType;
+        screenMeters("summary", NONE, type, source).record(start, queried, monotonicTime(), rows);
+    }
+
+    /**
+     * Record a schedule instantiation run for one day.
+     *
+     * @param start the {@link #monotonicTime()} when the run started
+     * @param templates the number of active templates checked
+     * @param created the number of instances created
+     */
+    public void recordInstantiation(long start, int templates, int created) {
+        instantiatorRun.record(monotonicTime() - start, TimeUnit.NANOSECONDS);
+        templatesScanned.increment(templates);
+        instancesCreated.increment(created);
+    }
+
+    /**
+     * Record a data import.
+     *
+     * @param dataset the kind of data imported, e.g. "locations"
+     * @param start the {@link #monotonicTime()} when the import started
+     * @param rows the number of rows imported
+     */
+    public void recordImport(String dataset, long start, int rows) {
+        long duration = monotonicTime() - start;
+        Timer.builder("npsp.import.duration").tag("dataset", dataset)
+            .description("Duration of a data import").register(meterRegistry)
+            .record(duration, TimeUnit.NANOSECONDS);
+        Counter.builder("npsp.import.rows").tag("dataset", dataset)
+            .description("Rows imported").register(meterRegistry)
+            .increment(rows);
+        if (duration > 0) {
+            DistributionSummary.builder("npsp.import.throughput").tag("dataset", dataset).baseUnit("rows/s")
+                .description("Rows imported per second, per import").register(meterRegistry)
+                .record(rows * 1e9 / duration);
+        }
+    }
+
+    /**
+     * Record the deletion of a chunk of not activated users.
+     *
+     * @param start the {@link #monotonicTime()} when the chunk was selected
+     * @param users the number of users deleted
+     */
+    public void recordUserPurgeChunk(long start, int users) {
+        userPurgeChunk.record(monotonicTime() - start, TimeUnit.NANOSECONDS);
+        usersPurged.increment(users);
+    }
+
+    /**
+     * Record the propagation of a delay.
+     *
+     * @param start the {@link #monotonicTime()} when the propagation started
+     * @param moved the number of later departures moved
+     */
+    public void recordDelayPropagation(long start, int moved) {
+        delayPropagation.record(monotonicTime() - start, TimeUnit.NANOSECONDS);
+        departuresMoved.increment(moved);
+    }
+
+    /**
+     * Record the state transitions written for one tick of the timing wheel.
+     *
+     * @param start the {@link #monotonicTime()} when the write started
+     * @param boarding the number of departures now boarding
+     * @param departed the number of departures now departed
+     */
+    public void recordStateTransitions(long start, int boarding, int departed) {
+        transitionBatch.record(monotonicTime() - start, TimeUnit.NANOSECONDS);
+        boardingTransitions.increment(boarding);
+        departedTransitions.increment(departed);
+    }
+
+    /**
+     * Record the check of a day's bay assignments.
+     *
+     * @param start the {@link #monotonicTime()} when the check started
+     * @param conflicts the number of conflicts found
+     */
+    public void recordBayPlan(long start, int conflicts) {
+        bayPlan.record(monotonicTime() - start, TimeUnit.NANOSECONDS);
+        bayConflicts.increment(conflicts);
+    }
+
+    /**
+     * Record the double-booking audit of the timetable.
+     *
+     * @param start the {@link #monotonicTime()} when the audit started
+     * @param conflicts the number of double-bookings found
+     */
+    public void recordTemplateAudit(long start, int conflicts) {
+        templateAudit.record(monotonicTime() - start, TimeUnit.NANOSECONDS);
+        templateConflicts.increment(conflicts);
+    }
+
+    private ScreenMeters screenMeters(String screen, String bay, String transportType, String source) {
+        String key = screen + '|' + bay + '|' + transportType + '|' + source;
+        ScreenMeters meters = screenMeters.get(key);
+        if (meters == null) {
+            meters = screenMeters.computeIfAbsent(key,
+                k -> new ScreenMeters(meterRegistry, screen, bay, transportType, source));
+        }
+        return meters;
+    }
+
+    private static final class ScreenMeters {
+
+        private final Timer build;
+
+        private final Timer query;
+
+        private final Timer response;
+
+        private final DistributionSummary rows;
+
+        ScreenMeters(MeterRegistry meterRegistry, String screen, String bay, String transportType, String source) {
+            Tags tags = Tags.of("screen", screen, "bay", bay, "transport_type", transportType, "source", source);
+            build = Timer.builder("npsp.screen.build").tags(tags)
+                .description("Time to build a screen response").register(meterRegistry);
+            query = Timer.builder("npsp.screen.query").tags(tags)
+                .description("Time to find the departures of a screen").register(meterRegistry);
+            response = Timer.builder("npsp.screen.response").tags(tags)
+                .description("Time to build and translate the rows of a screen").register(meterRegistry);
+            rows = DistributionSummary.builder("npsp.screen.rows").tags(tags)
+                .description("Departures found for a screen").register(meterRegistry);
+        }
+
+        void record(long start, long queried, long end, int count) {
+            build.record(end - start, TimeUnit.NANOSECONDS);
+            query.record(queried - start, TimeUnit.NANOSECONDS);
+            response.record(end - queried, TimeUnit.NANOSECONDS);
+            rows.record(count);
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package lk.npsp.service;
+
+import lk.npsp.domain.ScheduleTemplate;
+import lk.npsp.domain.Weekday;
+import lk.npsp.domain.enumeration.Weekdays;
+import lk.npsp.repository.ScheduleTemplateRepository;
+import lk.npsp.repository.WeekdayRepository;
+import lk.npsp.service.dto.TemplateConflictDTO;
+import lk.npsp.service.util.IntervalTree;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds vehicles and drivers booked by two active schedule templates at the same time.
+ * <p>
+ * Templates repeat every week, so each booking is placed on a week of seconds starting Sunday midnight: the template's
+ * time of day, in the system zone as used by the {@link DateTimeCombiner}, on each of its weekdays. A template ending
+ * before it starts runs past midnight, and one running past Saturday midnight is split in two at the end of the week.
+ * The bookings of each vehicle and each driver are kept in an {@link IntervalTree}, so a template is checked in
+ * O(log n + k) against the n bookings of its vehicle and driver.
+ * <p>
+ * A template is checked against the others when created or updated, and an {@link Index} of the whole timetable lets
+ * an import check its rows as it saves them. The audit indexes every active template with one query and reports each
+ * double-booking once.
+ */
+@Service
+public class DoubleBookingDetector {
+
+    private static final long DAY = TimeUnit.DAYS.toSeconds(1);
+
+    private static final long WEEK = 7 * DAY;
+
+    /**
+     * Bookings added after an index is built are scanned one by one; past this many the tree is built again.
+     */
+    private static final int MAX_PENDING = 32;
+
+    private final Logger log = LoggerFactory.getLogger(DoubleBookingDetector.class);
+
+    private final ScheduleTemplateRepository scheduleTemplateRepository;
+
+    private final WeekdayRepository weekdayRepository;
+
+    private final DomainMetrics domainMetrics;
+
+    public DoubleBookingDetector(ScheduleTemplateRepository scheduleTemplateRepository,
+                                 WeekdayRepository weekdayRepository, DomainMetrics domainMetrics) {
+        this.scheduleTemplateRepository = scheduleTemplateRepository;
+        this.weekdayRepository = weekdayRepository;
+        this.domainMetrics = domainMetrics;
+    }
+
+    /**
+     * Check a template against the active templates of its vehicle and driver, other than itself.
+     *
+     * @param template the template, saved or not
+     * @return the double-bookings it would make, none if it is not active
+     */
+    public List<TemplateConflictDTO> check(ScheduleTemplate template) {
+        Long vehicleId = template.getVehicle() == null ? null : template.getVehicle().getId();
+        Long driverId = template.getDriver() == null ? null : template.getDriver().getId();
+        if (!Boolean.TRUE.equals(template.isIsActive()) || (vehicleId == null && driverId == null)) {
+            return Collections.emptyList();
+        }
+        return new Index(scheduleTemplateRepository.findActiveSlotsByVehicleOrDriver(vehicleId, driverId))
+            .check(template);
+    }
+
+    /**
+     * Index the active templates of the whole timetable, to check many templates in a row.
+     *
+     * @return the index
+     */
+    public Index index() {
+        return new Index(scheduleTemplateRepository.findActiveSlots());
+    }
+
+    /**
+     * Find every double-booking among the active templates.
+     *
+     * @return the double-bookings, each reported once from the template starting first
+     */
+    public List<TemplateConflictDTO> audit() {
+        long start = domainMetrics.monotonicTime();
+        Index index = index();
+        List<TemplateConflictDTO> conflicts = new ArrayList<>();
+        index.bookings.forEach((key, bookings) -> {
+            bookings.build();
+            for (IntervalTree.Interval<Long> interval : bookings.tree.getIntervals()) {
+                for (IntervalTree.Interval<Long> other : bookings.tree.overlapping(interval.getStart(), interval.getEnd())) {
+                    boolean after = other.getStart() > interval.getStart() ||
+                        (other.getStart() == interval.getStart() && other.getItem() > interval.getItem());
+                    if (after && !other.getItem().equals(interval.getItem())) {
+                        conflicts.add(conflict(key, interval, other));
+                    }
+                }
+            }
+        });
+        domainMetrics.recordTemplateAudit(start, conflicts.size());
+        log.debug("Found {} double-bookings in {} vehicle and driver timetables", conflicts.size(), index.bookings.size());
+        return conflicts;
+    }
+
+    private static TemplateConflictDTO conflict(Key key, IntervalTree.Interval<Long> interval,
+                                                IntervalTree.Interval<Long> other) {
+        long from = Math.max(interval.getStart(), other.getStart());
+        long to = Math.min(interval.getEnd(), other.getEnd());
+        return new TemplateConflictDTO(key.resource, key.id, interval.getItem(), other.getItem(),
+            Weekdays.values()[(int) (from / DAY)], LocalTime.ofSecondOfDay(from % DAY),
+            LocalTime.ofSecondOfDay(to % DAY));
+    }
+
+    /**
+     * Place a booking on the week, split in two if it runs past the end of the week.
+     *
+     * @return the intervals, none if the booking has no duration
+     */
+    private static List<IntervalTree.Interval<Long>> intervals(Long templateId, Instant startTime, Instant endTime,
+                                                               Weekdays weekday) {
+        if (startTime == null || endTime == null || weekday == null) {
+            return Collections.emptyList();
+        }
+        long start = weekday.ordinal() * DAY + secondOfDay(startTime);
+        long end = weekday.ordinal() * DAY + secondOfDay(endTime);
+        if (end == start) {
+            return Collections.emptyList();
+        }
+        if (end < start) {
+            end += DAY;
+        }
+        if (end <= WEEK) {
+            return Collections.singletonList(new IntervalTree.Interval<>(start, end, templateId));
+        }
+        return Arrays.asList(new IntervalTree.Interval<>(start, WEEK, templateId),
+            new IntervalTree.Interval<>(0, end - WEEK, templateId));
+    }
+
+    private static long secondOfDay(Instant time) {
+        return time.atZone(ZoneId.systemDefault()).toLocalTime().toSecondOfDay();
+    }
+
+    /**
+     * The weekdays of a template; those sent by id only are read from the database.
+     */
+    private Set<Weekdays> weekdaysOf(ScheduleTemplate template) {
+        Set<Weekdays> weekdays = EnumSet.noneOf(Weekdays.class);
+        Map<Long, Weekdays> byId = null;
+        for (Weekday weekday : template.getWeekdays()) {
+            if (weekday.getWeekday() != null) {
+                weekdays.add(weekday.getWeekday());
+                continue;
+            }
+            if (byId == null) {
+                byId = new HashMap<>();
+                for (Weekday known : weekdayRepository.findAll()) {
+                    byId.put(known.getId(), known.getWeekday());
+                }
+            }
+            Weekdays known = byId.get(weekday.getId());
+            if (known != null) {
+                weekdays.add(known);
+            }
+        }
+        return weekdays;
+    }
+
+    /**
+     * The bookings of every vehicle and driver in a set of active templates.
+     * <p>
+     * Not thread-safe; an index is meant for one run over many templates, such as an import.
+     */
+    public final class Index {
+
+        private final Map<Key, Bookings> bookings = new HashMap<>();
+
+        private Index(List<ScheduleTemplateRepository.Slot> slots) {
+            for (ScheduleTemplateRepository.Slot slot : slots) {
+                List<IntervalTree.Interval<Long>> intervals = intervals(slot.getId(), slot.getStartTime(),
+                    slot.getEndTime(), slot.getWeekday());
+                add(TemplateConflictDTO.VEHICLE, slot.getVehicleId(), intervals);
+                add(TemplateConflictDTO.DRIVER, slot.getDriverId(), intervals);
+            }
+            bookings.values().forEach(Bookings::build);
+        }
+
+        /**
+         * Check a template against the indexed ones other than itself.
+         *
+         * @param template the template
+         * @return the double-bookings it would make, none if it is not active
+         */
+        public List<TemplateConflictDTO> check(ScheduleTemplate template) {
+            if (!Boolean.TRUE.equals(template.isIsActive())) {
+                return Collections.emptyList();
+            }
+            List<Key> keys = keys(template);
+            if (keys.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<TemplateConflictDTO> conflicts = new ArrayList<>();
+            for (Weekdays weekday : weekdaysOf(template)) {
+                for (IntervalTree.Interval<Long> interval : intervals(template.getId(), template.getStartTime(),
+                    template.getEndTime(), weekday)) {
+                    for (Key key : keys) {
+                        Bookings resourceBookings = bookings.get(key);
+                        if (resourceBookings == null) {
+                            continue;
+                        }
+                        for (IntervalTree.Interval<Long> other : resourceBookings.overlapping(interval)) {
+                            if (!other.getItem().equals(template.getId())) {
+                                conflicts.add(conflict(key, interval, other));
+                            }
+                        }
+                    }
+                }
+            }
+            return conflicts;
+        }
+
+        /**
+         * Add a saved template, so the next templates are checked against it too.
+         *
+         * @param template the template
+         */
+        public void add(ScheduleTemplate template) {
+            if (!Boolean.TRUE.equals(template.isIsActive()) || template.getId() == null) {
+                return;
+            }
+            List<Key> keys = keys(template);
+            for (Weekdays weekday : weekdaysOf(template)) {
+                List<IntervalTree.Interval<Long>> intervals = intervals(template.getId(), template.getStartTime(),
+                    template.getEndTime(), weekday);
+                for (Key key : keys) {
+                    bookings.computeIfAbsent(key, k -> new Bookings()).addPending(intervals);
+                }
+            }
+        }
+
+        private List<Key> keys(ScheduleTemplate template) {
+            List<Key> keys = new ArrayList<>(2);
+            if (template.getVehicle() != null && template.getVehicle().getId() != null) {
+                keys.add(new Key(TemplateConflictDTO.VEHICLE, template.getVehicle().getId()));
+            }
+            if (template.getDriver() != null && template.getDriver().getId() != null) {
+                keys.add(new Key(TemplateConflictDTO.DRIVER, template.getDriver().getId()));
+            }
+            return keys;
+        }
+
+        private void add(String resource, Long id, List<IntervalTree.Interval<Long>> intervals) {
+            if (id != null && !intervals.isEmpty()) {
+                bookings.computeIfAbsent(new Key(resource, id), key -> new Bookings()).pending.addAll(intervals);
+            }
+        }
+    }
+
+    /**
+     * The bookings of one vehicle or driver: a tree, and the bookings added since it was built.
+     */
+    private static final class Bookings {
+
+        private IntervalTree<Long> tree = new IntervalTree<>(Collections.emptyList());
+
+        private final List<IntervalTree.Interval<Long>> pending = new ArrayList<>();
+
+        void build() {
+            if (!pending.isEmpty()) {
+                List<IntervalTree.Interval<Long>> all = new ArrayList<>(tree.getIntervals());
+                all.addAll(pending);
+                tree = new IntervalTree<>(all);
+                pending.clear();
+            }
+        }
+
+        void addPending(List<IntervalTree.Interval<Long>> intervals) {
+            pending.addAll(intervals);
+            if (pending.size() > MAX_PENDING) {
+                build();
+            }
+        }
+
+        List<IntervalTree.Interval<Long>> overlapping(IntervalTree.Interval<Long> interval) {
+            List<IntervalTree.Interval<Long>> found = tree.overlapping(interval.getStart(), interval.getEnd());
+            for (IntervalTree.Interval<Long> other : pending) {
+                if (other.getStart() < interval.getEnd() && interval.getStart() < other.getEnd()) {
+                    found.add(other);
+                }
+            }
+            return found;
+        }
+    }
+
+    /**
+     * A vehicle or a driver.
+     */
+    private static final class Key {
+
+        private final String resource;
+
+        private final Long id;
+
+        Key(String resource, Long id) {
+            this.resource = resource;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return resource.equals(key.resource) && id.equals(key.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * resource.hashCode() + id.hashCode();
+        }
+    }
+}
@@ -0,0 +1,431 @@
+package lk.npsp.service;
+
+import lk.npsp.aop.logging.ExcludeFromLogging;
+import lk.npsp.domain.Location;
+import lk.npsp.repository.LocationRepository;
+import lk.npsp.service.dto.NearbyLocationDTO;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.function.UnaryOperator;
+
+/**
+ * In-memory spatial index over the coordinates of all {@link Location}s, answering nearest-K and radius queries.
+ * <p>
+ * Locations are bucketed in a fixed grid of {@link #CELL_SIZE} degree cells. Queries only visit the cells around the
+ * query point: nearest-K searches in rings of cells until no unvisited cell can hold a closer location, radius
+ * searches visit the cells covering the bounding box of the circle. The index is an immutable snapshot replaced on
+ * every write, so reads never lock. It is loaded from the database on first use and kept up to date by
+ * {@link #put(Location)} and {@link #remove(Long)}, which copy the arrays but only rebuild the cells of the location
+ * they change.
+ * <p>
+ * Longitudes are not wrapped at the antimeridian, which is fine for a national stop list.
+ */
+@Service
+@ExcludeFromLogging
+public class LocationIndex {
+
+    /**
+     * Mean earth radius, in kilometers.
+     */
+    public static final double EARTH_RADIUS = 6371.0088;
+
+    /**
+     * Grid cell edge, in degrees (about 5.5 km of latitude).
+     */
+    static final double CELL_SIZE = 0.05;
+
+    private static final double KILOMETERS_PER_DEGREE = Math.PI * EARTH_RADIUS / 180;
+
+    private final Logger log = LoggerFactory.getLogger(LocationIndex.class);
+
+    private final LocationRepository locationRepository;
+
+    private volatile Snapshot snapshot;
+
+    public LocationIndex(LocationRepository locationRepository) {
+        this.locationRepository = locationRepository;
+    }
+
+    /**
+     * Find the locations closest to a point.
+     *
+     * @param latitude latitude of the query point, in degrees
+     * @param longitude longitude of the query point, in degrees
+     * @param count maximum number of locations to return
+     * @return up to count locations, closest first
+     */
+    public List<NearbyLocationDTO> findNearest(double latitude, double longitude, int count) {
+        Snapshot current = getSnapshot();
+        int size = Math.min(count, current.size());
+        if (size <= 0) {
+            return new ArrayList<>();
+        }
+        int[] nearest = new int[size];
+        double[] nearestDistances = new double[size];
+        int found = 0;
+
+        int row = cell(latitude);
+        int column = cell(longitude);
+        int lastRing = Math.max(
+            Math.max(row - current.minRow, current.maxRow - row),
+            Math.max(column - current.minColumn, current.maxColumn - column));
+        for (int ring = 0; ring <= lastRing; ring++) {
+            for (int r = row - ring; r <= row + ring; r++) {
+                // inner rows of a ring only have their first and last column on the ring
+                int step = (ring == 0 || r == row - ring || r == row + ring) ? 1 : 2 * ring;
+                for (int c = column - ring; c <= column + ring; c += step) {
+                    int[] members = current.cells.get(key(r, c));
+                    if (members == null) {
+                        continue;
+                    }
+                    for (int i : members) {
+                        double distance = distance(latitude, longitude, current.latitudes[i], current.longitudes[i]);
+                        int position;
+                        if (found < size) {
+                            position = found++;
+                        } else if (distance < nearestDistances[size - 1]) {
+                            position = size - 1;
+                        } else {
+                            continue;
+                        }
+                        while (position > 0 && nearestDistances[position - 1] > distance) {
+                            nearestDistances[position] = nearestDistances[position - 1];
+                            nearest[position] = nearest[position - 1];
+                            position--;
+                        }
+                        nearestDistances[position] = distance;
+                        nearest[position] = i;
+                    }
+                }
+            }
+            if (found == size && nearestDistances[size - 1] <= distanceOutsideRing(latitude, longitude, row, column, ring)) {
+                break;
+            }
+        }
+
+        List<NearbyLocationDTO> result = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) {
+            result.add(new NearbyLocationDTO(current.locations[nearest[i]], nearestDistances[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Find all locations within a radius of a point.
+     *
+     * @param latitude latitude of the query point, in degrees
+     * @param longitude longitude of the query point, in degrees
+     * @param radius the radius, in kilometers
+     * @return the locations within the radius, closest first
+     */
+    public List<NearbyLocationDTO> findWithin(double latitude, double longitude, double radius) {
+        Snapshot current = getSnapshot();
+        List<NearbyLocationDTO> result = new ArrayList<>();
+        if (radius < 0 || current.size() == 0) {
+            return result;
+        }
+        double latitudeSpan = radius / KILOMETERS_PER_DEGREE;
+        double cosine = Math.cos(Math.toRadians(Math.min(90, Math.abs(latitude) + latitudeSpan)));
+        double longitudeSpan = cosine < 1e-9 ? 360 : radius / (KILOMETERS_PER_DEGREE * cosine);
+        int fromRow = Math.max(cell(latitude - latitudeSpan), current.minRow);
+        int toRow = Math.min(cell(latitude + latitudeSpan), current.maxRow);
+        int fromColumn = Math.max(cell(longitude - longitudeSpan), current.minColumn);
+        int toColumn = Math.min(cell(longitude + longitudeSpan), current.maxColumn);
+
+        if ((long) (toRow - fromRow + 1) * (toColumn - fromColumn + 1) > current.cells.size()) {
+            // the circle covers more cells than are occupied, a full scan is cheaper
+            for (int i = 0; i < current.size(); i++) {
+                addIfWithin(result, current, i, latitude, longitude, radius);
+            }
+        } else {
+            for (int r = fromRow; r <= toRow; r++) {
+                for (int c = fromColumn; c <= toColumn; c++) {
+                    int[] members = current.cells.get(key(r, c));
+                    if (members != null) {
+                        for (int i : members) {
+                            addIfWithin(result, current, i, latitude, longitude, radius);
+                        }
+                    }
+                }
+            }
+        }
+        result.sort(Comparator.comparingDouble(NearbyLocationDTO::getDistance));
+        return result;
+    }
+
+    /**
+     * Add or replace a location in the index.
+     *
+     * @param location the saved location
+     */
+    public void put(Location location) {
+        update(current -> current.with(location));
+    }
+
+    /**
+     * Remove a location from the index.
+     *
+     * @param id the id of the deleted location
+     */
+    public void remove(Long id) {
+        update(current -> current.without(id));
+    }
+
+    /**
+     * Rebuild the index from the database.
+     */
+    public synchronized void reload() {
+        Map<Long, Location> byId = new HashMap<>();
+        for (Location location : locationRepository.findAll()) {
+            byId.put(location.getId(), location);
+        }
+        snapshot = new Snapshot(byId);
+        log.debug("Indexed {} of {} locations", snapshot.size(), byId.size());
+    }
+
+    private synchronized void update(UnaryOperator<Snapshot> change) {
+        if (snapshot == null) {
+            // not loaded yet, the first query reads the change from the database
+            return;
+        }
+        snapshot = change.apply(snapshot);
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    reload();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    private static void addIfWithin(List<NearbyLocationDTO> result, Snapshot snapshot, int i,
+                                    double latitude, double longitude, double radius) {
+        double distance = distance(latitude, longitude, snapshot.latitudes[i], snapshot.longitudes[i]);
+        if (distance <= radius) {
+            result.add(new NearbyLocationDTO(snapshot.locations[i], distance));
+        }
+    }
+
+    /**
+     * Lower bound of the distance from the query point to any location outside the cells searched so far.
+     */
+    private static double distanceOutsideRing(double latitude, double longitude, int row, int column, int ring) {
+        double south = (row - ring) * CELL_SIZE;
+        double north = (row + ring + 1) * CELL_SIZE;
+        double west = (column - ring) * CELL_SIZE;
+        double east = (column + ring + 1) * CELL_SIZE;
+        // parallels are shortest on the side farthest from the equator
+        double cosine = Math.cos(Math.toRadians(Math.min(90, Math.max(Math.abs(south), Math.abs(north)))));
+        double latitudeDistance = Math.min(latitude - south, north - latitude) * KILOMETERS_PER_DEGREE;
+        double longitudeDistance = Math.min(longitude - west, east - longitude) * KILOMETERS_PER_DEGREE * cosine;
+        return Math.min(latitudeDistance, longitudeDistance);
+    }
+
+    /**
+     * Great-circle distance between two points, in kilometers (haversine formula).
+     */
+    public static double distance(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double deltaLatitude = Math.toRadians(latitude2 - latitude1);
+        double deltaLongitude = Math.toRadians(longitude2 - longitude1);
+        double a = Math.sin(deltaLatitude / 2) * Math.sin(deltaLatitude / 2) +
+            Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2)) *
+                Math.sin(deltaLongitude / 2) * Math.sin(deltaLongitude / 2);
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private static int cell(double degrees) {
+        return (int) Math.floor(degrees / CELL_SIZE);
+    }
+
+    private static long key(int row, int column) {
+        return ((long) row << 32) | (column & 0xffffffffL);
+    }
+
+    /**
+     * Immutable view of the indexed locations, stored as parallel arrays and bucketed by grid cell.
+     * <p>
+     * A patched snapshot keeps the bounds of the one it was made from, so they may cover more cells than are occupied
+     * until the next reload; searches only visit a few more empty cells.
+     */
+    private static final class Snapshot {
+
+        private final Map<Long, Location> byId;
+
+        /**
+         * Position in the arrays of each location with coordinates.
+         */
+        private final Map<Long, Integer> indexes;
+
+        private final Location[] locations;
+
+        private final double[] latitudes;
+
+        private final double[] longitudes;
+
+        private final Map<Long, int[]> cells;
+
+        private final int minRow;
+
+        private final int maxRow;
+
+        private final int minColumn;
+
+        private final int maxColumn;
+
+        Snapshot(Map<Long, Location> byId) {
+            this.byId = byId;
+            List<Location> located = new ArrayList<>(byId.size());
+            for (Location location : byId.values()) {
+                if (location.getLatitude() != null && location.getLongitude() != null) {
+                    located.add(location);
+                }
+            }
+            int size = located.size();
+            locations = located.toArray(new Location[size]);
+            latitudes = new double[size];
+            longitudes = new double[size];
+            indexes = new HashMap<>();
+            int fromRow = Integer.MAX_VALUE;
+            int toRow = Integer.MIN_VALUE;
+            int fromColumn = Integer.MAX_VALUE;
+            int toColumn = Integer.MIN_VALUE;
+            long[] keys = new long[size];
+            Map<Long, Integer> counts = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                indexes.put(locations[i].getId(), i);
+                latitudes[i] = locations[i].getLatitude();
+                longitudes[i] = locations[i].getLongitude();
+                int row = cell(latitudes[i]);
+                int column = cell(longitudes[i]);
+                fromRow = Math.min(fromRow, row);
+                toRow = Math.max(toRow, row);
+                fromColumn = Math.min(fromColumn, column);
+                toColumn = Math.max(toColumn, column);
+                keys[i] = key(row, column);
+                counts.merge(keys[i], 1, Integer::sum);
+            }
+            minRow = fromRow;
+            maxRow = toRow;
+            minColumn = fromColumn;
+            maxColumn = toColumn;
+            cells = new HashMap<>();
+            Map<Long, Integer> filled = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                int[] members = cells.computeIfAbsent(keys[i], key -> new int[counts.get(key)]);
+                members[filled.merge(keys[i], 1, Integer::sum) - 1] = i;
+            }
+        }
+
+        private Snapshot(Map<Long, Location> byId, Map<Long, Integer> indexes, Location[] locations,
+                         double[] latitudes, double[] longitudes, Map<Long, int[]> cells,
+                         int minRow, int maxRow, int minColumn, int maxColumn) {
+            this.byId = byId;
+            this.indexes = indexes;
+            this.locations = locations;
+            this.latitudes = latitudes;
+            this.longitudes = longitudes;
+            this.cells = cells;
+            this.minRow = minRow;
+            this.maxRow = maxRow;
+            this.minColumn = minColumn;
+            this.maxColumn = maxColumn;
+        }
+
+        int size() {
+            return locations.length;
+        }
+
+        Snapshot without(Long id) {
+            if (!byId.containsKey(id)) {
+                return this;
+            }
+            Map<Long, Location> newById = new HashMap<>(byId);
+            newById.remove(id);
+            Integer removed = indexes.get(id);
+            if (removed == null) {
+                // no coordinates, it was in no cell
+                return new Snapshot(newById, indexes, locations, latitudes, longitudes, cells,
+                    minRow, maxRow, minColumn, maxColumn);
+            }
+            int last = locations.length - 1;
+            Location[] newLocations = Arrays.copyOf(locations, last);
+            double[] newLatitudes = Arrays.copyOf(latitudes, last);
+            double[] newLongitudes = Arrays.copyOf(longitudes, last);
+            Map<Long, Integer> newIndexes = new HashMap<>(indexes);
+            newIndexes.remove(id);
+            Map<Long, int[]> newCells = new HashMap<>(cells);
+            replaceMember(newCells, key(cell(latitudes[removed]), cell(longitudes[removed])), removed, -1);
+            if (removed != last) {
+                // the last location moves into the gap
+                newLocations[removed] = locations[last];
+                newLatitudes[removed] = latitudes[last];
+                newLongitudes[removed] = longitudes[last];
+                newIndexes.put(locations[last].getId(), removed);
+                replaceMember(newCells, key(cell(latitudes[last]), cell(longitudes[last])), last, removed);
+            }
+            return new Snapshot(newById, newIndexes, newLocations, newLatitudes, newLongitudes, newCells,
+                minRow, maxRow, minColumn, maxColumn);
+        }
+
+        Snapshot with(Location location) {
+            Snapshot base = without(location.getId());
+            // maps the removal already copied are not shared yet and are changed in place
+            Map<Long, Location> newById = base.byId == byId ? new HashMap<>(byId) : base.byId;
+            newById.put(location.getId(), location);
+            if (location.getLatitude() == null || location.getLongitude() == null) {
+                return new Snapshot(newById, base.indexes, base.locations, base.latitudes, base.longitudes, base.cells,
+                    base.minRow, base.maxRow, base.minColumn, base.maxColumn);
+            }
+            int added = base.locations.length;
+            Location[] newLocations = Arrays.copyOf(base.locations, added + 1);
+            double[] newLatitudes = Arrays.copyOf(base.latitudes, added + 1);
+            double[] newLongitudes = Arrays.copyOf(base.longitudes, added + 1);
+            newLocations[added] = location;
+            newLatitudes[added] = location.getLatitude();
+            newLongitudes[added] = location.getLongitude();
+            Map<Long, Integer> newIndexes = base.indexes == indexes ? new HashMap<>(indexes) : base.indexes;
+            newIndexes.put(location.getId(), added);
+            Map<Long, int[]> newCells = base.cells == cells ? new HashMap<>(cells) : base.cells;
+            int row = cell(newLatitudes[added]);
+            int column = cell(newLongitudes[added]);
+            int[] members = newCells.get(key(row, column));
+            int[] newMembers = members == null ? new int[1] : Arrays.copyOf(members, members.length + 1);
+            newMembers[newMembers.length - 1] = added;
+            newCells.put(key(row, column), newMembers);
+            return new Snapshot(newById, newIndexes, newLocations, newLatitudes, newLongitudes, newCells,
+                Math.min(base.minRow, row), Math.max(base.maxRow, row),
+                Math.min(base.minColumn, column), Math.max(base.maxColumn, column));
+        }
+
+        /**
+         * Replace a member of a cell with another, or drop it when the replacement is negative.
+         */
+        private static void replaceMember(Map<Long, int[]> cells, long key, int member, int replacement) {
+            int[] members = cells.get(key);
+            int[] newMembers = new int[replacement < 0 ? members.length - 1 : members.length];
+            int j = 0;
+            for (int other : members) {
+                if (other != member) {
+                    newMembers[j++] = other;
+                } else if (replacement >= 0) {
+                    newMembers[j++] = replacement;
+                }
+            }
+            if (newMembers.length == 0) {
+                cells.remove(key);
+            } else {
+                cells.put(key, newMembers);
+            }
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package lk.npsp.service;
+
+import lk.npsp.config.ApplicationProperties;
+import lk.npsp.domain.MailMessage;
+import lk.npsp.domain.enumeration.MailStatus;
+import lk.npsp.repository.MailMessageRepository;
+
+import io.github.jhipster.config.JHipsterProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the messages of the outbound mail queue, the mail_message table.
+ * <p>
+ * A single background thread takes the due messages in batches of up to batch-size and sends each batch over one SMTP
+ * connection, pacing the batches to stay under max-per-second on average. A message that fails is retried after a
+ * backoff doubling from initial-backoff-ms up to max-backoff-ms, and marked failed after max-attempts. The thread
+ * sleeps until {@link #wakeUp()} or poll-interval-ms, whichever comes first.
+ * <p>
+ * Queued messages survive a restart. Delivery is at least once: a message sent just before its new status could be
+ * saved is sent again. The thread starts once the application is ready, so the database is migrated before the first
+ * batch. Only one instance should dispatch, see dispatcher-enabled.
+ */
+@Component
+public class MailDispatcher {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final Logger log = LoggerFactory.getLogger(MailDispatcher.class);
+
+    private final MailMessageRepository mailMessageRepository;
+
+    private final JavaMailSender javaMailSender;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final String from;
+
+    private final ApplicationProperties.Mail properties;
+
+    private final Object monitor = new Object();
+
+    private volatile Thread dispatcherThread;
+
+    private final Timer batchTimer;
+
+    private final Counter sent;
+
+    private final Counter retried;
+
+    private final Counter failed;
+
+    private boolean wokenUp;
+
+    private volatile boolean running = true;
+
+    public MailDispatcher(MailMessageRepository mailMessageRepository, JavaMailSender javaMailSender,
+                          PlatformTransactionManager transactionManager, JHipsterProperties jHipsterProperties,
+                          ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        this.mailMessageRepository = mailMessageRepository;
+        this.javaMailSender = javaMailSender;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.from = jHipsterProperties.getMail().getFrom();
+        this.properties = applicationProperties.getMail();
+        this.batchTimer = Timer.builder("npsp.mail.batch")
+            .description("Time to send a batch of queued messages over one SMTP connection").register(meterRegistry);
+        this.sent = counter(meterRegistry, "sent");
+        this.retried = counter(meterRegistry, "retried");
+        this.failed = counter(meterRegistry, "failed");
+        Gauge.builder("npsp.mail.queue.pending", mailMessageRepository, r -> r.countByStatus(MailStatus.PENDING))
+            .description("Messages waiting to be sent, including those waiting for a retry").register(meterRegistry);
+    }
+
+    /**
+     * Start the dispatcher thread, if enabled, once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        synchronized (monitor) {
+            if (!properties.isDispatcherEnabled() || dispatcherThread != null || !running) {
+                return;
+            }
+            dispatcherThread = new Thread(this::run, "npsp-mail-dispatcher");
+            dispatcherThread.setDaemon(true);
+            dispatcherThread.start();
+        }
+    }
+
+    /**
+     * Wake the dispatcher up for a newly queued message, after the current transaction commits if there is one.
+     */
+    public void wakeUp() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    signal();
+                }
+            });
+        } else {
+            signal();
+        }
+    }
+
+    /**
+     * Send one batch of due messages and save their new status.
+     *
+     * @return the number of messages taken from the queue
+     */
+    public synchronized int dispatchDue() {
+        int batchSize = Math.max(1, properties.getBatchSize());
+        List<MailMessage> due = mailMessageRepository.findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAt(
+            MailStatus.PENDING, Instant.now(), PageRequest.of(0, batchSize));
+        if (due.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        Map<MimeMessage, MailMessage> batch = new LinkedHashMap<>();
+        for (MailMessage message : due) {
+            try {
+                batch.put(toMimeMessage(message), message);
+            } catch (MessagingException e) {
+                // a malformed address or header will not get better
+                message.setAttempts(message.getAttempts() + 1);
+                markFailed(message, e);
+            }
+        }
+        Instant now = Instant.now();
+        if (!batch.isEmpty()) {
+            Map<Object, Exception> failures = send(batch.keySet());
+            now = Instant.now();
+            for (Map.Entry<MimeMessage, MailMessage> entry : batch.entrySet()) {
+                Exception failure = failures.get(entry.getKey());
+                if (failure == null) {
+                    markSent(entry.getValue(), now);
+                } else {
+                    markRetry(entry.getValue(), now, failure);
+                }
+            }
+        }
+        saveOutcomes(due);
+        batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        pace(start, batch.size());
+        return due.size();
+    }
+
+    /**
+     * Delete the sent and failed messages older than retention-days.
+     * <p>
+     * This is scheduled to get fired everyday, at 02:30 (am).
+     */
+    @Scheduled(cron = "0 30 2 * * ?")
+    public void purgeFinishedMessages() {
+        int deleted = mailMessageRepository.deleteFinishedBefore(
+            Instant.now().minus(properties.getRetentionDays(), ChronoUnit.DAYS));
+        log.debug("Deleted {} finished mail messages", deleted);
+    }
+
+    /**
+     * Stop the dispatcher thread; messages still queued are sent after the next start.
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        Thread thread = dispatcherThread;
+        if (thread == null) {
+            return;
+        }
+        signal();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        int batchSize = Math.max(1, properties.getBatchSize());
+        while (running) {
+            int taken = 0;
+            try {
+                taken = dispatchDue();
+            } catch (RuntimeException e) {
+                log.error("Could not dispatch queued mail: {}", e.getMessage(), e);
+            }
+            // a full batch means more are probably due
+            if (taken < batchSize) {
+                awaitWork();
+            }
+        }
+        log.debug("Mail dispatcher stopped");
+    }
+
+    private void awaitWork() {
+        synchronized (monitor) {
+            try {
+                if (!wokenUp && running) {
+                    monitor.wait(Math.max(1, properties.getPollIntervalMs()));
+                }
+            } catch (InterruptedException e) {
+                // only shutdown() stops the dispatcher
+                log.debug("Mail dispatcher interrupted");
+            }
+            wokenUp = false;
+        }
+    }
+
+    private void signal() {
+        synchronized (monitor) {
+            wokenUp = true;
+            monitor.notifyAll();
+        }
+    }
+
+    /**
+     * @return the messages that were not sent, with the reason
+     */
+    private Map<Object, Exception> send(Collection<MimeMessage> messages) {
+        try {
+            javaMailSender.send(messages.toArray(new MimeMessage[0]));
+            return Collections.emptyMap();
+        } catch (MailSendException e) {
+            // an empty map means the messages went out and closing the connection failed
+            return e.getFailedMessages();
+        } catch (MailException e) {
+            Map<Object, Exception> failures = new IdentityHashMap<>();
+            messages.forEach(message -> failures.put(message, e));
+            return failures;
+        }
+    }
+
+    /**
+     * Copy the new status onto the messages read again in one transaction, so they are updated in JDBC batches
+     * rather than merged one select at a time.
+     */
+    private void saveOutcomes(List<MailMessage> outcomes) {
+        Map<Long, MailMessage> byId = new HashMap<>();
+        outcomes.forEach(outcome -> byId.put(outcome.getId(), outcome));
+        transactionTemplate.execute(status -> {
+            for (MailMessage message : mailMessageRepository.findAllById(byId.keySet())) {
+                MailMessage outcome = byId.get(message.getId());
+                message.setStatus(outcome.getStatus());
+                message.setAttempts(outcome.getAttempts());
+                message.setNextAttemptAt(outcome.getNextAttemptAt());
+                message.setSentDate(outcome.getSentDate());
+                message.setLastError(outcome.getLastError());
+            }
+            return null;
+        });
+    }
+
+    private MimeMessage toMimeMessage(MailMessage message) throws MessagingException {
+        MimeMessage mimeMessage = javaMailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, message.isMultipart(),
+            StandardCharsets.UTF_8.name());
+        helper.setTo(message.getRecipient());
+        helper.setFrom(from);
+        helper.setSubject(message.getSubject());
+        helper.setText(message.getContent() == null ? "" : message.getContent(), message.isHtml());
+        return mimeMessage;
+    }
+
+    private void markSent(MailMessage message, Instant now) {
+        message.setAttempts(message.getAttempts() + 1);
+        message.setStatus(MailStatus.SENT);
+        message.setSentDate(now);
+        message.setLastError(null);
+        sent.increment();
+        log.debug("Sent email to '{}'", message.getRecipient());
+    }
+
+    private void markRetry(MailMessage message, Instant now, Exception e) {
+        message.setAttempts(message.getAttempts() + 1);
+        if (message.getAttempts() >= properties.getMaxAttempts()) {
+            markFailed(message, e);
+            return;
+        }
+        message.setLastError(truncate(e.getMessage()));
+        message.setNextAttemptAt(now.plusMillis(backoffMs(message.getAttempts())));
+        retried.increment();
+        log.debug("Email to '{}' not sent, retrying at {}: {}", message.getRecipient(), message.getNextAttemptAt(),
+            e.getMessage());
+    }
+
+    private void markFailed(MailMessage message, Exception e) {
+        message.setStatus(MailStatus.FAILED);
+        message.setLastError(truncate(e.getMessage()));
+        failed.increment();
+        log.warn("Email could not be sent to user '{}' after {} attempts: {}", message.getRecipient(),
+            message.getAttempts(), e.getMessage());
+    }
+
+    private long backoffMs(int attempts) {
+        long backoff = properties.getInitialBackoffMs() << Math.min(attempts - 1, 30);
+        return backoff < 0 ? properties.getMaxBackoffMs() : Math.min(backoff, properties.getMaxBackoffMs());
+    }
+
+    /**
+     * Sleep long enough for the batch to stay under max-per-second.
+     */
+    private void pace(long start, int count) {
+        if (properties.getMaxPerSecond() <= 0 || count == 0) {
+            return;
+        }
+        long minimumNanos = (long) (count * TimeUnit.SECONDS.toNanos(1) / properties.getMaxPerSecond());
+        long remaining = minimumNanos - (System.nanoTime() - start);
+        if (remaining > 0 && running) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static String truncate(String error) {
+        return error == null || error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("npsp.mail.messages").tag("outcome", outcome)
+            .description("Queued messages by the outcome of a send attempt").register(meterRegistry);
+    }
+}
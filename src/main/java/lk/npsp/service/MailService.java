@@ -1,27 +1,40 @@
 package lk.npsp.service;
 
+import lk.npsp.config.ApplicationProperties;
+import lk.npsp.domain.MailMessage;
 import lk.npsp.domain.User;
+import lk.npsp.repository.MailMessageRepository;
 
 import io.github.jhipster.config.JHipsterProperties;
 
-import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
-import javax.mail.internet.MimeMessage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.MessageSource;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.web.util.HtmlUtils;
 import org.thymeleaf.context.Context;
 import org.thymeleaf.spring5.SpringTemplateEngine;
 
 /**
  * Service for sending emails.
  * <p>
- * We use the @Async annotation to send emails asynchronously.
+ * Emails are written to the outbound mail queue and sent by the {@link MailDispatcher}. We use the @Async annotation
+ * to render and queue them asynchronously, on the mailExecutor.
+ * <p>
+ * With the template cache on, a template is rendered once per locale for a stand-in user whose fields hold markers;
+ * each email is that text with the markers replaced by the real user's escaped values.
  */
 @Service
 public class MailService {
@@ -32,74 +45,158 @@ public class MailService {
 
     private static final String BASE_URL = "baseUrl";
 
+    /**
+     * The user fields a cached template may print.
+     */
+    private static final List<Function<User, String>> USER_FIELDS = Arrays.asList(User::getLogin,
+        User::getFirstName, User::getLastName, User::getEmail, User::getActivationKey, User::getResetKey,
+        User::getImageUrl);
+
+    private static final Pattern MARKER = Pattern.compile("npspmail(\\d+)field");
+
     private final JHipsterProperties jHipsterProperties;
 
-    private final JavaMailSender javaMailSender;
+    private final ApplicationProperties.Mail properties;
 
     private final MessageSource messageSource;
 
     private final SpringTemplateEngine templateEngine;
 
-    public MailService(JHipsterProperties jHipsterProperties, JavaMailSender javaMailSender,
-            MessageSource messageSource, SpringTemplateEngine templateEngine) {
+    private final MailMessageRepository mailMessageRepository;
+
+    private final MailDispatcher mailDispatcher;
+
+    private final ConcurrentMap<String, CompiledTemplate> templates = new ConcurrentHashMap<>();
+
+    public MailService(JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties,
+            MessageSource messageSource, SpringTemplateEngine templateEngine,
+            MailMessageRepository mailMessageRepository, MailDispatcher mailDispatcher) {
 
         this.jHipsterProperties = jHipsterProperties;
-        this.javaMailSender = javaMailSender;
+        this.properties = applicationProperties.getMail();
         this.messageSource = messageSource;
         this.templateEngine = templateEngine;
+        this.mailMessageRepository = mailMessageRepository;
+        this.mailDispatcher = mailDispatcher;
     }
 
-    @Async
+    @Async("mailExecutor")
     public void sendEmail(String to, String subject, String content, boolean isMultipart, boolean isHtml) {
-        log.debug("Send email[multipart '{}' and html '{}'] to '{}' with subject '{}' and content={}",
+        log.debug("Queue email[multipart '{}' and html '{}'] to '{}' with subject '{}' and content={}",
             isMultipart, isHtml, to, subject, content);
 
-        // Prepare message using a Spring helper
-        MimeMessage mimeMessage = javaMailSender.createMimeMessage();
+        Instant now = Instant.now();
+        MailMessage message = new MailMessage();
+        message.setRecipient(to);
+        message.setSubject(subject);
+        message.setContent(content);
+        message.setMultipart(isMultipart);
+        message.setHtml(isHtml);
+        message.setCreatedDate(now);
+        message.setNextAttemptAt(now);
         try {
-            MimeMessageHelper message = new MimeMessageHelper(mimeMessage, isMultipart, StandardCharsets.UTF_8.name());
-            message.setTo(to);
-            message.setFrom(jHipsterProperties.getMail().getFrom());
-            message.setSubject(subject);
-            message.setText(content, isHtml);
-            javaMailSender.send(mimeMessage);
-            log.debug("Sent email to User '{}'", to);
+            mailMessageRepository.save(message);
+            mailDispatcher.wakeUp();
+            log.debug("Queued email to User '{}'", to);
         } catch (Exception e) {
             if (log.isDebugEnabled()) {
-                log.warn("Email could not be sent to user '{}'", to, e);
+                log.warn("Email could not be queued for user '{}'", to, e);
             } else {
-                log.warn("Email could not be sent to user '{}': {}", to, e.getMessage());
+                log.warn("Email could not be queued for user '{}': {}", to, e.getMessage());
             }
         }
     }
 
-    @Async
+    @Async("mailExecutor")
     public void sendEmailFromTemplate(User user, String templateName, String titleKey) {
         Locale locale = Locale.forLanguageTag(user.getLangKey());
-        Context context = new Context(locale);
-        context.setVariable(USER, user);
-        context.setVariable(BASE_URL, jHipsterProperties.getMail().getBaseUrl());
-        String content = templateEngine.process(templateName, context);
+        String content;
+        if (properties.isTemplateCache()) {
+            content = templates.computeIfAbsent(templateName + '|' + locale.toLanguageTag(),
+                key -> compile(templateName, locale)).render(user);
+        } else {
+            content = process(templateName, locale, user);
+        }
         String subject = messageSource.getMessage(titleKey, null, locale);
         sendEmail(user.getEmail(), subject, content, false, true);
 
     }
 
-    @Async
+    @Async("mailExecutor")
     public void sendActivationEmail(User user) {
         log.debug("Sending activation email to '{}'", user.getEmail());
         sendEmailFromTemplate(user, "mail/activationEmail", "email.activation.title");
     }
 
-    @Async
+    @Async("mailExecutor")
     public void sendCreationEmail(User user) {
         log.debug("Sending creation email to '{}'", user.getEmail());
         sendEmailFromTemplate(user, "mail/creationEmail", "email.activation.title");
     }
 
-    @Async
+    @Async("mailExecutor")
     public void sendPasswordResetMail(User user) {
         log.debug("Sending password reset email to '{}'", user.getEmail());
         sendEmailFromTemplate(user, "mail/passwordResetEmail", "email.reset.title");
     }
+
+    private String process(String templateName, Locale locale, User user) {
+        Context context = new Context(locale);
+        context.setVariable(USER, user);
+        context.setVariable(BASE_URL, jHipsterProperties.getMail().getBaseUrl());
+        return templateEngine.process(templateName, context);
+    }
+
+    private CompiledTemplate compile(String templateName, Locale locale) {
+        User markers = new User();
+        markers.setLangKey(locale.toLanguageTag());
+        markers.setLogin(marker(0));
+        markers.setFirstName(marker(1));
+        markers.setLastName(marker(2));
+        markers.setEmail(marker(3));
+        markers.setActivationKey(marker(4));
+        markers.setResetKey(marker(5));
+        markers.setImageUrl(marker(6));
+        return new CompiledTemplate(process(templateName, locale, markers));
+    }
+
+    private static String marker(int field) {
+        return "npspmail" + field + "field";
+    }
+
+    /**
+     * A rendered template cut at the user field markers.
+     */
+    private static final class CompiledTemplate {
+
+        private final List<String> texts = new ArrayList<>();
+
+        private final List<Function<User, String>> fields = new ArrayList<>();
+
+        private final int length;
+
+        CompiledTemplate(String rendered) {
+            Matcher matcher = MARKER.matcher(rendered);
+            int start = 0;
+            while (matcher.find()) {
+                texts.add(rendered.substring(start, matcher.start()));
+                fields.add(USER_FIELDS.get(Integer.parseInt(matcher.group(1))));
+                start = matcher.end();
+            }
+            texts.add(rendered.substring(start));
+            length = rendered.length();
+        }
+
+        String render(User user) {
+            StringBuilder content = new StringBuilder(length + 16 * fields.size());
+            for (int i = 0; i < fields.size(); i++) {
+                content.append(texts.get(i));
+                String value = fields.get(i).apply(user);
+                if (value != null) {
+                    content.append(HtmlUtils.htmlEscape(value));
+                }
+            }
+            return content.append(texts.get(fields.size())).toString();
+        }
+    }
 }
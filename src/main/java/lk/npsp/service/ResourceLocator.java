@@ -1,5 +1,6 @@
 package lk.npsp.service;
 
+import lk.npsp.aop.logging.ExcludeFromLogging;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
 
@@ -12,6 +13,7 @@ import java.util.List;
 // fetch data from a csv file and return as a List<String>
 
 @Service
+@ExcludeFromLogging
 public class ResourceLocator {
     public  List<List<String>> locateResource(String classPath, String delimiter) throws IOException {
         List<List<String>> resources= new ArrayList<>();
@@ -0,0 +1,35 @@
+package lk.npsp.service;
+
+/**
+ * Published once per route write, after all of the route's locations have been written.
+ * <p>
+ * Anything holding a derived view of routes (such as in-memory indexes) should listen for this event rather than
+ * for individual route location changes.
+ */
+public class RouteChangedEvent {
+
+    private final Long routeId;
+
+    private final boolean deleted;
+
+    public RouteChangedEvent(Long routeId, boolean deleted) {
+        this.routeId = routeId;
+        this.deleted = deleted;
+    }
+
+    public Long getRouteId() {
+        return routeId;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    @Override
+    public String toString() {
+        return "RouteChangedEvent{" +
+            "routeId=" + routeId +
+            ", deleted=" + deleted +
+            "}";
+    }
+}
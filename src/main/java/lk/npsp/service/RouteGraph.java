@@ -0,0 +1,397 @@
+package lk.npsp.service;
+
+import lk.npsp.aop.logging.ExcludeFromLogging;
+import lk.npsp.repository.RouteLocationRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.stream.LongStream;
+
+/**
+ * In-memory graph of the route network: for every route its stops in order, and for every stop the routes serving it.
+ * <p>
+ * All adjacency is held in primitive arrays, one row per route and one per stop, found by binary search over sorted
+ * route and location id arrays. The graph is an immutable snapshot, replaced when a route changes, so reads never lock.
+ * It is loaded from the database on first use and patched one route at a time on every {@link RouteChangedEvent}:
+ * the patch builds new rows for the changed route and the stops it gained or lost, and shares every other row with
+ * the previous snapshot.
+ */
+@Service
+@ExcludeFromLogging
+public class RouteGraph {
+
+    private static final long[] NONE = new long[0];
+
+    private static final int[] NO_POSITIONS = new int[0];
+
+    private final Logger log = LoggerFactory.getLogger(RouteGraph.class);
+
+    private final RouteLocationRepository routeLocationRepository;
+
+    private volatile Snapshot snapshot;
+
+    public RouteGraph(RouteLocationRepository routeLocationRepository) {
+        this.routeLocationRepository = routeLocationRepository;
+    }
+
+    /**
+     * Find the routes that stop at one location and later at another.
+     *
+     * @param fromLocationId the location boarded at
+     * @param toLocationId the location alighted at
+     * @return the ids of the routes, ascending
+     */
+    public long[] findRoutesBetween(long fromLocationId, long toLocationId) {
+        Snapshot current = getSnapshot();
+        int from = Arrays.binarySearch(current.stopIds, fromLocationId);
+        int to = Arrays.binarySearch(current.stopIds, toLocationId);
+        if (from < 0 || to < 0 || from == to) {
+            return NONE;
+        }
+        // both lists are sorted by route id, so this is a merge join
+        long[] fromRoutes = current.stopRoutes[from];
+        long[] toRoutes = current.stopRoutes[to];
+        long[] result = new long[Math.min(fromRoutes.length, toRoutes.length)];
+        int found = 0;
+        for (int i = 0, j = 0; i < fromRoutes.length && j < toRoutes.length; ) {
+            if (fromRoutes[i] < toRoutes[j]) {
+                i++;
+            } else if (fromRoutes[i] > toRoutes[j]) {
+                j++;
+            } else {
+                if (current.firstPositions[from][i] < current.lastPositions[to][j]) {
+                    result[found++] = fromRoutes[i];
+                }
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, found);
+    }
+
+    /**
+     * Find the routes that stop at a location.
+     *
+     * @param locationId the location
+     * @return the ids of the routes, ascending
+     */
+    public long[] findRoutesServing(long locationId) {
+        Snapshot current = getSnapshot();
+        int stop = Arrays.binarySearch(current.stopIds, locationId);
+        if (stop < 0) {
+            return NONE;
+        }
+        return current.stopRoutes[stop].clone();
+    }
+
+    /**
+     * Get the stops of a route.
+     *
+     * @param routeId the route
+     * @return the location ids of the route's stops, in sequence order
+     */
+    public long[] getStops(long routeId) {
+        Snapshot current = getSnapshot();
+        int route = Arrays.binarySearch(current.routeIds, routeId);
+        if (route < 0) {
+            return NONE;
+        }
+        return current.routeStops[route].clone();
+    }
+
+    /**
+     * Re-read a changed route once its transaction has committed.
+     *
+     * @param event the change
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRouteChanged(RouteChangedEvent event) {
+        if (event.getRouteId() == null) {
+            return;
+        }
+        if (event.isDeleted()) {
+            update(event.getRouteId(), NONE);
+        } else {
+            long[] stops = routeLocationRepository.findStopLocationIdsByRoute(event.getRouteId()).stream()
+                .mapToLong(Long::longValue).toArray();
+            update(event.getRouteId(), stops);
+        }
+        log.debug("Updated route graph for {}", event);
+    }
+
+    /**
+     * Rebuild the graph from the database.
+     */
+    public synchronized void reload() {
+        Map<Long, long[]> stopsByRoute = new HashMap<>();
+        Long routeId = null;
+        long[] stops = new long[8];
+        int size = 0;
+        for (Object[] row : routeLocationRepository.findAllStopLocationIds()) {
+            if (!row[0].equals(routeId)) {
+                if (routeId != null) {
+                    stopsByRoute.put(routeId, Arrays.copyOf(stops, size));
+                }
+                routeId = (Long) row[0];
+                size = 0;
+            }
+            if (size == stops.length) {
+                stops = Arrays.copyOf(stops, size * 2);
+            }
+            stops[size++] = (Long) row[1];
+        }
+        if (routeId != null) {
+            stopsByRoute.put(routeId, Arrays.copyOf(stops, size));
+        }
+        snapshot = Snapshot.of(stopsByRoute);
+        log.debug("Loaded route graph with {} routes and {} stops", snapshot.routeIds.length, snapshot.stopIds.length);
+    }
+
+    private synchronized void update(long routeId, long[] stops) {
+        if (snapshot == null) {
+            // not loaded yet, the first query reads the change from the database
+            return;
+        }
+        snapshot = snapshot.with(routeId, stops);
+    }
+
+    Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    reload();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Immutable adjacency of the route network. Each route and each stop has a row, at the position of its id in
+     * {@link #routeIds} and {@link #stopIds}; rows are never modified, so snapshots share the ones that did not change.
+     */
+    static final class Snapshot {
+
+        /**
+         * Route ids, ascending.
+         */
+        final long[] routeIds;
+
+        /**
+         * For each route, the location ids of its stops in sequence order.
+         */
+        final long[][] routeStops;
+
+        /**
+         * Location ids of all stops, ascending.
+         */
+        final long[] stopIds;
+
+        /**
+         * For each stop, the ids of the routes serving it, ascending.
+         */
+        final long[][] stopRoutes;
+
+        /**
+         * For each stop and each of its routes, the first and last position of the stop on that route; they only
+         * differ on loop routes that pass a stop twice.
+         */
+        final int[][] firstPositions;
+
+        final int[][] lastPositions;
+
+        private Snapshot(long[] routeIds, long[][] routeStops, long[] stopIds, long[][] stopRoutes,
+                         int[][] firstPositions, int[][] lastPositions) {
+            this.routeIds = routeIds;
+            this.routeStops = routeStops;
+            this.stopIds = stopIds;
+            this.stopRoutes = stopRoutes;
+            this.firstPositions = firstPositions;
+            this.lastPositions = lastPositions;
+        }
+
+        /**
+         * Build the whole graph.
+         *
+         * @param stopsByRoute the location ids of each route's stops, in sequence order
+         * @return the graph
+         */
+        static Snapshot of(Map<Long, long[]> stopsByRoute) {
+            long[] routeIds = stopsByRoute.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+            long[][] routeStops = new long[routeIds.length][];
+            for (int route = 0; route < routeIds.length; route++) {
+                routeStops[route] = stopsByRoute.get(routeIds[route]);
+            }
+            long[] stopIds = stopsByRoute.values().stream().flatMapToLong(Arrays::stream).sorted().distinct().toArray();
+
+            int[] routeCounts = new int[stopIds.length];
+            for (long[] stops : routeStops) {
+                Arrays.stream(stops).distinct().forEach(stopId -> routeCounts[Arrays.binarySearch(stopIds, stopId)]++);
+            }
+            long[][] stopRoutes = new long[stopIds.length][];
+            int[][] firstPositions = new int[stopIds.length][];
+            int[][] lastPositions = new int[stopIds.length][];
+            for (int stop = 0; stop < stopIds.length; stop++) {
+                stopRoutes[stop] = new long[routeCounts[stop]];
+                firstPositions[stop] = new int[routeCounts[stop]];
+                lastPositions[stop] = new int[routeCounts[stop]];
+            }
+            // routes are visited in ascending order, so each stop's route list comes out sorted
+            int[] filled = new int[stopIds.length];
+            for (int route = 0; route < routeIds.length; route++) {
+                long[] stops = routeStops[route];
+                for (int position = 0; position < stops.length; position++) {
+                    int stop = Arrays.binarySearch(stopIds, stops[position]);
+                    int last = filled[stop] - 1;
+                    if (last >= 0 && stopRoutes[stop][last] == routeIds[route]) {
+                        lastPositions[stop][last] = position;
+                    } else {
+                        stopRoutes[stop][++last] = routeIds[route];
+                        firstPositions[stop][last] = position;
+                        lastPositions[stop][last] = position;
+                        filled[stop]++;
+                    }
+                }
+            }
+            return new Snapshot(routeIds, routeStops, stopIds, stopRoutes, firstPositions, lastPositions);
+        }
+
+        /**
+         * Replace the stops of one route. Only the route's row and the rows of the stops it had or now has are new;
+         * the outer arrays are copied, every other row is shared with this snapshot.
+         *
+         * @param routeId the route
+         * @param stops the location ids of its stops in sequence order, empty when the route is gone
+         * @return the patched graph
+         */
+        Snapshot with(long routeId, long[] stops) {
+            int route = Arrays.binarySearch(routeIds, routeId);
+            long[] previousStops = route >= 0 ? routeStops[route] : NONE;
+            if (route < 0 && stops.length == 0) {
+                return this;
+            }
+
+            long[] nextRouteIds = routeIds;
+            long[][] nextRouteStops;
+            if (stops.length == 0) {
+                nextRouteIds = remove(routeIds, route);
+                nextRouteStops = remove(routeStops, route);
+            } else if (route >= 0) {
+                nextRouteStops = routeStops.clone();
+                nextRouteStops[route] = stops;
+            } else {
+                nextRouteIds = insert(routeIds, -route - 1, routeId);
+                nextRouteStops = insert(routeStops, -route - 1, stops);
+            }
+
+            // merge the stops the route had or now has into the stop rows, both ascending
+            long[] touched = LongStream.concat(Arrays.stream(previousStops), Arrays.stream(stops))
+                .sorted().distinct().toArray();
+            int capacity = stopIds.length + touched.length;
+            long[] nextStopIds = new long[capacity];
+            long[][] nextStopRoutes = new long[capacity][];
+            int[][] nextFirstPositions = new int[capacity][];
+            int[][] nextLastPositions = new int[capacity][];
+            int size = 0;
+            int stop = 0;
+            for (long stopId : touched) {
+                for (; stop < stopIds.length && stopIds[stop] < stopId; stop++, size++) {
+                    nextStopIds[size] = stopIds[stop];
+                    nextStopRoutes[size] = stopRoutes[stop];
+                    nextFirstPositions[size] = firstPositions[stop];
+                    nextLastPositions[size] = lastPositions[stop];
+                }
+                long[] routes = NONE;
+                int[] first = NO_POSITIONS;
+                int[] last = NO_POSITIONS;
+                if (stop < stopIds.length && stopIds[stop] == stopId) {
+                    routes = stopRoutes[stop];
+                    first = firstPositions[stop];
+                    last = lastPositions[stop];
+                    stop++;
+                }
+                int at = Arrays.binarySearch(routes, routeId);
+                if (at >= 0) {
+                    routes = remove(routes, at);
+                    first = remove(first, at);
+                    last = remove(last, at);
+                }
+                int firstPosition = -1;
+                int lastPosition = -1;
+                for (int position = 0; position < stops.length; position++) {
+                    if (stops[position] == stopId) {
+                        firstPosition = firstPosition < 0 ? position : firstPosition;
+                        lastPosition = position;
+                    }
+                }
+                if (firstPosition >= 0) {
+                    at = -Arrays.binarySearch(routes, routeId) - 1;
+                    routes = insert(routes, at, routeId);
+                    first = insert(first, at, firstPosition);
+                    last = insert(last, at, lastPosition);
+                }
+                if (routes.length > 0) {
+                    nextStopIds[size] = stopId;
+                    nextStopRoutes[size] = routes;
+                    nextFirstPositions[size] = first;
+                    nextLastPositions[size] = last;
+                    size++;
+                }
+            }
+            for (; stop < stopIds.length; stop++, size++) {
+                nextStopIds[size] = stopIds[stop];
+                nextStopRoutes[size] = stopRoutes[stop];
+                nextFirstPositions[size] = firstPositions[stop];
+                nextLastPositions[size] = lastPositions[stop];
+            }
+            return new Snapshot(nextRouteIds, nextRouteStops, Arrays.copyOf(nextStopIds, size),
+                Arrays.copyOf(nextStopRoutes, size), Arrays.copyOf(nextFirstPositions, size),
+                Arrays.copyOf(nextLastPositions, size));
+        }
+
+        private static long[] insert(long[] array, int at, long value) {
+            long[] result = Arrays.copyOf(array, array.length + 1);
+            System.arraycopy(array, at, result, at + 1, array.length - at);
+            result[at] = value;
+            return result;
+        }
+
+        private static int[] insert(int[] array, int at, int value) {
+            int[] result = Arrays.copyOf(array, array.length + 1);
+            System.arraycopy(array, at, result, at + 1, array.length - at);
+            result[at] = value;
+            return result;
+        }
+
+        private static <T> T[] insert(T[] array, int at, T value) {
+            T[] result = Arrays.copyOf(array, array.length + 1);
+            System.arraycopy(array, at, result, at + 1, array.length - at);
+            result[at] = value;
+            return result;
+        }
+
+        private static long[] remove(long[] array, int at) {
+            long[] result = Arrays.copyOf(array, array.length - 1);
+            System.arraycopy(array, at + 1, result, at, array.length - at - 1);
+            return result;
+        }
+
+        private static int[] remove(int[] array, int at) {
+            int[] result = Arrays.copyOf(array, array.length - 1);
+            System.arraycopy(array, at + 1, result, at, array.length - at - 1);
+            return result;
+        }
+
+        private static <T> T[] remove(T[] array, int at) {
+            T[] result = Arrays.copyOf(array, array.length - 1);
+            System.arraycopy(array, at + 1, result, at, array.length - at - 1);
+            return result;
+        }
+    }
+}
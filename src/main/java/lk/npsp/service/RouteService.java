@@ -0,0 +1,149 @@
+package lk.npsp.service;
+
+import lk.npsp.domain.Route;
+import lk.npsp.domain.RouteLocation;
+import lk.npsp.repository.RouteLocationRepository;
+import lk.npsp.repository.RouteRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+
+/**
+ * Service class for managing routes together with their route locations (stops).
+ * <p>
+ * Stop lists are written as a diff against what is stored: unchanged stops are left alone, changed stops are
+ * updated in place, removed stops go in one bulk delete and new stops are inserted in one batch. A single
+ * {@link RouteChangedEvent} is published at the end of each write.
+ */
+@Service
+@Transactional
+public class RouteService {
+
+    private final Logger log = LoggerFactory.getLogger(RouteService.class);
+
+    private final RouteRepository routeRepository;
+
+    private final RouteLocationRepository routeLocationRepository;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public RouteService(RouteRepository routeRepository, RouteLocationRepository routeLocationRepository,
+                        ApplicationEventPublisher eventPublisher) {
+        this.routeRepository = routeRepository;
+        this.routeLocationRepository = routeLocationRepository;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Save a new route and all of its route locations.
+     *
+     * @param route the route to create, with its route locations
+     * @return the persisted route
+     */
+    public Route createRoute(Route route) {
+        SortedSet<RouteLocation> requestedRouteLocations = route.getRouteLocations();
+        route.setRouteLocations(new HashSet<>());
+        Route result = routeRepository.save(route);
+        for (RouteLocation routeLocation : requestedRouteLocations) {
+            routeLocation.setRoute(result);
+        }
+        routeLocationRepository.saveAll(requestedRouteLocations);
+        result.setRouteLocations(new HashSet<>(requestedRouteLocations));
+        log.debug("Created Route {} with {} route locations", result.getId(), requestedRouteLocations.size());
+        eventPublisher.publishEvent(new RouteChangedEvent(result.getId(), false));
+        return result;
+    }
+
+    /**
+     * Update a route and replace its route locations with the requested ones.
+     * <p>
+     * Requested stops are matched to stored stops by id first, then by sequence number; matched stops are updated
+     * in place, unmatched stored stops are deleted and unmatched requested stops are inserted.
+     *
+     * @param route the route to update, with the complete new list of route locations
+     * @return the updated route, or empty if no route exists with that id
+     */
+    public Optional<Route> updateRoute(Route route) {
+        Optional<Route> existingRoute = routeRepository.findById(route.getId());
+        if (!existingRoute.isPresent()) {
+            return Optional.empty();
+        }
+        Route managedRoute = existingRoute.get();
+        managedRoute.setRouteName(route.getRouteName());
+        managedRoute.setRouteNumber(route.getRouteNumber());
+
+        Map<Long, RouteLocation> storedById = new HashMap<>();
+        for (RouteLocation stored : routeLocationRepository.findRouteLocationsByRoute(managedRoute.getId())) {
+            storedById.put(stored.getId(), stored);
+        }
+
+        List<RouteLocation> routeLocations = new ArrayList<>();
+        List<RouteLocation> unmatched = new ArrayList<>();
+        for (RouteLocation requested : route.getRouteLocations()) {
+            RouteLocation stored = requested.getId() == null ? null : storedById.remove(requested.getId());
+            if (stored == null) {
+                unmatched.add(requested);
+            } else {
+                routeLocations.add(applyChanges(stored, requested));
+            }
+        }
+
+        Map<Long, RouteLocation> storedBySequence = new HashMap<>();
+        for (RouteLocation stored : storedById.values()) {
+            storedBySequence.put(stored.getSequenceNumber(), stored);
+        }
+        List<RouteLocation> inserts = new ArrayList<>();
+        for (RouteLocation requested : unmatched) {
+            RouteLocation stored = storedBySequence.remove(requested.getSequenceNumber());
+            if (stored == null) {
+                inserts.add(new RouteLocation()
+                    .sequenceNumber(requested.getSequenceNumber())
+                    .location(requested.getLocation())
+                    .route(managedRoute));
+            } else {
+                storedById.remove(stored.getId());
+                routeLocations.add(applyChanges(stored, requested));
+            }
+        }
+
+        if (!storedById.isEmpty()) {
+            routeLocationRepository.deleteByIdIn(storedById.keySet());
+        }
+        routeLocationRepository.saveAll(inserts);
+        routeLocations.addAll(inserts);
+        log.debug("Updated Route {}: {} route locations kept, {} deleted, {} inserted", managedRoute.getId(),
+            routeLocations.size() - inserts.size(), storedById.size(), inserts.size());
+
+        managedRoute.setRouteLocations(new HashSet<>(routeLocations));
+        eventPublisher.publishEvent(new RouteChangedEvent(managedRoute.getId(), false));
+        return Optional.of(managedRoute);
+    }
+
+    /**
+     * Delete a route, removing its route locations with a single statement.
+     *
+     * @param id the id of the route to delete
+     */
+    public void deleteRoute(Long id) {
+        routeLocationRepository.deleteAllByRouteId(id);
+        routeRepository.deleteById(id);
+        eventPublisher.publishEvent(new RouteChangedEvent(id, true));
+    }
+
+    private RouteLocation applyChanges(RouteLocation stored, RouteLocation requested) {
+        if (!Objects.equals(stored.getSequenceNumber(), requested.getSequenceNumber())) {
+            stored.setSequenceNumber(requested.getSequenceNumber());
+        }
+        Long storedLocationId = stored.getLocation() == null ? null : stored.getLocation().getId();
+        Long requestedLocationId = requested.getLocation() == null ? null : requested.getLocation().getId();
+        if (!Objects.equals(storedLocationId, requestedLocationId)) {
+            stored.setLocation(requested.getLocation());
+        }
+        return stored;
+    }
+}
@@ -0,0 +1,60 @@
+package lk.npsp.service;
+
+import lk.npsp.domain.ScheduleInstance;
+import lk.npsp.repository.ScheduleInstanceRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+
+/**
+ * Service class for operator changes to schedule instances.
+ * <p>
+ * An update, the later departures its delay moves (see {@link DelayPropagator}) and the departures moved to free bays
+ * after it (see {@link BayAllocator}) are written in one transaction, so either all of them commit or none does. One
+ * {@link ScheduleInstancesChangedEvent} covers them all, and reaches its listeners once the transaction has committed.
+ */
+@Service
+@Transactional
+public class ScheduleInstanceService {
+
+    private final Logger log = LoggerFactory.getLogger(ScheduleInstanceService.class);
+
+    private final ScheduleInstanceRepository scheduleInstanceRepository;
+
+    private final DelayPropagator delayPropagator;
+
+    private final BayAllocator bayAllocator;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public ScheduleInstanceService(ScheduleInstanceRepository scheduleInstanceRepository,
+                                   DelayPropagator delayPropagator, BayAllocator bayAllocator,
+                                   ApplicationEventPublisher eventPublisher) {
+        this.scheduleInstanceRepository = scheduleInstanceRepository;
+        this.delayPropagator = delayPropagator;
+        this.bayAllocator = bayAllocator;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Save an instance as changed by an operator, then move the departures its change affects.
+     *
+     * @param scheduleInstance the instance to update
+     * @return the saved instance
+     */
+    public ScheduleInstance updateScheduleInstance(ScheduleInstance scheduleInstance) {
+        ScheduleInstance result = scheduleInstanceRepository.saveAndFlush(scheduleInstance);
+        Set<Long> changed = new LinkedHashSet<>();
+        changed.add(result.getId());
+        changed.addAll(delayPropagator.propagate(result));
+        changed.addAll(bayAllocator.reassignAfterChange(result.getDate()));
+        log.debug("Updated ScheduleInstance {}, {} departures changed with it", result.getId(), changed.size() - 1);
+        eventPublisher.publishEvent(new ScheduleInstancesChangedEvent(new ArrayList<>(changed), false));
+        return result;
+    }
+}
@@ -0,0 +1,35 @@
+package lk.npsp.service;
+
+import java.util.Collection;
+
+/**
+ * Published after schedule instances are created, updated or deleted, carrying the ids of all instances written
+ * together so listeners can apply them as one change.
+ */
+public class ScheduleInstancesChangedEvent {
+
+    private final Collection<Long> scheduleInstanceIds;
+
+    private final boolean deleted;
+
+    public ScheduleInstancesChangedEvent(Collection<Long> scheduleInstanceIds, boolean deleted) {
+        this.scheduleInstanceIds = scheduleInstanceIds;
+        this.deleted = deleted;
+    }
+
+    public Collection<Long> getScheduleInstanceIds() {
+        return scheduleInstanceIds;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    @Override
+    public String toString() {
+        return "ScheduleInstancesChangedEvent{" +
+            "scheduleInstanceIds=" + scheduleInstanceIds +
+            ", deleted=" + deleted +
+            "}";
+    }
+}
@@ -0,0 +1,332 @@
+package lk.npsp.service;
+
+import lk.npsp.config.ApplicationProperties;
+import lk.npsp.domain.ScheduleInstance;
+import lk.npsp.domain.enumeration.ScheduleState;
+import lk.npsp.repository.ScheduleInstanceRepository;
+import lk.npsp.service.util.TimingWheel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves departures to BOARDING boarding-minutes-before their actual scheduled time, and to DEPARTED
+ * departed-minutes-after it, without an operator.
+ * <p>
+ * The next transition of every instance dated yesterday, today or tomorrow is held in a {@link TimingWheel} with a
+ * slot per tick-ms, so a tick costs the same however many departures the day has, and the database is read only when
+ * the wheel is loaded and when instances change. One background thread advances the wheel every tick and writes the
+ * transitions that came due in one transaction, then publishes them as one {@link ScheduleInstancesChangedEvent} so
+ * the screens update together. A transition is written only if the instance is still in the state it was planned
+ * from, so a change made by an operator in the meantime wins. Pending or delayed departures found already past their
+ * departure, after a restart, go straight to DEPARTED.
+ * <p>
+ * The thread starts once the application is ready, so the database is migrated before the first tick. The wheel is
+ * loaded on the first tick and again at midnight, and kept up to date from
+ * {@link ScheduleInstancesChangedEvent}s, which also reschedule the departures moved by a delay. Only one instance of
+ * the application should run the wheel, see enabled.
+ */
+@Service
+public class ScheduleStateWheel {
+
+    /**
+     * Above this many changed instances reloading the wheel is cheaper than rescheduling one instance at a time.
+     */
+    private static final int MAX_PATCH_SIZE = 64;
+
+    private static final int WHEEL_SIZE = 64;
+
+    /**
+     * Three levels of 64 slots cover 64^3 ticks, over three days at one-second ticks.
+     */
+    private static final int WHEEL_LEVELS = 3;
+
+    private final Logger log = LoggerFactory.getLogger(ScheduleStateWheel.class);
+
+    private final ScheduleInstanceRepository scheduleInstanceRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final ApplicationProperties.Transitions properties;
+
+    private final DomainMetrics domainMetrics;
+
+    private final ZoneId zone;
+
+    private final Object monitor = new Object();
+
+    private volatile Thread wheelThread;
+
+    /**
+     * The transition each instance waits for; transitions left in the wheel for an instance since rescheduled are
+     * ignored when they expire.
+     */
+    private final Map<Long, Transition> expected = new HashMap<>();
+
+    private TimingWheel<Transition> wheel;
+
+    private LocalDate loadedDay;
+
+    private volatile boolean running = true;
+
+    public ScheduleStateWheel(ScheduleInstanceRepository scheduleInstanceRepository,
+                              PlatformTransactionManager transactionManager, ApplicationEventPublisher eventPublisher,
+                              ApplicationProperties applicationProperties, DomainMetrics domainMetrics,
+                              ZoneId zone) {
+        this.scheduleInstanceRepository = scheduleInstanceRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.properties = applicationProperties.getTransitions();
+        this.domainMetrics = domainMetrics;
+        this.zone = zone;
+    }
+
+    /**
+     * Start the wheel thread, if enabled, once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (!properties.isEnabled() || wheelThread != null || !running) {
+            return;
+        }
+        wheelThread = new Thread(this::run, "npsp-state-wheel");
+        wheelThread.setDaemon(true);
+        wheelThread.start();
+    }
+
+    /**
+     * Move the wheel to an instant and write the transitions due by then.
+     *
+     * @param now the instant
+     * @return the number of instances whose state changed
+     */
+    public int advanceTo(Instant now) {
+        List<Transition> due = new ArrayList<>();
+        synchronized (this) {
+            ensureLoaded(now);
+            for (Transition transition : wheel.advanceTo(tick(now.toEpochMilli()))) {
+                if (expected.remove(transition.id, transition)) {
+                    due.add(transition);
+                }
+            }
+        }
+        if (due.isEmpty()) {
+            return 0;
+        }
+        long start = domainMetrics.monotonicTime();
+        List<Transition> applied;
+        try {
+            applied = save(due);
+        } catch (RuntimeException e) {
+            // the expected transitions are gone, read them again
+            synchronized (this) {
+                loadedDay = null;
+            }
+            throw e;
+        }
+        int boarding = 0;
+        List<Long> ids = new ArrayList<>(applied.size());
+        for (Transition transition : applied) {
+            ids.add(transition.id);
+            if (transition.to == ScheduleState.BOARDING) {
+                boarding++;
+            }
+        }
+        domainMetrics.recordStateTransitions(start, boarding, applied.size() - boarding);
+        log.debug("Moved {} departures to boarding and {} to departed", boarding, applied.size() - boarding);
+        if (!ids.isEmpty()) {
+            // also schedules the next transition of each
+            eventPublisher.publishEvent(new ScheduleInstancesChangedEvent(ids, false));
+        }
+        return applied.size();
+    }
+
+    /**
+     * Reschedule the transitions of instances written elsewhere.
+     *
+     * @param event the change
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onScheduleInstancesChanged(ScheduleInstancesChangedEvent event) {
+        synchronized (this) {
+            if (loadedDay == null || event.getScheduleInstanceIds().isEmpty()) {
+                // not loaded yet, the load reads the change from the database
+                return;
+            }
+            if (event.getScheduleInstanceIds().size() > MAX_PATCH_SIZE) {
+                loadedDay = null;
+                return;
+            }
+        }
+        List<ScheduleInstanceRepository.Timing> changed = event.isDeleted() ? Collections.emptyList() :
+            scheduleInstanceRepository.findTimingsByIdIn(event.getScheduleInstanceIds());
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            if (loadedDay == null) {
+                return;
+            }
+            event.getScheduleInstanceIds().forEach(expected::remove);
+            for (ScheduleInstanceRepository.Timing timing : changed) {
+                if (isLoaded(timing.getScheduleDate())) {
+                    schedule(timing, now);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop the wheel thread; transitions due while stopped are written after the next start.
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        Thread thread = wheelThread;
+        if (thread == null) {
+            return;
+        }
+        synchronized (monitor) {
+            monitor.notifyAll();
+        }
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                advanceTo(Instant.now());
+            } catch (RuntimeException e) {
+                log.error("Could not write due state transitions: {}", e.getMessage(), e);
+            }
+            synchronized (monitor) {
+                try {
+                    if (running) {
+                        monitor.wait(Math.max(1, properties.getTickMs()));
+                    }
+                } catch (InterruptedException e) {
+                    // only shutdown() stops the wheel
+                    log.debug("State wheel interrupted");
+                }
+            }
+        }
+        log.debug("State wheel stopped");
+    }
+
+    /**
+     * Write the transitions, reading the instances again in one transaction so they are updated in JDBC batches.
+     *
+     * @return the transitions written
+     */
+    private List<Transition> save(List<Transition> due) {
+        Map<Long, Transition> byId = new HashMap<>();
+        due.forEach(transition -> byId.put(transition.id, transition));
+        return transactionTemplate.execute(status -> {
+            List<Transition> applied = new ArrayList<>(due.size());
+            for (ScheduleInstance instance : scheduleInstanceRepository.findAllById(byId.keySet())) {
+                Transition transition = byId.get(instance.getId());
+                if (instance.getScheduleState() == transition.from) {
+                    instance.setScheduleState(transition.to);
+                    applied.add(transition);
+                }
+            }
+            return applied;
+        });
+    }
+
+    private void ensureLoaded(Instant now) {
+        LocalDate today = now.atZone(zone).toLocalDate();
+        if (today.equals(loadedDay)) {
+            return;
+        }
+        // read first, so a failed read leaves the day unloaded and the next tick tries again
+        List<ScheduleInstanceRepository.Timing> timings = scheduleInstanceRepository.findTimingsByDateBetween(
+            today.minusDays(1), today.plusDays(1));
+        wheel = new TimingWheel<>(WHEEL_SIZE, WHEEL_LEVELS, tick(now.toEpochMilli()));
+        expected.clear();
+        for (ScheduleInstanceRepository.Timing timing : timings) {
+            schedule(timing, now.toEpochMilli());
+        }
+        loadedDay = today;
+        log.debug("Loaded state wheel with {} transitions", wheel.size());
+    }
+
+    /**
+     * Put the next transition of an instance in the wheel, if it has one.
+     */
+    private void schedule(ScheduleInstanceRepository.Timing timing, long now) {
+        if (timing.getActualScheduledTime() == null || timing.getScheduleState() == null) {
+            return;
+        }
+        long actual = timing.getActualScheduledTime().toEpochMilli();
+        long boardingAt = actual - TimeUnit.MINUTES.toMillis(properties.getBoardingMinutesBefore());
+        long departedAt = actual + TimeUnit.MINUTES.toMillis(properties.getDepartedMinutesAfter());
+        Transition transition;
+        long at;
+        switch (timing.getScheduleState()) {
+            case PENDING:
+            case DELAYED:
+                if (now >= departedAt) {
+                    transition = new Transition(timing.getId(), timing.getScheduleState(), ScheduleState.DEPARTED);
+                    at = departedAt;
+                } else {
+                    transition = new Transition(timing.getId(), timing.getScheduleState(), ScheduleState.BOARDING);
+                    at = boardingAt;
+                }
+                break;
+            case BOARDING:
+                transition = new Transition(timing.getId(), ScheduleState.BOARDING, ScheduleState.DEPARTED);
+                at = departedAt;
+                break;
+            default:
+                return;
+        }
+        expected.put(transition.id, transition);
+        // rounded up, so no transition happens early
+        wheel.add(transition, tick(at + Math.max(1, properties.getTickMs()) - 1));
+    }
+
+    private boolean isLoaded(LocalDate date) {
+        return date != null && !date.isBefore(loadedDay.minusDays(1)) && !date.isAfter(loadedDay.plusDays(1));
+    }
+
+    private long tick(long epochMilli) {
+        return Math.floorDiv(epochMilli, Math.max(1, properties.getTickMs()));
+    }
+
+    /**
+     * A state change an instance waits for. Compared by identity, so a rescheduled instance ignores its old ones.
+     */
+    private static final class Transition {
+
+        private final long id;
+
+        private final ScheduleState from;
+
+        private final ScheduleState to;
+
+        Transition(long id, ScheduleState from, ScheduleState to) {
+            this.id = id;
+            this.from = from;
+            this.to = to;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package lk.npsp.service;
 
+import lk.npsp.aop.logging.ExcludeFromLogging;
 import lk.npsp.domain.enumeration.ScreenLanguage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.ClassPathResource;
@@ -9,6 +10,7 @@ import java.io.*;
 import java.util.*;
 
 @Service
+@ExcludeFromLogging
 public class SimpleTranslator {
 
     private Map<String, List<String>> dictionary = new HashMap<>();
@@ -1,11 +1,13 @@
 package lk.npsp.service;
 
+import lk.npsp.config.ApplicationProperties;
 import lk.npsp.config.Constants;
 import lk.npsp.domain.Authority;
 import lk.npsp.domain.User;
 import lk.npsp.repository.AuthorityRepository;
 import lk.npsp.repository.UserRepository;
 import lk.npsp.security.AuthoritiesConstants;
+import lk.npsp.security.DomainUserDetailsService;
 import lk.npsp.security.SecurityUtils;
 import lk.npsp.service.dto.UserDTO;
 import lk.npsp.service.util.RandomUtil;
@@ -13,17 +15,25 @@ import lk.npsp.web.rest.errors.*;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -43,11 +53,21 @@ public class UserService {
 
     private final CacheManager cacheManager;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, AuthorityRepository authorityRepository, CacheManager cacheManager) {
+    private final ApplicationProperties.Users properties;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final DomainMetrics domainMetrics;
+
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, AuthorityRepository authorityRepository, CacheManager cacheManager,
+                       ApplicationProperties applicationProperties, PlatformTransactionManager transactionManager, DomainMetrics domainMetrics) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.authorityRepository = authorityRepository;
         this.cacheManager = cacheManager;
+        this.properties = applicationProperties.getUsers();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.domainMetrics = domainMetrics;
     }
 
     public Optional<User> activateRegistration(String key) {
@@ -177,6 +197,8 @@ public class UserService {
         SecurityUtils.getCurrentUserLogin()
             .flatMap(userRepository::findOneByLogin)
             .ifPresent(user -> {
+                // the principal may be cached under the old email
+                this.clearUserCaches(user);
                 user.setFirstName(firstName);
                 user.setLastName(lastName);
                 user.setEmail(email.toLowerCase());
@@ -265,19 +287,47 @@ public class UserService {
     }
 
     /**
-     * Not activated users should be automatically deleted after 3 days.
+     * Not activated users should be automatically deleted after not-activated-days, 3 by default.
+     * <p>
+     * Users are deleted purge-chunk-size at a time with set-based statements: their ids and cache keys are selected,
+     * their authorities and then the users are deleted, and the cache entries of the chunk are evicted together.
+     * When called outside a transaction, as by the scheduler, each chunk is committed on its own.
      * <p>
      * This is scheduled to get fired everyday, at 01:00 (am).
      */
     @Scheduled(cron = "0 0 1 * * ?")
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void removeNotActivatedUsers() {
-        userRepository
-            .findAllByActivatedIsFalseAndCreatedDateBefore(Instant.now().minus(3, ChronoUnit.DAYS))
-            .forEach(user -> {
-                log.debug("Deleting not activated user {}", user.getLogin());
-                userRepository.delete(user);
-                this.clearUserCaches(user);
+        Instant createdBefore = Instant.now().minus(properties.getNotActivatedDays(), ChronoUnit.DAYS);
+        PageRequest chunk = PageRequest.of(0, Math.max(1, properties.getPurgeChunkSize()));
+        long afterId = Long.MIN_VALUE;
+        int deleted = 0;
+        List<UserRepository.UserKeys> keys;
+        do {
+            long start = domainMetrics.monotonicTime();
+            long lastId = afterId;
+            keys = transactionTemplate.execute(status -> {
+                List<UserRepository.UserKeys> selected = userRepository.findNotActivatedKeys(createdBefore, lastId, chunk);
+                if (!selected.isEmpty()) {
+                    List<Long> ids = selected.stream().map(UserRepository.UserKeys::getId).collect(Collectors.toList());
+                    userRepository.deleteNotActivatedAuthorities(ids);
+                    userRepository.deleteNotActivated(ids);
+                }
+                return selected;
             });
+            if (keys.isEmpty()) {
+                break;
+            }
+            evictAll(UserRepository.USERS_BY_LOGIN_CACHE, keys, UserRepository.UserKeys::getLogin);
+            evictAll(UserRepository.USERS_BY_EMAIL_CACHE, keys, UserRepository.UserKeys::getEmail);
+            afterId = keys.get(keys.size() - 1).getId();
+            deleted += keys.size();
+            domainMetrics.recordUserPurgeChunk(start, keys.size());
+            log.debug("Deleted {} not activated users so far", deleted);
+        } while (keys.size() == chunk.getPageSize());
+        if (deleted > 0) {
+            log.info("Deleted {} users not activated since {}", deleted, createdBefore);
+        }
     }
 
     /**
@@ -287,8 +337,46 @@ public class UserService {
         return authorityRepository.findAll().stream().map(Authority::getName).collect(Collectors.toList());
     }
 
+    /**
+     * Evict many keys at once, with a single bulk removal when the cache is a JCache.
+     */
+    @SuppressWarnings("unchecked")
+    private void evictAll(String cacheName, List<UserRepository.UserKeys> users,
+                          Function<UserRepository.UserKeys, String> key) {
+        Cache cache = Objects.requireNonNull(cacheManager.getCache(cacheName));
+        Set<Object> keys = users.stream().map(key).filter(Objects::nonNull).collect(Collectors.toSet());
+        if (cache.getNativeCache() instanceof javax.cache.Cache) {
+            ((javax.cache.Cache<Object, Object>) cache.getNativeCache()).removeAll(keys);
+        } else {
+            keys.forEach(cache::evict);
+        }
+    }
+
+    /**
+     * Evict a user from the caches now and, when a transaction is running, again once it commits: a login between
+     * the two would otherwise cache the user as it was before the change.
+     */
     private void clearUserCaches(User user) {
-        Objects.requireNonNull(cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE)).evict(user.getLogin());
-        Objects.requireNonNull(cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE)).evict(user.getEmail());
+        String login = user.getLogin();
+        String email = user.getEmail();
+        evictUser(login, email);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    evictUser(login, email);
+                }
+            });
+        }
+    }
+
+    private void evictUser(String login, String email) {
+        Objects.requireNonNull(cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE)).evict(login);
+        Objects.requireNonNull(cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE)).evict(email);
+        Cache userDetails = Objects.requireNonNull(cacheManager.getCache(DomainUserDetailsService.USER_DETAILS_CACHE));
+        userDetails.evict(DomainUserDetailsService.cacheKey(login));
+        if (email != null) {
+            userDetails.evict(DomainUserDetailsService.cacheKey(email));
+        }
     }
 }
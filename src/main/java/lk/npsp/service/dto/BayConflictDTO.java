@@ -0,0 +1,95 @@
+package lk.npsp.service.dto;
+
+import java.time.Instant;
+
+/**
+ * A DTO representing two departures occupying the same bay at the same time.
+ */
+public class BayConflictDTO {
+
+    private Long bayId;
+
+    private Long firstScheduleInstanceId;
+
+    private Long secondScheduleInstanceId;
+
+    private Instant from;
+
+    private Instant to;
+
+    public BayConflictDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public BayConflictDTO(Long bayId, Long firstScheduleInstanceId, Long secondScheduleInstanceId, Instant from,
+                          Instant to) {
+        this.bayId = bayId;
+        this.firstScheduleInstanceId = firstScheduleInstanceId;
+        this.secondScheduleInstanceId = secondScheduleInstanceId;
+        this.from = from;
+        this.to = to;
+    }
+
+    public Long getBayId() {
+        return bayId;
+    }
+
+    public void setBayId(Long bayId) {
+        this.bayId = bayId;
+    }
+
+    /**
+     * @return the departure occupying the bay first
+     */
+    public Long getFirstScheduleInstanceId() {
+        return firstScheduleInstanceId;
+    }
+
+    public void setFirstScheduleInstanceId(Long firstScheduleInstanceId) {
+        this.firstScheduleInstanceId = firstScheduleInstanceId;
+    }
+
+    /**
+     * @return the departure arriving in the bay while the first one still occupies it
+     */
+    public Long getSecondScheduleInstanceId() {
+        return secondScheduleInstanceId;
+    }
+
+    public void setSecondScheduleInstanceId(Long secondScheduleInstanceId) {
+        this.secondScheduleInstanceId = secondScheduleInstanceId;
+    }
+
+    /**
+     * @return the start of the overlap
+     */
+    public Instant getFrom() {
+        return from;
+    }
+
+    public void setFrom(Instant from) {
+        this.from = from;
+    }
+
+    /**
+     * @return the end of the overlap
+     */
+    public Instant getTo() {
+        return to;
+    }
+
+    public void setTo(Instant to) {
+        this.to = to;
+    }
+
+    @Override
+    public String toString() {
+        return "BayConflictDTO{" +
+            "bayId=" + bayId +
+            ", firstScheduleInstanceId=" + firstScheduleInstanceId +
+            ", secondScheduleInstanceId=" + secondScheduleInstanceId +
+            ", from=" + from +
+            ", to=" + to +
+            "}";
+    }
+}
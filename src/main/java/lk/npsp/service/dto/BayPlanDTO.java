@@ -0,0 +1,87 @@
+package lk.npsp.service.dto;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A DTO representing the check of a day's bay assignments: the conflicts found and the moves resolving them.
+ */
+public class BayPlanDTO {
+
+    private LocalDate date;
+
+    private int departures;
+
+    private List<BayConflictDTO> conflicts = new ArrayList<>();
+
+    private List<BayReassignmentDTO> reassignments = new ArrayList<>();
+
+    private List<Long> unresolved = new ArrayList<>();
+
+    public BayPlanDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public BayPlanDTO(LocalDate date, int departures) {
+        this.date = date;
+        this.departures = departures;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDate date) {
+        this.date = date;
+    }
+
+    /**
+     * @return the number of departures with a bay checked
+     */
+    public int getDepartures() {
+        return departures;
+    }
+
+    public void setDepartures(int departures) {
+        this.departures = departures;
+    }
+
+    public List<BayConflictDTO> getConflicts() {
+        return conflicts;
+    }
+
+    public void setConflicts(List<BayConflictDTO> conflicts) {
+        this.conflicts = conflicts;
+    }
+
+    public List<BayReassignmentDTO> getReassignments() {
+        return reassignments;
+    }
+
+    public void setReassignments(List<BayReassignmentDTO> reassignments) {
+        this.reassignments = reassignments;
+    }
+
+    /**
+     * @return the departures in conflict for which no bay is free
+     */
+    public List<Long> getUnresolved() {
+        return unresolved;
+    }
+
+    public void setUnresolved(List<Long> unresolved) {
+        this.unresolved = unresolved;
+    }
+
+    @Override
+    public String toString() {
+        return "BayPlanDTO{" +
+            "date=" + date +
+            ", departures=" + departures +
+            ", conflicts=" + conflicts.size() +
+            ", reassignments=" + reassignments.size() +
+            ", unresolved=" + unresolved.size() +
+            "}";
+    }
+}
@@ -0,0 +1,56 @@
+package lk.npsp.service.dto;
+
+/**
+ * A DTO representing a departure moved, or to be moved, to another bay.
+ */
+public class BayReassignmentDTO {
+
+    private Long scheduleInstanceId;
+
+    private Long fromBayId;
+
+    private Long toBayId;
+
+    public BayReassignmentDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public BayReassignmentDTO(Long scheduleInstanceId, Long fromBayId, Long toBayId) {
+        this.scheduleInstanceId = scheduleInstanceId;
+        this.fromBayId = fromBayId;
+        this.toBayId = toBayId;
+    }
+
+    public Long getScheduleInstanceId() {
+        return scheduleInstanceId;
+    }
+
+    public void setScheduleInstanceId(Long scheduleInstanceId) {
+        this.scheduleInstanceId = scheduleInstanceId;
+    }
+
+    public Long getFromBayId() {
+        return fromBayId;
+    }
+
+    public void setFromBayId(Long fromBayId) {
+        this.fromBayId = fromBayId;
+    }
+
+    public Long getToBayId() {
+        return toBayId;
+    }
+
+    public void setToBayId(Long toBayId) {
+        this.toBayId = toBayId;
+    }
+
+    @Override
+    public String toString() {
+        return "BayReassignmentDTO{" +
+            "scheduleInstanceId=" + scheduleInstanceId +
+            ", fromBayId=" + fromBayId +
+            ", toBayId=" + toBayId +
+            "}";
+    }
+}
@@ -0,0 +1,49 @@
+package lk.npsp.service.dto;
+
+import lk.npsp.domain.Location;
+
+/**
+ * A DTO representing a location and its distance from a query point.
+ */
+public class NearbyLocationDTO {
+
+    private Location location;
+
+    private double distance;
+
+    public NearbyLocationDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public NearbyLocationDTO(Location location, double distance) {
+        this.location = location;
+        this.distance = distance;
+    }
+
+    public Location getLocation() {
+        return location;
+    }
+
+    public void setLocation(Location location) {
+        this.location = location;
+    }
+
+    /**
+     * @return great-circle distance from the query point, in kilometers
+     */
+    public double getDistance() {
+        return distance;
+    }
+
+    public void setDistance(double distance) {
+        this.distance = distance;
+    }
+
+    @Override
+    public String toString() {
+        return "NearbyLocationDTO{" +
+            "location=" + location +
+            ", distance=" + distance +
+            "}";
+    }
+}
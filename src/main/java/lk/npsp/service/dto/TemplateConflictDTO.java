@@ -0,0 +1,128 @@
+package lk.npsp.service.dto;
+
+import lk.npsp.domain.enumeration.Weekdays;
+
+import java.time.LocalTime;
+
+/**
+ * A DTO representing a vehicle or a driver booked by two active schedule templates at the same time.
+ */
+public class TemplateConflictDTO {
+
+    public static final String VEHICLE = "vehicle";
+
+    public static final String DRIVER = "driver";
+
+    private String resource;
+
+    private Long resourceId;
+
+    private Long scheduleTemplateId;
+
+    private Long otherScheduleTemplateId;
+
+    private Weekdays weekday;
+
+    private LocalTime from;
+
+    private LocalTime to;
+
+    public TemplateConflictDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public TemplateConflictDTO(String resource, Long resourceId, Long scheduleTemplateId,
+                               Long otherScheduleTemplateId, Weekdays weekday, LocalTime from, LocalTime to) {
+        this.resource = resource;
+        this.resourceId = resourceId;
+        this.scheduleTemplateId = scheduleTemplateId;
+        this.otherScheduleTemplateId = otherScheduleTemplateId;
+        this.weekday = weekday;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * @return what is double-booked, vehicle or driver
+     */
+    public String getResource() {
+        return resource;
+    }
+
+    public void setResource(String resource) {
+        this.resource = resource;
+    }
+
+    public Long getResourceId() {
+        return resourceId;
+    }
+
+    public void setResourceId(Long resourceId) {
+        this.resourceId = resourceId;
+    }
+
+    /**
+     * @return the template checked, or the first of the two in an audit
+     */
+    public Long getScheduleTemplateId() {
+        return scheduleTemplateId;
+    }
+
+    public void setScheduleTemplateId(Long scheduleTemplateId) {
+        this.scheduleTemplateId = scheduleTemplateId;
+    }
+
+    public Long getOtherScheduleTemplateId() {
+        return otherScheduleTemplateId;
+    }
+
+    public void setOtherScheduleTemplateId(Long otherScheduleTemplateId) {
+        this.otherScheduleTemplateId = otherScheduleTemplateId;
+    }
+
+    /**
+     * @return the day the overlap starts on
+     */
+    public Weekdays getWeekday() {
+        return weekday;
+    }
+
+    public void setWeekday(Weekdays weekday) {
+        this.weekday = weekday;
+    }
+
+    /**
+     * @return the start of the overlap
+     */
+    public LocalTime getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalTime from) {
+        this.from = from;
+    }
+
+    /**
+     * @return the end of the overlap, on the next day if before from
+     */
+    public LocalTime getTo() {
+        return to;
+    }
+
+    public void setTo(LocalTime to) {
+        this.to = to;
+    }
+
+    @Override
+    public String toString() {
+        return "TemplateConflictDTO{" +
+            "resource='" + resource + "'" +
+            ", resourceId=" + resourceId +
+            ", scheduleTemplateId=" + scheduleTemplateId +
+            ", otherScheduleTemplateId=" + otherScheduleTemplateId +
+            ", weekday=" + weekday +
+            ", from=" + from +
+            ", to=" + to +
+            "}";
+    }
+}
@@ -0,0 +1,130 @@
+package lk.npsp.service.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable interval tree over half-open intervals [start, end), answering which intervals overlap a query interval
+ * in O(log n + k) for k answers.
+ * <p>
+ * The intervals are sorted by start and the tree is implicit in the sorted arrays: the middle of a range is the root
+ * of its subtree, and each root also stores the largest end in its subtree, so whole subtrees ending before the query
+ * are skipped. Building takes O(n log n).
+ *
+ * @param <T> the type of the items carried by the intervals
+ */
+public class IntervalTree<T> {
+
+    private final long[] starts;
+
+    private final long[] ends;
+
+    private final long[] maxEnds;
+
+    private final List<Interval<T>> intervals;
+
+    public IntervalTree(Collection<Interval<T>> intervals) {
+        this.intervals = new ArrayList<>(intervals);
+        this.intervals.sort(Comparator.comparingLong((Interval<T> interval) -> interval.start)
+            .thenComparingLong(interval -> interval.end));
+        int size = this.intervals.size();
+        this.starts = new long[size];
+        this.ends = new long[size];
+        this.maxEnds = new long[size];
+        for (int i = 0; i < size; i++) {
+            starts[i] = this.intervals.get(i).start;
+            ends[i] = this.intervals.get(i).end;
+        }
+        computeMaxEnds(0, size);
+    }
+
+    /**
+     * Find the intervals overlapping an interval.
+     *
+     * @param start the start of the interval, included
+     * @param end the end of the interval, excluded
+     * @return the overlapping intervals, by start
+     */
+    public List<Interval<T>> overlapping(long start, long end) {
+        List<Interval<T>> found = new ArrayList<>();
+        if (start < end) {
+            collect(0, starts.length, start, end, found);
+        }
+        return found;
+    }
+
+    /**
+     * @return all the intervals, by start
+     */
+    public List<Interval<T>> getIntervals() {
+        return intervals;
+    }
+
+    public int size() {
+        return starts.length;
+    }
+
+    private long computeMaxEnds(int low, int high) {
+        if (low >= high) {
+            return Long.MIN_VALUE;
+        }
+        int middle = (low + high) >>> 1;
+        maxEnds[middle] = Math.max(ends[middle],
+            Math.max(computeMaxEnds(low, middle), computeMaxEnds(middle + 1, high)));
+        return maxEnds[middle];
+    }
+
+    private void collect(int low, int high, long start, long end, List<Interval<T>> found) {
+        if (low >= high) {
+            return;
+        }
+        int middle = (low + high) >>> 1;
+        if (maxEnds[middle] <= start) {
+            // everything below ends before the query starts
+            return;
+        }
+        collect(low, middle, start, end, found);
+        if (starts[middle] >= end) {
+            // this and everything to the right start after the query ends
+            return;
+        }
+        if (ends[middle] > start && ends[middle] > starts[middle]) {
+            found.add(intervals.get(middle));
+        }
+        collect(middle + 1, high, start, end, found);
+    }
+
+    /**
+     * An interval and the item it belongs to.
+     *
+     * @param <T> the type of the item
+     */
+    public static final class Interval<T> {
+
+        private final long start;
+
+        private final long end;
+
+        private final T item;
+
+        public Interval(long start, long end, T item) {
+            this.start = start;
+            this.end = end;
+            this.item = item;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        public T getItem() {
+            return item;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package lk.npsp.service.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel: holds items until a deadline, counted in ticks, with constant time insertion and a
+ * constant amount of work per tick however many items are held.
+ * <p>
+ * Level 0 has one slot per tick for the current round of {@code wheelSize} ticks; each level above has slots as wide
+ * as a whole round of the level below. An item goes into the lowest level whose round covers its deadline, and is
+ * moved down a level each time the wheel enters its slot, until it expires from level 0. Items further away than the
+ * top level covers wait in an overflow list that is looked at once per top-level round.
+ * <p>
+ * Items are not removed: callers that reschedule ignore the expired items they no longer expect. Not thread-safe.
+ *
+ * @param <T> the type of the items
+ */
+public class TimingWheel<T> {
+
+    private final int wheelSize;
+
+    /**
+     * Ticks spanned by one slot of each level: 1, wheelSize, wheelSize^2...
+     */
+    private final long[] slotTicks;
+
+    private final List<List<Entry<T>>> slots;
+
+    private final List<Entry<T>> overflow = new ArrayList<>();
+
+    private final List<Entry<T>> due = new ArrayList<>();
+
+    private long currentTick;
+
+    private int size;
+
+    /**
+     * @param wheelSize the number of slots of each level
+     * @param levels the number of levels; the wheel covers wheelSize^levels ticks before using its overflow list
+     * @param currentTick the tick the wheel starts at
+     */
+    public TimingWheel(int wheelSize, int levels, long currentTick) {
+        if (wheelSize < 2 || levels < 1) {
+            throw new IllegalArgumentException("A timing wheel needs at least 2 slots and 1 level");
+        }
+        this.wheelSize = wheelSize;
+        this.slotTicks = new long[levels];
+        long ticks = 1;
+        for (int level = 0; level < levels; level++) {
+            slotTicks[level] = ticks;
+            ticks = Math.multiplyExact(ticks, wheelSize);
+        }
+        this.slots = new ArrayList<>(levels * wheelSize);
+        for (int i = 0; i < levels * wheelSize; i++) {
+            slots.add(new ArrayList<>());
+        }
+        this.currentTick = currentTick;
+    }
+
+    /**
+     * Add an item; an item whose deadline has passed expires on the next {@link #advanceTo(long)}.
+     *
+     * @param item the item
+     * @param deadlineTick the tick the item expires at
+     */
+    public void add(T item, long deadlineTick) {
+        place(new Entry<>(item, deadlineTick));
+        size++;
+    }
+
+    /**
+     * Move the wheel forward, tick by tick, to a tick.
+     *
+     * @param tick the new current tick; an earlier tick than the current one is ignored
+     * @return the items expired on the way, in the order of their deadlines
+     */
+    public List<T> advanceTo(long tick) {
+        List<T> expired = new ArrayList<>();
+        drainDue(expired);
+        while (currentTick < tick) {
+            currentTick++;
+            int levels = slotTicks.length;
+            long round = slotTicks[levels - 1] * wheelSize;
+            if (Math.floorMod(currentTick, round) == 0) {
+                List<Entry<T>> waiting = new ArrayList<>(overflow);
+                overflow.clear();
+                waiting.forEach(this::place);
+            }
+            for (int level = levels - 1; level > 0; level--) {
+                if (Math.floorMod(currentTick, slotTicks[level]) == 0) {
+                    List<Entry<T>> slot = slot(level, currentTick);
+                    List<Entry<T>> cascading = new ArrayList<>(slot);
+                    slot.clear();
+                    cascading.forEach(this::place);
+                }
+            }
+            List<Entry<T>> slot = slot(0, currentTick);
+            due.addAll(slot);
+            slot.clear();
+            drainDue(expired);
+        }
+        return expired;
+    }
+
+    /**
+     * @return the tick the wheel is at
+     */
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    /**
+     * @return the number of items held
+     */
+    public int size() {
+        return size;
+    }
+
+    private void place(Entry<T> entry) {
+        if (entry.deadlineTick <= currentTick) {
+            due.add(entry);
+            return;
+        }
+        for (int level = 0; level < slotTicks.length; level++) {
+            long round = slotTicks[level] * wheelSize;
+            if (Math.floorDiv(entry.deadlineTick, round) == Math.floorDiv(currentTick, round)) {
+                slot(level, entry.deadlineTick).add(entry);
+                return;
+            }
+        }
+        overflow.add(entry);
+    }
+
+    private List<Entry<T>> slot(int level, long tick) {
+        return slots.get(level * wheelSize + (int) Math.floorMod(Math.floorDiv(tick, slotTicks[level]), (long) wheelSize));
+    }
+
+    private void drainDue(List<T> expired) {
+        due.forEach(entry -> expired.add(entry.item));
+        size -= due.size();
+        due.clear();
+    }
+
+    private static final class Entry<T> {
+
+        private final T item;
+
+        private final long deadlineTick;
+
+        Entry(T item, long deadlineTick) {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package lk.npsp.task;
+
+import lk.npsp.config.ApplicationProperties;
+import lk.npsp.service.AuditEventService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Optional;
+
+/**
+ * Nightly job moving audit events older than the retention window out of the database.
+ */
+@Component
+public class AuditEventArchiver {
+
+    private final Logger log = LoggerFactory.getLogger(AuditEventArchiver.class);
+
+    private final AuditEventService auditEventService;
+
+    private final ApplicationProperties.Audit.Retention retention;
+
+    public AuditEventArchiver(AuditEventService auditEventService, ApplicationProperties applicationProperties) {
+        this.auditEventService = auditEventService;
+        this.retention = applicationProperties.getAudit().getRetention();
+    }
+
+    /**
+     * Archive, one day per transaction, every day before today minus live-days.
+     * <p>
+     * This is scheduled to get fired everyday, at 02:00 (am).
+     */
+    @Scheduled(cron = "0 0 2 * * ?")
+    public void archiveOldAuditEvents() {
+        if (!retention.isEnabled()) {
+            return;
+        }
+        LocalDate firstLiveDay = LocalDate.now(ZoneOffset.UTC).minusDays(retention.getLiveDays());
+        int days = 0;
+        int events = 0;
+        try {
+            Optional<LocalDate> oldest;
+            while ((oldest = auditEventService.findOldestLiveDay()).isPresent()
+                && oldest.get().isBefore(firstLiveDay)) {
+                events += auditEventService.archiveDay(oldest.get());
+                days++;
+            }
+        } catch (RuntimeException e) {
+            log.error("Audit archiving stopped after {} days: {}", days, e.getMessage(), e);
+        }
+        log.info("Archived {} audit events from {} days before {}", events, days, firstLiveDay);
+    }
+}
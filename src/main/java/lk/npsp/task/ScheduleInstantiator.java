@@ -8,7 +8,11 @@ import lk.npsp.domain.enumeration.Weekdays;
 import lk.npsp.repository.ScheduleInstanceRepository;
 import lk.npsp.repository.ScheduleTemplateRepository;
 import lk.npsp.repository.WeekdayRepository;
+import lk.npsp.service.DomainMetrics;
 import lk.npsp.service.ScheduleInstanceManager;
+import lk.npsp.service.ScheduleInstancesChangedEvent;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.slf4j.Logger;
@@ -17,11 +21,14 @@ import org.slf4j.LoggerFactory;
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.time.ZoneId;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Component
 public class ScheduleInstantiator {
@@ -30,22 +37,53 @@ public class ScheduleInstantiator {
     private final ScheduleInstanceRepository scheduleInstanceRepository;
     private final ScheduleTemplateRepository scheduleTemplateRepository;
     private final ScheduleInstanceManager scheduleInstanceManager;
+    private final ApplicationEventPublisher eventPublisher;
+    private final DomainMetrics domainMetrics;
+    private final Executor instantiationExecutor;
+    private final AtomicBoolean running = new AtomicBoolean();
 
     public ScheduleInstantiator(ScheduleInstanceRepository scheduleInstanceRepository,
                                 ScheduleTemplateRepository scheduleTemplateRepository,
-                                ScheduleInstanceManager scheduleInstanceManager) {
+                                ScheduleInstanceManager scheduleInstanceManager,
+                                ApplicationEventPublisher eventPublisher,
+                                DomainMetrics domainMetrics,
+                                @Qualifier("instantiationExecutor") Executor instantiationExecutor) {
 
         this.scheduleInstanceRepository = scheduleInstanceRepository;
         this.scheduleTemplateRepository = scheduleTemplateRepository;
         this.scheduleInstanceManager = scheduleInstanceManager;
+        this.eventPublisher = eventPublisher;
+        this.domainMetrics = domainMetrics;
+        this.instantiationExecutor = instantiationExecutor;
     }
 
-
     /**
-     * create instances of schedule templates for the day
-     * delay set to 1 hour
+     * hand an instantiation run over to the instantiation executor, so the scheduler thread is free for other jobs
+     * delay set to 1 hour; a run still going when the next one is due is not started twice
      */
     @Scheduled(fixedDelay = 3600000)
+    public void scheduleInstantiation() {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Previous schedule instantiation still running, skipping this one");
+            return;
+        }
+        try {
+            instantiationExecutor.execute(() -> {
+                try {
+                    instantiateSchedules();
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+    }
+
+    /**
+     * create instances of schedule templates for today and tomorrow
+     */
     public void instantiateSchedules() {
         log.info("Starting Schedule Instantiator");
 
@@ -59,6 +97,7 @@ public class ScheduleInstantiator {
      */
     private void createScheduleInstances(LocalDate date){
 
+        long start = domainMetrics.monotonicTime();
         Date datetime = Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
         SimpleDateFormat simpleDateformat = new SimpleDateFormat("EEEE"); // the day of the week spelled out completely
         String DayOfWeekString = simpleDateformat.format(datetime);
@@ -70,6 +109,7 @@ public class ScheduleInstantiator {
             findScheduleInstancesListByDate(date);
         log.info("Active templates found {}", scheduleTemplateList.size());
         log.info("Instances found {}", scheduleInstanceList.size());
+        List<Long> createdIds = new ArrayList<>();
         for (ScheduleTemplate scheduleTemplate : scheduleTemplateList
         ) {
             boolean alreadyExistsForTemplate = ScheduleInstanceAlreadyExistsForTemplate(scheduleInstanceList, scheduleTemplate);
@@ -80,9 +120,13 @@ public class ScheduleInstantiator {
                 scheduleInstance.setDate(date);
                 scheduleInstance.setScheduleState(ScheduleState.PENDING);
                 scheduleInstance = scheduleInstanceManager.createFromTemplate(scheduleInstance, scheduleTemplate);
-                scheduleInstanceRepository.save(scheduleInstance);
+                createdIds.add(scheduleInstanceRepository.save(scheduleInstance).getId());
             }
         }
+        if (!createdIds.isEmpty()) {
+            eventPublisher.publishEvent(new ScheduleInstancesChangedEvent(createdIds, false));
+        }
+        domainMetrics.recordInstantiation(start, scheduleTemplateList.size(), createdIds.size());
     }
 
 
@@ -0,0 +1,41 @@
+package lk.npsp.web.filter;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Lets clients cache the static assets whose name carries a content hash for good: a new build gives them a new
+ * name, so they are never revalidated. Other assets, index.html first, keep the default headers so a deployment is
+ * picked up.
+ */
+public class StaticAssetCacheFilter extends OncePerRequestFilter {
+
+    private final Pattern fingerprint;
+
+    private final String cacheControl;
+
+    public StaticAssetCacheFilter(String fingerprintPattern, long timeToLiveInDays) {
+        this.fingerprint = Pattern.compile(fingerprintPattern);
+        this.cacheControl = "public, max-age=" + TimeUnit.DAYS.toSeconds(timeToLiveInDays) + ", immutable";
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        String method = request.getMethod();
+        if ((HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method)) &&
+            fingerprint.matcher(request.getRequestURI()).find()) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        }
+        filterChain.doFilter(request, response);
+    }
+}
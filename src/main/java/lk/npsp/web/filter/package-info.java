@@ -0,0 +1,4 @@
+/**
+ * Servlet filters.
+ */
+package lk.npsp.web.filter;
@@ -0,0 +1,51 @@
+package lk.npsp.web.rest;
+
+import lk.npsp.service.BayAllocator;
+import lk.npsp.service.dto.BayPlanDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+
+/**
+ * REST controller for checking and resolving the bay assignments of a day.
+ */
+@RestController
+@RequestMapping("/api")
+public class BayPlanResource {
+
+    private final Logger log = LoggerFactory.getLogger(BayPlanResource.class);
+
+    private final BayAllocator bayAllocator;
+
+    public BayPlanResource(BayAllocator bayAllocator) {
+        this.bayAllocator = bayAllocator;
+    }
+
+    /**
+     * GET  /bay-plans/:date : check that no two departures of a day occupy the same bay at once.
+     *
+     * @param date the day, as yyyy-MM-dd
+     * @return the ResponseEntity with status 200 (OK) and with body the conflicts and the reassignments that would
+     * resolve them
+     */
+    @GetMapping("/bay-plans/{date}")
+    public ResponseEntity<BayPlanDTO> getBayPlan(@PathVariable LocalDate date) {
+        log.debug("REST request to check the bay plan of {}", date);
+        return ResponseEntity.ok().body(bayAllocator.plan(date));
+    }
+
+    /**
+     * POST  /bay-plans/:date/reassignments : move the departures of a day that occupy a bay at once to free bays.
+     *
+     * @param date the day, as yyyy-MM-dd
+     * @return the ResponseEntity with status 200 (OK) and with body the conflicts found and the reassignments made
+     */
+    @PostMapping("/bay-plans/{date}/reassignments")
+    public ResponseEntity<BayPlanDTO> reassignBays(@PathVariable LocalDate date) {
+        log.debug("REST request to reassign the bays of {}", date);
+        return ResponseEntity.ok().body(bayAllocator.reassign(date));
+    }
+}
@@ -3,7 +3,16 @@ package lk.npsp.web.rest;
 import jdk.nashorn.internal.runtime.options.Option;
 import lk.npsp.domain.*;
 import lk.npsp.repository.*;
+import lk.npsp.service.DomainMetrics;
+import lk.npsp.service.DoubleBookingDetector;
+import lk.npsp.service.LocationIndex;
 import lk.npsp.service.ResourceLocator;
+import lk.npsp.service.RouteGraph;
+import lk.npsp.service.dto.TemplateConflictDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -14,14 +23,22 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * REST controller for managing DataImport.
+ * <p>
+ * Imports run on the import executor, which bounds how many run at once. The request is handled asynchronously, so no
+ * servlet thread waits for the import; the response is sent once it has finished. When the executor is full the
+ * request is refused with 503 Service Unavailable.
  */
 @RestController
 @RequestMapping("/api/data-import")
 public class DataImportResource {
 
+    private final Logger log = LoggerFactory.getLogger(DataImportResource.class);
+
     private final LocationRepository locationRepository;
     private final RouteRepository routeRepository;
     private final RouteLocationRepository routeLocationRepository;
@@ -31,8 +48,13 @@ public class DataImportResource {
     private final BayRepository bayRepository;
     private final TransportTypeRepository transportTypeRepository;
     private final ResourceLocator resourceLocator;
+    private final LocationIndex locationIndex;
+    private final RouteGraph routeGraph;
+    private final DomainMetrics domainMetrics;
+    private final DoubleBookingDetector doubleBookingDetector;
+    private final AsyncTaskExecutor importExecutor;
 
-    public DataImportResource(TransportTypeRepository transportTypeRepository,BayRepository bayRepository,VehicleRepository vehicleRepository, WeekdayRepository weekdayRepository, ScheduleTemplateRepository scheduleTemplateRepository, RouteLocationRepository routeLocationRepository, LocationRepository locationRepository, RouteRepository routeRepository, ResourceLocator resourceLocator) {
+    public DataImportResource(TransportTypeRepository transportTypeRepository,BayRepository bayRepository,VehicleRepository vehicleRepository, WeekdayRepository weekdayRepository, ScheduleTemplateRepository scheduleTemplateRepository, RouteLocationRepository routeLocationRepository, LocationRepository locationRepository, RouteRepository routeRepository, ResourceLocator resourceLocator, LocationIndex locationIndex, RouteGraph routeGraph, DomainMetrics domainMetrics, DoubleBookingDetector doubleBookingDetector, @Qualifier("importExecutor") AsyncTaskExecutor importExecutor) {
         this.locationRepository = locationRepository;
         this.routeRepository = routeRepository;
         this.routeLocationRepository = routeLocationRepository;
@@ -42,17 +64,27 @@ public class DataImportResource {
         this.vehicleRepository = vehicleRepository;
         this.bayRepository=bayRepository;
         this.transportTypeRepository=transportTypeRepository;
+        this.locationIndex = locationIndex;
+        this.routeGraph = routeGraph;
+        this.domainMetrics = domainMetrics;
+        this.doubleBookingDetector = doubleBookingDetector;
+        this.importExecutor = importExecutor;
     }
 
     /**
      * GET  /locations : import locations from the resource directory
      *
-     * @return the ResponseEntity with status 200 (OK) and success message
-     * @throws IOException if reading resource file is not successful
+     * @return the ResponseEntity with status 200 (OK) and success message, once the import has finished, or failed
+     * with an IOException if reading resource file is not successful
      */
     @CrossOrigin
     @GetMapping("/locations")
-    public ResponseEntity<List<Location>> importLocationData(HttpServletRequest request) throws IOException {
+    public CompletableFuture<ResponseEntity<List<Location>>> importLocationData(HttpServletRequest request) {
+        return runImport(this::importLocations);
+    }
+
+    private ResponseEntity<List<Location>> importLocations() throws IOException {
+        long start = domainMetrics.monotonicTime();
         List<List<String>> dictionaryArray = resourceLocator.locateResource(
             "import-data/locations.csv", ",");
 
@@ -66,18 +98,25 @@ public class DataImportResource {
             locationRepository.save(location);
         }
 
+        locationIndex.reload();
+        domainMetrics.recordImport("locations", start, dictionaryArray.size());
         return ResponseEntity.ok().body(locationRepository.findAll());
     }
 
     /**
      * GET  /routes : import routes from the resource directory
      *
-     * @return the ResponseEntity with status 200 (OK) and success message
-     * @throws IOException if reading resource file is not successful
+     * @return the ResponseEntity with status 200 (OK) and success message, once the import has finished, or failed
+     * with an IOException if reading resource file is not successful
      */
     @CrossOrigin
     @GetMapping("/routes")
-    public ResponseEntity<List<Route>> importRouteData(HttpServletRequest request) throws IOException {
+    public CompletableFuture<ResponseEntity<List<Route>>> importRouteData(HttpServletRequest request) {
+        return runImport(this::importRoutes);
+    }
+
+    private ResponseEntity<List<Route>> importRoutes() throws IOException {
+        long start = domainMetrics.monotonicTime();
         List<List<String>> dictionaryArray = resourceLocator.locateResource(
             "import-data/routes.csv", ",");
 
@@ -111,20 +150,32 @@ public class DataImportResource {
 
         }
 
-        return ResponseEntity.ok().body(routeRepository.findAll());
+        routeGraph.reload();
+        domainMetrics.recordImport("routes", start, dictionaryArray.size());
+        return ResponseEntity.ok().body(routeRepository.findAllWithRouteLocations());
     }
 
     /**
      * GET  /schedules : import schedules from the resource directory
+     * <p>
+     * Rows that would book a vehicle already booked by an active schedule template at the same time, imported before
+     * or in the same file, are skipped and logged.
      *
-     * @return the ResponseEntity with status 200 (OK) and success message
-     * @throws IOException if reading resource file is not successful
+     * @return the ResponseEntity with status 200 (OK) and success message, once the import has finished, or failed
+     * with an IOException if reading resource file is not successful
      */
     @CrossOrigin
     @GetMapping("/schedules")
-    public ResponseEntity<List<ScheduleTemplate>> importScheduleData(HttpServletRequest request) throws IOException {
+    public CompletableFuture<ResponseEntity<List<ScheduleTemplate>>> importScheduleData(HttpServletRequest request) {
+        return runImport(this::importSchedules);
+    }
+
+    private ResponseEntity<List<ScheduleTemplate>> importSchedules() throws IOException {
+        long start = domainMetrics.monotonicTime();
         List<List<String>> dictionaryArray = resourceLocator.locateResource(
             "import-data/schedules.csv", ",");
+        DoubleBookingDetector.Index bookings = doubleBookingDetector.index();
+        int imported = 0;
 
         for (List<String> dictionaryItem : dictionaryArray) {
             ScheduleTemplate scheduleTemplate = new ScheduleTemplate();
@@ -133,9 +184,8 @@ public class DataImportResource {
             String[] weekdays = dictionaryItem.get(1).split(";");
             for (String weekday : weekdays) {
                 Optional<Weekday> day = weekdayRepository.findById(Long.parseLong(weekday));
-                if (day.isPresent()) {
-                    scheduleTemplate.addWeekday(day.orElse(null));
-                }
+                // owning side only, the weekday's template collection is lazy and not needed here
+                day.ifPresent(scheduleTemplate.getWeekdays()::add);
             }
 
             //add route
@@ -184,10 +234,32 @@ public class DataImportResource {
             }
 
             scheduleTemplate.setIsActive(true);
-            scheduleTemplateRepository.save(scheduleTemplate);
+            List<TemplateConflictDTO> conflicts = bookings.check(scheduleTemplate);
+            if (!conflicts.isEmpty()) {
+                log.warn("Skipped schedule {}, double-booked: {}", dictionaryItem, conflicts);
+                continue;
+            }
+            bookings.add(scheduleTemplateRepository.save(scheduleTemplate));
+            imported++;
         }
 
-        return ResponseEntity.ok().body(scheduleTemplateRepository.findAll());
+        domainMetrics.recordImport("schedules", start, imported);
+        return ResponseEntity.ok().body(scheduleTemplateRepository.findAllWithEagerRelationships());
     }
 
+    /**
+     * Hand an import to the import executor, which throws a TaskRejectedException straight away when it is full.
+     */
+    private <T> CompletableFuture<T> runImport(Callable<T> importer) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        importExecutor.execute(() -> {
+            try {
+                result.complete(importer.call());
+            } catch (Throwable e) {
+                // answered by the exception handlers, as if the request thread had thrown it
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
 }
@@ -0,0 +1,80 @@
+package lk.npsp.web.rest;
+
+import lk.npsp.aop.logging.ExcludeFromLogging;
+import lk.npsp.domain.ScheduleInstance;
+import lk.npsp.domain.ScreenRow;
+import lk.npsp.repository.ScreenScheduleRepository;
+import lk.npsp.service.RouteGraph;
+import lk.npsp.service.SimpleTranslator;
+import lk.npsp.web.rest.errors.BadRequestAlertException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * REST controller for journey planning between two stops.
+ */
+@RestController
+@ExcludeFromLogging
+@RequestMapping("/api/screen")
+public class JourneyResource {
+
+    private final Logger log = LoggerFactory.getLogger(JourneyResource.class);
+
+    private static final String ENTITY_NAME = "journey";
+
+    private static final int MAX_WINDOW_IN_MINUTES = 24 * 60;
+
+    private final RouteGraph routeGraph;
+
+    private final ScreenScheduleRepository screenScheduleRepository;
+
+    private final SimpleTranslator simpleTranslator;
+
+    public JourneyResource(RouteGraph routeGraph, ScreenScheduleRepository screenScheduleRepository,
+                           SimpleTranslator simpleTranslator) {
+        this.routeGraph = routeGraph;
+        this.screenScheduleRepository = screenScheduleRepository;
+        this.simpleTranslator = simpleTranslator;
+    }
+
+    /**
+     * GET  /journeys : get today's departures on routes that stop at one location and later at another.
+     *
+     * @param from the id of the location boarded at
+     * @param to the id of the location alighted at
+     * @param minutes how far ahead to look, in minutes
+     * @return the ResponseEntity with status 200 (OK) and the departures in body, soonest first
+     */
+    @CrossOrigin
+    @GetMapping("/journeys")
+    public ResponseEntity<List<ScreenRow>> getJourneys(@RequestParam("from") Long from, @RequestParam("to") Long to,
+                                                       @RequestParam(value = "minutes", defaultValue = "60") int minutes) {
+        log.debug("REST request to get Journeys from Location {} to Location {} in the next {} minutes", from, to, minutes);
+        if (minutes < 1 || minutes > MAX_WINDOW_IN_MINUTES) {
+            throw new BadRequestAlertException("Minutes must be between 1 and " + MAX_WINDOW_IN_MINUTES, ENTITY_NAME, "minutesinvalid");
+        }
+        long[] routeIds = routeGraph.findRoutesBetween(from, to);
+        List<ScreenRow> result = new ArrayList<>();
+        if (routeIds.length == 0) {
+            return ResponseEntity.ok().body(result);
+        }
+
+        Instant now = Instant.now();
+        List<ScheduleInstance> departures = screenScheduleRepository.findScheduleInstancesByRoutes(LocalDate.now(),
+            Arrays.stream(routeIds).boxed().collect(Collectors.toList()), now, now.plus(minutes, ChronoUnit.MINUTES));
+        for (ScheduleInstance departure : departures) {
+            result.add(new ScreenRow(departure, simpleTranslator));
+        }
+        return ResponseEntity.ok().body(result);
+    }
+}
@@ -1,6 +1,7 @@
 package lk.npsp.web.rest;
 import lk.npsp.domain.Location;
 import lk.npsp.repository.LocationRepository;
+import lk.npsp.service.LocationIndex;
 import lk.npsp.web.rest.errors.BadRequestAlertException;
 import lk.npsp.web.rest.util.HeaderUtil;
 import lk.npsp.web.rest.util.PaginationUtil;
@@ -33,8 +34,11 @@ public class LocationResource {
 
     private final LocationRepository locationRepository;
 
-    public LocationResource(LocationRepository locationRepository) {
+    private final LocationIndex locationIndex;
+
+    public LocationResource(LocationRepository locationRepository, LocationIndex locationIndex) {
         this.locationRepository = locationRepository;
+        this.locationIndex = locationIndex;
     }
 
     /**
@@ -51,6 +55,7 @@ public class LocationResource {
             throw new BadRequestAlertException("A new location cannot already have an ID", ENTITY_NAME, "idexists");
         }
         Location result = locationRepository.save(location);
+        locationIndex.put(result);
         return ResponseEntity.created(new URI("/api/locations/" + result.getId()))
             .headers(HeaderUtil.createEntityCreationAlert(ENTITY_NAME, result.getId().toString()))
             .body(result);
@@ -72,6 +77,7 @@ public class LocationResource {
             throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
         }
         Location result = locationRepository.save(location);
+        locationIndex.put(result);
         return ResponseEntity.ok()
             .headers(HeaderUtil.createEntityUpdateAlert(ENTITY_NAME, location.getId().toString()))
             .body(result);
@@ -126,6 +132,7 @@ public class LocationResource {
     public ResponseEntity<Void> deleteLocation(@PathVariable Long id) {
         log.debug("REST request to delete Location : {}", id);
         locationRepository.deleteById(id);
+        locationIndex.remove(id);
         return ResponseEntity.ok().headers(HeaderUtil.createEntityDeletionAlert(ENTITY_NAME, id.toString())).build();
     }
 }
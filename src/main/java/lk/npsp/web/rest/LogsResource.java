@@ -1,10 +1,12 @@
 package lk.npsp.web.rest;
 
+import lk.npsp.aop.logging.LoggingInterceptor;
 import lk.npsp.web.rest.vm.LoggerVM;
 
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.LoggerContext;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 
@@ -18,6 +20,12 @@ import java.util.stream.Collectors;
 @RequestMapping("/management")
 public class LogsResource {
 
+    private final ObjectProvider<LoggingInterceptor> loggingInterceptor;
+
+    public LogsResource(ObjectProvider<LoggingInterceptor> loggingInterceptor) {
+        this.loggingInterceptor = loggingInterceptor;
+    }
+
     @GetMapping("/logs")
     public List<LoggerVM> getList() {
         LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
@@ -32,5 +40,10 @@ public class LogsResource {
     public void changeLevel(@RequestBody LoggerVM jsonLogger) {
         LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
         context.getLogger(jsonLogger.getName()).setLevel(Level.valueOf(jsonLogger.getLevel()));
+        // the changed logger may be the interceptor's or one of its ancestors
+        LoggingInterceptor interceptor = loggingInterceptor.getIfAvailable();
+        if (interceptor != null) {
+            interceptor.refresh();
+        }
     }
 }
@@ -0,0 +1,84 @@
+package lk.npsp.web.rest;
+
+import lk.npsp.aop.logging.ExcludeFromLogging;
+import lk.npsp.service.LocationIndex;
+import lk.npsp.service.dto.NearbyLocationDTO;
+import lk.npsp.web.rest.errors.BadRequestAlertException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * REST controller for finding stops and terminals near a point, used by passenger-facing kiosks and clients.
+ */
+@RestController
+@ExcludeFromLogging
+@RequestMapping("/api/screen")
+public class NearbyLocationResource {
+
+    private final Logger log = LoggerFactory.getLogger(NearbyLocationResource.class);
+
+    private static final String ENTITY_NAME = "location";
+
+    private static final int MAX_COUNT = 100;
+
+    private static final double MAX_RADIUS_IN_KILOMETERS = 50;
+
+    private final LocationIndex locationIndex;
+
+    public NearbyLocationResource(LocationIndex locationIndex) {
+        this.locationIndex = locationIndex;
+    }
+
+    /**
+     * GET  /nearest-locations : get the locations closest to a point.
+     *
+     * @param latitude latitude of the point, in degrees
+     * @param longitude longitude of the point, in degrees
+     * @param count the number of locations to return, at most 100
+     * @return the ResponseEntity with status 200 (OK) and the locations with their distance in km, closest first
+     */
+    @CrossOrigin
+    @GetMapping("/nearest-locations")
+    public ResponseEntity<List<NearbyLocationDTO>> getNearestLocations(@RequestParam("latitude") double latitude,
+                                                                       @RequestParam("longitude") double longitude,
+                                                                       @RequestParam(value = "count", defaultValue = "5") int count) {
+        log.debug("REST request to get the {} Locations nearest to {},{}", count, latitude, longitude);
+        validateCoordinates(latitude, longitude);
+        if (count < 1 || count > MAX_COUNT) {
+            throw new BadRequestAlertException("Count must be between 1 and " + MAX_COUNT, ENTITY_NAME, "countinvalid");
+        }
+        return ResponseEntity.ok().body(locationIndex.findNearest(latitude, longitude, count));
+    }
+
+    /**
+     * GET  /locations-within : get the locations within a radius of a point.
+     *
+     * @param latitude latitude of the point, in degrees
+     * @param longitude longitude of the point, in degrees
+     * @param radius the radius in km, at most 50
+     * @return the ResponseEntity with status 200 (OK) and the locations with their distance in km, closest first
+     */
+    @CrossOrigin
+    @GetMapping("/locations-within")
+    public ResponseEntity<List<NearbyLocationDTO>> getLocationsWithin(@RequestParam("latitude") double latitude,
+                                                                      @RequestParam("longitude") double longitude,
+                                                                      @RequestParam("radius") double radius) {
+        log.debug("REST request to get Locations within {} km of {},{}", radius, latitude, longitude);
+        validateCoordinates(latitude, longitude);
+        if (radius < 0 || radius > MAX_RADIUS_IN_KILOMETERS) {
+            throw new BadRequestAlertException("Radius must be between 0 and " + MAX_RADIUS_IN_KILOMETERS + " km",
+                ENTITY_NAME, "radiusinvalid");
+        }
+        return ResponseEntity.ok().body(locationIndex.findWithin(latitude, longitude, radius));
+    }
+
+    private void validateCoordinates(double latitude, double longitude) {
+        if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+            throw new BadRequestAlertException("Invalid coordinates", ENTITY_NAME, "coordinatesinvalid");
+        }
+    }
+}
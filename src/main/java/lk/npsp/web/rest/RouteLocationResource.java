@@ -1,12 +1,14 @@
 package lk.npsp.web.rest;
 import lk.npsp.domain.RouteLocation;
 import lk.npsp.repository.RouteLocationRepository;
+import lk.npsp.service.RouteChangedEvent;
 import lk.npsp.web.rest.errors.BadRequestAlertException;
 import lk.npsp.web.rest.util.HeaderUtil;
 import lk.npsp.web.rest.util.PaginationUtil;
 import io.github.jhipster.web.util.ResponseUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpHeaders;
@@ -33,8 +35,11 @@ public class RouteLocationResource {
 
     private final RouteLocationRepository routeLocationRepository;
 
-    public RouteLocationResource(RouteLocationRepository routeLocationRepository) {
+    private final ApplicationEventPublisher eventPublisher;
+
+    public RouteLocationResource(RouteLocationRepository routeLocationRepository, ApplicationEventPublisher eventPublisher) {
         this.routeLocationRepository = routeLocationRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
@@ -51,6 +56,7 @@ public class RouteLocationResource {
             throw new BadRequestAlertException("A new routeLocation cannot already have an ID", ENTITY_NAME, "idexists");
         }
         RouteLocation result = routeLocationRepository.save(routeLocation);
+        publishRouteChanged(result);
         return ResponseEntity.created(new URI("/api/route-locations/" + result.getId()))
             .headers(HeaderUtil.createEntityCreationAlert(ENTITY_NAME, result.getId().toString()))
             .body(result);
@@ -71,7 +77,10 @@ public class RouteLocationResource {
         if (routeLocation.getId() == null) {
             throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
         }
+        Optional<RouteLocation> previous = routeLocationRepository.findById(routeLocation.getId());
         RouteLocation result = routeLocationRepository.save(routeLocation);
+        previous.ifPresent(this::publishRouteChanged);
+        publishRouteChanged(result);
         return ResponseEntity.ok()
             .headers(HeaderUtil.createEntityUpdateAlert(ENTITY_NAME, routeLocation.getId().toString()))
             .body(result);
@@ -123,7 +132,15 @@ public class RouteLocationResource {
     @DeleteMapping("/route-locations/{id}")
     public ResponseEntity<Void> deleteRouteLocation(@PathVariable Long id) {
         log.debug("REST request to delete RouteLocation : {}", id);
+        Optional<RouteLocation> previous = routeLocationRepository.findById(id);
         routeLocationRepository.deleteById(id);
+        previous.ifPresent(this::publishRouteChanged);
         return ResponseEntity.ok().headers(HeaderUtil.createEntityDeletionAlert(ENTITY_NAME, id.toString())).build();
     }
+
+    private void publishRouteChanged(RouteLocation routeLocation) {
+        if (routeLocation.getRoute() != null) {
+            eventPublisher.publishEvent(new RouteChangedEvent(routeLocation.getRoute().getId(), false));
+        }
+    }
 }
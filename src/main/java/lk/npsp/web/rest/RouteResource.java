@@ -1,9 +1,8 @@
 package lk.npsp.web.rest;
 
 import lk.npsp.domain.Route;
-import lk.npsp.domain.RouteLocation;
-import lk.npsp.repository.RouteLocationRepository;
 import lk.npsp.repository.RouteRepository;
+import lk.npsp.service.RouteService;
 import lk.npsp.web.rest.errors.BadRequestAlertException;
 import lk.npsp.web.rest.util.HeaderUtil;
 import lk.npsp.web.rest.util.PaginationUtil;
@@ -34,12 +33,12 @@ public class RouteResource {
     private static final String ENTITY_NAME = "route";
 
     private final RouteRepository routeRepository;
-    private final RouteLocationRepository routeLocationRepository;
+    private final RouteService routeService;
 
-    public RouteResource(RouteRepository routeRepository, RouteLocationRepository routeLocationRepository) {
+    public RouteResource(RouteRepository routeRepository, RouteService routeService) {
 
         this.routeRepository = routeRepository;
-        this.routeLocationRepository = routeLocationRepository;
+        this.routeService = routeService;
     }
 
     /**
@@ -56,12 +55,7 @@ public class RouteResource {
             throw new BadRequestAlertException("A new route cannot already have an ID", ENTITY_NAME, "idexists");
         }
 
-        Route result = routeRepository.save(route);
-
-        for (RouteLocation routeLocation : route.getRouteLocations()) {
-            routeLocation.setRoute(result);
-            routeLocationRepository.save(routeLocation);
-        }
+        Route result = routeService.createRoute(route);
 
         return ResponseEntity.created(new URI("/api/routes/" + result.getId()))
             .headers(HeaderUtil.createEntityCreationAlert(ENTITY_NAME, result.getId().toString()))
@@ -74,6 +68,7 @@ public class RouteResource {
      * @param route the route to update
      * @return the ResponseEntity with status 200 (OK) and with body the updated route,
      * or with status 400 (Bad Request) if the route is not valid,
+     * or with status 404 (Not Found) if the route does not exist,
      * or with status 500 (Internal Server Error) if the route couldn't be updated
      * @throws URISyntaxException if the Location URI syntax is incorrect
      */
@@ -84,23 +79,10 @@ public class RouteResource {
             throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
         }
 
-        // remove all route locations of route in database
-        List<RouteLocation> routeLocations = routeLocationRepository.
-            findRouteLocationsByRoute(route.getId());
-        for (RouteLocation routeLocation : routeLocations) {
-            routeLocationRepository.delete(routeLocation);
-        }
+        Optional<Route> result = routeService.updateRoute(route);
 
-        // save all route locations in request
-        for (RouteLocation routeLocation : route.getRouteLocations()) {
-            routeLocationRepository.save(routeLocation);
-        }
-
-        Route result = routeRepository.save(route);
-
-        return ResponseEntity.ok()
-            .headers(HeaderUtil.createEntityUpdateAlert(ENTITY_NAME, route.getId().toString()))
-            .body(result);
+        return ResponseUtil.wrapOrNotFound(result,
+            HeaderUtil.createEntityUpdateAlert(ENTITY_NAME, route.getId().toString()));
     }
 
     /**
@@ -112,7 +94,7 @@ public class RouteResource {
     @GetMapping("/routes")
     public ResponseEntity<List<Route>> getAllRoutes(Pageable pageable) {
         log.debug("REST request to get a page of Routes");
-        Page<Route> page = routeRepository.findAll(pageable);
+        Page<Route> page = routeRepository.findAllWithRouteLocations(pageable);
         HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(page, "/api/routes");
         return ResponseEntity.ok().headers(headers).body(page.getContent());
     }
@@ -125,7 +107,7 @@ public class RouteResource {
     @GetMapping("/all-routes")
     public ResponseEntity<List<Route>> getAllRoutes() {
         log.debug("REST request to get a list of Routes");
-        List<Route> list = routeRepository.findAll();
+        List<Route> list = routeRepository.findAllWithRouteLocations();
         return ResponseEntity.ok().body(list);
     }
 
@@ -138,7 +120,7 @@ public class RouteResource {
     @GetMapping("/routes/{id}")
     public ResponseEntity<Route> getRoute(@PathVariable Long id) {
         log.debug("REST request to get Route : {}", id);
-        Optional<Route> route = routeRepository.findById(id);
+        Optional<Route> route = routeRepository.findOneWithRouteLocationsById(id);
         return ResponseUtil.wrapOrNotFound(route);
     }
 
@@ -151,7 +133,7 @@ public class RouteResource {
     @DeleteMapping("/routes/{id}")
     public ResponseEntity<Void> deleteRoute(@PathVariable Long id) {
         log.debug("REST request to delete Route : {}", id);
-        routeRepository.deleteById(id);
+        routeService.deleteRoute(id);
         return ResponseEntity.ok().headers(HeaderUtil.createEntityDeletionAlert(ENTITY_NAME, id.toString())).build();
     }
 }
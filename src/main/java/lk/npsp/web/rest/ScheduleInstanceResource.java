@@ -5,12 +5,15 @@ import lk.npsp.domain.ScheduleTemplate;
 import lk.npsp.repository.ScheduleInstanceRepository;
 import lk.npsp.repository.ScheduleTemplateRepository;
 import lk.npsp.service.ScheduleInstanceManager;
+import lk.npsp.service.ScheduleInstanceService;
+import lk.npsp.service.ScheduleInstancesChangedEvent;
 import lk.npsp.web.rest.errors.BadRequestAlertException;
 import lk.npsp.web.rest.util.HeaderUtil;
 import lk.npsp.web.rest.util.PaginationUtil;
 import io.github.jhipster.web.util.ResponseUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.repository.query.Param;
@@ -24,6 +27,7 @@ import java.net.URISyntaxException;
 
 import java.time.Instant;
 import java.time.LocalDate;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
@@ -42,13 +46,19 @@ public class ScheduleInstanceResource {
     private final ScheduleInstanceRepository scheduleInstanceRepository;
     private final ScheduleTemplateRepository scheduleTemplateRepository;
     private final ScheduleInstanceManager scheduleInstanceManager;
+    private final ScheduleInstanceService scheduleInstanceService;
+    private final ApplicationEventPublisher eventPublisher;
 
     public ScheduleInstanceResource(ScheduleInstanceRepository scheduleInstanceRepository,
                                     ScheduleTemplateRepository scheduleTemplateRepository,
-                                    ScheduleInstanceManager scheduleInstanceManager) {
+                                    ScheduleInstanceManager scheduleInstanceManager,
+                                    ScheduleInstanceService scheduleInstanceService,
+                                    ApplicationEventPublisher eventPublisher) {
         this.scheduleInstanceRepository = scheduleInstanceRepository;
         this.scheduleTemplateRepository = scheduleTemplateRepository;
         this.scheduleInstanceManager = scheduleInstanceManager;
+        this.scheduleInstanceService = scheduleInstanceService;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
@@ -75,14 +85,21 @@ public class ScheduleInstanceResource {
             }
         }
 
-        ScheduleInstance result = scheduleInstanceRepository.save(scheduleInstance);
+        ScheduleInstance saved = scheduleInstanceRepository.save(scheduleInstance);
+        eventPublisher.publishEvent(new ScheduleInstancesChangedEvent(Collections.singletonList(saved.getId()), false));
+        // read again with the collections the response serializes
+        ScheduleInstance result = scheduleInstanceRepository.findOneWithRouteLocationsById(saved.getId()).orElse(saved);
         return ResponseEntity.created(new URI("/api/schedule-instances/" + result.getId()))
             .headers(HeaderUtil.createEntityCreationAlert(ENTITY_NAME, result.getId().toString()))
-            .body(scheduleInstance);
+            .body(result);
     }
 
     /**
      * PUT  /schedule-instances : Updates an existing scheduleInstance.
+     * <p>
+     * A new actual scheduled time moves the later departures of the same vehicle and bay that day, and when
+     * reallocate-bays is on, departures left in an occupied bay move to free ones, all in one transaction; see
+     * {@link ScheduleInstanceService}. The response shows the instance as it is once they have moved.
      *
      * @param scheduleInstance the scheduleInstance to update
      * @return the ResponseEntity with status 200 (OK) and with body the updated scheduleInstance,
@@ -96,7 +113,8 @@ public class ScheduleInstanceResource {
         if (scheduleInstance.getId() == null) {
             throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
         }
-        ScheduleInstance result = scheduleInstanceRepository.save(scheduleInstance);
+        ScheduleInstance saved = scheduleInstanceService.updateScheduleInstance(scheduleInstance);
+        ScheduleInstance result = scheduleInstanceRepository.findOneWithRouteLocationsById(saved.getId()).orElse(saved);
         return ResponseEntity.ok()
             .headers(HeaderUtil.createEntityUpdateAlert(ENTITY_NAME, scheduleInstance.getId().toString()))
             .body(result);
@@ -111,7 +129,7 @@ public class ScheduleInstanceResource {
     @GetMapping("/schedule-instances")
     public ResponseEntity<List<ScheduleInstance>> getAllScheduleInstances(Pageable pageable) {
         log.debug("REST request to get a page of ScheduleInstances");
-        Page<ScheduleInstance> page = scheduleInstanceRepository.findAll(pageable);
+        Page<ScheduleInstance> page = scheduleInstanceRepository.findAllWithRouteLocations(pageable);
         HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(page, "/api/schedule-instances");
         return ResponseEntity.ok().headers(headers).body(page.getContent());
     }
@@ -124,7 +142,7 @@ public class ScheduleInstanceResource {
     @GetMapping("/all-schedule-instances")
     public ResponseEntity<List<ScheduleInstance>> getAllScheduleInstances() {
         log.debug("REST request to get a list of ScheduleInstances");
-        List<ScheduleInstance> list = scheduleInstanceRepository.findAll();
+        List<ScheduleInstance> list = scheduleInstanceRepository.findAllWithRouteLocations();
         return ResponseEntity.ok().body(list);
     }
 
@@ -138,7 +156,7 @@ public class ScheduleInstanceResource {
     public ResponseEntity<List<ScheduleInstance>> getScheduleOperations(Pageable pageable, @RequestParam("search") String search) {
         log.debug("REST request to get a page of Schedule Operations " + search);
         LocalDate currentDate = new java.sql.Date(new Date().getTime()).toLocalDate();
-        Page<ScheduleInstance> page = scheduleInstanceRepository.findScheduleInstancesByDate
+        Page<ScheduleInstance> page = scheduleInstanceRepository.findScheduleInstancesWithRouteLocationsByDate
             (pageable, currentDate, search);
         HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(page, "/api/schedule-instances");
         return ResponseEntity.ok().headers(headers).body(page.getContent());
@@ -153,7 +171,7 @@ public class ScheduleInstanceResource {
     @GetMapping("/schedule-instances/{id}")
     public ResponseEntity<ScheduleInstance> getScheduleInstance(@PathVariable Long id) {
         log.debug("REST request to get ScheduleInstance : {}", id);
-        Optional<ScheduleInstance> scheduleInstance = scheduleInstanceRepository.findById(id);
+        Optional<ScheduleInstance> scheduleInstance = scheduleInstanceRepository.findOneWithRouteLocationsById(id);
         return ResponseUtil.wrapOrNotFound(scheduleInstance);
     }
 
@@ -167,6 +185,7 @@ public class ScheduleInstanceResource {
     public ResponseEntity<Void> deleteScheduleInstance(@PathVariable Long id) {
         log.debug("REST request to delete ScheduleInstance : {}", id);
         scheduleInstanceRepository.deleteById(id);
+        eventPublisher.publishEvent(new ScheduleInstancesChangedEvent(Collections.singletonList(id), true));
         return ResponseEntity.ok().headers(HeaderUtil.createEntityDeletionAlert(ENTITY_NAME, id.toString())).build();
     }
 }
@@ -1,6 +1,8 @@
 package lk.npsp.web.rest;
 import lk.npsp.domain.ScheduleTemplate;
 import lk.npsp.repository.ScheduleTemplateRepository;
+import lk.npsp.service.DoubleBookingDetector;
+import lk.npsp.service.dto.TemplateConflictDTO;
 import lk.npsp.web.rest.errors.BadRequestAlertException;
 import lk.npsp.web.rest.util.HeaderUtil;
 import lk.npsp.web.rest.util.PaginationUtil;
@@ -34,8 +36,12 @@ public class ScheduleTemplateResource {
 
     private final ScheduleTemplateRepository scheduleTemplateRepository;
 
-    public ScheduleTemplateResource(ScheduleTemplateRepository scheduleTemplateRepository) {
+    private final DoubleBookingDetector doubleBookingDetector;
+
+    public ScheduleTemplateResource(ScheduleTemplateRepository scheduleTemplateRepository,
+                                    DoubleBookingDetector doubleBookingDetector) {
         this.scheduleTemplateRepository = scheduleTemplateRepository;
+        this.doubleBookingDetector = doubleBookingDetector;
     }
 
     /**
@@ -43,6 +49,7 @@ public class ScheduleTemplateResource {
      *
      * @param scheduleTemplate the scheduleTemplate to create
      * @return the ResponseEntity with status 201 (Created) and with body the new scheduleTemplate, or with status 400 (Bad Request) if the scheduleTemplate has already an ID
+     * or double-books its vehicle or driver
      * @throws URISyntaxException if the Location URI syntax is incorrect
      */
     @PostMapping("/schedule-templates")
@@ -51,6 +58,7 @@ public class ScheduleTemplateResource {
         if (scheduleTemplate.getId() != null) {
             throw new BadRequestAlertException("A new scheduleTemplate cannot already have an ID", ENTITY_NAME, "idexists");
         }
+        checkDoubleBooking(scheduleTemplate);
         ScheduleTemplate result = scheduleTemplateRepository.save(scheduleTemplate);
         return ResponseEntity.created(new URI("/api/schedule-templates/" + result.getId()))
             .headers(HeaderUtil.createEntityCreationAlert(ENTITY_NAME, result.getId().toString()))
@@ -62,7 +70,7 @@ public class ScheduleTemplateResource {
      *
      * @param scheduleTemplate the scheduleTemplate to update
      * @return the ResponseEntity with status 200 (OK) and with body the updated scheduleTemplate,
-     * or with status 400 (Bad Request) if the scheduleTemplate is not valid,
+     * or with status 400 (Bad Request) if the scheduleTemplate is not valid or double-books its vehicle or driver,
      * or with status 500 (Internal Server Error) if the scheduleTemplate couldn't be updated
      * @throws URISyntaxException if the Location URI syntax is incorrect
      */
@@ -72,7 +80,10 @@ public class ScheduleTemplateResource {
         if (scheduleTemplate.getId() == null) {
             throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
         }
-        ScheduleTemplate result = scheduleTemplateRepository.save(scheduleTemplate);
+        checkDoubleBooking(scheduleTemplate);
+        ScheduleTemplate saved = scheduleTemplateRepository.save(scheduleTemplate);
+        // read again with the collections the response serializes
+        ScheduleTemplate result = scheduleTemplateRepository.findOneWithEagerRelationships(saved.getId()).orElse(saved);
         return ResponseEntity.ok()
             .headers(HeaderUtil.createEntityUpdateAlert(ENTITY_NAME, scheduleTemplate.getId().toString()))
             .body(result);
@@ -92,7 +103,7 @@ public class ScheduleTemplateResource {
         if (eagerload) {
             page = scheduleTemplateRepository.findAllWithEagerRelationships(pageable);
         } else {
-            page = scheduleTemplateRepository.findAll(pageable);
+            page = scheduleTemplateRepository.findAllWithWeekdays(pageable);
         }
         HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(page, String.format("/api/schedule-templates?eagerload=%b", eagerload));
         return ResponseEntity.ok().headers(headers).body(page.getContent());
@@ -106,10 +117,21 @@ public class ScheduleTemplateResource {
     @GetMapping("/all-schedule-templates")
     public ResponseEntity<List<ScheduleTemplate>> getAllBays() {
         log.debug("REST request to get a list of ScheduleTemplates");
-        List<ScheduleTemplate> list = scheduleTemplateRepository.findAll();
+        List<ScheduleTemplate> list = scheduleTemplateRepository.findAllWithEagerRelationships();
         return ResponseEntity.ok().body(list);
     }
 
+    /**
+     * GET  /schedule-templates/conflicts : get the vehicles and drivers booked by two active scheduleTemplates at once.
+     *
+     * @return the ResponseEntity with status 200 (OK) and the list of double-bookings in body
+     */
+    @GetMapping("/schedule-templates/conflicts")
+    public ResponseEntity<List<TemplateConflictDTO>> getScheduleTemplateConflicts() {
+        log.debug("REST request to audit ScheduleTemplates for double-bookings");
+        return ResponseEntity.ok().body(doubleBookingDetector.audit());
+    }
+
     /**
      * GET  /schedule-templates/:id : get the "id" scheduleTemplate.
      *
@@ -135,4 +157,14 @@ public class ScheduleTemplateResource {
         scheduleTemplateRepository.deleteById(id);
         return ResponseEntity.ok().headers(HeaderUtil.createEntityDeletionAlert(ENTITY_NAME, id.toString())).build();
     }
+
+    private void checkDoubleBooking(ScheduleTemplate scheduleTemplate) {
+        List<TemplateConflictDTO> conflicts = doubleBookingDetector.check(scheduleTemplate);
+        if (!conflicts.isEmpty()) {
+            TemplateConflictDTO conflict = conflicts.get(0);
+            throw new BadRequestAlertException("The " + conflict.getResource() + " is already booked by scheduleTemplate " +
+                conflict.getOtherScheduleTemplateId() + " on " + conflict.getWeekday() + " from " + conflict.getFrom(),
+                ENTITY_NAME, "doublebooked");
+        }
+    }
 }
@@ -2,11 +2,14 @@ package lk.npsp.web.rest;
 
 import io.github.jhipster.web.util.ResponseUtil;
 import javassist.NotFoundException;
+import lk.npsp.aop.logging.ExcludeFromLogging;
 import lk.npsp.domain.Bay;
 import lk.npsp.domain.ScheduleInstance;
 import lk.npsp.domain.ScreenResponse;
 import lk.npsp.repository.BayRepository;
 import lk.npsp.repository.ScreenScheduleRepository;
+import lk.npsp.service.DayTimetable;
+import lk.npsp.service.DomainMetrics;
 import lk.npsp.service.ResourceLocator;
 import lk.npsp.service.SimpleTranslator;
 import lk.npsp.web.rest.errors.BadRequestAlertException;
@@ -31,9 +34,13 @@ import java.time.LocalDate;
 import java.util.*;
 
 /**
- * REST controller for managing ScheduleInstance.
+ * REST controller for the bay and summary screens.
+ * <p>
+ * GET requests under /api/screen bypass the security filter chain (see SecurityConfiguration) and are kept out of
+ * the logging interceptor, as the screens poll them continuously.
  */
 @RestController
+@ExcludeFromLogging
 @RequestMapping("/api/screen")
 public class ScreenScheduleResource {
 
@@ -44,15 +51,22 @@ public class ScreenScheduleResource {
     private final ScreenScheduleRepository screenScheduleRepository;
     private final BayRepository bayRepository;
 
+    private final DayTimetable dayTimetable;
+
     private final SimpleTranslator simpleTranslator;
     private final ResourceLocator resourceLocator;
 
+    private final DomainMetrics domainMetrics;
+
     public ScreenScheduleResource(ScreenScheduleRepository screenScheduleRepository, BayRepository bayRepository,
-                                  SimpleTranslator simpleTranslator, ResourceLocator resourceLocator) {
+                                  DayTimetable dayTimetable, SimpleTranslator simpleTranslator,
+                                  ResourceLocator resourceLocator, DomainMetrics domainMetrics) {
         this.screenScheduleRepository = screenScheduleRepository;
         this.bayRepository = bayRepository;
+        this.dayTimetable = dayTimetable;
         this.simpleTranslator = simpleTranslator;
         this.resourceLocator = resourceLocator;
+        this.domainMetrics = domainMetrics;
     }
 
     /**
@@ -66,15 +80,26 @@ public class ScreenScheduleResource {
     public ResponseEntity<ScreenResponse> getSchedulesForScreen
     (HttpServletRequest request, @RequestParam("bay") Long id) throws IOException {
         log.debug("REST request to get a Schedule for Screen");
+        long start = domainMetrics.monotonicTime();
         Optional<Bay> bayOptional = bayRepository.findById(id);
 
         Long bayId = bayOptional.map(Bay::getId).orElse(Integer.toUnsignedLong(1));
         String bayName = bayOptional.map(Bay::getBayName).orElse("Bay 01");
 
         Instant now = Instant.now(); //get schedules after current time
-        List<ScheduleInstance> list = screenScheduleRepository.findScheduleInstancesByScreen
-            (bayId, now.minusSeconds(SCHEDULE_DELAY_PADDING_IN_SECONDS));
+        Instant after = now.minusSeconds(SCHEDULE_DELAY_PADDING_IN_SECONDS);
+        List<ScheduleInstance> list;
+        String source;
+        if (dayTimetable.covers(after)) {
+            list = dayTimetable.findNextByBay(bayId, after, ScreenResponse.MAX_ROW_LIMIT_FOR_BAY);
+            source = DomainMetrics.SOURCE_TIMETABLE;
+        } else {
+            list = screenScheduleRepository.findScheduleInstancesByScreen(bayId, after);
+            source = DomainMetrics.SOURCE_DATABASE;
+        }
+        long queried = domainMetrics.monotonicTime();
         ScreenResponse screenResponse = new ScreenResponse(list, bayName, simpleTranslator, resourceLocator);
+        domainMetrics.recordBayScreen(bayId, source, start, queried, list.size());
 
         return ResponseEntity.ok().body(screenResponse);
     }
@@ -89,17 +114,27 @@ public class ScreenScheduleResource {
     @GetMapping("/schedule-summary")
     public ResponseEntity<ScreenResponse> getSchedulesForSummary(HttpServletRequest request, @RequestParam("type") String transportType) throws IOException {
         log.debug("REST request to get a Schedule for Summary");
+        long start = domainMetrics.monotonicTime();
 
         Instant now = Instant.now(); //get schedules after current time
+        Instant after = now.minusSeconds(SCHEDULE_DELAY_PADDING_IN_SECONDS);
         List<ScheduleInstance> list;
-        if (transportType.equals("")) {
-            list = screenScheduleRepository.findScheduleInstancesByDay
-                (now.minusSeconds(SCHEDULE_DELAY_PADDING_IN_SECONDS));
+        String source = DomainMetrics.SOURCE_DATABASE;
+        if (dayTimetable.covers(after)) {
+            list = transportType.equals("") ?
+                dayTimetable.findNext(after, ScreenResponse.MAX_ROW_LIMIT_FOR_SUMMARY) :
+                dayTimetable.findNextByTransportType(transportType, after, ScreenResponse.MAX_ROW_LIMIT_FOR_SUMMARY);
+            source = DomainMetrics.SOURCE_TIMETABLE;
+        } else if (transportType.equals("")) {
+            list = screenScheduleRepository.findScheduleInstancesByDay(after);
         } else {
-            list = screenScheduleRepository.findScheduleInstancesByTypeByDay
-                (now.minusSeconds(SCHEDULE_DELAY_PADDING_IN_SECONDS), transportType);
+            list = screenScheduleRepository.findScheduleInstancesByTypeByDay(after, transportType);
         }
+        long queried = domainMetrics.monotonicTime();
         ScreenResponse screenResponse = new ScreenResponse(list, "", simpleTranslator, resourceLocator);
+        String metricsType = transportType.isEmpty() || dayTimetable.isTransportType(transportType) ?
+            transportType : DomainMetrics.OTHER_TRANSPORT_TYPE;
+        domainMetrics.recordSummaryScreen(metricsType, source, start, queried, list.size());
 
         return ResponseEntity.ok().body(screenResponse);
     }
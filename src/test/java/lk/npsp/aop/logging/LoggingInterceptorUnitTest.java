@@ -0,0 +1,92 @@
+package lk.npsp.aop.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for the LoggingInterceptor.
+ *
+ * @see LoggingInterceptor
+ */
+public class LoggingInterceptorUnitTest {
+
+    private Logger logger;
+
+    private Level initialLevel;
+
+    private LoggingInterceptor loggingInterceptor;
+
+    @Before
+    public void setup() {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        logger = context.getLogger(LoggingInterceptor.class);
+        initialLevel = logger.getLevel();
+        logger.setLevel(Level.INFO);
+        loggingInterceptor = new LoggingInterceptor(new MockEnvironment());
+    }
+
+    @After
+    public void tearDown() {
+        loggingInterceptor.close();
+        logger.setLevel(initialLevel);
+    }
+
+    @Test
+    public void testFollowLevelChanges() {
+        assertThat(loggingInterceptor.isDebugEnabled()).isFalse();
+
+        logger.setLevel(Level.DEBUG);
+        assertThat(loggingInterceptor.isDebugEnabled()).isTrue();
+
+        logger.setLevel(Level.WARN);
+        assertThat(loggingInterceptor.isDebugEnabled()).isFalse();
+    }
+
+    @Test
+    public void testFollowParentLevelChanges() {
+        logger.setLevel(null);
+        Logger parent = ((LoggerContext) LoggerFactory.getILoggerFactory()).getLogger("lk.npsp.aop");
+        Level parentLevel = parent.getLevel();
+        try {
+            parent.setLevel(Level.DEBUG);
+            assertThat(loggingInterceptor.isDebugEnabled()).isTrue();
+            parent.setLevel(Level.ERROR);
+            assertThat(loggingInterceptor.isDebugEnabled()).isFalse();
+        } finally {
+            parent.setLevel(parentLevel);
+        }
+    }
+
+    @Test
+    public void testProceedWhenDebugIsOff() throws Throwable {
+        MethodInvocation invocation = mock(MethodInvocation.class);
+        when(invocation.proceed()).thenReturn("result");
+
+        assertThat(loggingInterceptor.invoke(invocation)).isEqualTo("result");
+        verify(invocation).proceed();
+        verify(invocation, never()).getArguments();
+    }
+
+    @Test
+    public void testProceedAndRethrowWhenDebugIsOn() throws Throwable {
+        logger.setLevel(Level.DEBUG);
+        MethodInvocation invocation = mock(MethodInvocation.class);
+        when(invocation.getMethod()).thenReturn(Object.class.getMethod("toString"));
+        when(invocation.getArguments()).thenReturn(new Object[0]);
+        when(invocation.proceed()).thenReturn("result").thenThrow(new IllegalArgumentException("wrong"));
+
+        assertThat(loggingInterceptor.invoke(invocation)).isEqualTo("result");
+        assertThatThrownBy(() -> loggingInterceptor.invoke(invocation)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
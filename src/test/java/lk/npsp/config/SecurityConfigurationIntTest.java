@@ -0,0 +1,65 @@
+package lk.npsp.config;
+
+import lk.npsp.NpspApp;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.web.FilterChainProxy;
+import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.servlet.Filter;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for the filter chains set up by {@link SecurityConfiguration}.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = NpspApp.class)
+public class SecurityConfigurationIntTest {
+
+    @Autowired
+    private FilterChainProxy springSecurityFilterChain;
+
+    @Test
+    public void screenGetsBypassTheSecurityFilters() {
+        assertThat(getFilters(HttpMethod.GET, "/api/screen/schedule", "bay=1")).isEmpty();
+        assertThat(getFilters(HttpMethod.GET, "/api/screen/schedule-summary", "type=")).isEmpty();
+    }
+
+    @Test
+    public void screenWritesKeepTheSecurityFilters() {
+        assertThat(getFilters(HttpMethod.POST, "/api/screen/schedule", "bay=1")).isNotEmpty();
+        assertThat(getFilters(HttpMethod.POST, "/api/screen/schedule-summary", "type=")).isNotEmpty();
+    }
+
+    @Test
+    public void otherEndpointsKeepTheSecurityFilters() {
+        assertThat(getFilters(HttpMethod.GET, "/api/bays", null)).isNotEmpty();
+        assertThat(getFilters(HttpMethod.POST, "/api/bays", null)).isNotEmpty();
+        assertThat(getFilters(HttpMethod.GET, "/api/data-import/locations", null)).isNotEmpty();
+        assertThat(getFilters(HttpMethod.POST, "/api/data-import/locations", null)).isNotEmpty();
+    }
+
+    /**
+     * The filters of the first chain matching a request, as FilterChainProxy picks them.
+     */
+    private List<Filter> getFilters(HttpMethod method, String path, String queryString) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method.name(), path);
+        request.setServletPath(path);
+        request.setQueryString(queryString);
+        for (SecurityFilterChain chain : springSecurityFilterChain.getFilterChains()) {
+            if (chain.matches(request)) {
+                return chain.getFilters();
+            }
+        }
+        return Collections.emptyList();
+    }
+}
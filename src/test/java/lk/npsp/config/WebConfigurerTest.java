@@ -2,6 +2,7 @@ package lk.npsp.config;
 
 import io.github.jhipster.config.JHipsterConstants;
 import io.github.jhipster.config.JHipsterProperties;
+import lk.npsp.web.filter.StaticAssetCacheFilter;
 import io.undertow.Undertow;
 import io.undertow.Undertow.Builder;
 import io.undertow.UndertowOptions;
@@ -23,6 +24,7 @@ import java.util.*;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.options;
@@ -44,6 +46,8 @@ public class WebConfigurerTest {
 
     private JHipsterProperties props;
 
+    private ApplicationProperties applicationProperties;
+
     @Before
     public void setup() {
         servletContext = spy(new MockServletContext());
@@ -54,8 +58,9 @@ public class WebConfigurerTest {
 
         env = new MockEnvironment();
         props = new JHipsterProperties();
+        applicationProperties = new ApplicationProperties();
 
-        webConfigurer = new WebConfigurer(env, props);
+        webConfigurer = new WebConfigurer(env, props, applicationProperties);
     }
 
     @Test
@@ -63,6 +68,7 @@ public class WebConfigurerTest {
         env.setActiveProfiles(JHipsterConstants.SPRING_PROFILE_PRODUCTION);
         webConfigurer.onStartup(servletContext);
 
+        verify(servletContext).addFilter(eq("staticAssetCacheFilter"), any(StaticAssetCacheFilter.class));
     }
 
     @Test
@@ -70,6 +76,7 @@ public class WebConfigurerTest {
         env.setActiveProfiles(JHipsterConstants.SPRING_PROFILE_DEVELOPMENT);
         webConfigurer.onStartup(servletContext);
 
+        verify(servletContext, never()).addFilter(eq("staticAssetCacheFilter"), any(StaticAssetCacheFilter.class));
     }
 
     @Test
@@ -176,4 +183,22 @@ public class WebConfigurerTest {
             .andExpect(status().isOk())
             .andExpect(header().doesNotExist(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN));
     }
+
+    @Test
+    public void testStaticAssetCacheFilterMarksFingerprintedAssetsImmutable() throws Exception {
+        props.getHttp().getCache().setTimeToLiveInDays(365);
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new WebConfigurerTestController())
+            .addFilters(new StaticAssetCacheFilter(applicationProperties.getStaticAssets().getFingerprintPattern(),
+                props.getHttp().getCache().getTimeToLiveInDays()))
+            .build();
+
+        mockMvc.perform(get("/app/main.3f2a9c0d1e7b4a5c6d8e.bundle.js"))
+            .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable"));
+        mockMvc.perform(get("/content/7c9d2e4f6a8b0c1d3e5f7a9b1c3d5e7f.png"))
+            .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable"));
+        mockMvc.perform(get("/index.html"))
+            .andExpect(header().doesNotExist(HttpHeaders.CACHE_CONTROL));
+        mockMvc.perform(get("/i18n/en.json"))
+            .andExpect(header().doesNotExist(HttpHeaders.CACHE_CONTROL));
+    }
 }
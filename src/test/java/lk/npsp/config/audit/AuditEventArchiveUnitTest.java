@@ -0,0 +1,102 @@
+package lk.npsp.config.audit;
+
+import lk.npsp.domain.PersistentAuditEvent;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the AuditEventArchive.
+ *
+ * @see AuditEventArchive
+ */
+public class AuditEventArchiveUnitTest {
+
+    private static final LocalDate DAY = LocalDate.of(2019, 2, 3);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private AuditEventArchive auditEventArchive;
+
+    @Before
+    public void setup() {
+        auditEventArchive = new AuditEventArchive(folder.getRoot().toPath());
+    }
+
+    @Test
+    public void testReadBackArchivedEvents() {
+        PersistentAuditEvent event = createEvent(1L, "2019-02-03T10:15:30Z");
+        event.getData().put("remoteAddress", "127.0.0.1");
+        event.getData().put("message", "line\nbreak \"quoted\"");
+        auditEventArchive.write(DAY, Collections.singletonList(event));
+
+        List<PersistentAuditEvent> events = auditEventArchive.findAllByAuditEventDateBetween(
+            Instant.parse("2019-02-03T00:00:00Z"), Instant.parse("2019-02-04T00:00:00Z"));
+
+        assertThat(events).hasSize(1);
+        PersistentAuditEvent archived = events.get(0);
+        assertThat(archived.getId()).isEqualTo(1L);
+        assertThat(archived.getPrincipal()).isEqualTo("user");
+        assertThat(archived.getAuditEventType()).isEqualTo("AUTHENTICATION_SUCCESS");
+        assertThat(archived.getAuditEventDate()).isEqualTo(Instant.parse("2019-02-03T10:15:30Z"));
+        assertThat(archived.getData()).isEqualTo(event.getData());
+    }
+
+    @Test
+    public void testMergeEventsOfTheSameDayById() {
+        auditEventArchive.write(DAY, Arrays.asList(
+            createEvent(1L, "2019-02-03T10:00:00Z"), createEvent(2L, "2019-02-03T11:00:00Z")));
+        auditEventArchive.write(DAY, Arrays.asList(
+            createEvent(2L, "2019-02-03T11:00:00Z"), createEvent(3L, "2019-02-03T09:00:00Z")));
+
+        List<PersistentAuditEvent> events = auditEventArchive.findAllByAuditEventDateBetween(
+            Instant.parse("2019-02-03T00:00:00Z"), Instant.parse("2019-02-04T00:00:00Z"));
+
+        assertThat(events).extracting(PersistentAuditEvent::getId).containsExactly(3L, 1L, 2L);
+    }
+
+    @Test
+    public void testOnlyReadEventsInRange() throws Exception {
+        auditEventArchive.write(DAY, Arrays.asList(
+            createEvent(1L, "2019-02-03T10:00:00Z"), createEvent(2L, "2019-02-03T20:00:00Z")));
+        auditEventArchive.write(DAY.plusDays(1), Collections.singletonList(createEvent(3L, "2019-02-04T10:00:00Z")));
+        Files.createFile(folder.getRoot().toPath().resolve("notes.txt"));
+
+        assertThat(auditEventArchive.findDaysBetween(
+            Instant.parse("2019-02-01T00:00:00Z"), Instant.parse("2019-02-03T12:00:00Z")))
+            .containsExactly(DAY);
+        assertThat(auditEventArchive.findAllByAuditEventDateBetween(
+            Instant.parse("2019-02-03T12:00:00Z"), Instant.parse("2019-02-04T12:00:00Z")))
+            .extracting(PersistentAuditEvent::getId).containsExactly(2L, 3L);
+        assertThat(auditEventArchive.findDaysBetween(
+            Instant.parse("2019-02-05T00:00:00Z"), Instant.parse("2019-02-06T00:00:00Z"))).isEmpty();
+    }
+
+    @Test
+    public void testMissingDirectoryIsEmpty() {
+        AuditEventArchive missing = new AuditEventArchive(folder.getRoot().toPath().resolve("missing"));
+
+        assertThat(missing.findAllByAuditEventDateBetween(Instant.EPOCH, Instant.now())).isEmpty();
+    }
+
+    private PersistentAuditEvent createEvent(Long id, String date) {
+        PersistentAuditEvent event = new PersistentAuditEvent();
+        event.setId(id);
+        event.setPrincipal("user");
+        event.setAuditEventType("AUTHENTICATION_SUCCESS");
+        event.setAuditEventDate(Instant.parse(date));
+        return event;
+    }
+}
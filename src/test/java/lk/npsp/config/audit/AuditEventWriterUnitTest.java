@@ -0,0 +1,239 @@
+package lk.npsp.config.audit;
+
+import lk.npsp.config.ApplicationProperties;
+import lk.npsp.domain.PersistentAuditEvent;
+import lk.npsp.repository.PersistenceAuditEventRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for the AuditEventWriter.
+ *
+ * @see AuditEventWriter
+ */
+public class AuditEventWriterUnitTest {
+
+    private PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    private PlatformTransactionManager transactionManager;
+
+    private ApplicationProperties applicationProperties;
+
+    private MeterRegistry meterRegistry;
+
+    @Before
+    public void setup() {
+        persistenceAuditEventRepository = mock(PersistenceAuditEventRepository.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getAudit().getWriteBehind().setFlushIntervalMs(10);
+        applicationProperties.getAudit().getWriteBehind().setRetryBackoffMs(10);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSaveInBatchesAndFlushOnShutdown() {
+        applicationProperties.getAudit().getWriteBehind().setBatchSize(100);
+        AuditEventWriter auditEventWriter = createWriter();
+
+        for (int i = 0; i < 250; i++) {
+            auditEventWriter.write(createEvent());
+        }
+        auditEventWriter.shutdown();
+
+        ArgumentCaptor<Iterable<PersistentAuditEvent>> captor = ArgumentCaptor.forClass(Iterable.class);
+        verify(persistenceAuditEventRepository, atLeast(3)).saveAll(captor.capture());
+        int saved = 0;
+        for (Iterable<PersistentAuditEvent> batch : captor.getAllValues()) {
+            int size = 0;
+            for (PersistentAuditEvent ignored : batch) {
+                size++;
+            }
+            assertThat(size).isBetween(1, 100);
+            saved += size;
+        }
+        assertThat(saved).isEqualTo(250);
+        assertThat(outcome("written")).isEqualTo(250);
+    }
+
+    @Test
+    public void testDropWhenBufferIsFull() throws Exception {
+        applicationProperties.getAudit().getWriteBehind().setQueueCapacity(1);
+        applicationProperties.getAudit().getWriteBehind().setBatchSize(1);
+        applicationProperties.getAudit().getWriteBehind().setOverflowPolicy(
+            ApplicationProperties.Audit.WriteBehind.OverflowPolicy.DROP);
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(persistenceAuditEventRepository.saveAll(anyIterable())).thenAnswer(invocation -> {
+            saving.countDown();
+            release.await();
+            return new ArrayList<>();
+        });
+        AuditEventWriter auditEventWriter = createWriter();
+
+        auditEventWriter.write(createEvent());
+        assertThat(saving.await(5, TimeUnit.SECONDS)).isTrue();
+        // the writer is busy with the first event: the second fills the buffer, the third is dropped
+        auditEventWriter.write(createEvent());
+        auditEventWriter.write(createEvent());
+        release.countDown();
+        auditEventWriter.shutdown();
+
+        assertThat(outcome("dropped")).isEqualTo(1);
+        assertThat(outcome("written")).isEqualTo(2);
+    }
+
+    @Test
+    public void testCallerRunsWhenBufferIsFull() throws Exception {
+        applicationProperties.getAudit().getWriteBehind().setQueueCapacity(1);
+        applicationProperties.getAudit().getWriteBehind().setBatchSize(1);
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread caller = Thread.currentThread();
+        when(persistenceAuditEventRepository.saveAll(anyIterable())).thenAnswer(invocation -> {
+            if (Thread.currentThread() != caller) {
+                saving.countDown();
+                release.await();
+            }
+            return new ArrayList<>();
+        });
+        AuditEventWriter auditEventWriter = createWriter();
+
+        auditEventWriter.write(createEvent());
+        assertThat(saving.await(5, TimeUnit.SECONDS)).isTrue();
+        auditEventWriter.write(createEvent());
+        auditEventWriter.write(createEvent());
+        assertThat(outcome("caller_runs")).isEqualTo(1);
+        release.countDown();
+        auditEventWriter.shutdown();
+
+        assertThat(outcome("written")).isEqualTo(3);
+    }
+
+    @Test
+    public void testQueueUntilStarted() {
+        AuditEventWriter auditEventWriter = createStoppedWriter();
+
+        auditEventWriter.write(createEvent());
+        verify(persistenceAuditEventRepository, never()).saveAll(anyIterable());
+
+        auditEventWriter.start();
+        auditEventWriter.shutdown();
+
+        verify(persistenceAuditEventRepository).saveAll(anyIterable());
+        assertThat(outcome("written")).isEqualTo(1);
+    }
+
+    @Test
+    public void testFlushOnShutdownWhenNeverStarted() {
+        AuditEventWriter auditEventWriter = createStoppedWriter();
+
+        auditEventWriter.write(createEvent());
+        auditEventWriter.shutdown();
+
+        verify(persistenceAuditEventRepository).saveAll(anyIterable());
+        assertThat(outcome("written")).isEqualTo(1);
+    }
+
+    @Test
+    public void testSaveOnCallingThreadWhenDisabled() {
+        applicationProperties.getAudit().getWriteBehind().setEnabled(false);
+        AuditEventWriter auditEventWriter = createWriter();
+
+        auditEventWriter.write(createEvent());
+
+        verify(persistenceAuditEventRepository).saveAll(anyIterable());
+        assertThat(outcome("written")).isEqualTo(1);
+    }
+
+    @Test
+    public void testSaveOnCallingThreadInANewTransaction() {
+        applicationProperties.getAudit().getWriteBehind().setEnabled(false);
+        AuditEventWriter auditEventWriter = createWriter();
+
+        auditEventWriter.write(createEvent());
+
+        verify(transactionManager).getTransaction(argThat(definition ->
+            definition.getPropagationBehavior() == TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+    }
+
+    @Test
+    public void testRetryFailedBatch() {
+        when(persistenceAuditEventRepository.saveAll(anyIterable()))
+            .thenThrow(new IllegalStateException("down"))
+            .thenReturn(new ArrayList<>());
+        AuditEventWriter auditEventWriter = createWriter();
+
+        auditEventWriter.write(createEvent());
+        auditEventWriter.shutdown();
+
+        verify(persistenceAuditEventRepository, times(2)).saveAll(anyIterable());
+        assertThat(outcome("retried")).isEqualTo(1);
+        assertThat(outcome("written")).isEqualTo(1);
+        assertThat(outcome("failed")).isZero();
+    }
+
+    @Test
+    public void testCountBatchGivenUpAfterMaxAttempts() {
+        applicationProperties.getAudit().getWriteBehind().setMaxAttempts(2);
+        when(persistenceAuditEventRepository.saveAll(anyIterable())).thenThrow(new IllegalStateException("down"));
+        AuditEventWriter auditEventWriter = createWriter();
+
+        auditEventWriter.write(createEvent());
+        auditEventWriter.shutdown();
+
+        verify(persistenceAuditEventRepository, times(2)).saveAll(anyIterable());
+        assertThat(outcome("retried")).isEqualTo(1);
+        assertThat(outcome("failed")).isEqualTo(1);
+        assertThat(outcome("written")).isZero();
+    }
+
+    @Test
+    public void testCountFailedSaves() {
+        applicationProperties.getAudit().getWriteBehind().setEnabled(false);
+        when(persistenceAuditEventRepository.saveAll(anyIterable())).thenThrow(new IllegalStateException("down"));
+        AuditEventWriter auditEventWriter = createWriter();
+
+        auditEventWriter.write(createEvent());
+
+        assertThat(outcome("failed")).isEqualTo(1);
+    }
+
+    private AuditEventWriter createWriter() {
+        AuditEventWriter auditEventWriter = createStoppedWriter();
+        auditEventWriter.start();
+        return auditEventWriter;
+    }
+
+    private AuditEventWriter createStoppedWriter() {
+        return new AuditEventWriter(persistenceAuditEventRepository, transactionManager, applicationProperties,
+            meterRegistry);
+    }
+
+    private double outcome(String outcome) {
+        return meterRegistry.get("audit.write_behind.events").tag("outcome", outcome).counter().count();
+    }
+
+    private PersistentAuditEvent createEvent() {
+        PersistentAuditEvent event = new PersistentAuditEvent();
+        event.setPrincipal("test-user");
+        event.setAuditEventType("test-type");
+        return event;
+    }
+}
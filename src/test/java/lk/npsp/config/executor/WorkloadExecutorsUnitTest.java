@@ -0,0 +1,176 @@
+package lk.npsp.config.executor;
+
+import lk.npsp.config.ApplicationProperties.Executors.Pool;
+import lk.npsp.config.ApplicationProperties.Executors.Pool.RejectionPolicy;
+
+import io.github.jhipster.async.ExceptionHandlingAsyncTaskExecutor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the WorkloadExecutors.
+ *
+ * @see WorkloadExecutors
+ */
+public class WorkloadExecutorsUnitTest {
+
+    private MeterRegistry meterRegistry;
+
+    private CountDownLatch release;
+
+    private final List<Object> executors = new ArrayList<>();
+
+    @Before
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        release = new CountDownLatch(1);
+    }
+
+    @After
+    public void teardown() throws Exception {
+        release.countDown();
+        for (Object executor : executors) {
+            if (executor instanceof ExceptionHandlingAsyncTaskExecutor) {
+                ((ExceptionHandlingAsyncTaskExecutor) executor).destroy();
+            } else if (executor instanceof VirtualThreadTaskExecutor) {
+                ((VirtualThreadTaskExecutor) executor).destroy();
+            }
+        }
+    }
+
+    @Test
+    public void testAbortRejectsAndCountsWhenPoolAndQueueAreFull() throws Exception {
+        AsyncTaskExecutor executor = createPool("abort", RejectionPolicy.ABORT);
+        CountDownLatch started = new CountDownLatch(1);
+
+        executor.execute(() -> block(started));
+        started.await(5, TimeUnit.SECONDS);
+        executor.execute(() -> block(null));
+
+        assertThatThrownBy(() -> executor.execute(() -> { })).isInstanceOf(TaskRejectedException.class);
+        assertThat(meterRegistry.get("executor.rejected").tag("name", "abort").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("executor.active").tag("name", "abort").gauge().value()).isEqualTo(1);
+        assertThat(meterRegistry.get("executor.queued").tag("name", "abort").gauge().value()).isEqualTo(1);
+        assertThat(meterRegistry.get("executor.pool.size").tag("name", "abort").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    public void testCallerRunsRunsRejectedTaskInSubmittingThread() throws Exception {
+        AsyncTaskExecutor executor = createPool("caller-runs", RejectionPolicy.CALLER_RUNS);
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> block(started));
+        started.await(5, TimeUnit.SECONDS);
+        executor.execute(() -> block(null));
+
+        AtomicReference<Thread> ranOn = new AtomicReference<>();
+        executor.execute(() -> ranOn.set(Thread.currentThread()));
+
+        assertThat(ranOn.get()).isSameAs(Thread.currentThread());
+        assertThat(meterRegistry.get("executor.rejected").tag("name", "caller-runs").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testCompletedTasksAreCounted() throws Exception {
+        AsyncTaskExecutor executor = createPool("completed", RejectionPolicy.ABORT);
+
+        executor.submit(() -> "done").get(5, TimeUnit.SECONDS);
+        executor.submit(() -> "done").get(5, TimeUnit.SECONDS);
+
+        // the pool counts a task as completed just after its future is done
+        long deadline = System.currentTimeMillis() + 5000;
+        while (meterRegistry.get("executor.completed").tag("name", "completed").functionCounter().count() < 2
+            && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(meterRegistry.get("executor.completed").tag("name", "completed").functionCounter().count())
+            .isEqualTo(2);
+    }
+
+    @Test
+    public void testVirtualThreadsFallBackToPoolWhenUnavailable() {
+        Pool pool = new Pool();
+        pool.setVirtualThreads(true);
+
+        AsyncTaskExecutor executor = WorkloadExecutors.create("virtual", pool, meterRegistry);
+        executors.add(executor);
+
+        if (WorkloadExecutors.virtualThreadFactory("test-") == null) {
+            assertThat(executor).isInstanceOf(ExceptionHandlingAsyncTaskExecutor.class);
+        } else {
+            assertThat(executor).isInstanceOf(VirtualThreadTaskExecutor.class);
+        }
+        assertThat(meterRegistry.find("executor.active").tag("name", "virtual").gauge()).isNotNull();
+    }
+
+    @Test
+    public void testThreadPerTaskExecutorBoundsConcurrency() throws Exception {
+        Counter rejected = Counter.builder("executor.rejected").tag("name", "bounded").register(meterRegistry);
+        VirtualThreadTaskExecutor executor = new VirtualThreadTaskExecutor("bounded", Executors.defaultThreadFactory(),
+            2, RejectionPolicy.ABORT, 5, rejected);
+        executors.add(executor);
+        CountDownLatch started = new CountDownLatch(2);
+
+        executor.execute(() -> block(started));
+        executor.execute(() -> block(started));
+        started.await(5, TimeUnit.SECONDS);
+
+        assertThat(executor.getActiveCount()).isEqualTo(2);
+        assertThatThrownBy(() -> executor.execute(() -> { })).isInstanceOf(TaskRejectedException.class);
+        assertThat(rejected.count()).isEqualTo(1);
+
+        release.countDown();
+        executor.destroy();
+        assertThat(executor.getActiveCount()).isZero();
+        assertThat(executor.getCompletedTaskCount()).isEqualTo(2);
+        assertThatThrownBy(() -> executor.execute(() -> { })).isInstanceOf(TaskRejectedException.class);
+    }
+
+    @Test
+    public void testThreadPerTaskExecutorReturnsResults() throws Exception {
+        Counter rejected = Counter.builder("executor.rejected").tag("name", "results").register(meterRegistry);
+        VirtualThreadTaskExecutor executor = new VirtualThreadTaskExecutor("results", Executors.defaultThreadFactory(),
+            1, RejectionPolicy.CALLER_RUNS, 5, rejected);
+        executors.add(executor);
+
+        Future<String> result = executor.submit(() -> "done");
+
+        assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("done");
+    }
+
+    private AsyncTaskExecutor createPool(String name, RejectionPolicy rejectionPolicy) throws Exception {
+        Pool pool = new Pool();
+        pool.setCorePoolSize(1);
+        pool.setMaxPoolSize(1);
+        pool.setQueueCapacity(1);
+        pool.setRejectionPolicy(rejectionPolicy);
+        AsyncTaskExecutor executor = WorkloadExecutors.create(name, pool, meterRegistry);
+        ((ExceptionHandlingAsyncTaskExecutor) executor).afterPropertiesSet();
+        executors.add(executor);
+        return executor;
+    }
+
+    private void block(CountDownLatch started) {
+        if (started != null) {
+            started.countDown();
+        }
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package lk.npsp.config.statement;
+
+import lk.npsp.config.ApplicationProperties;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the StatementTracker.
+ *
+ * @see StatementTracker
+ */
+public class StatementTrackerUnitTest {
+
+    private static final String SELECT = "select route0_.id as id1_6_ from route route0_ where route0_.id=?";
+
+    private ApplicationProperties.Statements previousSettings;
+
+    private MeterRegistry previousMeterRegistry;
+
+    private ApplicationProperties.Statements statements;
+
+    private MeterRegistry meterRegistry;
+
+    @Before
+    public void setup() {
+        // the Spring test context shares this static state, put it back afterwards
+        previousSettings = StatementTracker.getSettings();
+        previousMeterRegistry = StatementTracker.getMeterRegistry();
+        statements = new ApplicationProperties.Statements();
+        statements.setEnabled(true);
+        statements.setMaxPerScope(5);
+        statements.setMaxRepeated(2);
+        meterRegistry = new SimpleMeterRegistry();
+        StatementTracker.configure(statements, meterRegistry);
+    }
+
+    @After
+    public void tearDown() {
+        StatementTracker.configure(
+            previousSettings == null ? new ApplicationProperties.Statements() : previousSettings, previousMeterRegistry);
+    }
+
+    @Test
+    public void testCountStatementsInOpenScopes() {
+        StatementTracker.record(SELECT);
+        StatementTracker.Scope outer = StatementTracker.open("outer");
+        StatementTracker.record(SELECT);
+        StatementTracker.Scope inner = StatementTracker.open("inner");
+        StatementTracker.record("insert into route (id) values (?)");
+        StatementTracker.close(inner);
+        StatementTracker.record("update route set route_name=? where id=?");
+        StatementTracker.close(outer);
+
+        assertThat(outer.getCount()).isEqualTo(3);
+        assertThat(inner.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testLogRepeatedSelects() {
+        StatementTracker.Scope scope = StatementTracker.open("request");
+        for (int i = 0; i < 4; i++) {
+            StatementTracker.record(SELECT);
+        }
+        StatementTracker.close(scope);
+
+        assertThat(meterRegistry.get("npsp.statements.violations").tag("kind", "repeated_statement").counter().count())
+            .isEqualTo(1);
+    }
+
+    @Test
+    public void testFailOnRepeatedSelects() {
+        statements.setMode(ApplicationProperties.Statements.Mode.FAIL);
+        statements.setMaxPerScope(0);
+        StatementTracker.Scope scope = StatementTracker.open("request");
+        try {
+            StatementTracker.record(SELECT);
+            StatementTracker.record(SELECT);
+            // inserts may repeat, e.g. batched saves
+            for (int i = 0; i < 5; i++) {
+                StatementTracker.record("insert into route (id) values (?)");
+            }
+            assertThatThrownBy(() -> StatementTracker.record(SELECT))
+                .isInstanceOf(StatementThresholdExceededException.class)
+                .hasMessageContaining("request")
+                .hasMessageContaining("N+1");
+        } finally {
+            StatementTracker.close(scope);
+        }
+    }
+
+    @Test
+    public void testFailOnTooManyStatements() {
+        statements.setMode(ApplicationProperties.Statements.Mode.FAIL);
+        StatementTracker.Scope scope = StatementTracker.open("request");
+        try {
+            for (int i = 0; i < 5; i++) {
+                StatementTracker.record("insert into route (id) values (?)");
+            }
+            assertThatThrownBy(() -> StatementTracker.record("insert into route (id) values (?)"))
+                .isInstanceOf(StatementThresholdExceededException.class);
+        } finally {
+            StatementTracker.close(scope);
+        }
+    }
+
+    @Test
+    public void testIgnoreStatementsWhenDisabled() {
+        StatementTracker.configure(new ApplicationProperties.Statements(), meterRegistry);
+        StatementTracker.Scope scope = StatementTracker.open("request");
+        StatementTracker.record(SELECT);
+        StatementTracker.close(scope);
+
+        assertThat(scope.getCount()).isEqualTo(0);
+    }
+}
@@ -3,6 +3,7 @@ package lk.npsp.repository;
 import lk.npsp.NpspApp;
 import lk.npsp.config.Constants;
 import lk.npsp.config.audit.AuditEventConverter;
+import lk.npsp.config.audit.AuditEventWriter;
 import lk.npsp.domain.PersistentAuditEvent;
 import org.junit.Before;
 import org.junit.Test;
@@ -41,6 +42,9 @@ public class CustomAuditEventRepositoryIntTest {
     @Autowired
     private AuditEventConverter auditEventConverter;
 
+    @Autowired
+    private AuditEventWriter auditEventWriter;
+
     private CustomAuditEventRepository customAuditEventRepository;
 
     private PersistentAuditEvent testUserEvent;
@@ -51,7 +55,7 @@ public class CustomAuditEventRepositoryIntTest {
 
     @Before
     public void setup() {
-        customAuditEventRepository = new CustomAuditEventRepository(persistenceAuditEventRepository, auditEventConverter);
+        customAuditEventRepository = new CustomAuditEventRepository(persistenceAuditEventRepository, auditEventConverter, auditEventWriter);
         persistenceAuditEventRepository.deleteAll();
         Instant oneHourAgo = Instant.now().minusSeconds(3600);
 
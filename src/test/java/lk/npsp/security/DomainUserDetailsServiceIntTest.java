@@ -3,6 +3,8 @@ package lk.npsp.security;
 import lk.npsp.NpspApp;
 import lk.npsp.domain.User;
 import lk.npsp.repository.UserRepository;
+import lk.npsp.service.UserService;
+import lk.npsp.service.dto.UserDTO;
 
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.Before;
@@ -10,15 +12,19 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.security.core.CredentialsContainer;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Locale;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 /**
  * Test class for DomainUserDetailsService.
@@ -43,12 +49,26 @@ public class DomainUserDetailsServiceIntTest {
     @Autowired
     private UserDetailsService domainUserDetailsService;
 
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
     private User userOne;
     private User userTwo;
     private User userThree;
 
     @Before
     public void init() {
+        // the users of earlier tests were rolled back, not evicted
+        cacheManager.getCache(DomainUserDetailsService.USER_DETAILS_CACHE).clear();
+        cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).clear();
+        cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE).clear();
+
         userOne = new User();
         userOne.setLogin(USER_ONE_LOGIN);
         userOne.setPassword(RandomStringUtils.random(60));
@@ -104,10 +124,18 @@ public class DomainUserDetailsServiceIntTest {
         assertThat(userDetails.getUsername()).isEqualTo(USER_TWO_LOGIN);
     }
 
+    @Test
+    @Transactional
+    public void assertThatUserCanBeFoundByEmailIgnoreCase() {
+        UserDetails userDetails = domainUserDetailsService.loadUserByUsername(USER_TWO_EMAIL.toUpperCase(Locale.ENGLISH));
+        assertThat(userDetails).isNotNull();
+        assertThat(userDetails.getUsername()).isEqualTo(USER_TWO_LOGIN);
+    }
+
     @Test(expected = UsernameNotFoundException.class)
     @Transactional
-    public void assertThatUserCanNotBeFoundByEmailIgnoreCase() {
-    domainUserDetailsService.loadUserByUsername(USER_TWO_EMAIL.toUpperCase(Locale.ENGLISH));
+    public void assertThatUnknownEmailIsNotFound() {
+        domainUserDetailsService.loadUserByUsername("Unknown-User@localhost");
     }
 
     @Test
@@ -124,4 +152,48 @@ public class DomainUserDetailsServiceIntTest {
         domainUserDetailsService.loadUserByUsername(USER_THREE_LOGIN);
     }
 
+    @Test
+    @Transactional
+    public void assertThatCachedPrincipalIsACopy() {
+        UserDetails first = domainUserDetailsService.loadUserByUsername(USER_ONE_LOGIN);
+        ((CredentialsContainer) first).eraseCredentials();
+
+        UserDetails second = domainUserDetailsService.loadUserByUsername(USER_ONE_LOGIN);
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getPassword()).isEqualTo(userOne.getPassword());
+    }
+
+    @Test
+    @Transactional
+    public void assertThatUserServiceChangesClearTheCachedPrincipal() {
+        domainUserDetailsService.loadUserByUsername(USER_ONE_LOGIN);
+        domainUserDetailsService.loadUserByUsername(USER_ONE_EMAIL);
+        UserDTO userDTO = new UserDTO(userOne);
+        userDTO.setActivated(false);
+
+        userService.updateUser(userDTO);
+
+        assertThatThrownBy(() -> domainUserDetailsService.loadUserByUsername(USER_ONE_LOGIN))
+            .isInstanceOf(UserNotActivatedException.class);
+        assertThatThrownBy(() -> domainUserDetailsService.loadUserByUsername(USER_ONE_EMAIL))
+            .isInstanceOf(UserNotActivatedException.class);
+    }
+
+    @Test
+    @Transactional
+    public void assertThatPasswordChangeClearsThePrincipalCachedUnderAMixedCaseEmail() {
+        userTwo.setPassword(passwordEncoder.encode("old-password"));
+        userRepository.saveAndFlush(userTwo);
+        String mixedCaseEmail = "Test-User-Two@LocalHost";
+        assertThat(passwordEncoder.matches("old-password",
+            domainUserDetailsService.loadUserByUsername(mixedCaseEmail).getPassword())).isTrue();
+
+        String resetKey = userService.requestPasswordReset(mixedCaseEmail).get().getResetKey();
+        userService.completePasswordReset("new-password", resetKey);
+
+        UserDetails userDetails = domainUserDetailsService.loadUserByUsername(mixedCaseEmail);
+        assertThat(passwordEncoder.matches("old-password", userDetails.getPassword())).isFalse();
+        assertThat(passwordEncoder.matches("new-password", userDetails.getPassword())).isTrue();
+    }
 }
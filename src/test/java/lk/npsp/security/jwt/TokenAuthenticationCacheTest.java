@@ -0,0 +1,66 @@
+package lk.npsp.security.jwt;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TokenAuthenticationCacheTest {
+
+    private final long ONE_MINUTE = 60000;
+
+    private MeterRegistry meterRegistry;
+
+    private TokenAuthenticationCache tokenAuthenticationCache;
+
+    @Before
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        tokenAuthenticationCache = new TokenAuthenticationCache(4, meterRegistry);
+    }
+
+    @Test
+    public void testReturnCachedAuthentication() {
+        Authentication authentication = createAuthentication();
+        tokenAuthenticationCache.put("token", authentication, System.currentTimeMillis() + ONE_MINUTE);
+
+        assertThat(tokenAuthenticationCache.get("token")).isSameAs(authentication);
+        assertThat(tokenAuthenticationCache.get("other-token")).isNull();
+        assertThat(meterRegistry.get("security.jwt.cache.requests").tag("result", "hit").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("security.jwt.cache.requests").tag("result", "miss").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testNeverReturnExpiredAuthentication() {
+        tokenAuthenticationCache.put("token", createAuthentication(), System.currentTimeMillis() - 1);
+
+        assertThat(tokenAuthenticationCache.get("token")).isNull();
+        assertThat(meterRegistry.get("security.jwt.cache.size").gauge().value()).isEqualTo(0);
+    }
+
+    @Test
+    public void testStayWithinMaxEntries() {
+        for (int i = 0; i < 10; i++) {
+            tokenAuthenticationCache.put("token-" + i, createAuthentication(), System.currentTimeMillis() + ONE_MINUTE);
+        }
+
+        assertThat(meterRegistry.get("security.jwt.cache.size").gauge().value()).isLessThanOrEqualTo(4);
+        assertThat(tokenAuthenticationCache.get("token-9")).isNotNull();
+    }
+
+    @Test
+    public void testDisabledWithZeroMaxEntries() {
+        tokenAuthenticationCache = new TokenAuthenticationCache(0, new SimpleMeterRegistry());
+        tokenAuthenticationCache.put("token", createAuthentication(), System.currentTimeMillis() + ONE_MINUTE);
+
+        assertThat(tokenAuthenticationCache.get("token")).isNull();
+    }
+
+    private Authentication createAuthentication() {
+        return new UsernamePasswordAuthenticationToken("test-user", "token");
+    }
+}
@@ -0,0 +1,148 @@
+package lk.npsp.security.password;
+
+import lk.npsp.config.ApplicationProperties;
+import lk.npsp.config.ApplicationProperties.Security.Password.Algorithm;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the HashingPasswordEncoder.
+ *
+ * @see HashingPasswordEncoder
+ */
+public class HashingPasswordEncoderUnitTest {
+
+    private ThreadPoolTaskExecutor hashingExecutor;
+
+    private MeterRegistry meterRegistry;
+
+    @Before
+    public void setup() {
+        hashingExecutor = new ThreadPoolTaskExecutor();
+        hashingExecutor.setCorePoolSize(1);
+        hashingExecutor.setMaxPoolSize(1);
+        hashingExecutor.setQueueCapacity(0);
+        hashingExecutor.initialize();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @After
+    public void teardown() {
+        hashingExecutor.shutdown();
+    }
+
+    @Test
+    public void testBCryptRoundTrip() {
+        assertRoundTrip(Algorithm.BCRYPT, "$2a$04$");
+    }
+
+    @Test
+    public void testPbkdf2RoundTrip() {
+        assertRoundTrip(Algorithm.PBKDF2, "$pbkdf2-sha256$i=1000$");
+    }
+
+    @Test
+    public void testArgon2RoundTrip() {
+        assertRoundTrip(Algorithm.ARGON2, "$argon2id$v=19$m=64,t=1,p=1$");
+    }
+
+    @Test
+    public void testHashesOfOtherAlgorithmsAndParametersStillMatch() {
+        String bcrypt = encoder(Algorithm.BCRYPT).encode("password");
+        String pbkdf2 = encoder(Algorithm.PBKDF2).encode("password");
+        ApplicationProperties.Security.Password stronger = properties(Algorithm.ARGON2);
+        stronger.setArgon2MemoryKb(128);
+        stronger.setArgon2Iterations(2);
+        HashingPasswordEncoder encoder = new HashingPasswordEncoder(stronger, hashingExecutor, meterRegistry);
+        String argon2 = encoder(Algorithm.ARGON2).encode("password");
+
+        assertThat(encoder.matches("password", bcrypt)).isTrue();
+        assertThat(encoder.matches("password", pbkdf2)).isTrue();
+        assertThat(encoder.matches("password", argon2)).isTrue();
+        assertThat(encoder.upgradeEncoding(bcrypt)).isTrue();
+        assertThat(encoder.upgradeEncoding(pbkdf2)).isTrue();
+        assertThat(encoder.upgradeEncoding(argon2)).isTrue();
+        assertThat(encoder.upgradeEncoding(encoder.encode("password"))).isFalse();
+    }
+
+    @Test
+    public void testNoUpgradeWhenRehashOnLoginIsOff() {
+        ApplicationProperties.Security.Password properties = properties(Algorithm.PBKDF2);
+        properties.setRehashOnLogin(false);
+        HashingPasswordEncoder encoder = new HashingPasswordEncoder(properties, hashingExecutor, meterRegistry);
+
+        assertThat(encoder.upgradeEncoding(encoder(Algorithm.BCRYPT).encode("password"))).isFalse();
+    }
+
+    @Test
+    public void testUnknownHashDoesNotMatch() {
+        HashingPasswordEncoder encoder = encoder(Algorithm.BCRYPT);
+
+        assertThat(encoder.matches("password", "password")).isFalse();
+        assertThat(encoder.matches("password", "")).isFalse();
+        assertThat(encoder.matches("password", null)).isFalse();
+    }
+
+    @Test
+    public void testRejectedWhenHashingExecutorIsFull() throws Exception {
+        HashingPasswordEncoder encoder = encoder(Algorithm.BCRYPT);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        hashingExecutor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+        try {
+            assertThatThrownBy(() -> encoder.encode("password")).isInstanceOf(TaskRejectedException.class);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private void assertRoundTrip(Algorithm algorithm, String prefix) {
+        HashingPasswordEncoder encoder = encoder(algorithm);
+
+        String hash = encoder.encode("password");
+
+        assertThat(hash).startsWith(prefix).hasSizeBetween(60, 255);
+        assertThat(encoder.encode("password")).isNotEqualTo(hash);
+        assertThat(encoder.matches("password", hash)).isTrue();
+        assertThat(encoder.matches("wrong", hash)).isFalse();
+        assertThat(encoder.upgradeEncoding(hash)).isFalse();
+        assertThat(meterRegistry.get("npsp.password.hash").tag("operation", "encode").timer().count())
+            .isEqualTo(2);
+    }
+
+    private HashingPasswordEncoder encoder(Algorithm algorithm) {
+        return new HashingPasswordEncoder(properties(algorithm), hashingExecutor, meterRegistry);
+    }
+
+    private static ApplicationProperties.Security.Password properties(Algorithm algorithm) {
+        ApplicationProperties.Security.Password properties = new ApplicationProperties.Security.Password();
+        properties.setAlgorithm(algorithm);
+        properties.setBcryptStrength(4);
+        properties.setPbkdf2Iterations(1000);
+        properties.setArgon2MemoryKb(64);
+        properties.setArgon2Iterations(1);
+        properties.setArgon2Parallelism(1);
+        return properties;
+    }
+}
@@ -0,0 +1,164 @@
+package lk.npsp.service;
+
+import lk.npsp.NpspApp;
+import lk.npsp.config.ApplicationProperties;
+import lk.npsp.domain.Bay;
+import lk.npsp.domain.ScheduleInstance;
+import lk.npsp.domain.Vehicle;
+import lk.npsp.domain.enumeration.ScheduleState;
+import lk.npsp.repository.ScheduleInstanceRepository;
+import lk.npsp.web.rest.BayResourceIntTest;
+import lk.npsp.web.rest.VehicleResourceIntTest;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the DelayPropagator.
+ *
+ * @see DelayPropagator
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = NpspApp.class)
+@Transactional
+public class DelayPropagatorIntTest {
+
+    @Autowired
+    private ScheduleInstanceRepository scheduleInstanceRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ZoneId zone;
+
+    @Autowired
+    private EntityManager em;
+
+    private MeterRegistry meterRegistry;
+
+    private DelayPropagator delayPropagator;
+
+    private ScheduleInstance first;
+
+    private ScheduleInstance sameVehicle;
+
+    private ScheduleInstance sameBay;
+
+    private LocalDate today;
+
+    @Before
+    public void setup() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getDelays().setVehicleRecoveryMinutes(15);
+        applicationProperties.getDelays().setBayHeadwayMinutes(2);
+        meterRegistry = new SimpleMeterRegistry();
+        delayPropagator = new DelayPropagator(scheduleInstanceRepository, transactionManager, applicationProperties,
+            new DomainMetrics(meterRegistry), zone);
+        today = LocalDate.now(zone);
+
+        Vehicle vehicle = VehicleResourceIntTest.createEntity(em);
+        em.persist(vehicle);
+        Vehicle otherVehicle = VehicleResourceIntTest.createEntity(em);
+        em.persist(otherVehicle);
+        Bay bay = BayResourceIntTest.createEntity(em);
+        em.persist(bay);
+        Bay otherBay = BayResourceIntTest.createEntity(em);
+        em.persist(otherBay);
+
+        first = instance(vehicle, bay, 10, 0);
+        sameBay = instance(otherVehicle, bay, 10, 5);
+        sameVehicle = instance(vehicle, otherBay, 11, 0);
+        em.flush();
+    }
+
+    @Test
+    public void testDelayMovesLaterDeparturesOfVehicleAndBay() {
+        List<Long> moved = delay(first, 10, 30);
+
+        assertThat(moved).containsExactlyInAnyOrder(sameVehicle.getId(), sameBay.getId());
+        // the bay is free two minutes after the first departure
+        assertDeparture(sameBay, 10, 32, ScheduleState.DELAYED);
+        // the vehicle makes up a quarter of an hour of its turnaround
+        assertDeparture(sameVehicle, 11, 15, ScheduleState.DELAYED);
+        assertThat(meterRegistry.get("npsp.delays.departures.moved").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    public void testRecoveryAbsorbsShortDelay() {
+        List<Long> moved = delay(first, 10, 10);
+
+        assertThat(moved).containsExactly(sameBay.getId());
+        assertDeparture(sameBay, 10, 12, ScheduleState.DELAYED);
+        assertDeparture(sameVehicle, 11, 0, ScheduleState.PENDING);
+    }
+
+    @Test
+    public void testDeparturesMoveBackWhenDelayIsWithdrawn() {
+        delay(first, 10, 30);
+
+        List<Long> moved = delay(first, 10, 0);
+
+        assertThat(moved).containsExactlyInAnyOrder(sameVehicle.getId(), sameBay.getId());
+        assertDeparture(sameBay, 10, 5, ScheduleState.PENDING);
+        assertDeparture(sameVehicle, 11, 0, ScheduleState.PENDING);
+    }
+
+    @Test
+    public void testDepartedInstanceIsNotMoved() {
+        sameBay.setScheduleState(ScheduleState.DEPARTED);
+        scheduleInstanceRepository.saveAndFlush(sameBay);
+
+        List<Long> moved = delay(first, 10, 30);
+
+        assertThat(moved).containsExactly(sameVehicle.getId());
+        assertDeparture(sameBay, 10, 5, ScheduleState.DEPARTED);
+    }
+
+    private List<Long> delay(ScheduleInstance instance, int hour, int minute) {
+        instance.setActualScheduledTime(at(hour, minute));
+        instance.setScheduleState(ScheduleState.DELAYED);
+        scheduleInstanceRepository.saveAndFlush(instance);
+        List<Long> moved = delayPropagator.propagate(instance);
+        em.flush();
+        return moved;
+    }
+
+    private void assertDeparture(ScheduleInstance instance, int hour, int minute, ScheduleState state) {
+        ScheduleInstance saved = scheduleInstanceRepository.findById(instance.getId()).get();
+        assertThat(saved.getActualScheduledTime()).isEqualTo(at(hour, minute));
+        assertThat(saved.getScheduleState()).isEqualTo(state);
+    }
+
+    private ScheduleInstance instance(Vehicle vehicle, Bay bay, int hour, int minute) {
+        ScheduleInstance instance = new ScheduleInstance()
+            .date(today)
+            .scheduledTime(at(hour, minute))
+            .actualScheduledTime(at(hour, minute))
+            .scheduleState(ScheduleState.PENDING)
+            .vehicle(vehicle)
+            .bay(bay);
+        em.persist(instance);
+        return instance;
+    }
+
+    private Instant at(int hour, int minute) {
+        return today.atTime(hour, minute).atZone(zone).toInstant();
+    }
+}
@@ -0,0 +1,82 @@
+package lk.npsp.service;
+
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the DomainMetrics.
+ *
+ * @see DomainMetrics
+ */
+public class DomainMetricsUnitTest {
+
+    private MockClock clock;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private DomainMetrics domainMetrics;
+
+    @Before
+    public void setup() {
+        clock = new MockClock();
+        meterRegistry = new SimpleMeterRegistry(SimpleConfig.DEFAULT, clock);
+        domainMetrics = new DomainMetrics(meterRegistry);
+    }
+
+    @Test
+    public void testRecordScreenPhases() {
+        long start = domainMetrics.monotonicTime();
+        clock.add(3, TimeUnit.MILLISECONDS);
+        long queried = domainMetrics.monotonicTime();
+        clock.add(2, TimeUnit.MILLISECONDS);
+        domainMetrics.recordBayScreen(7L, DomainMetrics.SOURCE_TIMETABLE, start, queried, 4);
+
+        assertThat(timer("npsp.screen.build").totalTime(TimeUnit.MILLISECONDS)).isEqualTo(5);
+        assertThat(timer("npsp.screen.query").totalTime(TimeUnit.MILLISECONDS)).isEqualTo(3);
+        assertThat(timer("npsp.screen.response").totalTime(TimeUnit.MILLISECONDS)).isEqualTo(2);
+        assertThat(meterRegistry.get("npsp.screen.rows").tag("bay", "7").summary().totalAmount()).isEqualTo(4);
+    }
+
+    @Test
+    public void testUseTheSameTagKeysForBothScreens() {
+        long start = domainMetrics.monotonicTime();
+        domainMetrics.recordBayScreen(7L, DomainMetrics.SOURCE_DATABASE, start, start, 0);
+        domainMetrics.recordSummaryScreen("", DomainMetrics.SOURCE_TIMETABLE, start, start, 0);
+        domainMetrics.recordSummaryScreen("NTC", DomainMetrics.SOURCE_TIMETABLE, start, start, 0);
+        domainMetrics.recordSummaryScreen("NTC", DomainMetrics.SOURCE_TIMETABLE, start, start, 0);
+
+        assertThat(meterRegistry.get("npsp.screen.build").tag("screen", "bay").tag("bay", "7")
+            .tag("transport_type", "none").tag("source", "database").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("npsp.screen.build").tag("screen", "summary").tag("bay", "none")
+            .tag("transport_type", "all").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("npsp.screen.build").tag("transport_type", "NTC").timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("npsp.screen.build").timers()).hasSize(3);
+    }
+
+    @Test
+    public void testRecordInstantiationAndImport() {
+        long start = domainMetrics.monotonicTime();
+        clock.add(2, TimeUnit.SECONDS);
+        domainMetrics.recordInstantiation(start, 12, 5);
+        domainMetrics.recordImport("locations", start, 1000);
+
+        assertThat(meterRegistry.get("npsp.instantiator.run").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("npsp.instantiator.templates.scanned").counter().count()).isEqualTo(12);
+        assertThat(meterRegistry.get("npsp.instantiator.instances.created").counter().count()).isEqualTo(5);
+        assertThat(meterRegistry.get("npsp.import.rows").tag("dataset", "locations").counter().count()).isEqualTo(1000);
+        assertThat(meterRegistry.get("npsp.import.throughput").tag("dataset", "locations").summary().max())
+            .isEqualTo(500);
+    }
+
+    private Timer timer(String name) {
+        return meterRegistry.get(name).timer();
+    }
+}
@@ -0,0 +1,166 @@
+package lk.npsp.service;
+
+import lk.npsp.domain.Location;
+import lk.npsp.repository.LocationRepository;
+import lk.npsp.service.dto.NearbyLocationDTO;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the LocationIndex, checking its answers against a brute force scan.
+ *
+ * @see LocationIndex
+ */
+public class LocationIndexUnitTest {
+
+    // roughly the extent of Sri Lanka
+    private static final double MIN_LATITUDE = 5.9;
+    private static final double MAX_LATITUDE = 9.9;
+    private static final double MIN_LONGITUDE = 79.6;
+    private static final double MAX_LONGITUDE = 81.9;
+
+    private final Random random = new Random(42);
+
+    private List<Location> locations;
+
+    private LocationIndex locationIndex;
+
+    @Before
+    public void init() {
+        locations = new ArrayList<>();
+        for (long id = 1; id <= 2000; id++) {
+            locations.add(location(id, randomLatitude(), randomLongitude()));
+        }
+        locations.add(new Location().locationName("Unknown"));
+        LocationRepository locationRepository = mock(LocationRepository.class);
+        when(locationRepository.findAll()).thenReturn(locations);
+        locationIndex = new LocationIndex(locationRepository);
+    }
+
+    @Test
+    public void findNearestMatchesBruteForce() {
+        for (int i = 0; i < 200; i++) {
+            double latitude = randomLatitude();
+            double longitude = randomLongitude();
+            int count = 1 + random.nextInt(20);
+
+            List<Double> expected = bruteForce(latitude, longitude, Double.MAX_VALUE).stream()
+                .limit(count).collect(Collectors.toList());
+
+            assertThat(distances(locationIndex.findNearest(latitude, longitude, count))).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void findNearestFromFarOutside() {
+        List<NearbyLocationDTO> nearest = locationIndex.findNearest(0, 0, 3);
+
+        assertThat(distances(nearest)).isEqualTo(bruteForce(0, 0, Double.MAX_VALUE).subList(0, 3));
+    }
+
+    @Test
+    public void findWithinMatchesBruteForce() {
+        for (int i = 0; i < 200; i++) {
+            double latitude = randomLatitude();
+            double longitude = randomLongitude();
+            double radius = random.nextDouble() * 30;
+
+            assertThat(distances(locationIndex.findWithin(latitude, longitude, radius)))
+                .isEqualTo(bruteForce(latitude, longitude, radius));
+        }
+    }
+
+    @Test
+    public void findWithinLargeRadiusScansAll() {
+        assertThat(locationIndex.findWithin(7.9, 80.7, 1000)).hasSize(2000);
+    }
+
+    @Test
+    public void putAndRemoveUpdateTheIndex() {
+        locationIndex.findNearest(7.0, 80.0, 1);
+
+        locationIndex.put(location(5000L, 7.0, 80.0));
+        assertThat(locationIndex.findNearest(7.0, 80.0, 1).get(0).getLocation().getId()).isEqualTo(5000L);
+
+        locationIndex.put(location(5000L, 9.5, 81.5));
+        assertThat(locationIndex.findNearest(7.0, 80.0, 1).get(0).getLocation().getId()).isNotEqualTo(5000L);
+
+        locationIndex.remove(5000L);
+        assertThat(locationIndex.findNearest(9.5, 81.5, 1).get(0).getLocation().getId()).isNotEqualTo(5000L);
+    }
+
+    @Test
+    public void patchedIndexMatchesBruteForce() {
+        locationIndex.findNearest(7.0, 80.0, 1);
+        Map<Long, Location> byId = new HashMap<>();
+        locations.forEach(location -> byId.put(location.getId(), location));
+        for (int i = 0; i < 500; i++) {
+            long id = 1 + random.nextInt(2500);
+            int change = random.nextInt(4);
+            if (change == 0) {
+                locationIndex.remove(id);
+                byId.remove(id);
+            } else {
+                Location location = change == 1 ? new Location().locationName("Unknown " + id) :
+                    location(id, randomLatitude(), randomLongitude());
+                location.setId(id);
+                locationIndex.put(location);
+                byId.put(id, location);
+            }
+        }
+        locations = new ArrayList<>(byId.values());
+
+        for (int i = 0; i < 200; i++) {
+            double latitude = randomLatitude();
+            double longitude = randomLongitude();
+            int count = 1 + random.nextInt(20);
+            double radius = random.nextDouble() * 30;
+
+            assertThat(distances(locationIndex.findNearest(latitude, longitude, count)))
+                .isEqualTo(bruteForce(latitude, longitude, Double.MAX_VALUE).stream()
+                    .limit(count).collect(Collectors.toList()));
+            assertThat(distances(locationIndex.findWithin(latitude, longitude, radius)))
+                .isEqualTo(bruteForce(latitude, longitude, radius));
+        }
+    }
+
+    private List<Double> bruteForce(double latitude, double longitude, double radius) {
+        return locations.stream()
+            .filter(location -> location.getLatitude() != null)
+            .map(location -> LocationIndex.distance(latitude, longitude, location.getLatitude(), location.getLongitude()))
+            .filter(distance -> distance <= radius)
+            .sorted(Comparator.naturalOrder())
+            .collect(Collectors.toList());
+    }
+
+    private static List<Double> distances(List<NearbyLocationDTO> nearby) {
+        return nearby.stream().map(NearbyLocationDTO::getDistance).collect(Collectors.toList());
+    }
+
+    private static Location location(Long id, double latitude, double longitude) {
+        Location location = new Location().locationName("Stop " + id).latitude(latitude).longitude(longitude);
+        location.setId(id);
+        return location;
+    }
+
+    private double randomLatitude() {
+        return MIN_LATITUDE + random.nextDouble() * (MAX_LATITUDE - MIN_LATITUDE);
+    }
+
+    private double randomLongitude() {
+        return MIN_LONGITUDE + random.nextDouble() * (MAX_LONGITUDE - MIN_LONGITUDE);
+    }
+}
@@ -0,0 +1,174 @@
+package lk.npsp.service;
+
+import lk.npsp.NpspApp;
+import lk.npsp.config.ApplicationProperties;
+import lk.npsp.domain.MailMessage;
+import lk.npsp.domain.enumeration.MailStatus;
+import lk.npsp.repository.MailMessageRepository;
+
+import io.github.jhipster.config.JHipsterProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the MailDispatcher, against an in-process SMTP server.
+ *
+ * @see MailDispatcher
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = NpspApp.class)
+public class MailDispatcherIntTest {
+
+    @Autowired
+    private JHipsterProperties jHipsterProperties;
+
+    @Autowired
+    private MailMessageRepository mailMessageRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private ApplicationProperties applicationProperties;
+
+    private MeterRegistry meterRegistry;
+
+    private SmtpStandIn smtpStandIn;
+
+    private MailDispatcher mailDispatcher;
+
+    @Before
+    public void setup() throws Exception {
+        mailMessageRepository.deleteAll();
+        smtpStandIn = new SmtpStandIn();
+        JavaMailSenderImpl javaMailSender = new JavaMailSenderImpl();
+        javaMailSender.setHost(smtpStandIn.getHost());
+        javaMailSender.setPort(smtpStandIn.getPort());
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getMail().setDispatcherEnabled(false);
+        applicationProperties.getMail().setMaxPerSecond(0);
+        applicationProperties.getMail().setBatchSize(10);
+        meterRegistry = new SimpleMeterRegistry();
+        mailDispatcher = new MailDispatcher(mailMessageRepository, javaMailSender, transactionManager,
+            jHipsterProperties, applicationProperties, meterRegistry);
+    }
+
+    @After
+    public void teardown() throws Exception {
+        smtpStandIn.close();
+        mailMessageRepository.deleteAll();
+    }
+
+    @Test
+    public void testBatchIsSentOverOneConnection() throws Exception {
+        for (int i = 0; i < 15; i++) {
+            queue("user" + i + "@example.com");
+        }
+
+        assertThat(mailDispatcher.dispatchDue()).isEqualTo(10);
+        assertThat(mailDispatcher.dispatchDue()).isEqualTo(5);
+        assertThat(mailDispatcher.dispatchDue()).isZero();
+
+        assertThat(smtpStandIn.getMessages()).hasSize(15);
+        assertThat(smtpStandIn.getConnections()).isEqualTo(2);
+        assertThat(mailMessageRepository.findAll()).allSatisfy(message -> {
+            assertThat(message.getStatus()).isEqualTo(MailStatus.SENT);
+            assertThat(message.getAttempts()).isEqualTo(1);
+            assertThat(message.getSentDate()).isNotNull();
+        });
+        assertThat(meterRegistry.get("npsp.mail.messages").tag("outcome", "sent").counter().count()).isEqualTo(15);
+    }
+
+    @Test
+    public void testRejectedRecipientIsRetriedAndOthersAreSent() throws Exception {
+        smtpStandIn.reject("unknown@example.com");
+        MailMessage rejected = queue("unknown@example.com");
+        MailMessage accepted = queue("known@example.com");
+
+        assertThat(mailDispatcher.dispatchDue()).isEqualTo(2);
+
+        assertThat(smtpStandIn.getMessages()).hasSize(1);
+        assertThat(mailMessageRepository.findById(accepted.getId()).get().getStatus()).isEqualTo(MailStatus.SENT);
+        MailMessage retried = mailMessageRepository.findById(rejected.getId()).get();
+        assertThat(retried.getStatus()).isEqualTo(MailStatus.PENDING);
+        assertThat(retried.getAttempts()).isEqualTo(1);
+        assertThat(retried.getLastError()).isNotEmpty();
+    }
+
+    @Test
+    public void testRetryWaitsForBackoff() throws Exception {
+        applicationProperties.getMail().setInitialBackoffMs(60000);
+        smtpStandIn.close();
+        MailMessage message = queue("john.doe@example.com");
+
+        Instant before = Instant.now();
+        assertThat(mailDispatcher.dispatchDue()).isEqualTo(1);
+        assertThat(mailDispatcher.dispatchDue()).isZero();
+
+        MailMessage retried = mailMessageRepository.findById(message.getId()).get();
+        assertThat(retried.getStatus()).isEqualTo(MailStatus.PENDING);
+        assertThat(retried.getAttempts()).isEqualTo(1);
+        assertThat(retried.getNextAttemptAt()).isAfterOrEqualTo(before.plusSeconds(60));
+    }
+
+    @Test
+    public void testFailedAfterMaxAttempts() throws Exception {
+        applicationProperties.getMail().setInitialBackoffMs(0);
+        applicationProperties.getMail().setMaxAttempts(3);
+        smtpStandIn.close();
+        MailMessage message = queue("john.doe@example.com");
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(mailDispatcher.dispatchDue()).isEqualTo(1);
+        }
+        assertThat(mailDispatcher.dispatchDue()).isZero();
+
+        MailMessage failed = mailMessageRepository.findById(message.getId()).get();
+        assertThat(failed.getStatus()).isEqualTo(MailStatus.FAILED);
+        assertThat(failed.getAttempts()).isEqualTo(3);
+        assertThat(meterRegistry.get("npsp.mail.messages").tag("outcome", "retried").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("npsp.mail.messages").tag("outcome", "failed").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testPurgeKeepsPendingAndRecentMessages() {
+        Instant old = Instant.now().minus(30, ChronoUnit.DAYS);
+        MailMessage oldSent = queue("sent@example.com", MailStatus.SENT, old);
+        MailMessage oldPending = queue("pending@example.com", MailStatus.PENDING, old);
+        MailMessage recentSent = queue("recent@example.com", MailStatus.SENT, Instant.now());
+
+        mailDispatcher.purgeFinishedMessages();
+
+        assertThat(mailMessageRepository.findById(oldSent.getId())).isEmpty();
+        assertThat(mailMessageRepository.findById(oldPending.getId())).isPresent();
+        assertThat(mailMessageRepository.findById(recentSent.getId())).isPresent();
+    }
+
+    private MailMessage queue(String recipient) {
+        return queue(recipient, MailStatus.PENDING, Instant.now());
+    }
+
+    private MailMessage queue(String recipient, MailStatus status, Instant createdDate) {
+        MailMessage message = new MailMessage();
+        message.setRecipient(recipient);
+        message.setSubject("testSubject");
+        message.setContent("testContent");
+        message.setStatus(status);
+        message.setCreatedDate(createdDate);
+        message.setNextAttemptAt(createdDate);
+        return mailMessageRepository.save(message);
+    }
+}
@@ -1,34 +1,38 @@
 package lk.npsp.service;
+import lk.npsp.config.ApplicationProperties;
 import lk.npsp.config.Constants;
 
 import lk.npsp.NpspApp;
 import lk.npsp.domain.User;
+import lk.npsp.repository.MailMessageRepository;
 import io.github.jhipster.config.JHipsterProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.mockito.ArgumentCaptor;
-import org.mockito.Captor;
-import org.mockito.MockitoAnnotations;
-import org.mockito.Spy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.MessageSource;
-import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSenderImpl;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.thymeleaf.spring5.SpringTemplateEngine;
 
 import javax.mail.Multipart;
+import javax.mail.internet.ContentType;
 import javax.mail.internet.MimeBodyPart;
 import javax.mail.internet.MimeMessage;
 import javax.mail.internet.MimeMultipart;
-import java.io.ByteArrayOutputStream;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.*;
 
+/**
+ * Test class for the MailService, sending through the mail queue to an in-process SMTP server.
+ *
+ * @see MailService
+ */
 @RunWith(SpringRunner.class)
 @SpringBootTest(classes = NpspApp.class)
 public class MailServiceIntTest {
@@ -42,79 +46,91 @@ public class MailServiceIntTest {
     @Autowired
     private SpringTemplateEngine templateEngine;
 
-    @Spy
-    private JavaMailSenderImpl javaMailSender;
+    @Autowired
+    private MailMessageRepository mailMessageRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private ApplicationProperties applicationProperties;
+
+    private SmtpStandIn smtpStandIn;
 
-    @Captor
-    private ArgumentCaptor<MimeMessage> messageCaptor;
+    private MailDispatcher mailDispatcher;
 
     private MailService mailService;
 
     @Before
-    public void setup() {
-        MockitoAnnotations.initMocks(this);
-        doNothing().when(javaMailSender).send(any(MimeMessage.class));
-        mailService = new MailService(jHipsterProperties, javaMailSender, messageSource, templateEngine);
+    public void setup() throws Exception {
+        mailMessageRepository.deleteAll();
+        smtpStandIn = new SmtpStandIn();
+        JavaMailSenderImpl javaMailSender = new JavaMailSenderImpl();
+        javaMailSender.setHost(smtpStandIn.getHost());
+        javaMailSender.setPort(smtpStandIn.getPort());
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getMail().setDispatcherEnabled(false);
+        applicationProperties.getMail().setMaxPerSecond(0);
+        mailDispatcher = new MailDispatcher(mailMessageRepository, javaMailSender, transactionManager,
+            jHipsterProperties, applicationProperties, new SimpleMeterRegistry());
+        mailService = createMailService();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        smtpStandIn.close();
+        mailMessageRepository.deleteAll();
     }
 
     @Test
     public void testSendEmail() throws Exception {
         mailService.sendEmail("john.doe@example.com", "testSubject", "testContent", false, false);
-        verify(javaMailSender).send(messageCaptor.capture());
-        MimeMessage message = messageCaptor.getValue();
+        MimeMessage message = dispatchOne();
         assertThat(message.getSubject()).isEqualTo("testSubject");
         assertThat(message.getAllRecipients()[0].toString()).isEqualTo("john.doe@example.com");
         assertThat(message.getFrom()[0].toString()).isEqualTo("test@localhost");
         assertThat(message.getContent()).isInstanceOf(String.class);
         assertThat(message.getContent().toString()).isEqualTo("testContent");
-        assertThat(message.getDataHandler().getContentType()).isEqualTo("text/plain; charset=UTF-8");
+        assertContentType(message.getContentType(), "text/plain");
     }
 
     @Test
     public void testSendHtmlEmail() throws Exception {
         mailService.sendEmail("john.doe@example.com", "testSubject", "testContent", false, true);
-        verify(javaMailSender).send(messageCaptor.capture());
-        MimeMessage message = messageCaptor.getValue();
+        MimeMessage message = dispatchOne();
         assertThat(message.getSubject()).isEqualTo("testSubject");
         assertThat(message.getAllRecipients()[0].toString()).isEqualTo("john.doe@example.com");
         assertThat(message.getFrom()[0].toString()).isEqualTo("test@localhost");
         assertThat(message.getContent()).isInstanceOf(String.class);
         assertThat(message.getContent().toString()).isEqualTo("testContent");
-        assertThat(message.getDataHandler().getContentType()).isEqualTo("text/html;charset=UTF-8");
+        assertContentType(message.getContentType(), "text/html");
     }
 
     @Test
     public void testSendMultipartEmail() throws Exception {
         mailService.sendEmail("john.doe@example.com", "testSubject", "testContent", true, false);
-        verify(javaMailSender).send(messageCaptor.capture());
-        MimeMessage message = messageCaptor.getValue();
+        MimeMessage message = dispatchOne();
         MimeMultipart mp = (MimeMultipart) message.getContent();
         MimeBodyPart part = (MimeBodyPart) ((MimeMultipart) mp.getBodyPart(0).getContent()).getBodyPart(0);
-        ByteArrayOutputStream aos = new ByteArrayOutputStream();
-        part.writeTo(aos);
         assertThat(message.getSubject()).isEqualTo("testSubject");
         assertThat(message.getAllRecipients()[0].toString()).isEqualTo("john.doe@example.com");
         assertThat(message.getFrom()[0].toString()).isEqualTo("test@localhost");
         assertThat(message.getContent()).isInstanceOf(Multipart.class);
-        assertThat(aos.toString()).isEqualTo("\r\ntestContent");
-        assertThat(part.getDataHandler().getContentType()).isEqualTo("text/plain; charset=UTF-8");
+        assertThat(part.getContent().toString()).isEqualTo("testContent");
+        assertContentType(part.getContentType(), "text/plain");
     }
 
     @Test
     public void testSendMultipartHtmlEmail() throws Exception {
         mailService.sendEmail("john.doe@example.com", "testSubject", "testContent", true, true);
-        verify(javaMailSender).send(messageCaptor.capture());
-        MimeMessage message = messageCaptor.getValue();
+        MimeMessage message = dispatchOne();
         MimeMultipart mp = (MimeMultipart) message.getContent();
         MimeBodyPart part = (MimeBodyPart) ((MimeMultipart) mp.getBodyPart(0).getContent()).getBodyPart(0);
-        ByteArrayOutputStream aos = new ByteArrayOutputStream();
-        part.writeTo(aos);
         assertThat(message.getSubject()).isEqualTo("testSubject");
         assertThat(message.getAllRecipients()[0].toString()).isEqualTo("john.doe@example.com");
         assertThat(message.getFrom()[0].toString()).isEqualTo("test@localhost");
         assertThat(message.getContent()).isInstanceOf(Multipart.class);
-        assertThat(aos.toString()).isEqualTo("\r\ntestContent");
-        assertThat(part.getDataHandler().getContentType()).isEqualTo("text/html;charset=UTF-8");
+        assertThat(part.getContent().toString()).isEqualTo("testContent");
+        assertContentType(part.getContentType(), "text/html");
     }
 
     @Test
@@ -124,13 +140,32 @@ public class MailServiceIntTest {
         user.setEmail("john.doe@example.com");
         user.setLangKey("en");
         mailService.sendEmailFromTemplate(user, "mail/testEmail", "email.test.title");
-        verify(javaMailSender).send(messageCaptor.capture());
-        MimeMessage message = messageCaptor.getValue();
+        MimeMessage message = dispatchOne();
         assertThat(message.getSubject()).isEqualTo("test title");
         assertThat(message.getAllRecipients()[0].toString()).isEqualTo(user.getEmail());
         assertThat(message.getFrom()[0].toString()).isEqualTo("test@localhost");
         assertThat(message.getContent().toString()).isEqualToNormalizingNewlines("<html>test title, http://127.0.0.1:8080, john</html>\n");
-        assertThat(message.getDataHandler().getContentType()).isEqualTo("text/html;charset=UTF-8");
+        assertContentType(message.getContentType(), "text/html");
+    }
+
+    @Test
+    public void testCachedTemplateEscapesLikeThymeleaf() throws Exception {
+        User user = new User();
+        user.setLogin("o'neil<&>\"");
+        user.setEmail("oneil@example.com");
+        user.setLangKey("en");
+        mailService.sendEmailFromTemplate(user, "mail/testEmail", "email.test.title");
+        mailService.sendEmailFromTemplate(user, "mail/testEmail", "email.test.title");
+        applicationProperties.getMail().setTemplateCache(false);
+        createMailService().sendEmailFromTemplate(user, "mail/testEmail", "email.test.title");
+
+        assertThat(mailDispatcher.dispatchDue()).isEqualTo(3);
+        List<MimeMessage> messages = smtpStandIn.getMessages();
+        assertThat(messages).hasSize(3);
+        String uncached = messages.get(2).getContent().toString();
+        assertThat(uncached).contains("o&#39;neil&lt;&amp;&gt;&quot;");
+        assertThat(messages.get(0).getContent().toString()).isEqualTo(uncached);
+        assertThat(messages.get(1).getContent().toString()).isEqualTo(uncached);
     }
 
     @Test
@@ -139,13 +174,14 @@ public class MailServiceIntTest {
         user.setLangKey(Constants.DEFAULT_LANGUAGE);
         user.setLogin("john");
         user.setEmail("john.doe@example.com");
+        user.setActivationKey("12345678901234567890");
         mailService.sendActivationEmail(user);
-        verify(javaMailSender).send(messageCaptor.capture());
-        MimeMessage message = messageCaptor.getValue();
+        MimeMessage message = dispatchOne();
         assertThat(message.getAllRecipients()[0].toString()).isEqualTo(user.getEmail());
         assertThat(message.getFrom()[0].toString()).isEqualTo("test@localhost");
         assertThat(message.getContent().toString()).isNotEmpty();
-        assertThat(message.getDataHandler().getContentType()).isEqualTo("text/html;charset=UTF-8");
+        assertThat(message.getContent().toString()).contains("/#/activate?key=12345678901234567890");
+        assertContentType(message.getContentType(), "text/html");
     }
 
     @Test
@@ -155,12 +191,11 @@ public class MailServiceIntTest {
         user.setLogin("john");
         user.setEmail("john.doe@example.com");
         mailService.sendCreationEmail(user);
-        verify(javaMailSender).send(messageCaptor.capture());
-        MimeMessage message = messageCaptor.getValue();
+        MimeMessage message = dispatchOne();
         assertThat(message.getAllRecipients()[0].toString()).isEqualTo(user.getEmail());
         assertThat(message.getFrom()[0].toString()).isEqualTo("test@localhost");
         assertThat(message.getContent().toString()).isNotEmpty();
-        assertThat(message.getDataHandler().getContentType()).isEqualTo("text/html;charset=UTF-8");
+        assertContentType(message.getContentType(), "text/html");
     }
 
     @Test
@@ -170,18 +205,36 @@ public class MailServiceIntTest {
         user.setLogin("john");
         user.setEmail("john.doe@example.com");
         mailService.sendPasswordResetMail(user);
-        verify(javaMailSender).send(messageCaptor.capture());
-        MimeMessage message = messageCaptor.getValue();
+        MimeMessage message = dispatchOne();
         assertThat(message.getAllRecipients()[0].toString()).isEqualTo(user.getEmail());
         assertThat(message.getFrom()[0].toString()).isEqualTo("test@localhost");
         assertThat(message.getContent().toString()).isNotEmpty();
-        assertThat(message.getDataHandler().getContentType()).isEqualTo("text/html;charset=UTF-8");
+        assertContentType(message.getContentType(), "text/html");
     }
 
     @Test
     public void testSendEmailWithException() throws Exception {
-        doThrow(MailSendException.class).when(javaMailSender).send(any(MimeMessage.class));
+        smtpStandIn.close();
         mailService.sendEmail("john.doe@example.com", "testSubject", "testContent", false, false);
+        assertThat(mailDispatcher.dispatchDue()).isEqualTo(1);
+        assertThat(mailMessageRepository.findAll()).hasSize(1);
     }
 
+    private MailService createMailService() {
+        return new MailService(jHipsterProperties, applicationProperties, messageSource, templateEngine,
+            mailMessageRepository, mailDispatcher);
+    }
+
+    private MimeMessage dispatchOne() throws Exception {
+        assertThat(mailDispatcher.dispatchDue()).isEqualTo(1);
+        List<MimeMessage> messages = smtpStandIn.getMessages();
+        assertThat(messages).hasSize(1);
+        return messages.get(0);
+    }
+
+    private static void assertContentType(String contentType, String baseType) throws Exception {
+        ContentType parsed = new ContentType(contentType);
+        assertThat(parsed.getBaseType()).isEqualTo(baseType);
+        assertThat(parsed.getParameter("charset")).isEqualToIgnoringCase("UTF-8");
+    }
 }
@@ -0,0 +1,122 @@
+package lk.npsp.service;
+
+import lk.npsp.repository.RouteLocationRepository;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the RouteGraph.
+ *
+ * @see RouteGraph
+ */
+public class RouteGraphUnitTest {
+
+    private RouteLocationRepository routeLocationRepository;
+
+    private RouteGraph routeGraph;
+
+    @Before
+    public void init() {
+        List<Object[]> stops = new ArrayList<>();
+        addRoute(stops, 10L, 1L, 2L, 3L, 4L);
+        addRoute(stops, 20L, 4L, 3L, 5L);
+        // a loop that passes stop 6 twice
+        addRoute(stops, 30L, 6L, 7L, 8L, 6L);
+        routeLocationRepository = mock(RouteLocationRepository.class);
+        when(routeLocationRepository.findAllStopLocationIds()).thenReturn(stops);
+        routeGraph = new RouteGraph(routeLocationRepository);
+    }
+
+    @Test
+    public void findRoutesBetweenFollowsDirection() {
+        assertThat(routeGraph.findRoutesBetween(1L, 4L)).containsExactly(10L);
+        assertThat(routeGraph.findRoutesBetween(4L, 3L)).containsExactly(20L);
+        assertThat(routeGraph.findRoutesBetween(3L, 4L)).containsExactly(10L);
+        assertThat(routeGraph.findRoutesBetween(4L, 1L)).isEmpty();
+        assertThat(routeGraph.findRoutesBetween(1L, 5L)).isEmpty();
+    }
+
+    @Test
+    public void findRoutesBetweenOnLoopRoute() {
+        assertThat(routeGraph.findRoutesBetween(8L, 6L)).containsExactly(30L);
+        assertThat(routeGraph.findRoutesBetween(6L, 8L)).containsExactly(30L);
+        assertThat(routeGraph.findRoutesBetween(6L, 6L)).isEmpty();
+    }
+
+    @Test
+    public void findRoutesBetweenUnknownStops() {
+        assertThat(routeGraph.findRoutesBetween(1L, 99L)).isEmpty();
+        assertThat(routeGraph.findRoutesServing(99L)).isEmpty();
+        assertThat(routeGraph.getStops(99L)).isEmpty();
+    }
+
+    @Test
+    public void findRoutesServingAndGetStops() {
+        assertThat(routeGraph.findRoutesServing(3L)).containsExactly(10L, 20L);
+        assertThat(routeGraph.findRoutesServing(6L)).containsExactly(30L);
+        assertThat(routeGraph.getStops(20L)).containsExactly(4L, 3L, 5L);
+    }
+
+    @Test
+    public void routeChangesAreAppliedIncrementally() {
+        routeGraph.getStops(10L);
+
+        when(routeLocationRepository.findStopLocationIdsByRoute(20L)).thenReturn(Arrays.asList(5L, 1L));
+        routeGraph.onRouteChanged(new RouteChangedEvent(20L, false));
+        assertThat(routeGraph.findRoutesBetween(4L, 3L)).isEmpty();
+        assertThat(routeGraph.findRoutesBetween(5L, 1L)).containsExactly(20L);
+
+        when(routeLocationRepository.findStopLocationIdsByRoute(40L)).thenReturn(Arrays.asList(1L, 5L));
+        routeGraph.onRouteChanged(new RouteChangedEvent(40L, false));
+        assertThat(routeGraph.findRoutesServing(1L)).containsExactly(10L, 20L, 40L);
+
+        routeGraph.onRouteChanged(new RouteChangedEvent(10L, true));
+        assertThat(routeGraph.findRoutesServing(1L)).containsExactly(20L, 40L);
+        assertThat(routeGraph.getStops(10L)).isEmpty();
+
+        verify(routeLocationRepository).findAllStopLocationIds();
+    }
+
+    @Test
+    public void routeEditSharesTheOtherRows() {
+        RouteGraph.Snapshot before = routeGraph.getSnapshot();
+
+        when(routeLocationRepository.findStopLocationIdsByRoute(20L)).thenReturn(Arrays.asList(5L, 9L));
+        routeGraph.onRouteChanged(new RouteChangedEvent(20L, false));
+        RouteGraph.Snapshot after = routeGraph.getSnapshot();
+
+        // routes 10 and 30 keep their rows, route 20 gets a new one
+        assertThat(after.routeIds).containsExactly(10L, 20L, 30L);
+        assertThat(after.routeStops[0]).isSameAs(before.routeStops[0]);
+        assertThat(after.routeStops[2]).isSameAs(before.routeStops[2]);
+        assertThat(after.routeStops[1]).containsExactly(5L, 9L);
+        // stops 1, 2, 6, 7 and 8 are not on route 20 before or after, so their rows are shared
+        for (long stopId : new long[]{1L, 2L, 6L, 7L, 8L}) {
+            int stop = Arrays.binarySearch(before.stopIds, stopId);
+            int patched = Arrays.binarySearch(after.stopIds, stopId);
+            assertThat(after.stopRoutes[patched]).isSameAs(before.stopRoutes[stop]);
+            assertThat(after.firstPositions[patched]).isSameAs(before.firstPositions[stop]);
+            assertThat(after.lastPositions[patched]).isSameAs(before.lastPositions[stop]);
+        }
+        // stops 3 and 4 lost route 20, stop 9 is new
+        assertThat(routeGraph.findRoutesServing(3L)).containsExactly(10L);
+        assertThat(routeGraph.findRoutesServing(4L)).containsExactly(10L);
+        assertThat(routeGraph.findRoutesBetween(5L, 9L)).containsExactly(20L);
+    }
+
+    private static void addRoute(List<Object[]> stops, Long routeId, Long... locationIds) {
+        for (Long locationId : locationIds) {
+            stops.add(new Object[]{routeId, locationId});
+        }
+    }
+}
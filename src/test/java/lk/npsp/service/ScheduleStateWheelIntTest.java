@@ -0,0 +1,162 @@
+package lk.npsp.service;
+
+import lk.npsp.NpspApp;
+import lk.npsp.config.ApplicationProperties;
+import lk.npsp.domain.ScheduleInstance;
+import lk.npsp.domain.enumeration.ScheduleState;
+import lk.npsp.repository.ScheduleInstanceRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for the ScheduleStateWheel, advancing the wheel by hand.
+ *
+ * @see ScheduleStateWheel
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = NpspApp.class)
+@Transactional
+public class ScheduleStateWheelIntTest {
+
+    @Autowired
+    private ScheduleInstanceRepository scheduleInstanceRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ZoneId zone;
+
+    @Autowired
+    private EntityManager em;
+
+    private final List<Object> events = new ArrayList<>();
+
+    private ApplicationProperties applicationProperties;
+
+    private MeterRegistry meterRegistry;
+
+    private ScheduleStateWheel scheduleStateWheel;
+
+    private Instant now;
+
+    @Before
+    public void setup() {
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getTransitions().setEnabled(false);
+        applicationProperties.getTransitions().setBoardingMinutesBefore(15);
+        applicationProperties.getTransitions().setDepartedMinutesAfter(2);
+        meterRegistry = new SimpleMeterRegistry();
+        scheduleStateWheel = new ScheduleStateWheel(scheduleInstanceRepository, transactionManager, events::add,
+            applicationProperties, new DomainMetrics(meterRegistry), zone);
+        now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+    }
+
+    @Test
+    public void testDepartureBoardsThenDeparts() {
+        ScheduleInstance instance = instance(30, ScheduleState.PENDING);
+
+        assertThat(scheduleStateWheel.advanceTo(now)).isZero();
+        assertThat(scheduleStateWheel.advanceTo(now.plus(14, ChronoUnit.MINUTES))).isZero();
+        assertThat(scheduleStateWheel.advanceTo(now.plus(15, ChronoUnit.MINUTES))).isEqualTo(1);
+        assertState(instance, ScheduleState.BOARDING);
+        assertThat(events).hasSize(1);
+        scheduleStateWheel.onScheduleInstancesChanged((ScheduleInstancesChangedEvent) events.get(0));
+
+        assertThat(scheduleStateWheel.advanceTo(now.plus(31, ChronoUnit.MINUTES))).isZero();
+        assertThat(scheduleStateWheel.advanceTo(now.plus(32, ChronoUnit.MINUTES))).isEqualTo(1);
+        assertState(instance, ScheduleState.DEPARTED);
+        assertThat(meterRegistry.get("npsp.transitions").tag("state", "boarding").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("npsp.transitions").tag("state", "departed").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testOverdueDepartureDepartsAtOnce() {
+        ScheduleInstance instance = instance(-10, ScheduleState.DELAYED);
+
+        assertThat(scheduleStateWheel.advanceTo(now)).isEqualTo(1);
+        assertState(instance, ScheduleState.DEPARTED);
+    }
+
+    @Test
+    public void testOperatorChangeWins() {
+        ScheduleInstance instance = instance(20, ScheduleState.PENDING);
+        scheduleStateWheel.advanceTo(now);
+
+        instance.setScheduleState(ScheduleState.CANCELLED);
+        scheduleInstanceRepository.saveAndFlush(instance);
+
+        assertThat(scheduleStateWheel.advanceTo(now.plus(10, ChronoUnit.MINUTES))).isZero();
+        assertState(instance, ScheduleState.CANCELLED);
+        assertThat(events).isEmpty();
+    }
+
+    @Test
+    public void testDelayedDepartureIsRescheduled() {
+        ScheduleInstance instance = instance(20, ScheduleState.PENDING);
+        scheduleStateWheel.advanceTo(now);
+
+        instance.setActualScheduledTime(now.plus(60, ChronoUnit.MINUTES));
+        scheduleInstanceRepository.saveAndFlush(instance);
+        scheduleStateWheel.onScheduleInstancesChanged(
+            new ScheduleInstancesChangedEvent(Collections.singletonList(instance.getId()), false));
+
+        assertThat(scheduleStateWheel.advanceTo(now.plus(10, ChronoUnit.MINUTES))).isZero();
+        assertThat(scheduleStateWheel.advanceTo(now.plus(45, ChronoUnit.MINUTES))).isEqualTo(1);
+        assertState(instance, ScheduleState.BOARDING);
+    }
+
+    @Test
+    public void testFailedLoadIsRetriedOnTheNextTick() {
+        ScheduleInstanceRepository failingRepository = mock(ScheduleInstanceRepository.class);
+        when(failingRepository.findTimingsByDateBetween(any(), any()))
+            .thenThrow(new DataAccessResourceFailureException("database not ready"))
+            .thenReturn(Collections.emptyList());
+        ScheduleStateWheel wheel = new ScheduleStateWheel(failingRepository, transactionManager, events::add,
+            applicationProperties, new DomainMetrics(meterRegistry), zone);
+
+        assertThatThrownBy(() -> wheel.advanceTo(now)).isInstanceOf(DataAccessResourceFailureException.class);
+        assertThat(wheel.advanceTo(now.plusSeconds(1))).isZero();
+        verify(failingRepository, times(2)).findTimingsByDateBetween(any(), any());
+    }
+
+    private void assertState(ScheduleInstance instance, ScheduleState state) {
+        em.flush();
+        em.clear();
+        assertThat(scheduleInstanceRepository.findById(instance.getId()).get().getScheduleState()).isEqualTo(state);
+    }
+
+    private ScheduleInstance instance(int minutesFromNow, ScheduleState state) {
+        Instant departure = now.plus(minutesFromNow, ChronoUnit.MINUTES);
+        ScheduleInstance instance = new ScheduleInstance()
+            .date(LocalDate.now(zone))
+            .scheduledTime(departure)
+            .actualScheduledTime(departure)
+            .scheduleState(state);
+        return scheduleInstanceRepository.saveAndFlush(instance);
+    }
+}
@@ -0,0 +1,143 @@
+package lk.npsp.service;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.internet.MimeMessage;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A minimal SMTP server on a loopback port, keeping what it receives in memory.
+ * <p>
+ * It answers the commands JavaMail sends, one connection at a time, and refuses the recipients given to
+ * {@link #reject(String)}.
+ */
+final class SmtpStandIn implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+
+    private final Thread acceptor;
+
+    private final List<byte[]> messages = new CopyOnWriteArrayList<>();
+
+    private final Set<String> rejected = Collections.synchronizedSet(new HashSet<>());
+
+    private final AtomicInteger connections = new AtomicInteger();
+
+    SmtpStandIn() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        acceptor = new Thread(this::accept, "smtp-stand-in");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    String getHost() {
+        return serverSocket.getInetAddress().getHostAddress();
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return the number of SMTP connections opened so far
+     */
+    int getConnections() {
+        return connections.get();
+    }
+
+    void reject(String recipient) {
+        rejected.add(recipient.toLowerCase(Locale.ENGLISH));
+    }
+
+    List<MimeMessage> getMessages() throws MessagingException {
+        Session session = Session.getInstance(new Properties());
+        List<MimeMessage> received = new ArrayList<>();
+        for (byte[] message : messages) {
+            received.add(new MimeMessage(session, new ByteArrayInputStream(message)));
+        }
+        return received;
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try (Socket socket = serverSocket.accept()) {
+                connections.incrementAndGet();
+                converse(socket);
+            } catch (IOException e) {
+                // closed, or the client went away
+            }
+        }
+    }
+
+    private void converse(Socket socket) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+            StandardCharsets.ISO_8859_1));
+        Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.ISO_8859_1);
+        reply(out, "220 localhost SMTP stand-in");
+        int recipients = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            String command = line.toUpperCase(Locale.ENGLISH);
+            if (command.startsWith("EHLO") || command.startsWith("HELO")) {
+                reply(out, "250 localhost");
+            } else if (command.startsWith("MAIL FROM")) {
+                recipients = 0;
+                reply(out, "250 OK");
+            } else if (command.startsWith("RCPT TO")) {
+                String recipient = line.substring(line.indexOf('<') + 1, line.lastIndexOf('>'));
+                if (rejected.contains(recipient.toLowerCase(Locale.ENGLISH))) {
+                    reply(out, "550 No such user");
+                } else {
+                    recipients++;
+                    reply(out, "250 OK");
+                }
+            } else if (command.equals("DATA")) {
+                if (recipients == 0) {
+                    reply(out, "503 No valid recipients");
+                    continue;
+                }
+                reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                messages.add(readData(in));
+                reply(out, "250 OK");
+            } else if (command.equals("RSET") || command.equals("NOOP")) {
+                recipients = 0;
+                reply(out, "250 OK");
+            } else if (command.equals("QUIT")) {
+                reply(out, "221 Bye");
+                return;
+            } else {
+                reply(out, "500 Unknown command");
+            }
+        }
+    }
+
+    private static byte[] readData(BufferedReader in) throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        String line;
+        while ((line = in.readLine()) != null && !line.equals(".")) {
+            String unstuffed = line.startsWith("..") ? line.substring(1) : line;
+            data.write(unstuffed.getBytes(StandardCharsets.ISO_8859_1));
+            data.write('\r');
+            data.write('\n');
+        }
+        return data.toByteArray();
+    }
+
+    private static void reply(Writer out, String reply) throws IOException {
+        out.write(reply);
+        out.write("\r\n");
+        out.flush();
+    }
+}
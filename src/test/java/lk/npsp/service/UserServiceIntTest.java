@@ -1,9 +1,13 @@
 package lk.npsp.service;
 
 import lk.npsp.NpspApp;
+import lk.npsp.config.ApplicationProperties;
 import lk.npsp.config.Constants;
 import lk.npsp.domain.User;
+import lk.npsp.repository.AuthorityRepository;
 import lk.npsp.repository.UserRepository;
+import lk.npsp.security.AuthoritiesConstants;
+import lk.npsp.security.DomainUserDetailsService;
 import lk.npsp.service.dto.UserDTO;
 import lk.npsp.service.util.RandomUtil;
 
@@ -14,16 +18,23 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.data.auditing.AuditingHandler;
 import org.springframework.data.auditing.DateTimeProvider;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Optional;
 import java.util.List;
 
@@ -49,6 +60,18 @@ public class UserServiceIntTest {
     @Autowired
     private AuditingHandler auditingHandler;
 
+    @Autowired
+    private AuthorityRepository authorityRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
     @Mock
     DateTimeProvider dateTimeProvider;
 
@@ -84,6 +107,26 @@ public class UserServiceIntTest {
         assertThat(maybeUser.orElse(null).getResetKey()).isNotNull();
     }
 
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void assertThatUserDetailsAreEvictedAgainAfterCommit() {
+        userRepository.saveAndFlush(user);
+        try {
+            Cache userDetails = cacheManager.getCache(DomainUserDetailsService.USER_DETAILS_CACHE);
+            String key = DomainUserDetailsService.cacheKey(user.getLogin());
+            new TransactionTemplate(transactionManager).execute(status -> {
+                userService.requestPasswordReset(user.getEmail());
+                // a login before the commit reads the user as it was
+                userDetails.put(key, "stale");
+                return null;
+            });
+
+            assertThat(userDetails.get(key)).isNull();
+        } finally {
+            userRepository.deleteById(user.getId());
+        }
+    }
+
     @Test
     @Transactional
     public void assertThatOnlyActivatedUserCanRequestPasswordReset() {
@@ -189,4 +232,41 @@ public class UserServiceIntTest {
         assertThat(userRepository.findOneByLogin("johndoe")).isNotPresent();
     }
 
+    @Test
+    @Transactional
+    public void testRemoveNotActivatedUsersInChunks() {
+        int chunkSize = applicationProperties.getUsers().getPurgeChunkSize();
+        applicationProperties.getUsers().setPurgeChunkSize(2);
+        try {
+            when(dateTimeProvider.getNow()).thenReturn(Optional.of(Instant.now().minus(30, ChronoUnit.DAYS)));
+            List<User> stale = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                User notActivated = new User();
+                notActivated.setLogin("stale" + i);
+                notActivated.setPassword(RandomStringUtils.random(60));
+                notActivated.setActivated(false);
+                notActivated.setEmail("stale" + i + "@localhost");
+                notActivated.setLangKey("en");
+                notActivated.setAuthorities(Collections.singleton(
+                    authorityRepository.findById(AuthoritiesConstants.USER).get()));
+                stale.add(userRepository.saveAndFlush(notActivated));
+                cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).put(notActivated.getLogin(), notActivated);
+                cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE).put(notActivated.getEmail(), notActivated);
+            }
+            userRepository.saveAndFlush(user);
+
+            userService.removeNotActivatedUsers();
+
+            for (User notActivated : stale) {
+                assertThat(userRepository.findOneByLogin(notActivated.getLogin())).isNotPresent();
+                assertThat(cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).get(notActivated.getLogin()))
+                    .isNull();
+                assertThat(cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE).get(notActivated.getEmail()))
+                    .isNull();
+            }
+            assertThat(userRepository.findOneByLogin("johndoe")).isPresent();
+        } finally {
+            applicationProperties.getUsers().setPurgeChunkSize(chunkSize);
+        }
+    }
 }
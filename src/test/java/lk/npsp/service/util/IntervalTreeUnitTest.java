@@ -0,0 +1,68 @@
+package lk.npsp.service.util;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the IntervalTree, checking queries against a scan of every interval.
+ *
+ * @see IntervalTree
+ */
+public class IntervalTreeUnitTest {
+
+    @Test
+    public void testOverlappingMatchesAScan() {
+        Random random = new Random(42);
+        List<IntervalTree.Interval<Integer>> intervals = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            long start = random.nextInt(10_000);
+            intervals.add(new IntervalTree.Interval<>(start, start + 1 + random.nextInt(300), i));
+        }
+        IntervalTree<Integer> tree = new IntervalTree<>(intervals);
+        assertThat(tree.size()).isEqualTo(500);
+
+        for (int query = 0; query < 1000; query++) {
+            long start = random.nextInt(10_500) - 250;
+            long end = start + 1 + random.nextInt(400);
+            Set<Integer> expected = new HashSet<>();
+            for (IntervalTree.Interval<Integer> interval : intervals) {
+                if (interval.getStart() < end && start < interval.getEnd()) {
+                    expected.add(interval.getItem());
+                }
+            }
+            Set<Integer> found = new HashSet<>();
+            tree.overlapping(start, end).forEach(interval -> found.add(interval.getItem()));
+            assertThat(found).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void testTouchingIntervalsDoNotOverlap() {
+        IntervalTree<String> tree = new IntervalTree<>(Arrays.asList(
+            new IntervalTree.Interval<>(0, 10, "first"),
+            new IntervalTree.Interval<>(10, 20, "second"),
+            new IntervalTree.Interval<>(20, 30, "third")));
+
+        assertThat(items(tree.overlapping(10, 20))).containsExactly("second");
+        assertThat(items(tree.overlapping(9, 21))).containsExactly("first", "second", "third");
+        assertThat(tree.overlapping(30, 40)).isEmpty();
+        assertThat(tree.overlapping(15, 15)).isEmpty();
+    }
+
+    @Test
+    public void testEmptyTreeHasNoOverlaps() {
+        IntervalTree<String> tree = new IntervalTree<>(Collections.emptyList());
+
+        assertThat(tree.size()).isZero();
+        assertThat(tree.overlapping(Long.MIN_VALUE, Long.MAX_VALUE)).isEmpty();
+    }
+
+    private static <T> List<T> items(List<IntervalTree.Interval<T>> intervals) {
+        List<T> items = new ArrayList<>();
+        intervals.forEach(interval -> items.add(interval.getItem()));
+        return items;
+    }
+}
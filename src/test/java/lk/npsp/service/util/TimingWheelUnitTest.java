@@ -0,0 +1,61 @@
+package lk.npsp.service.util;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the TimingWheel, checking expiries against the deadlines they were added with.
+ *
+ * @see TimingWheel
+ */
+public class TimingWheelUnitTest {
+
+    private static final long START = 1_560_000_000L;
+
+    @Test
+    public void testItemsExpireAtTheirDeadlineOnEveryLevel() {
+        TimingWheel<Long> wheel = new TimingWheel<>(8, 3, START);
+        Random random = new Random(42);
+        Map<Long, List<Long>> expected = new TreeMap<>();
+        // past the 512 ticks the three levels cover, so the overflow list is used too
+        for (int i = 0; i < 2000; i++) {
+            long deadline = START + 1 + random.nextInt(1500);
+            wheel.add(deadline, deadline);
+            expected.computeIfAbsent(deadline, d -> new ArrayList<>()).add(deadline);
+        }
+        assertThat(wheel.size()).isEqualTo(2000);
+
+        for (long tick = START + 1; tick <= START + 1500; tick++) {
+            List<Long> expired = wheel.advanceTo(tick);
+            assertThat(expired).isEqualTo(expected.getOrDefault(tick, Collections.emptyList()));
+        }
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    public void testAdvancingPastSeveralTicksExpiresInDeadlineOrder() {
+        TimingWheel<String> wheel = new TimingWheel<>(4, 2, START);
+        wheel.add("third", START + 30);
+        wheel.add("first", START + 2);
+        wheel.add("second", START + 9);
+        wheel.add("later", START + 31);
+
+        assertThat(wheel.advanceTo(START + 30)).containsExactly("first", "second", "third");
+        assertThat(wheel.getCurrentTick()).isEqualTo(START + 30);
+        assertThat(wheel.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void testPastDeadlineExpiresOnNextAdvance() {
+        TimingWheel<String> wheel = new TimingWheel<>(4, 2, START);
+        wheel.add("late", START - 100);
+        wheel.add("now", START);
+
+        assertThat(wheel.advanceTo(START)).containsExactly("late", "now");
+        assertThat(wheel.advanceTo(START - 10)).isEmpty();
+        assertThat(wheel.getCurrentTick()).isEqualTo(START);
+    }
+}
@@ -1,12 +1,15 @@
 package lk.npsp.web.rest;
 
 import lk.npsp.NpspApp;
+import lk.npsp.config.audit.AuditEventArchive;
 import lk.npsp.config.audit.AuditEventConverter;
 import lk.npsp.domain.PersistentAuditEvent;
 import lk.npsp.repository.PersistenceAuditEventRepository;
 import lk.npsp.service.AuditEventService;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.MockitoAnnotations;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,6 +24,8 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Collections;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.hamcrest.Matchers.hasItem;
@@ -57,6 +62,13 @@ public class AuditResourceIntTest {
     @Autowired
     private PageableHandlerMethodArgumentResolver pageableArgumentResolver;
 
+    @Rule
+    public TemporaryFolder archiveFolder = new TemporaryFolder();
+
+    private AuditEventArchive auditEventArchive;
+
+    private AuditEventService auditEventService;
+
     private PersistentAuditEvent auditEvent;
 
     private MockMvc restAuditMockMvc;
@@ -64,8 +76,8 @@ public class AuditResourceIntTest {
     @Before
     public void setup() {
         MockitoAnnotations.initMocks(this);
-        AuditEventService auditEventService =
-            new AuditEventService(auditEventRepository, auditEventConverter);
+        auditEventArchive = new AuditEventArchive(archiveFolder.getRoot().toPath());
+        auditEventService = new AuditEventService(auditEventRepository, auditEventConverter, auditEventArchive);
         AuditResource auditResource = new AuditResource(auditEventService);
         this.restAuditMockMvc = MockMvcBuilders.standaloneSetup(auditResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
@@ -138,6 +150,84 @@ public class AuditResourceIntTest {
             .andExpect(header().string("X-Total-Count", "0"));
     }
 
+    @Test
+    public void getArchivedAuditsByDate() throws Exception {
+        // Initialize the database and move the sample day to the archive
+        auditEventRepository.save(auditEvent);
+        assertThat(auditEventService.archiveDay(SAMPLE_TIMESTAMP.atOffset(ZoneOffset.UTC).toLocalDate())).isEqualTo(1);
+        assertThat(auditEventRepository.count()).isEqualTo(0);
+
+        String fromDate  = SAMPLE_TIMESTAMP.minusSeconds(SECONDS_PER_DAY).toString().substring(0, 10);
+        String toDate = SAMPLE_TIMESTAMP.plusSeconds(SECONDS_PER_DAY).toString().substring(0, 10);
+
+        // Get the audit from the archive
+        restAuditMockMvc.perform(get("/management/audits?fromDate=" + fromDate + "&toDate=" + toDate))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(header().string("X-Total-Count", "1"))
+            .andExpect(jsonPath("$.[*].principal").value(hasItem(SAMPLE_PRINCIPAL)));
+    }
+
+    @Test
+    public void getLiveAndArchivedAuditsByDate() throws Exception {
+        // Initialize the database with an archived audit and a live one on the next day
+        auditEventRepository.save(auditEvent);
+        auditEventService.archiveDay(SAMPLE_TIMESTAMP.atOffset(ZoneOffset.UTC).toLocalDate());
+        PersistentAuditEvent liveAuditEvent = new PersistentAuditEvent();
+        liveAuditEvent.setAuditEventType(SAMPLE_TYPE);
+        liveAuditEvent.setPrincipal("LIVE_PRINCIPAL");
+        liveAuditEvent.setAuditEventDate(SAMPLE_TIMESTAMP.plusSeconds(SECONDS_PER_DAY));
+        auditEventRepository.save(liveAuditEvent);
+
+        String fromDate  = SAMPLE_TIMESTAMP.minusSeconds(SECONDS_PER_DAY).toString().substring(0, 10);
+        String toDate = SAMPLE_TIMESTAMP.plusSeconds(2 * SECONDS_PER_DAY).toString().substring(0, 10);
+
+        // Get both, newest first
+        restAuditMockMvc.perform(get("/management/audits?fromDate=" + fromDate + "&toDate=" + toDate
+            + "&sort=auditEventDate,desc"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", "2"))
+            .andExpect(jsonPath("$.[0].principal").value("LIVE_PRINCIPAL"))
+            .andExpect(jsonPath("$.[1].principal").value(SAMPLE_PRINCIPAL));
+    }
+
+    @Test
+    public void getPageOfLiveAndArchivedAuditsByDate() throws Exception {
+        // Initialize the database with three archived audits, then three live ones on the next days, the last of
+        // them on a day archived but not yet deleted
+        for (int i = 0; i < 3; i++) {
+            auditEventRepository.save(createAuditEvent("ARCHIVED_" + i, SAMPLE_TIMESTAMP.plusSeconds(i)));
+        }
+        auditEventService.archiveDay(SAMPLE_TIMESTAMP.atOffset(ZoneOffset.UTC).toLocalDate());
+        PersistentAuditEvent notDeleted = null;
+        for (int i = 0; i < 3; i++) {
+            notDeleted = auditEventRepository.save(
+                createAuditEvent("LIVE_" + i, SAMPLE_TIMESTAMP.plusSeconds((i + 1) * SECONDS_PER_DAY)));
+        }
+        auditEventArchive.write(notDeleted.getAuditEventDate().atOffset(ZoneOffset.UTC).toLocalDate(),
+            Collections.singletonList(notDeleted));
+
+        String fromDate  = SAMPLE_TIMESTAMP.minusSeconds(SECONDS_PER_DAY).toString().substring(0, 10);
+        String toDate = SAMPLE_TIMESTAMP.plusSeconds(4 * SECONDS_PER_DAY).toString().substring(0, 10);
+
+        // Get the second page of two, oldest first
+        restAuditMockMvc.perform(get("/management/audits?fromDate=" + fromDate + "&toDate=" + toDate
+            + "&sort=auditEventDate,asc&page=1&size=2"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", "6"))
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$.[0].principal").value("ARCHIVED_2"))
+            .andExpect(jsonPath("$.[1].principal").value("LIVE_0"));
+    }
+
+    private static PersistentAuditEvent createAuditEvent(String principal, Instant auditEventDate) {
+        PersistentAuditEvent event = new PersistentAuditEvent();
+        event.setAuditEventType(SAMPLE_TYPE);
+        event.setPrincipal(principal);
+        event.setAuditEventDate(auditEventDate);
+        return event;
+    }
+
     @Test
     public void getNonExistingAudit() throws Exception {
         // Get the audit
@@ -0,0 +1,161 @@
+package lk.npsp.web.rest;
+
+import lk.npsp.NpspApp;
+
+import lk.npsp.domain.Bay;
+import lk.npsp.domain.ScheduleInstance;
+import lk.npsp.domain.enumeration.ScheduleState;
+import lk.npsp.repository.ScheduleInstanceRepository;
+import lk.npsp.service.BayAllocator;
+import lk.npsp.web.rest.errors.ExceptionTranslator;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.MockitoAnnotations;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+import static lk.npsp.web.rest.TestUtil.createFormattingConversionService;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Test class for the BayPlanResource REST controller, with departures occupying their bay from 15 minutes before to
+ * 2 minutes after their actual scheduled time.
+ * <p>
+ * The free bay has an earlier departure, so it is the best fit among the bays loaded with the database.
+ *
+ * @see BayPlanResource
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = NpspApp.class)
+@Transactional
+public class BayPlanResourceIntTest {
+
+    private static final LocalDate DATE = LocalDate.of(2019, 6, 1);
+
+    @Autowired
+    private BayAllocator bayAllocator;
+
+    @Autowired
+    private ScheduleInstanceRepository scheduleInstanceRepository;
+
+    @Autowired
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    @Autowired
+    private ExceptionTranslator exceptionTranslator;
+
+    @Autowired
+    private EntityManager em;
+
+    private MockMvc restBayPlanMockMvc;
+
+    private Bay bay;
+
+    private Bay freeBay;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        final BayPlanResource bayPlanResource = new BayPlanResource(bayAllocator);
+        this.restBayPlanMockMvc = MockMvcBuilders.standaloneSetup(bayPlanResource)
+            .setControllerAdvice(exceptionTranslator)
+            .setConversionService(createFormattingConversionService())
+            .setMessageConverters(jacksonMessageConverter).build();
+        bay = BayResourceIntTest.createEntity(em);
+        em.persist(bay);
+        freeBay = BayResourceIntTest.createEntity(em);
+        em.persist(freeBay);
+        instance(freeBay, 9, 30, ScheduleState.DEPARTED);
+    }
+
+    @Test
+    public void getBayPlanFindsOverlappingDepartures() throws Exception {
+        ScheduleInstance first = instance(bay, 10, 0, ScheduleState.PENDING);
+        ScheduleInstance second = instance(bay, 10, 10, ScheduleState.PENDING);
+        em.flush();
+
+        restBayPlanMockMvc.perform(get("/api/bay-plans/{date}", DATE))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.date").value(DATE.toString()))
+            .andExpect(jsonPath("$.departures").value(3))
+            .andExpect(jsonPath("$.conflicts", hasSize(1)))
+            .andExpect(jsonPath("$.conflicts[0].bayId").value(bay.getId().intValue()))
+            .andExpect(jsonPath("$.conflicts[0].firstScheduleInstanceId").value(first.getId().intValue()))
+            .andExpect(jsonPath("$.conflicts[0].secondScheduleInstanceId").value(second.getId().intValue()))
+            .andExpect(jsonPath("$.conflicts[0].from").value(at(9, 55).toString()))
+            .andExpect(jsonPath("$.conflicts[0].to").value(at(10, 2).toString()))
+            .andExpect(jsonPath("$.reassignments", hasSize(1)))
+            .andExpect(jsonPath("$.reassignments[0].scheduleInstanceId").value(second.getId().intValue()))
+            .andExpect(jsonPath("$.reassignments[0].toBayId").value(freeBay.getId().intValue()))
+            .andExpect(jsonPath("$.unresolved", hasSize(0)));
+
+        em.clear();
+        assertThat(scheduleInstanceRepository.findById(second.getId()).get().getBay().getId()).isEqualTo(bay.getId());
+    }
+
+    @Test
+    public void getBayPlanAcceptsSuccessiveDepartures() throws Exception {
+        instance(bay, 10, 0, ScheduleState.PENDING);
+        instance(bay, 10, 20, ScheduleState.PENDING);
+        instance(bay, 10, 10, ScheduleState.CANCELLED);
+        em.flush();
+
+        restBayPlanMockMvc.perform(get("/api/bay-plans/{date}", DATE))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.departures").value(3))
+            .andExpect(jsonPath("$.conflicts", hasSize(0)))
+            .andExpect(jsonPath("$.reassignments", hasSize(0)));
+    }
+
+    @Test
+    public void reassignBaysMovesTheDepartureThatHasNotBoarded() throws Exception {
+        ScheduleInstance pending = instance(bay, 10, 0, ScheduleState.PENDING);
+        ScheduleInstance boarding = instance(bay, 10, 10, ScheduleState.BOARDING);
+        em.flush();
+
+        restBayPlanMockMvc.perform(post("/api/bay-plans/{date}/reassignments", DATE))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.reassignments", hasSize(1)))
+            .andExpect(jsonPath("$.reassignments[0].scheduleInstanceId").value(pending.getId().intValue()))
+            .andExpect(jsonPath("$.reassignments[0].fromBayId").value(bay.getId().intValue()))
+            .andExpect(jsonPath("$.reassignments[0].toBayId").value(freeBay.getId().intValue()));
+
+        em.flush();
+        em.clear();
+        assertThat(scheduleInstanceRepository.findById(pending.getId()).get().getBay().getId())
+            .isEqualTo(freeBay.getId());
+        assertThat(scheduleInstanceRepository.findById(boarding.getId()).get().getBay().getId())
+            .isEqualTo(bay.getId());
+    }
+
+    private ScheduleInstance instance(Bay bay, int hour, int minute, ScheduleState state) {
+        ScheduleInstance instance = new ScheduleInstance()
+            .date(DATE)
+            .scheduledTime(at(hour, minute))
+            .actualScheduledTime(at(hour, minute))
+            .scheduleState(state)
+            .bay(bay);
+        em.persist(instance);
+        return instance;
+    }
+
+    private static Instant at(int hour, int minute) {
+        return DATE.atTime(hour, minute).atZone(ZoneId.systemDefault()).toInstant();
+    }
+}
@@ -0,0 +1,110 @@
+package lk.npsp.web.rest;
+
+import lk.npsp.NpspApp;
+import lk.npsp.domain.Location;
+import lk.npsp.repository.LocationRepository;
+import lk.npsp.service.LocationIndex;
+import lk.npsp.web.rest.errors.ErrorConstants;
+import lk.npsp.web.rest.errors.ExceptionTranslator;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Test class for the DataImportResource REST controller.
+ *
+ * @see DataImportResource
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = NpspApp.class)
+public class DataImportResourceIntTest {
+
+    @Autowired
+    private DataImportResource dataImportResource;
+
+    @Autowired
+    @Qualifier("importExecutor")
+    private AsyncTaskExecutor importExecutor;
+
+    @Autowired
+    private LocationRepository locationRepository;
+
+    @Autowired
+    private LocationIndex locationIndex;
+
+    @Autowired
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    @Autowired
+    private ExceptionTranslator exceptionTranslator;
+
+    private MockMvc restDataImportMockMvc;
+
+    @Before
+    public void setup() {
+        this.restDataImportMockMvc = MockMvcBuilders.standaloneSetup(dataImportResource)
+            .setControllerAdvice(exceptionTranslator)
+            .setMessageConverters(jacksonMessageConverter).build();
+    }
+
+    @Test
+    public void importAnswersOnceItHasFinished() throws Exception {
+        Set<Long> existing = locationRepository.findAll().stream().map(Location::getId).collect(Collectors.toSet());
+        try {
+            // the servlet thread is released at once, the import answers on its own thread
+            MvcResult mvcResult = restDataImportMockMvc.perform(get("/api/data-import/locations"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+            restDataImportMockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+                .andExpect(jsonPath("$.[*].locationName").isNotEmpty());
+        } finally {
+            locationRepository.findAll().stream()
+                .filter(location -> !existing.contains(location.getId()))
+                .forEach(locationRepository::delete);
+            locationIndex.reload();
+        }
+    }
+
+    @Test
+    public void importIsRefusedWhileAnotherRuns() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        // stands for an import holding the only import thread
+        Future<Object> running = importExecutor.submit(() -> {
+            release.await();
+            return null;
+        });
+        try {
+            restDataImportMockMvc.perform(get("/api/data-import/locations"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(content().contentType(MediaType.APPLICATION_PROBLEM_JSON))
+                .andExpect(jsonPath("$.message").value(ErrorConstants.ERR_BUSY));
+        } finally {
+            release.countDown();
+            running.get(10, TimeUnit.SECONDS);
+        }
+    }
+}
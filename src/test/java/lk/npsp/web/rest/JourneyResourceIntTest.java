@@ -0,0 +1,149 @@
+package lk.npsp.web.rest;
+
+import lk.npsp.NpspApp;
+
+import lk.npsp.domain.*;
+import lk.npsp.domain.enumeration.ScheduleState;
+import lk.npsp.repository.ScreenScheduleRepository;
+import lk.npsp.service.RouteGraph;
+import lk.npsp.service.SimpleTranslator;
+import lk.npsp.web.rest.errors.ExceptionTranslator;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.MockitoAnnotations;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+import static lk.npsp.web.rest.TestUtil.createFormattingConversionService;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Test class for the JourneyResource REST controller.
+ *
+ * @see JourneyResource
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = NpspApp.class)
+public class JourneyResourceIntTest {
+
+    private static final String ROUTE_NUMBER = "J-1";
+
+    @Autowired
+    private RouteGraph routeGraph;
+
+    @Autowired
+    private ScreenScheduleRepository screenScheduleRepository;
+
+    @Autowired
+    private SimpleTranslator simpleTranslator;
+
+    @Autowired
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    @Autowired
+    private ExceptionTranslator exceptionTranslator;
+
+    @Autowired
+    private EntityManager em;
+
+    private MockMvc restJourneyMockMvc;
+
+    private Location origin;
+
+    private Location middle;
+
+    private Location destination;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        final JourneyResource journeyResource = new JourneyResource(routeGraph, screenScheduleRepository, simpleTranslator);
+        this.restJourneyMockMvc = MockMvcBuilders.standaloneSetup(journeyResource)
+            .setControllerAdvice(exceptionTranslator)
+            .setConversionService(createFormattingConversionService())
+            .setMessageConverters(jacksonMessageConverter).build();
+    }
+
+    /**
+     * Create a three stop route with one departure in ten minutes and one in two hours.
+     */
+    private void createJourneys() {
+        Bay bay = BayResourceIntTest.createEntity(em);
+        em.persist(bay);
+        TransportType transportType = TransportTypeResourceIntTest.createEntity(em);
+        em.persist(transportType);
+        Vehicle vehicle = VehicleResourceIntTest.createEntity(em).transportType(transportType);
+        em.persist(vehicle);
+
+        Route route = RouteResourceIntTest.createEntity(em).routeNumber(ROUTE_NUMBER);
+        em.persist(route);
+        origin = LocationResourceIntTest.createEntity(em);
+        middle = LocationResourceIntTest.createEntity(em);
+        destination = LocationResourceIntTest.createEntity(em);
+        long sequenceNumber = 1;
+        for (Location location : new Location[]{origin, middle, destination}) {
+            em.persist(location);
+            em.persist(new RouteLocation().sequenceNumber(sequenceNumber++).location(location).route(route));
+        }
+
+        ScheduleTemplate scheduleTemplate = ScheduleTemplateResourceIntTest.createEntity(em)
+            .route(route).vehicle(vehicle).bay(bay);
+        em.persist(scheduleTemplate);
+
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MINUTES);
+        for (Instant departure : new Instant[]{now.plus(10, ChronoUnit.MINUTES), now.plus(2, ChronoUnit.HOURS)}) {
+            em.persist(new ScheduleInstance()
+                .date(LocalDate.now())
+                .scheduledTime(departure)
+                .actualScheduledTime(departure)
+                .scheduleState(ScheduleState.PENDING)
+                .scheduleTemplate(scheduleTemplate)
+                .route(route)
+                .vehicle(vehicle)
+                .bay(bay));
+        }
+        em.flush();
+        routeGraph.reload();
+    }
+
+    @Test
+    @Transactional
+    public void getJourneys() throws Exception {
+        createJourneys();
+
+        restJourneyMockMvc.perform(get("/api/screen/journeys?from={from}&to={to}&minutes=60", origin.getId(), middle.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].route").value(ROUTE_NUMBER));
+    }
+
+    @Test
+    @Transactional
+    public void getJourneysAgainstRouteDirection() throws Exception {
+        createJourneys();
+
+        restJourneyMockMvc.perform(get("/api/screen/journeys?from={from}&to={to}", destination.getId(), origin.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    @Transactional
+    public void getJourneysWithInvalidWindow() throws Exception {
+        restJourneyMockMvc.perform(get("/api/screen/journeys?from=1&to=2&minutes=0"))
+            .andExpect(status().isBadRequest());
+    }
+}
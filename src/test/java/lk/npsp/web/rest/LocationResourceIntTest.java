@@ -4,6 +4,7 @@ import lk.npsp.NpspApp;
 
 import lk.npsp.domain.Location;
 import lk.npsp.repository.LocationRepository;
+import lk.npsp.service.LocationIndex;
 import lk.npsp.web.rest.errors.ExceptionTranslator;
 
 import org.junit.Before;
@@ -16,6 +17,7 @@ import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.transaction.AfterTransaction;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.transaction.annotation.Transactional;
@@ -58,6 +60,9 @@ public class LocationResourceIntTest {
     @Autowired
     private LocationRepository locationRepository;
 
+    @Autowired
+    private LocationIndex locationIndex;
+
     @Autowired
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -80,7 +85,7 @@ public class LocationResourceIntTest {
     @Before
     public void setup() {
         MockitoAnnotations.initMocks(this);
-        final LocationResource locationResource = new LocationResource(locationRepository);
+        final LocationResource locationResource = new LocationResource(locationRepository, locationIndex);
         this.restLocationMockMvc = MockMvcBuilders.standaloneSetup(locationResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
             .setControllerAdvice(exceptionTranslator)
@@ -110,6 +115,15 @@ public class LocationResourceIntTest {
         location = createEntity(em);
     }
 
+    /**
+     * The resource patches the application's index with locations the test rolls back; read it again once they are
+     * gone.
+     */
+    @AfterTransaction
+    public void resetIndex() {
+        locationIndex.reload();
+    }
+
     @Test
     @Transactional
     public void createLocation() throws Exception {
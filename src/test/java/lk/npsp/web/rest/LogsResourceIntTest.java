@@ -1,20 +1,33 @@
 package lk.npsp.web.rest;
 
 import lk.npsp.NpspApp;
+import lk.npsp.aop.logging.LoggingInterceptor;
 import lk.npsp.web.rest.vm.LoggerVM;
 import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.slf4j.LoggerFactory;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.mock.env.MockEnvironment;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.util.function.Supplier;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
@@ -29,11 +42,14 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @SpringBootTest(classes = NpspApp.class)
 public class LogsResourceIntTest {
 
+    @Autowired
+    private ObjectProvider<LoggingInterceptor> loggingInterceptor;
+
     private MockMvc restLogsMockMvc;
 
     @Before
     public void setup() {
-        LogsResource logsResource = new LogsResource();
+        LogsResource logsResource = new LogsResource(loggingInterceptor);
         this.restLogsMockMvc = MockMvcBuilders
             .standaloneSetup(logsResource)
             .build();
@@ -63,4 +79,47 @@ public class LogsResourceIntTest {
         LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
         assertThat(context.getLogger("ROOT").getAppender("ASYNC_LOGSTASH")).isInstanceOf(AsyncAppender.class);
     }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void changeLogsTurnsOnMethodLogging() throws Exception {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        Logger logger = context.getLogger(LoggingInterceptor.class);
+        Level initialLevel = logger.getLevel();
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        appender.start();
+        logger.setLevel(Level.INFO);
+        logger.addAppender(appender);
+
+        // the interceptor only exists with the "dev" profile, so it is built here as that profile would
+        LoggingInterceptor interceptor = new LoggingInterceptor(new MockEnvironment());
+        ObjectProvider<LoggingInterceptor> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(interceptor);
+        MockMvc restLogsMockMvc = MockMvcBuilders.standaloneSetup(new LogsResource(provider)).build();
+        ProxyFactory proxyFactory = new ProxyFactory((Supplier<String>) () -> "result");
+        proxyFactory.addAdvice(interceptor);
+        Supplier<String> proxy = (Supplier<String>) proxyFactory.getProxy();
+        try {
+            assertThat(proxy.get()).isEqualTo("result");
+            assertThat(appender.list).isEmpty();
+
+            LoggerVM loggerVM = new LoggerVM();
+            loggerVM.setLevel("DEBUG");
+            loggerVM.setName(LoggingInterceptor.class.getName());
+            restLogsMockMvc.perform(put("/management/logs")
+                .contentType(TestUtil.APPLICATION_JSON_UTF8)
+                .content(TestUtil.convertObjectToJsonBytes(loggerVM)))
+                .andExpect(status().isNoContent());
+
+            assertThat(interceptor.isDebugEnabled()).isTrue();
+            assertThat(proxy.get()).isEqualTo("result");
+            assertThat(appender.list).extracting(ILoggingEvent::getFormattedMessage).containsExactly(
+                "Enter: java.util.function.Supplier.get() with argument[s] = []",
+                "Exit: java.util.function.Supplier.get() with result = result");
+        } finally {
+            interceptor.close();
+            logger.detachAppender(appender);
+            logger.setLevel(initialLevel);
+        }
+    }
 }
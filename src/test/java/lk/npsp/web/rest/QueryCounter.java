@@ -0,0 +1,46 @@
+package lk.npsp.web.rest;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import javax.persistence.EntityManager;
+
+/**
+ * Counts the statements and entity loads issued by Hibernate, so tests can put a ceiling on what an endpoint fetches.
+ * <p>
+ * Typical use: persist the fixtures, flush and clear the entity manager, {@link #reset()}, call the endpoint and
+ * assert on the counters.
+ */
+public final class QueryCounter {
+
+    private final EntityManager em;
+
+    private final Statistics statistics;
+
+    public QueryCounter(EntityManager em) {
+        this.em = em;
+        this.statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        this.statistics.setStatisticsEnabled(true);
+    }
+
+    /**
+     * Flush pending changes, detach everything and start counting from zero.
+     */
+    public void reset() {
+        em.flush();
+        em.clear();
+        statistics.clear();
+    }
+
+    public long getStatementCount() {
+        return statistics.getPrepareStatementCount();
+    }
+
+    public long getEntityLoadCount() {
+        return statistics.getEntityLoadCount();
+    }
+
+    public long getCollectionLoadCount() {
+        return statistics.getCollectionLoadCount();
+    }
+}
@@ -12,6 +12,7 @@ import org.junit.runner.RunWith;
 import org.mockito.MockitoAnnotations;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
@@ -61,6 +62,9 @@ public class RouteLocationResourceIntTest {
     @Autowired
     private Validator validator;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     private MockMvc restRouteLocationMockMvc;
 
     private RouteLocation routeLocation;
@@ -68,7 +72,7 @@ public class RouteLocationResourceIntTest {
     @Before
     public void setup() {
         MockitoAnnotations.initMocks(this);
-        final RouteLocationResource routeLocationResource = new RouteLocationResource(routeLocationRepository);
+        final RouteLocationResource routeLocationResource = new RouteLocationResource(routeLocationRepository, eventPublisher);
         this.restRouteLocationMockMvc = MockMvcBuilders.standaloneSetup(routeLocationResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
             .setControllerAdvice(exceptionTranslator)
@@ -2,9 +2,12 @@ package lk.npsp.web.rest;
 
 import lk.npsp.NpspApp;
 
+import lk.npsp.domain.Location;
 import lk.npsp.domain.Route;
+import lk.npsp.domain.RouteLocation;
 import lk.npsp.repository.RouteLocationRepository;
 import lk.npsp.repository.RouteRepository;
+import lk.npsp.service.RouteService;
 import lk.npsp.web.rest.errors.ExceptionTranslator;
 
 import org.junit.Before;
@@ -23,7 +26,10 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.Validator;
 
 import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.stream.Collectors;
 
 
 import static lk.npsp.web.rest.TestUtil.createFormattingConversionService;
@@ -53,6 +59,9 @@ public class RouteResourceIntTest {
     @Autowired
     private RouteLocationRepository routeLocationRepository;
 
+    @Autowired
+    private RouteService routeService;
+
     @Autowired
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -75,7 +84,7 @@ public class RouteResourceIntTest {
     @Before
     public void setup() {
         MockitoAnnotations.initMocks(this);
-        final RouteResource routeResource = new RouteResource(routeRepository, routeLocationRepository);
+        final RouteResource routeResource = new RouteResource(routeRepository, routeService);
         this.restRouteMockMvc = MockMvcBuilders.standaloneSetup(routeResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
             .setControllerAdvice(exceptionTranslator)
@@ -170,6 +179,49 @@ public class RouteResourceIntTest {
             .andExpect(jsonPath("$.routeNumber").value(DEFAULT_ROUTE_NUMBER.toString()));
     }
 
+    @Test
+    @Transactional
+    public void getRouteFetchesRouteLocationsInOneStatement() throws Exception {
+        // Initialize the database
+        routeRepository.saveAndFlush(route);
+        for (long sequenceNumber = 1; sequenceNumber <= 3; sequenceNumber++) {
+            Location location = LocationResourceIntTest.createEntity(em);
+            em.persist(location);
+            em.persist(new RouteLocation().sequenceNumber(sequenceNumber).location(location).route(route));
+        }
+        QueryCounter queryCounter = new QueryCounter(em);
+        queryCounter.reset();
+
+        // Get the route with its route locations
+        restRouteMockMvc.perform(get("/api/routes/{id}", route.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.routeLocations.length()").value(3))
+            .andExpect(jsonPath("$.routeLocations[2].sequenceNumber").value(3));
+
+        assertThat(queryCounter.getStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    @Transactional
+    public void getAllRoutesFetchesRouteLocationsInTwoStatements() throws Exception {
+        // Initialize the database
+        routeRepository.saveAndFlush(route);
+        Location location = LocationResourceIntTest.createEntity(em);
+        em.persist(location);
+        em.persist(new RouteLocation().sequenceNumber(1L).location(location).route(route));
+        QueryCounter queryCounter = new QueryCounter(em);
+        queryCounter.reset();
+
+        // Get the routes page: its ids, then its routes with their route locations
+        restRouteMockMvc.perform(get("/api/routes?sort=id,desc"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[0].id").value(route.getId().intValue()))
+            .andExpect(jsonPath("$.[0].routeLocations.length()").value(1))
+            .andExpect(jsonPath("$.[0].routeLocations[0].sequenceNumber").value(1));
+
+        assertThat(queryCounter.getStatementCount()).isEqualTo(2);
+    }
+
     @Test
     @Transactional
     public void getNonExistingRoute() throws Exception {
@@ -207,6 +259,52 @@ public class RouteResourceIntTest {
         assertThat(testRoute.getRouteNumber()).isEqualTo(UPDATED_ROUTE_NUMBER);
     }
 
+    @Test
+    @Transactional
+    public void updateRouteAppliesRouteLocationDiff() throws Exception {
+        // Initialize the database with stops A, B, C
+        routeRepository.saveAndFlush(route);
+        Location[] locations = new Location[4];
+        RouteLocation[] stops = new RouteLocation[3];
+        for (int i = 0; i < locations.length; i++) {
+            locations[i] = LocationResourceIntTest.createEntity(em);
+            em.persist(locations[i]);
+        }
+        for (int i = 0; i < stops.length; i++) {
+            stops[i] = new RouteLocation().sequenceNumber(i + 1L).location(locations[i]).route(route);
+            em.persist(stops[i]);
+        }
+        em.flush();
+
+        // Keep A, drop B, move C up and append a new stop D
+        Route updatedRoute = new Route().routeName(UPDATED_ROUTE_NAME).routeNumber(UPDATED_ROUTE_NUMBER);
+        updatedRoute.setId(route.getId());
+        RouteLocation keptStop = new RouteLocation().sequenceNumber(1L).location(locations[0]);
+        keptStop.setId(stops[0].getId());
+        RouteLocation movedStop = new RouteLocation().sequenceNumber(2L).location(locations[2]);
+        movedStop.setId(stops[2].getId());
+        RouteLocation newStop = new RouteLocation().sequenceNumber(3L).location(locations[3]);
+        updatedRoute.setRouteLocations(new HashSet<>(Arrays.asList(keptStop, movedStop, newStop)));
+
+        restRouteMockMvc.perform(put("/api/routes")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(updatedRoute)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.routeLocations.length()").value(3));
+
+        // Validate the route locations in the database
+        em.flush();
+        em.clear();
+        List<RouteLocation> routeLocations = routeLocationRepository.findRouteLocationsByRoute(route.getId());
+        assertThat(routeLocations).hasSize(3);
+        assertThat(routeLocations.get(0).getId()).isEqualTo(stops[0].getId());
+        assertThat(routeLocations.get(1).getId()).isEqualTo(stops[2].getId());
+        assertThat(routeLocations.get(2).getLocation().getId()).isEqualTo(locations[3].getId());
+        assertThat(routeLocations.stream().map(RouteLocation::getId).collect(Collectors.toList()))
+            .doesNotContain(stops[1].getId());
+        assertThat(routeRepository.findById(route.getId()).get().getRouteName()).isEqualTo(UPDATED_ROUTE_NAME);
+    }
+
     @Test
     @Transactional
     public void updateNonExistingRoute() throws Exception {
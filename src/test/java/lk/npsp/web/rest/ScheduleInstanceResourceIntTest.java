@@ -2,18 +2,30 @@ package lk.npsp.web.rest;
 
 import lk.npsp.NpspApp;
 
+import lk.npsp.domain.Location;
+import lk.npsp.domain.Route;
+import lk.npsp.domain.RouteLocation;
 import lk.npsp.domain.ScheduleInstance;
+import lk.npsp.domain.ScheduleTemplate;
+import lk.npsp.domain.Weekday;
 import lk.npsp.repository.ScheduleInstanceRepository;
 import lk.npsp.repository.ScheduleTemplateRepository;
+import lk.npsp.service.BayAllocator;
+import lk.npsp.service.DelayPropagator;
 import lk.npsp.service.ScheduleInstanceManager;
+import lk.npsp.service.ScheduleInstanceService;
 import lk.npsp.web.rest.errors.ExceptionTranslator;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.MockitoAnnotations;
+import org.springframework.aop.framework.ProxyFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
@@ -21,6 +33,7 @@ import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
 import org.springframework.util.Base64Utils;
 import org.springframework.validation.Validator;
 
@@ -35,6 +48,9 @@ import java.util.List;
 import static lk.npsp.web.rest.TestUtil.createFormattingConversionService;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasItem;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -76,6 +92,18 @@ public class ScheduleInstanceResourceIntTest {
     @Autowired
     private ScheduleInstanceManager scheduleInstanceManager;
 
+    @Autowired
+    private ScheduleInstanceService scheduleInstanceService;
+
+    @Autowired
+    private BayAllocator bayAllocator;
+
+    @Autowired
+    private TransactionInterceptor transactionInterceptor;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     @Autowired
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -99,7 +127,8 @@ public class ScheduleInstanceResourceIntTest {
     public void setup() {
         MockitoAnnotations.initMocks(this);
         final ScheduleInstanceResource scheduleInstanceResource = new ScheduleInstanceResource(
-            scheduleInstanceRepository, scheduleTemplateRepository, scheduleInstanceManager);
+            scheduleInstanceRepository, scheduleTemplateRepository, scheduleInstanceManager,
+            scheduleInstanceService, eventPublisher);
         this.restScheduleInstanceMockMvc = MockMvcBuilders.standaloneSetup(scheduleInstanceResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
             .setControllerAdvice(exceptionTranslator)
@@ -191,6 +220,42 @@ public class ScheduleInstanceResourceIntTest {
             .andExpect(jsonPath("$.[*].scheduleState").value(hasItem(DEFAULT_SCHEDULE_STATE.toString())));
     }
 
+    @Test
+    @Transactional
+    public void getAllScheduleInstancesServesRoutesAndWeekdays() throws Exception {
+        // Initialize the database
+        Route route = RouteResourceIntTest.createEntity(em);
+        em.persist(route);
+        Location location = LocationResourceIntTest.createEntity(em);
+        em.persist(location);
+        em.persist(new RouteLocation().sequenceNumber(1L).location(location).route(route));
+        Weekday weekday = WeekdayResourceIntTest.createEntity(em);
+        em.persist(weekday);
+        ScheduleTemplate scheduleTemplate = ScheduleTemplateResourceIntTest.createEntity(em).route(route);
+        scheduleTemplate.getWeekdays().add(weekday);
+        em.persist(scheduleTemplate);
+        scheduleInstanceRepository.saveAndFlush(scheduleInstance.scheduleTemplate(scheduleTemplate).route(route));
+        QueryCounter queryCounter = new QueryCounter(em);
+        queryCounter.reset();
+
+        // Get the scheduleInstances page, with the route locations and weekdays of the newest one
+        restScheduleInstanceMockMvc.perform(get("/api/schedule-instances?sort=id,desc"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[0].id").value(scheduleInstance.getId().intValue()))
+            .andExpect(jsonPath("$.[0].route.routeLocations[0].sequenceNumber").value(1))
+            .andExpect(jsonPath("$.[0].scheduleTemplate.weekdays.length()").value(1))
+            .andExpect(jsonPath("$.[0].scheduleTemplate.route.routeLocations[0].sequenceNumber").value(1));
+
+        // the collections are read with the page, not lazily while it is serialized
+        queryCounter.reset();
+        ScheduleInstance first = scheduleInstanceRepository
+            .findAllWithRouteLocations(PageRequest.of(0, 1, Sort.by(Sort.Direction.DESC, "id"))).getContent().get(0);
+        em.clear();
+        assertThat(first.getScheduleTemplate().getWeekdays()).hasSize(1);
+        assertThat(first.getScheduleTemplate().getRoute().getRouteLocations()).hasSize(1);
+        assertThat(first.getRoute().getRouteLocations()).hasSize(1);
+    }
+
     @Test
     @Transactional
     public void getScheduleInstance() throws Exception {
@@ -255,6 +320,38 @@ public class ScheduleInstanceResourceIntTest {
         assertThat(testScheduleInstance.getScheduleState()).isEqualTo(UPDATED_SCHEDULE_STATE);
     }
 
+    @Test
+    public void updateIsRolledBackWithTheMovesItCauses() throws Exception {
+        // Initialize the database, committed as the update runs in its own transaction
+        scheduleInstanceRepository.saveAndFlush(scheduleInstance);
+        try {
+            DelayPropagator delayPropagator = mock(DelayPropagator.class);
+            when(delayPropagator.propagate(any())).thenThrow(new IllegalStateException("Propagation failed"));
+            // the service as the application context proxies it, with a propagator failing after the save
+            ProxyFactory proxyFactory = new ProxyFactory(
+                new ScheduleInstanceService(scheduleInstanceRepository, delayPropagator, bayAllocator, eventPublisher));
+            proxyFactory.setProxyTargetClass(true);
+            proxyFactory.addAdvice(transactionInterceptor);
+            MockMvc restMockMvc = MockMvcBuilders.standaloneSetup(new ScheduleInstanceResource(
+                    scheduleInstanceRepository, scheduleTemplateRepository, scheduleInstanceManager,
+                    (ScheduleInstanceService) proxyFactory.getProxy(), eventPublisher))
+                .setControllerAdvice(exceptionTranslator)
+                .setMessageConverters(jacksonMessageConverter).build();
+
+            scheduleInstance.specialNotes(UPDATED_SPECIAL_NOTES);
+            restMockMvc.perform(put("/api/schedule-instances")
+                .contentType(TestUtil.APPLICATION_JSON_UTF8)
+                .content(TestUtil.convertObjectToJsonBytes(scheduleInstance)))
+                .andExpect(status().isInternalServerError());
+
+            // Validate the ScheduleInstance in the database
+            assertThat(scheduleInstanceRepository.findById(scheduleInstance.getId()).get().getSpecialNotes())
+                .isEqualTo(DEFAULT_SPECIAL_NOTES);
+        } finally {
+            scheduleInstanceRepository.deleteById(scheduleInstance.getId());
+        }
+    }
+
     @Test
     @Transactional
     public void updateNonExistingScheduleInstance() throws Exception {
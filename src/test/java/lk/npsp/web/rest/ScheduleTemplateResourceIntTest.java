@@ -3,7 +3,11 @@ package lk.npsp.web.rest;
 import lk.npsp.NpspApp;
 
 import lk.npsp.domain.ScheduleTemplate;
+import lk.npsp.domain.Vehicle;
+import lk.npsp.domain.Weekday;
+import lk.npsp.domain.enumeration.Weekdays;
 import lk.npsp.repository.ScheduleTemplateRepository;
+import lk.npsp.service.DoubleBookingDetector;
 import lk.npsp.web.rest.errors.ExceptionTranslator;
 
 import org.junit.Before;
@@ -26,6 +30,8 @@ import org.springframework.validation.Validator;
 
 import javax.persistence.EntityManager;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
@@ -34,6 +40,7 @@ import java.util.List;
 import static lk.npsp.web.rest.TestUtil.createFormattingConversionService;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -62,6 +69,9 @@ public class ScheduleTemplateResourceIntTest {
     @Mock
     private ScheduleTemplateRepository scheduleTemplateRepositoryMock;
 
+    @Autowired
+    private DoubleBookingDetector doubleBookingDetector;
+
     @Autowired
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -84,7 +94,7 @@ public class ScheduleTemplateResourceIntTest {
     @Before
     public void setup() {
         MockitoAnnotations.initMocks(this);
-        final ScheduleTemplateResource scheduleTemplateResource = new ScheduleTemplateResource(scheduleTemplateRepository);
+        final ScheduleTemplateResource scheduleTemplateResource = new ScheduleTemplateResource(scheduleTemplateRepository, doubleBookingDetector);
         this.restScheduleTemplateMockMvc = MockMvcBuilders.standaloneSetup(scheduleTemplateResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
             .setControllerAdvice(exceptionTranslator)
@@ -203,9 +213,107 @@ public class ScheduleTemplateResourceIntTest {
             .andExpect(jsonPath("$.[*].isActive").value(hasItem(DEFAULT_IS_ACTIVE.booleanValue())));
     }
     
+    @Test
+    @Transactional
+    public void createScheduleTemplateDoubleBookingVehicle() throws Exception {
+        Vehicle vehicle = VehicleResourceIntTest.createEntity(em);
+        em.persist(vehicle);
+        Weekday monday = weekday(Weekdays.Monday);
+        activeTemplate(vehicle, monday, 8, 0, 10, 0);
+        int databaseSizeBeforeCreate = scheduleTemplateRepository.findAll().size();
+
+        ScheduleTemplate overlapping = new ScheduleTemplate()
+            .startTime(at(9, 30))
+            .endTime(at(11, 0))
+            .isActive(true)
+            .vehicle(vehicle)
+            .addWeekday(monday);
+        restScheduleTemplateMockMvc.perform(post("/api/schedule-templates")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(overlapping)))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value("error.doublebooked"));
+
+        assertThat(scheduleTemplateRepository.findAll()).hasSize(databaseSizeBeforeCreate);
+
+        // the same times on another day are free
+        ScheduleTemplate otherDay = new ScheduleTemplate()
+            .startTime(at(9, 30))
+            .endTime(at(11, 0))
+            .isActive(true)
+            .vehicle(vehicle)
+            .addWeekday(weekday(Weekdays.Tuesday));
+        restScheduleTemplateMockMvc.perform(post("/api/schedule-templates")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(otherDay)))
+            .andExpect(status().isCreated());
+    }
+
+    @Test
+    @Transactional
+    public void getScheduleTemplateConflicts() throws Exception {
+        Vehicle vehicle = VehicleResourceIntTest.createEntity(em);
+        em.persist(vehicle);
+        ScheduleTemplate overnight = activeTemplate(vehicle, weekday(Weekdays.Saturday), 23, 0, 1, 0);
+        ScheduleTemplate early = activeTemplate(vehicle, weekday(Weekdays.Sunday), 0, 30, 2, 0);
+        activeTemplate(vehicle, weekday(Weekdays.Sunday), 2, 0, 3, 0);
+        em.flush();
+
+        // the overnight template runs into Sunday morning, at the start of the week
+        restScheduleTemplateMockMvc.perform(get("/api/schedule-templates/conflicts"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[?(@.resourceId == " + vehicle.getId() + ")]", hasSize(1)))
+            .andExpect(jsonPath("$.[?(@.resourceId == " + vehicle.getId() + ")].resource").value("vehicle"))
+            .andExpect(jsonPath("$.[?(@.resourceId == " + vehicle.getId() + ")].scheduleTemplateId")
+                .value(overnight.getId().intValue()))
+            .andExpect(jsonPath("$.[?(@.resourceId == " + vehicle.getId() + ")].otherScheduleTemplateId")
+                .value(early.getId().intValue()))
+            .andExpect(jsonPath("$.[?(@.resourceId == " + vehicle.getId() + ")].weekday").value("Sunday"))
+            .andExpect(jsonPath("$.[?(@.resourceId == " + vehicle.getId() + ")].from").value("00:30:00"))
+            .andExpect(jsonPath("$.[?(@.resourceId == " + vehicle.getId() + ")].to").value("01:00:00"));
+    }
+
+    private Weekday weekday(Weekdays day) {
+        Weekday weekday = new Weekday().weekday(day);
+        em.persist(weekday);
+        return weekday;
+    }
+
+    private ScheduleTemplate activeTemplate(Vehicle vehicle, Weekday weekday, int startHour, int startMinute,
+                                            int endHour, int endMinute) {
+        ScheduleTemplate template = new ScheduleTemplate()
+            .startTime(at(startHour, startMinute))
+            .endTime(at(endHour, endMinute))
+            .isActive(true)
+            .vehicle(vehicle)
+            .addWeekday(weekday);
+        em.persist(template);
+        return template;
+    }
+
+    private static Instant at(int hour, int minute) {
+        return LocalDate.of(2019, 2, 8).atTime(hour, minute).atZone(ZoneId.systemDefault()).toInstant();
+    }
+
+    @Test
+    @Transactional
+    public void getAllScheduleTemplatesIncludesWeekdays() throws Exception {
+        Vehicle vehicle = VehicleResourceIntTest.createEntity(em);
+        em.persist(vehicle);
+        ScheduleTemplate template = activeTemplate(vehicle, weekday(Weekdays.Friday), 8, 0, 9, 0);
+        // read back outside this persistence context, so the weekdays are not already loaded
+        em.flush();
+        em.clear();
+
+        restScheduleTemplateMockMvc.perform(get("/api/schedule-templates?sort=id,desc"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[0].id").value(template.getId().intValue()))
+            .andExpect(jsonPath("$.[0].weekdays[0].weekday").value("Friday"));
+    }
+
     @SuppressWarnings({"unchecked"})
     public void getAllScheduleTemplatesWithEagerRelationshipsIsEnabled() throws Exception {
-        ScheduleTemplateResource scheduleTemplateResource = new ScheduleTemplateResource(scheduleTemplateRepositoryMock);
+        ScheduleTemplateResource scheduleTemplateResource = new ScheduleTemplateResource(scheduleTemplateRepositoryMock, doubleBookingDetector);
         when(scheduleTemplateRepositoryMock.findAllWithEagerRelationships(any())).thenReturn(new PageImpl(new ArrayList<>()));
 
         MockMvc restScheduleTemplateMockMvc = MockMvcBuilders.standaloneSetup(scheduleTemplateResource)
@@ -222,7 +330,7 @@ public class ScheduleTemplateResourceIntTest {
 
     @SuppressWarnings({"unchecked"})
     public void getAllScheduleTemplatesWithEagerRelationshipsIsNotEnabled() throws Exception {
-        ScheduleTemplateResource scheduleTemplateResource = new ScheduleTemplateResource(scheduleTemplateRepositoryMock);
+        ScheduleTemplateResource scheduleTemplateResource = new ScheduleTemplateResource(scheduleTemplateRepositoryMock, doubleBookingDetector);
             when(scheduleTemplateRepositoryMock.findAllWithEagerRelationships(any())).thenReturn(new PageImpl(new ArrayList<>()));
             MockMvc restScheduleTemplateMockMvc = MockMvcBuilders.standaloneSetup(scheduleTemplateResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
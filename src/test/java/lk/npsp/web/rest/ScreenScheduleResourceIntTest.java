@@ -0,0 +1,368 @@
+package lk.npsp.web.rest;
+
+import lk.npsp.NpspApp;
+
+import lk.npsp.domain.*;
+import lk.npsp.domain.enumeration.ScheduleState;
+import lk.npsp.repository.BayRepository;
+import lk.npsp.repository.ScreenScheduleRepository;
+import lk.npsp.repository.TransportTypeRepository;
+import lk.npsp.service.DayTimetable;
+import lk.npsp.service.DomainMetrics;
+import lk.npsp.service.ResourceLocator;
+import lk.npsp.service.ScheduleInstancesChangedEvent;
+import lk.npsp.service.SimpleTranslator;
+import lk.npsp.web.rest.errors.ExceptionTranslator;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.MockitoAnnotations;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static lk.npsp.web.rest.TestUtil.createFormattingConversionService;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Test class for the ScreenScheduleResource REST controller.
+ *
+ * @see ScreenScheduleResource
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = NpspApp.class)
+public class ScreenScheduleResourceIntTest {
+
+    private static final String BAY_NAME = "Bay 7";
+
+    private static final String TRANSPORT_TYPE_META_CODE = "NTC";
+
+    private static final String DESTINATION_NAME = "Kandy";
+
+    private static final int NUMBER_OF_DEPARTURES = 4;
+
+    private static final int NUMBER_OF_ROUTE_LOCATIONS = 5;
+
+    @Autowired
+    private ScreenScheduleRepository screenScheduleRepository;
+
+    @Autowired
+    private BayRepository bayRepository;
+
+    @Autowired
+    private TransportTypeRepository transportTypeRepository;
+
+    @Autowired
+    private SimpleTranslator simpleTranslator;
+
+    @Autowired
+    private ResourceLocator resourceLocator;
+
+    @Autowired
+    private DomainMetrics domainMetrics;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    @Autowired
+    private MappingJackson2CborHttpMessageConverter cborMessageConverter;
+
+    @Autowired
+    private MappingJackson2SmileHttpMessageConverter smileMessageConverter;
+
+    @Autowired
+    private ExceptionTranslator exceptionTranslator;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private ZoneId zone;
+
+    /**
+     * A timetable of the test's own: it reads rows the test rolls back, which must not stay in the application's.
+     */
+    private DayTimetable dayTimetable;
+
+    private MockMvc restScreenScheduleMockMvc;
+
+    private Bay bay;
+
+    private List<ScheduleInstance> departures;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        dayTimetable = new DayTimetable(screenScheduleRepository, transportTypeRepository, Runnable::run, zone);
+        final ScreenScheduleResource screenScheduleResource = new ScreenScheduleResource(
+            screenScheduleRepository, bayRepository, dayTimetable, simpleTranslator, resourceLocator, domainMetrics);
+        this.restScreenScheduleMockMvc = MockMvcBuilders.standaloneSetup(screenScheduleResource)
+            .setControllerAdvice(exceptionTranslator)
+            .setConversionService(createFormattingConversionService())
+            .setMessageConverters(jacksonMessageConverter, cborMessageConverter, smileMessageConverter).build();
+    }
+
+    /**
+     * Create a bay with upcoming departures, all running on the same multi-stop route, and load them into the day
+     * timetable.
+     */
+    private void createDepartures() {
+        bay = BayResourceIntTest.createEntity(em).bayName(BAY_NAME);
+        em.persist(bay);
+
+        TransportType transportType = TransportTypeResourceIntTest.createEntity(em).metaCode(TRANSPORT_TYPE_META_CODE);
+        em.persist(transportType);
+        Vehicle vehicle = VehicleResourceIntTest.createEntity(em).transportType(transportType);
+        em.persist(vehicle);
+
+        Route route = RouteResourceIntTest.createEntity(em);
+        em.persist(route);
+        for (long sequenceNumber = 1; sequenceNumber <= NUMBER_OF_ROUTE_LOCATIONS; sequenceNumber++) {
+            Location location = LocationResourceIntTest.createEntity(em);
+            if (sequenceNumber == NUMBER_OF_ROUTE_LOCATIONS) {
+                location.setLocationName(DESTINATION_NAME);
+            }
+            em.persist(location);
+            em.persist(new RouteLocation().sequenceNumber(sequenceNumber).location(location).route(route));
+        }
+
+        ScheduleTemplate scheduleTemplate = ScheduleTemplateResourceIntTest.createEntity(em)
+            .route(route).vehicle(vehicle).bay(bay);
+        em.persist(scheduleTemplate);
+
+        departures = new ArrayList<>();
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MINUTES);
+        for (int i = 1; i <= NUMBER_OF_DEPARTURES; i++) {
+            Instant departure = now.plus(i * 10, ChronoUnit.MINUTES);
+            ScheduleInstance scheduleInstance = new ScheduleInstance()
+                .date(LocalDate.now())
+                .scheduledTime(departure)
+                .actualScheduledTime(departure)
+                .actualDepartureTime(departure)
+                .scheduleState(ScheduleState.PENDING)
+                .scheduleTemplate(scheduleTemplate)
+                .route(route)
+                .vehicle(vehicle)
+                .bay(bay);
+            em.persist(scheduleInstance);
+            departures.add(scheduleInstance);
+        }
+        em.flush();
+        dayTimetable.reload();
+    }
+
+    @Test
+    @Transactional
+    public void getSchedulesForScreen() throws Exception {
+        createDepartures();
+        QueryCounter queryCounter = new QueryCounter(em);
+        queryCounter.reset();
+
+        restScreenScheduleMockMvc.perform(get("/api/screen/schedule?bay={id}", bay.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.screenRows.length()").value(NUMBER_OF_DEPARTURES))
+            .andExpect(jsonPath("$.screenRows[0].destination[0]").value(DESTINATION_NAME))
+            .andExpect(jsonPath("$.screenRows[0].transportType").value(TRANSPORT_TYPE_META_CODE));
+
+        // only the bay lookup, the departures come from the day timetable
+        assertThat(queryCounter.getStatementCount()).isEqualTo(1);
+        assertThat(meterRegistry.get("npsp.screen.build").tag("bay", bay.getId().toString())
+            .tag("source", DomainMetrics.SOURCE_TIMETABLE).timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("spring.data.repository.invocations").tag("repository", "BayRepository")
+            .tag("method", "findById").timer().count()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    @Transactional
+    public void getSchedulesForSummary() throws Exception {
+        createDepartures();
+        QueryCounter queryCounter = new QueryCounter(em);
+        queryCounter.reset();
+
+        restScreenScheduleMockMvc.perform(get("/api/screen/schedule-summary?type={type}", TRANSPORT_TYPE_META_CODE))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.screenRows[0].destination[0]").value(DESTINATION_NAME));
+
+        assertThat(queryCounter.getStatementCount()).isEqualTo(0);
+    }
+
+    @Test
+    @Transactional
+    public void getSchedulesForScreenOfRouteWithoutStops() throws Exception {
+        Bay emptyRouteBay = BayResourceIntTest.createEntity(em).bayName(BAY_NAME);
+        em.persist(emptyRouteBay);
+        TransportType transportType = TransportTypeResourceIntTest.createEntity(em).metaCode(TRANSPORT_TYPE_META_CODE);
+        em.persist(transportType);
+        Vehicle vehicle = VehicleResourceIntTest.createEntity(em).transportType(transportType);
+        em.persist(vehicle);
+        Route route = RouteResourceIntTest.createEntity(em);
+        em.persist(route);
+        ScheduleTemplate scheduleTemplate = ScheduleTemplateResourceIntTest.createEntity(em)
+            .route(route).vehicle(vehicle).bay(emptyRouteBay);
+        em.persist(scheduleTemplate);
+        Instant departure = Instant.now().truncatedTo(ChronoUnit.MINUTES).plus(10, ChronoUnit.MINUTES);
+        em.persist(new ScheduleInstance()
+            .date(LocalDate.now())
+            .scheduledTime(departure)
+            .actualScheduledTime(departure)
+            .scheduleState(ScheduleState.PENDING)
+            .scheduleTemplate(scheduleTemplate)
+            .route(route)
+            .vehicle(vehicle)
+            .bay(emptyRouteBay));
+        em.flush();
+        dayTimetable.reload();
+
+        restScreenScheduleMockMvc.perform(get("/api/screen/schedule?bay={id}", emptyRouteBay.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.screenRows.length()").value(1))
+            .andExpect(jsonPath("$.screenRows[0].destination[0]").value(""));
+    }
+
+    @Test
+    @Transactional
+    public void timetableHoldsTodayAndTomorrow() throws Exception {
+        createDepartures();
+        Instant now = Instant.now();
+        Instant windowEnd = LocalDate.now(zone).plusDays(2).atStartOfDay(zone).toInstant();
+        ScheduleInstance first = departures.get(0);
+        em.persist(new ScheduleInstance()
+            .date(LocalDate.now(zone).plusDays(2))
+            .scheduledTime(windowEnd)
+            .actualScheduledTime(windowEnd)
+            .scheduleState(ScheduleState.PENDING)
+            .scheduleTemplate(first.getScheduleTemplate())
+            .route(first.getRoute())
+            .vehicle(first.getVehicle())
+            .bay(bay));
+        em.flush();
+        dayTimetable.reload();
+
+        assertThat(dayTimetable.covers(now)).isTrue();
+        assertThat(dayTimetable.covers(windowEnd)).isFalse();
+        assertThat(dayTimetable.findNextByBay(bay.getId(), now, NUMBER_OF_DEPARTURES + 1))
+            .hasSize(NUMBER_OF_DEPARTURES);
+    }
+
+    @Test
+    @Transactional
+    public void getSchedulesForSummaryOfUnknownTypeIsMeteredAsOther() throws Exception {
+        createDepartures();
+
+        restScreenScheduleMockMvc.perform(get("/api/screen/schedule-summary?type={type}", "NO-SUCH-TYPE"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.screenRows.length()").value(0));
+
+        assertThat(meterRegistry.find("npsp.screen.build").tag("transport_type", "NO-SUCH-TYPE").timer()).isNull();
+        assertThat(meterRegistry.get("npsp.screen.build").tag("screen", "summary")
+            .tag("transport_type", DomainMetrics.OTHER_TRANSPORT_TYPE).timer().count()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    @Transactional
+    public void getSchedulesForScreenAfterDeparturesChange() throws Exception {
+        createDepartures();
+        ScheduleInstance first = departures.get(0);
+        dayTimetable.onScheduleInstancesChanged(
+            new ScheduleInstancesChangedEvent(Collections.singletonList(first.getId()), true));
+
+        restScreenScheduleMockMvc.perform(get("/api/screen/schedule?bay={id}", bay.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.screenRows.length()").value(NUMBER_OF_DEPARTURES - 1));
+
+        ScheduleInstance last = departures.get(NUMBER_OF_DEPARTURES - 1);
+        first.setActualScheduledTime(last.getActualScheduledTime().plus(10, ChronoUnit.MINUTES));
+        em.flush();
+        dayTimetable.onScheduleInstancesChanged(
+            new ScheduleInstancesChangedEvent(Collections.singletonList(first.getId()), false));
+
+        restScreenScheduleMockMvc.perform(get("/api/screen/schedule-summary?type={type}", TRANSPORT_TYPE_META_CODE))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.screenRows.length()").value(NUMBER_OF_DEPARTURES))
+            .andExpect(jsonPath("$.screenRows[3].time").value(new ScreenRow(first, simpleTranslator).getTime()));
+    }
+
+    @Test
+    @Transactional
+    public void getSchedulesForScreenInCbor() throws Exception {
+        assertScreenEncodedAs(MediaType.valueOf("application/cbor"), new CBORFactory());
+    }
+
+    @Test
+    @Transactional
+    public void getSchedulesForScreenInSmile() throws Exception {
+        assertScreenEncodedAs(MediaType.valueOf("application/x-jackson-smile"), new SmileFactory());
+    }
+
+    @Test
+    @Transactional
+    public void getSchedulesForScreenDefaultsToJson() throws Exception {
+        createDepartures();
+
+        restScreenScheduleMockMvc.perform(get("/api/screen/schedule?bay={id}", bay.getId())
+            .header(HttpHeaders.ACCEPT, MediaType.ALL_VALUE))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+            .andExpect(jsonPath("$.screenRows.length()").value(NUMBER_OF_DEPARTURES));
+    }
+
+    @Test
+    public void binaryConvertersAreConfiguredLikeJsonWithoutChangingIt() throws Exception {
+        assertThat(jacksonMessageConverter.getObjectMapper().getFactory())
+            .isNotInstanceOf(CBORFactory.class).isNotInstanceOf(SmileFactory.class);
+        assertThat(cborMessageConverter.getObjectMapper().getFactory()).isInstanceOf(CBORFactory.class);
+        assertThat(smileMessageConverter.getObjectMapper().getFactory()).isInstanceOf(SmileFactory.class);
+
+        Instant now = Instant.now();
+        JsonNode cbor = new ObjectMapper(new CBORFactory())
+            .readTree(cborMessageConverter.getObjectMapper().writeValueAsBytes(Collections.singletonMap("now", now)));
+        JsonNode smile = new ObjectMapper(new SmileFactory())
+            .readTree(smileMessageConverter.getObjectMapper().writeValueAsBytes(Collections.singletonMap("now", now)));
+        assertThat(cbor.get("now").asText()).isEqualTo(now.toString());
+        assertThat(smile.get("now").asText()).isEqualTo(now.toString());
+    }
+
+    private void assertScreenEncodedAs(MediaType mediaType, JsonFactory factory) throws Exception {
+        createDepartures();
+
+        byte[] body = restScreenScheduleMockMvc.perform(get("/api/screen/schedule?bay={id}", bay.getId())
+            .accept(mediaType))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(mediaType))
+            .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode screen = new ObjectMapper(factory).readTree(body);
+        assertThat(screen.get("screenRows")).hasSize(NUMBER_OF_DEPARTURES);
+        assertThat(screen.get("screenRows").get(0).get("destination").get(0).asText()).isEqualTo(DESTINATION_NAME);
+        assertThat(screen.get("screenRows").get(0).get("transportType").asText()).isEqualTo(TRANSPORT_TYPE_META_CODE);
+    }
+}
@@ -4,6 +4,7 @@ import lk.npsp.NpspApp;
 import lk.npsp.domain.User;
 import lk.npsp.repository.UserRepository;
 import lk.npsp.security.jwt.TokenProvider;
+import lk.npsp.security.password.BCryptPasswordHasher;
 import lk.npsp.web.rest.errors.ExceptionTranslator;
 import lk.npsp.web.rest.vm.LoginVM;
 import org.junit.Before;
@@ -18,6 +19,7 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.transaction.annotation.Transactional;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -109,6 +111,32 @@ public class UserJWTControllerIntTest {
             .andExpect(header().string("Authorization", not(isEmptyString())));
     }
 
+    @Test
+    @Transactional
+    public void testAuthorizeRehashesOutdatedPassword() throws Exception {
+        User user = new User();
+        user.setLogin("user-jwt-controller-rehash");
+        user.setEmail("user-jwt-controller-rehash@example.com");
+        user.setActivated(true);
+        String outdated = new BCryptPasswordHasher(4).hash("test");
+        user.setPassword(outdated);
+
+        userRepository.saveAndFlush(user);
+
+        LoginVM login = new LoginVM();
+        login.setUsername("user-jwt-controller-rehash");
+        login.setPassword("test");
+        mockMvc.perform(post("/api/authenticate")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(login)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.id_token").isNotEmpty());
+
+        String rehashed = userRepository.findOneByLogin("user-jwt-controller-rehash").get().getPassword();
+        assertThat(rehashed).isNotEqualTo(outdated).startsWith("$2a$10$");
+        assertThat(passwordEncoder.matches("test", rehashed)).isTrue();
+    }
+
     @Test
     @Transactional
     public void testAuthorizeFails() throws Exception {
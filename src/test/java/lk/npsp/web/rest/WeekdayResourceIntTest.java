@@ -2,6 +2,7 @@ package lk.npsp.web.rest;
 
 import lk.npsp.NpspApp;
 
+import lk.npsp.domain.ScheduleTemplate;
 import lk.npsp.domain.Weekday;
 import lk.npsp.repository.WeekdayRepository;
 import lk.npsp.web.rest.errors.ExceptionTranslator;
@@ -178,6 +179,29 @@ public class WeekdayResourceIntTest {
             .andExpect(jsonPath("$.weekday").value(DEFAULT_WEEKDAY.toString()));
     }
 
+    @Test
+    @Transactional
+    public void getWeekdayDoesNotLoadScheduleTemplates() throws Exception {
+        // Initialize the database
+        weekdayRepository.saveAndFlush(weekday);
+        for (int i = 0; i < 3; i++) {
+            ScheduleTemplate scheduleTemplate = ScheduleTemplateResourceIntTest.createEntity(em);
+            scheduleTemplate.getWeekdays().add(weekday);
+            em.persist(scheduleTemplate);
+        }
+        QueryCounter queryCounter = new QueryCounter(em);
+        queryCounter.reset();
+
+        // Get the weekday
+        restWeekdayMockMvc.perform(get("/api/weekdays/{id}", weekday.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.id").value(weekday.getId().intValue()));
+
+        assertThat(queryCounter.getStatementCount()).isEqualTo(1);
+        assertThat(queryCounter.getEntityLoadCount()).isEqualTo(1);
+        assertThat(queryCounter.getCollectionLoadCount()).isZero();
+    }
+
     @Test
     @Transactional
     public void getNonExistingWeekday() throws Exception {